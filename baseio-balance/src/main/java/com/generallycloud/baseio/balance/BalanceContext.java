@@ -21,11 +21,19 @@ import com.generallycloud.baseio.component.ChannelAcceptor;
 import com.generallycloud.baseio.component.ExceptionCaughtHandle;
 import com.generallycloud.baseio.component.SilentExceptionCaughtHandle;
 
-//FIXME 增加熔断机制
+/**
+ * 熔断(按延迟与错误摘除节点、慢启动)见LoadBalanceRouter
+ */
 public class BalanceContext {
 
     public static final String       BALANCE_CONTEXT_KEY          = "BALANCE_CONTEXT_KEY";
 
+    /**
+     * 后端节点连接后发送的注册报文的future name，text为该节点稳定的id(如监听地址)，
+     * 用于HashedBalanceRouter在环上放置该节点，重连后位置不变
+     */
+    public static final String       BALANCE_REGISTER             = "BALANCE_REGISTER";
+
     private BalanceRouter            balanceRouter;
     private ChannelLostFutureFactory channelLostReadFutureFactory;
     private ChannelAcceptor          facadeAcceptor;
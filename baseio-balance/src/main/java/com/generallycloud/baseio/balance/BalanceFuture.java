@@ -20,6 +20,11 @@ import com.generallycloud.baseio.protocol.Future;
 
 public interface BalanceFuture extends Future {
 
+    /**
+     * 用于关联请求与后端的响应，0表示没有futureId
+     */
+    public abstract int getFutureId();
+
     public abstract int getSessionKey();
 
     public abstract boolean isBroadcast();
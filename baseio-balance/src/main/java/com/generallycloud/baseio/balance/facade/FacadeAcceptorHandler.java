@@ -70,6 +70,14 @@ public abstract class FacadeAcceptorHandler extends IoEventHandleAdaptor {
     protected abstract void doAccept(FacadeSocketSession fs, ReverseSocketSession rs,
             BalanceFuture future);
 
+    /**
+     * 转发到后端节点，同时记录该节点的负载
+     */
+    protected void dispatch(ReverseSocketSession rs, BalanceFuture f) {
+        rs.getLoad().dispatch(f.getSessionKey(), f.getFutureId());
+        rs.flush(f.translate(rs));
+    }
+
     protected void logDispatchMsg(FacadeSocketSession fs, ReverseSocketSession rs,
             BalanceFuture f) {
         logger.info("dispatch msg: F[{}],T[{}],msg:{}", fs.getRemoteAddrPort(),
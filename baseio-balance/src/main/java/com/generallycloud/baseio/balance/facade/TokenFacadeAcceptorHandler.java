@@ -29,7 +29,7 @@ public abstract class TokenFacadeAcceptorHandler extends FacadeAcceptorHandler {
             fs.flush(createTokenPacket(fs));
             return;
         }
-        rs.flush(f.translate(rs));
+        dispatch(rs, f);
         logDispatchMsg(fs, rs, f);
     }
 
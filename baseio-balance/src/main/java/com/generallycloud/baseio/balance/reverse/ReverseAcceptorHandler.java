@@ -18,6 +18,7 @@ package com.generallycloud.baseio.balance.reverse;
 import com.generallycloud.baseio.balance.BalanceContext;
 import com.generallycloud.baseio.balance.BalanceFuture;
 import com.generallycloud.baseio.balance.router.BalanceRouter;
+import com.generallycloud.baseio.common.StringUtil;
 import com.generallycloud.baseio.component.ChannelAcceptor;
 import com.generallycloud.baseio.component.ChannelContext;
 import com.generallycloud.baseio.component.ExceptionCaughtHandle;
@@ -26,6 +27,8 @@ import com.generallycloud.baseio.component.SocketSession;
 import com.generallycloud.baseio.log.Logger;
 import com.generallycloud.baseio.log.LoggerFactory;
 import com.generallycloud.baseio.protocol.Future;
+import com.generallycloud.baseio.protocol.NamedFuture;
+import com.generallycloud.baseio.protocol.TextFuture;
 
 public class ReverseAcceptorHandler extends IoEventHandleAdaptor {
 
@@ -49,11 +52,17 @@ public class ReverseAcceptorHandler extends IoEventHandleAdaptor {
     @Override
     public void accept(SocketSession session, Future future) throws Exception {
         BalanceFuture f = (BalanceFuture) future;
+        if (isRegister(f)) {
+            register((ReverseSocketSession) session, ((TextFuture) f).getReadText());
+            return;
+        }
         if (f.isBroadcast()) {
             facadeAcceptor.broadcast(f.translate(session));
             reverseLogger.logBroadcast(session, future, logger);
             return;
         }
+        ((ReverseSocketSession) session).getLoad().response(f.getSessionKey(),
+                f.getFutureId());
         SocketSession response = balanceRouter.getClientSession(f.getSessionKey());
         if (response == null || response.isClosed()) {
             reverseLogger.logPushLost(session, future, logger);
@@ -63,8 +72,37 @@ public class ReverseAcceptorHandler extends IoEventHandleAdaptor {
         reverseLogger.logPush(session, response, future, logger);
     }
 
+    private boolean isRegister(BalanceFuture f) {
+        if (!(f instanceof NamedFuture) || !(f instanceof TextFuture)) {
+            return false;
+        }
+        return BalanceContext.BALANCE_REGISTER.equals(((NamedFuture) f).getFutureName());
+    }
+
+    /**
+     * 节点以注册的id重新加入router，router中节点的key在加入时计算，需要先移除再加入
+     */
+    private void register(ReverseSocketSession session, String machineId) {
+        if (StringUtil.isNullOrBlank(machineId)) {
+            logger.error("empty machine id from [ {} ]", session);
+            return;
+        }
+        if (session.isClosed()) {
+            return;
+        }
+        balanceRouter.removeRouterSession(session);
+        session.setMachineId(machineId);
+        balanceRouter.addRouterSession(session);
+        // 与sessionClosed并发时，保证关闭的节点不会留在router中
+        if (session.isClosed()) {
+            balanceRouter.removeRouterSession(session);
+        }
+        logger.info("load node from [ {} ] registered as [ {} ]", session, machineId);
+    }
+
     @Override
     public void exceptionCaught(SocketSession session, Future future, Exception ex) {
+        ((ReverseSocketSession) session).getLoad().error();
         exceptionCaughtHandle.exceptionCaught(session, future, ex);
     }
 
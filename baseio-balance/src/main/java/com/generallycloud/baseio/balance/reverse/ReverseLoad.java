@@ -0,0 +1,240 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.balance.reverse;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 记录转发到某个后端节点的负载：未响应的请求数、响应延迟的EWMA、连续错误次数，
+ * 以及熔断摘除与慢启动的时间点。
+ * <p>
+ * 请求与响应按(sessionKey,futureId)关联，后端主动推送或已过期的响应不会被计入；
+ * 没有futureId的请求只能与同样没有futureId的响应按FIFO匹配。
+ * 超过pendingTimeout仍未响应的请求(响应丢失或不需要响应)不再计入未响应数
+ * </p>
+ */
+public class ReverseLoad {
+
+    // 过期检查的最小间隔，同时也是最早未响应请求的统计间隔
+    private static final long                SCAN_INTERVAL  = 100L * 1000 * 1000;
+
+    private ConcurrentHashMap<Long, Pending> correlated     = new ConcurrentHashMap<>();
+    private volatile long                    ejectedUntil;
+    private AtomicInteger                    errors         = new AtomicInteger();
+    private volatile long                    latency;
+    private AtomicLong                       nextScan       = new AtomicLong(System.nanoTime());
+    private volatile Pending                 oldest;
+    private AtomicInteger                    pending        = new AtomicInteger();
+    private volatile long                    pendingTimeout = 30L * 1000 * 1000 * 1000;
+    private volatile long                    recoverTime    = System.currentTimeMillis();
+    private Queue<Pending>                   uncorrelated   = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 请求转发前调用
+     */
+    public void dispatch(int sessionKey, int futureId) {
+        long now = System.nanoTime();
+        Pending p = new Pending(now);
+        pending.incrementAndGet();
+        if (futureId == 0) {
+            uncorrelated.offer(p);
+        } else {
+            Pending old = correlated.put(key(sessionKey, futureId), p);
+            // 客户端在响应前复用了futureId，之前的请求无法再被匹配
+            if (old != null) {
+                claim(old);
+            }
+        }
+        long next = nextScan.get();
+        if (now - next >= 0 && nextScan.compareAndSet(next, now + SCAN_INTERVAL)) {
+            scan(now);
+        }
+    }
+
+    /**
+     * 收到后端的(非广播)响应时调用，更新延迟的EWMA
+     */
+    public void response(int sessionKey, int futureId) {
+        Pending p;
+        if (futureId == 0) {
+            for (;;) {
+                p = uncorrelated.poll();
+                if (p == null) {
+                    return;
+                }
+                if (claim(p)) {
+                    break;
+                }
+            }
+        } else {
+            p = correlated.remove(key(sessionKey, futureId));
+            if (p == null || !claim(p)) {
+                return;
+            }
+        }
+        long sample = System.nanoTime() - p.time;
+        if (sample < 0) {
+            return;
+        }
+        long latency = this.latency;
+        // alpha = 1/8，与TCP的SRTT相同
+        this.latency = latency == 0 ? sample : latency + ((sample - latency) >> 3);
+        errors.set(0);
+    }
+
+    private boolean claim(Pending p) {
+        if (p.compareAndSet(false, true)) {
+            pending.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private static long key(int sessionKey, int futureId) {
+        return ((long) sessionKey << 32) | (futureId & 0xffffffffL);
+    }
+
+    // 丢弃过期的请求，并找出关联请求中最早未响应的一个
+    private void scan(long now) {
+        long deadline = now - pendingTimeout;
+        for (Pending p = uncorrelated.peek(); p != null; p = uncorrelated.peek()) {
+            if (!p.get() && p.time - deadline > 0) {
+                break;
+            }
+            claim(p);
+            uncorrelated.remove(p);
+        }
+        Pending oldest = null;
+        Iterator<Entry<Long, Pending>> it = correlated.entrySet().iterator();
+        for (; it.hasNext();) {
+            Entry<Long, Pending> e = it.next();
+            Pending p = e.getValue();
+            if (p.time - deadline <= 0) {
+                claim(p);
+                correlated.remove(e.getKey(), p);
+            } else if (oldest == null || p.time - oldest.time < 0) {
+                oldest = p;
+            }
+        }
+        this.oldest = oldest;
+    }
+
+    /**
+     * 转发到该节点失败时调用
+     */
+    public void error() {
+        errors.incrementAndGet();
+    }
+
+    /**
+     * 摘除该节点ejectTime毫秒，之后从零开始统计并慢启动
+     */
+    public void eject(long now, long ejectTime) {
+        long until = now + ejectTime;
+        errors.set(0);
+        latency = 0;
+        recoverTime = until;
+        ejectedUntil = until;
+    }
+
+    public int getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * @return 响应延迟的EWMA，单位纳秒，尚无响应时为0
+     */
+    public long getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return 最早一个未响应请求已等待的纳秒数，没有未响应请求时为0，
+     *         关联请求部分每SCAN_INTERVAL统计一次
+     */
+    public long getOldestPending() {
+        long now = System.nanoTime();
+        long wait = 0;
+        Pending p = uncorrelated.peek();
+        if (p != null && !p.get()) {
+            wait = now - p.time;
+        }
+        p = this.oldest;
+        if (p != null && !p.get()) {
+            wait = Math.max(wait, now - p.time);
+        }
+        return Math.max(0, wait);
+    }
+
+    public int getPending() {
+        return Math.max(0, pending.get());
+    }
+
+    /**
+     * @return 未响应请求的过期时间(ms)
+     */
+    public long getPendingTimeout() {
+        return pendingTimeout / (1000 * 1000);
+    }
+
+    /**
+     * @return 节点恢复(或加入)的时间，用于计算慢启动的权重
+     */
+    public long getRecoverTime() {
+        return recoverTime;
+    }
+
+    public boolean isEjected(long now) {
+        return now < ejectedUntil;
+    }
+
+    /**
+     * 超过该时间(ms)仍未响应的请求不再计入未响应数
+     */
+    public void setPendingTimeout(long pendingTimeout) {
+        if (pendingTimeout <= 0) {
+            throw new IllegalArgumentException("pendingTimeout: " + pendingTimeout);
+        }
+        this.pendingTimeout = pendingTimeout * 1000 * 1000;
+    }
+
+    @Override
+    public String toString() {
+        return "pending:" + getPending() + ",latency:" + (latency / 1000) + "us,errors:"
+                + errors.get();
+    }
+
+    // 一个未响应的请求，被响应或过期时置为true
+    static final class Pending extends AtomicBoolean {
+
+        private static final long serialVersionUID = 1L;
+
+        final long                time;
+
+        Pending(long time) {
+            this.time = time;
+        }
+
+    }
+
+}
@@ -20,4 +20,13 @@ import com.generallycloud.baseio.component.SocketSession;
 
 public interface ReverseSocketSession extends SocketSession, VirtualMachine {
 
+    public abstract ReverseLoad getLoad();
+
+    /**
+     * @return 后端节点注册的id，未注册时为null
+     */
+    public abstract String getMachineId();
+
+    public abstract void setMachineId(String machineId);
+
 }
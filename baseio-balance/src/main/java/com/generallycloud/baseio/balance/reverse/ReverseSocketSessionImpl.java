@@ -20,8 +20,26 @@ import com.generallycloud.baseio.component.SocketSessionImpl;
 
 public class ReverseSocketSessionImpl extends SocketSessionImpl implements ReverseSocketSession {
 
+    private ReverseLoad     load = new ReverseLoad();
+    private volatile String machineId;
+
     public ReverseSocketSessionImpl(NioSocketChannel channel) {
         super(channel);
     }
 
+    @Override
+    public ReverseLoad getLoad() {
+        return load;
+    }
+
+    @Override
+    public String getMachineId() {
+        return machineId;
+    }
+
+    @Override
+    public void setMachineId(String machineId) {
+        this.machineId = machineId;
+    }
+
 }
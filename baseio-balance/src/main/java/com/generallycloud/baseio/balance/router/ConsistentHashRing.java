@@ -0,0 +1,251 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.balance.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 一致性哈希环，每个machine在环上放置virtualNodes个虚拟节点。
+ * <p>
+ * 环是不可变的，增删machine时加锁重建后整体替换(copy on write)，查找时不加锁，
+ * 先按hash高位定位到桶，再在桶内的有序哈希数组上二分查找。
+ * 增删一个machine时只有落在其虚拟节点上的key会移动。
+ * </p>
+ * <p>
+ * capacityFactor大于0时按bounded load放置：每个machine的容量为
+ * ceil(capacityFactor * (总负载 + 1) / machine数)，负载已满的machine被跳过，
+ * 沿环顺时针找到第一个未满的machine，负载由{@link #getLoad}给出
+ * </p>
+ */
+public class ConsistentHashRing<T extends VirtualMachine> {
+
+    private double        capacityFactor;
+    private ReentrantLock lock = new ReentrantLock();
+    private volatile Ring ring = Ring.EMPTY;
+    private int           virtualNodes;
+
+    public ConsistentHashRing(int virtualNodes) {
+        this(virtualNodes, 0);
+    }
+
+    /**
+     * @param virtualNodes 每个machine的虚拟节点数
+     * @param capacityFactor 负载上限系数，需大于1，0表示不限制
+     */
+    public ConsistentHashRing(int virtualNodes, double capacityFactor) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes < 1");
+        }
+        if (capacityFactor != 0 && capacityFactor <= 1) {
+            throw new IllegalArgumentException("capacityFactor must be 0 or > 1");
+        }
+        this.virtualNodes = virtualNodes;
+        this.capacityFactor = capacityFactor;
+    }
+
+    public void addMachine(T machine) {
+        ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            VirtualMachine[] machines = ring.machines;
+            for (VirtualMachine m : machines) {
+                if (m == machine) {
+                    return;
+                }
+            }
+            VirtualMachine[] newMachines = Arrays.copyOf(machines, machines.length + 1);
+            newMachines[machines.length] = machine;
+            this.ring = build(newMachines);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void removeMachine(T machine) {
+        ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            VirtualMachine[] machines = ring.machines;
+            List<VirtualMachine> newMachines = new ArrayList<>(machines.length);
+            for (VirtualMachine m : machines) {
+                if (m != machine) {
+                    newMachines.add(m);
+                }
+            }
+            if (newMachines.size() == machines.length) {
+                return;
+            }
+            this.ring = build(newMachines.toArray(new VirtualMachine[newMachines.size()]));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Ring build(VirtualMachine[] machines) {
+        int size = machines.length * virtualNodes;
+        long[] points = new long[size];
+        int index = 0;
+        for (int i = 0; i < machines.length; i++) {
+            @SuppressWarnings("unchecked")
+            String key = getMachineKey((T) machines[i]);
+            for (int j = 0; j < virtualNodes; j++) {
+                // 高32位为哈希值，低32位为machine下标，排序后即为环上的顺序
+                points[index++] = ((long) hash(key, j) << 32) | i;
+            }
+        }
+        Arrays.sort(points);
+        int[] hashes = new int[size];
+        VirtualMachine[] owners = new VirtualMachine[size];
+        for (int i = 0; i < size; i++) {
+            hashes[i] = (int) (points[i] >> 32);
+            owners[i] = machines[(int) (points[i] & 0xffffffffL)];
+        }
+        return new Ring(hashes, owners, machines);
+    }
+
+    /**
+     * 按key的哈希值找到环上顺时针方向的第一个machine，没有machine时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public T getMachine(int hash) {
+        Ring ring = this.ring;
+        VirtualMachine[] owners = ring.owners;
+        if (owners.length == 0) {
+            return null;
+        }
+        int index = ring.indexOf(mix(hash));
+        if (capacityFactor == 0 || ring.machines.length == 1) {
+            return (T) owners[index];
+        }
+        long total = 0;
+        for (VirtualMachine m : ring.machines) {
+            total += getLoad((T) m);
+        }
+        long capacity = (long) Math.ceil(capacityFactor * (total + 1) / ring.machines.length);
+        for (int i = 0; i < owners.length; i++) {
+            T machine = (T) owners[(index + i) % owners.length];
+            if (getLoad(machine) < capacity) {
+                return machine;
+            }
+        }
+        return (T) owners[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<T> getMachines() {
+        return (List<T>) Collections.unmodifiableList(Arrays.asList(ring.machines));
+    }
+
+    /**
+     * bounded load时使用的负载，默认为0(即不限制)
+     */
+    protected int getLoad(T machine) {
+        return 0;
+    }
+
+    /**
+     * 用于计算虚拟节点位置的machine标识，同一machine重新加入时应保持不变
+     */
+    protected String getMachineKey(T machine) {
+        return String.valueOf(machine);
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public double getCapacityFactor() {
+        return capacityFactor;
+    }
+
+    // FNV-1a，之后再做一次mix使虚拟节点在环上分布均匀
+    private static int hash(String key, int replica) {
+        int h = 0x811c9dc5;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x01000193;
+        }
+        h = (h ^ replica) * 0x01000193;
+        return mix(h);
+    }
+
+    // murmur3 fmix32，调用方给出的hash可能是连续的整数
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    static final class Ring {
+
+        static final Ring      EMPTY = new Ring(new int[0], new VirtualMachine[0],
+                new VirtualMachine[0]);
+
+        final int[]            buckets;
+        final int[]            hashes;
+        final VirtualMachine[] machines;
+        final VirtualMachine[] owners;
+        final int              shift;
+
+        Ring(int[] hashes, VirtualMachine[] owners, VirtualMachine[] machines) {
+            this.hashes = hashes;
+            this.owners = owners;
+            this.machines = machines;
+            // 按hash的高位分桶，桶数不少于虚拟节点数，查找时只需在一个桶内二分
+            int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(hashes.length));
+            int size = 1 << bits;
+            this.shift = 32 - bits;
+            this.buckets = new int[size + 1];
+            int p = 0;
+            for (int b = 0; b < size; b++) {
+                while (p < hashes.length && bucketOf(hashes[p]) < b) {
+                    p++;
+                }
+                buckets[b] = p;
+            }
+            buckets[size] = hashes.length;
+        }
+
+        // 翻转符号位，使有符号的hash按无符号的顺序映射到桶
+        private int bucketOf(int hash) {
+            return (hash ^ Integer.MIN_VALUE) >>> shift;
+        }
+
+        // 第一个hash大于等于给定值的位置，越过末尾时回到0
+        int indexOf(int hash) {
+            int b = bucketOf(hash);
+            int low = buckets[b];
+            int high = buckets[b + 1] - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (hashes[mid] < hash) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low == hashes.length ? 0 : low;
+        }
+
+    }
+
+}
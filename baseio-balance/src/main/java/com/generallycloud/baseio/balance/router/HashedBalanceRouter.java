@@ -20,22 +20,55 @@ import com.generallycloud.baseio.balance.facade.FacadeSocketSession;
 import com.generallycloud.baseio.balance.reverse.ReverseSocketSession;
 import com.generallycloud.baseio.protocol.Future;
 
+/**
+ * 按future的hashCode在一致性哈希环上选择节点，
+ * capacityFactor大于0时按未响应请求数做bounded load，避免热点key压垮单个节点。
+ * 节点在环上的位置由其注册的id决定(见BalanceContext.BALANCE_REGISTER)
+ */
 public class HashedBalanceRouter extends AbstractBalanceRouter {
 
-    public HashedBalanceRouter(int maxNode) {
-        this.virtualNodes = new VirtualNodes<>(maxNode);
+    private ConsistentHashRing<ReverseSocketSession> ring;
+
+    public HashedBalanceRouter() {
+        this(160);
+    }
+
+    /**
+     * @param virtualNodes 每个节点的虚拟节点数
+     */
+    public HashedBalanceRouter(int virtualNodes) {
+        this(virtualNodes, 0);
     }
 
-    private VirtualNodes<ReverseSocketSession> virtualNodes;
+    /**
+     * @param virtualNodes 每个节点的虚拟节点数
+     * @param capacityFactor 负载上限系数，需大于1，0表示不限制
+     */
+    public HashedBalanceRouter(int virtualNodes, double capacityFactor) {
+        this.ring = new ConsistentHashRing<ReverseSocketSession>(virtualNodes, capacityFactor) {
+
+            @Override
+            protected int getLoad(ReverseSocketSession machine) {
+                return machine.getLoad().getPending();
+            }
+
+            @Override
+            protected String getMachineKey(ReverseSocketSession machine) {
+                // 远端端口是临时端口，重连后会变化，只有未注册的节点才使用
+                String machineId = machine.getMachineId();
+                return machineId != null ? machineId : machine.getRemoteAddrPort();
+            }
+        };
+    }
 
     @Override
     public void addRouterSession(ReverseSocketSession session) {
-        virtualNodes.addMachine(session);
+        ring.addMachine(session);
     }
 
     @Override
     public void removeRouterSession(ReverseSocketSession session) {
-        virtualNodes.removeMachine(session);
+        ring.removeMachine(session);
     }
 
     @Override
@@ -43,7 +76,7 @@ public class HashedBalanceRouter extends AbstractBalanceRouter {
 
         HashedBalanceFuture f = (HashedBalanceFuture) future;
 
-        return virtualNodes.getMachine(f.getHashCode());
+        return ring.getMachine(f.getHashCode());
     }
 
     @Override
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.balance.router;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.generallycloud.baseio.balance.reverse.ReverseLoad;
+import com.generallycloud.baseio.balance.reverse.ReverseSocketSession;
+
+/**
+ * 选择未响应请求最少的节点(按慢启动权重折算)，节点较多时可使用P2CBalanceRouter
+ */
+public class LeastPendingRouter extends LoadBalanceRouter {
+
+    @Override
+    protected ReverseSocketSession select(ReverseSocketSession[] routers, long now) {
+        // 从随机位置开始扫描，未响应数相同时不总是选中靠前的节点
+        int length = routers.length;
+        int start = ThreadLocalRandom.current().nextInt(length);
+        ReverseSocketSession best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (int i = 0; i < length; i++) {
+            ReverseSocketSession router = routers[(start + i) % length];
+            if (!isAvailable(router, now)) {
+                continue;
+            }
+            ReverseLoad load = router.getLoad();
+            double score = (load.getPending() + 1) / getWeight(load, now);
+            if (score < bestScore) {
+                best = router;
+                bestScore = score;
+            }
+        }
+        if (best == null) {
+            return fallback(routers);
+        }
+        return best;
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.balance.router;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.generallycloud.baseio.balance.facade.FacadeSocketSession;
+import com.generallycloud.baseio.balance.reverse.ReverseLoad;
+import com.generallycloud.baseio.balance.reverse.ReverseSocketSession;
+import com.generallycloud.baseio.protocol.Future;
+
+/**
+ * 按节点负载逐个请求选择后端，节点列表copy on write，选择时不加锁。
+ * <p>
+ * 熔断：连续错误达到maxErrors，或延迟EWMA、最早未响应请求的等待时间超过maxLatency的节点
+ * 被摘除ejectTime毫秒，恢复后在slowStartTime毫秒内按比例逐步增加权重。
+ * 全部节点都被摘除时仍在全部节点中选择，避免所有请求失败
+ * </p>
+ */
+public abstract class LoadBalanceRouter extends AbstractBalanceRouter {
+
+    private static final ReverseSocketSession[] EMPTY         = new ReverseSocketSession[0];
+
+    private long                                ejectTime     = 10 * 1000;
+    private ReentrantLock                       lock          = new ReentrantLock();
+    private int                                 maxErrors     = 5;
+    private long                                maxLatency    = 0;
+    private volatile ReverseSocketSession[]     routers       = EMPTY;
+    private long                                slowStartTime = 10 * 1000;
+
+    @Override
+    public void addRouterSession(ReverseSocketSession session) {
+        ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            ReverseSocketSession[] routers = this.routers;
+            ReverseSocketSession[] newRouters = new ReverseSocketSession[routers.length + 1];
+            System.arraycopy(routers, 0, newRouters, 0, routers.length);
+            newRouters[routers.length] = session;
+            this.routers = newRouters;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void removeRouterSession(ReverseSocketSession session) {
+        ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            ReverseSocketSession[] routers = this.routers;
+            for (int i = 0; i < routers.length; i++) {
+                if (routers[i] == session) {
+                    ReverseSocketSession[] newRouters = new ReverseSocketSession[routers.length
+                            - 1];
+                    System.arraycopy(routers, 0, newRouters, 0, i);
+                    System.arraycopy(routers, i + 1, newRouters, i, newRouters.length - i);
+                    this.routers = newRouters;
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public ReverseSocketSession getRouterSession(FacadeSocketSession session, Future future) {
+        ReverseSocketSession[] routers = this.routers;
+        if (routers.length == 0) {
+            return null;
+        }
+        ReverseSocketSession router;
+        if (routers.length == 1) {
+            router = routers[0];
+        } else {
+            router = select(routers, System.currentTimeMillis());
+        }
+        // 记录最近一次转发的节点，连接断开时的通知发往该节点
+        session.setReverseSocketSession(router);
+        return router;
+    }
+
+    /**
+     * 从至少两个节点中选择一个，实现中可使用{@link #isAvailable}与{@link #getWeight}
+     */
+    protected abstract ReverseSocketSession select(ReverseSocketSession[] routers, long now);
+
+    /**
+     * 没有可用节点时调用，忽略熔断在未关闭的节点中选择未响应请求最少的
+     */
+    protected ReverseSocketSession fallback(ReverseSocketSession[] routers) {
+        ReverseSocketSession best = null;
+        int bestPending = Integer.MAX_VALUE;
+        for (ReverseSocketSession router : routers) {
+            if (router.isClosed()) {
+                continue;
+            }
+            int pending = router.getLoad().getPending();
+            if (pending < bestPending) {
+                best = router;
+                bestPending = pending;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 检查节点是否可用，达到熔断条件的节点在此时被摘除
+     */
+    protected boolean isAvailable(ReverseSocketSession router, long now) {
+        if (router.isClosed()) {
+            return false;
+        }
+        ReverseLoad load = router.getLoad();
+        if (load.isEjected(now)) {
+            return false;
+        }
+        if (load.getErrors() >= maxErrors) {
+            load.eject(now, ejectTime);
+            return false;
+        }
+        long maxLatency = this.maxLatency;
+        if (maxLatency > 0) {
+            long max = maxLatency * 1000 * 1000;
+            if (load.getLatency() > max || load.getOldestPending() > max) {
+                load.eject(now, ejectTime);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 慢启动期间的权重(0,1]，之后为1
+     */
+    protected double getWeight(ReverseLoad load, long now) {
+        long slowStartTime = this.slowStartTime;
+        if (slowStartTime <= 0) {
+            return 1;
+        }
+        long past = now - load.getRecoverTime();
+        if (past >= slowStartTime) {
+            return 1;
+        }
+        return Math.max(0.1, (double) past / slowStartTime);
+    }
+
+    public long getEjectTime() {
+        return ejectTime;
+    }
+
+    public int getMaxErrors() {
+        return maxErrors;
+    }
+
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+
+    public long getSlowStartTime() {
+        return slowStartTime;
+    }
+
+    /**
+     * @param ejectTime 熔断后摘除的毫秒数
+     */
+    public void setEjectTime(long ejectTime) {
+        this.ejectTime = ejectTime;
+    }
+
+    /**
+     * @param maxErrors 触发熔断的连续错误次数
+     */
+    public void setMaxErrors(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * @param maxLatency 触发熔断的延迟毫秒数，0表示不按延迟熔断
+     */
+    public void setMaxLatency(long maxLatency) {
+        this.maxLatency = maxLatency;
+    }
+
+    /**
+     * @param slowStartTime 节点加入或恢复后的慢启动毫秒数，0表示不慢启动
+     */
+    public void setSlowStartTime(long slowStartTime) {
+        this.slowStartTime = slowStartTime;
+    }
+
+}
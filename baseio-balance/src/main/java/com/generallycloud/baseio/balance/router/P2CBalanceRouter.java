@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.balance.router;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.generallycloud.baseio.balance.reverse.ReverseLoad;
+import com.generallycloud.baseio.balance.reverse.ReverseSocketSession;
+
+/**
+ * power of two choices：随机取两个节点，选择代价较小的一个，
+ * 代价 = 延迟EWMA * (未响应请求数 + 1) / 慢启动权重
+ */
+public class P2CBalanceRouter extends LoadBalanceRouter {
+
+    @Override
+    protected ReverseSocketSession select(ReverseSocketSession[] routers, long now) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int length = routers.length;
+        int i = random.nextInt(length);
+        int j = random.nextInt(length - 1);
+        if (j >= i) {
+            j++;
+        }
+        ReverseSocketSession a = routers[i];
+        ReverseSocketSession b = routers[j];
+        boolean availableA = isAvailable(a, now);
+        boolean availableB = isAvailable(b, now);
+        if (availableA && availableB) {
+            return cost(a.getLoad(), b.getLoad(), now) <= cost(b.getLoad(), a.getLoad(), now) ? a
+                    : b;
+        }
+        if (availableA) {
+            return a;
+        }
+        if (availableB) {
+            return b;
+        }
+        for (int k = 0; k < length; k++) {
+            ReverseSocketSession router = routers[(i + k) % length];
+            if (isAvailable(router, now)) {
+                return router;
+            }
+        }
+        return fallback(routers);
+    }
+
+    private double cost(ReverseLoad load, ReverseLoad other, long now) {
+        long latency = load.getLatency();
+        if (latency == 0) {
+            // 尚无响应的节点按另一节点的延迟估算，避免新节点因延迟为0吸走全部请求
+            latency = other.getLatency();
+        }
+        return (double) (latency + 1) * (load.getPending() + 1) / getWeight(load, now);
+    }
+
+}
@@ -20,8 +20,10 @@ import java.util.List;
 
 /**
  * @author wangkai
- *
+ * @deprecated 增删machine时需重写整个nodes数组且getMachine无可见性保证，
+ *             请使用{@link ConsistentHashRing}
  */
+@Deprecated
 public class VirtualNodes<T extends VirtualMachine> {
 
     protected List<T> machines;
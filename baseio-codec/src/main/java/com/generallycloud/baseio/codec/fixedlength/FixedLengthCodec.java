@@ -85,7 +85,9 @@ public class FixedLengthCodec implements ProtocolCodec {
 
     @Override
     public ChannelFuture decode(NioSocketChannel channel, ByteBuf buffer) throws IOException {
-        return new FixedLengthFutureImpl(limit);
+        FixedLengthFutureImpl f = new FixedLengthFutureImpl(limit);
+        f.setWriteBufAllocator(channel.allocator(), PROTOCOL_HEADER);
+        return f;
     }
 
     @Override
@@ -101,7 +103,16 @@ public class FixedLengthCodec implements ProtocolCodec {
         if (writeSize == 0) {
             throw new IOException("null write buffer");
         }
-        ByteBuf buf = allocator.allocate(writeSize + 4);
+        ByteBuf buf = f.getWriteBuf();
+        if (buf != null) {
+            // 报文头回填到预留的4个字节
+            buf.flip();
+            buf.putInt(writeSize);
+            buf.position(0);
+            future.setByteBuf(buf);
+            return;
+        }
+        buf = allocator.allocate(writeSize + 4);
         buf.putInt(writeSize);
         buf.put(f.getWriteBuffer(), 0, writeSize);
         future.setByteBuf(buf.flip());
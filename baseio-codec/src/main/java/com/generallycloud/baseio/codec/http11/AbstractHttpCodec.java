@@ -15,6 +15,7 @@
  */
 package com.generallycloud.baseio.codec.http11;
 
+import java.io.File;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -32,6 +33,25 @@ public abstract class AbstractHttpCodec implements ProtocolCodec {
     protected static final byte N     = '\n';
     protected static final byte COLON = ':';
     protected static final byte SPACE = ' ';
+    private HttpBodyListener    bodyListener;
+    // 超过bodyLimit的body写入该目录下的临时文件，为null时超过则报错
+    private File                bodySpillDir;
+
+    public HttpBodyListener getBodyListener() {
+        return bodyListener;
+    }
+
+    public void setBodyListener(HttpBodyListener bodyListener) {
+        this.bodyListener = bodyListener;
+    }
+
+    public File getBodySpillDir() {
+        return bodySpillDir;
+    }
+
+    public void setBodySpillDir(File bodySpillDir) {
+        this.bodySpillDir = bodySpillDir;
+    }
 
     protected void writeBuf(ByteBuf buf, byte[] array) {
         writeBuf(buf, array, 0, array.length);
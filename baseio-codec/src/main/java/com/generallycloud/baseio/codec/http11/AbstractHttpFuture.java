@@ -15,8 +15,13 @@
  */
 package com.generallycloud.baseio.codec.http11;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -25,14 +30,17 @@ import java.util.Map;
 import com.generallycloud.baseio.buffer.ByteBuf;
 import com.generallycloud.baseio.buffer.EmptyByteBuf;
 import com.generallycloud.baseio.common.BASE64Util;
+import com.generallycloud.baseio.common.CloseUtil;
 import com.generallycloud.baseio.common.KMPUtil;
 import com.generallycloud.baseio.common.SHAUtil;
 import com.generallycloud.baseio.common.StringLexer;
 import com.generallycloud.baseio.common.StringUtil;
 import com.generallycloud.baseio.component.ByteArrayOutputStream;
 import com.generallycloud.baseio.component.ChannelContext;
+import com.generallycloud.baseio.component.NioEventLoop;
 import com.generallycloud.baseio.component.NioSocketChannel;
 import com.generallycloud.baseio.protocol.AbstractChannelFuture;
+import com.generallycloud.baseio.protocol.ProtocolCodec;
 
 //FIXME 改进header parser
 /**
@@ -46,40 +54,61 @@ public abstract class AbstractHttpFuture extends AbstractChannelFuture implement
     private static final Map<String, String> REQ_MAPPING    = HttpHeader.REQ_MAPPING;
 
     protected static final KMPUtil           KMP_BOUNDARY   = new KMPUtil("boundary=");
+    protected static final String[]          METHODS        = { "GET", "POST", "PUT", "DELETE",
+            "HEAD", "OPTIONS", "PATCH" };
+    protected static final String[]          VERSIONS       = { "HTTP/1.1", "HTTP/1.0" };
 
-    private ByteArrayOutputStream                  binaryBuffer;
+    private static final int                 CHUNK_SIZE     = 0;
+    private static final int                 CHUNK_EXT      = 1;
+    private static final int                 CHUNK_DATA     = 2;
+    private static final int                 CHUNK_DATA_END = 3;
+    private static final int                 CHUNK_TRAILER  = 4;
+
+    private ByteArrayOutputStream            binaryBuffer;
     private byte[]                           bodyArray;
+    private File                             bodyFile;
+    private FileChannel                      bodyFileChannel;
+    private long                             bodyLength;
     private int                              bodyLimit;
+    private HttpBodyListener                 bodyListener;
+    private long                             bodyRemaining;
     private String                           boundary;
+    private boolean                          chunked;
+    private int                              chunkLineLength;
+    private long                             chunkRemaining;
+    private int                              chunkState;
     private int                              contentLength;
     private String                           contentType;
     private ChannelContext                   context;
     private List<Cookie>                     cookieList;
     private Map<String, String>              cookies;
-    private StringBuilder                    currentHeaderLine;
+    private boolean                          cookiesDecoded;
     private boolean                          hasBodyContent;
-    private boolean                          header_complete;
     private int                              headerLength;
     private int                              headerLimit;
+    private HttpHeaderParser                 headerParser;
     private String                           host;
     private String                           method;
     private Map<String, String>              params;
-    private boolean                          parseFirstLine = true;
+    private boolean                          paramsDecoded;
     private String                           readText;
+    // 为null时从headerParser中获取，需要完整的map或修改时才创建
     private Map<String, String>              request_headers;
     private String                           requestURI;
     private String                           requestURL;
     private Map<String, String>              response_headers;
     private HttpStatus                       status         = HttpStatus.C200;
     private boolean                          updateWebSocketProtocol;
+    // 请求行中url在headerParser中的位置，-1表示不存在
+    private int                              urlEnd;
+    private int                              urlStart       = -1;
     private String                           version;
 
     public AbstractHttpFuture(NioSocketChannel channel, int headerLimit, int bodyLimit) {
         this.context = channel.getContext();
         this.headerLimit = headerLimit;
         this.bodyLimit = bodyLimit;
-        this.request_headers = new HashMap<>();
-        this.currentHeaderLine = new StringBuilder();
+        this.headerParser = new HttpHeaderParser(headerLimit);
     }
 
     public AbstractHttpFuture(ChannelContext context) {
@@ -104,6 +133,11 @@ public abstract class AbstractHttpFuture extends AbstractChannelFuture implement
         return bodyArray;
     }
 
+    @Override
+    public File getBodyFile() {
+        return bodyFile;
+    }
+
     @Override
     public String getBoundary() {
         return boundary;
@@ -121,6 +155,13 @@ public abstract class AbstractHttpFuture extends AbstractChannelFuture implement
 
     @Override
     public String getCookie(String name) {
+        if (!cookiesDecoded) {
+            cookiesDecoded = true;
+            String cookie = getRequestHeader(HttpHeader.Req_Cookie);
+            if (!StringUtil.isNullOrBlank(cookie)) {
+                parse_cookies(cookie);
+            }
+        }
         if (cookies == null) {
             return null;
         }
@@ -139,6 +180,9 @@ public abstract class AbstractHttpFuture extends AbstractChannelFuture implement
 
     @Override
     public String getHost() {
+        if (host == null) {
+            host = getRequestHeader(HttpHeader.Req_Host);
+        }
         return host;
     }
 
@@ -161,34 +205,78 @@ public abstract class AbstractHttpFuture extends AbstractChannelFuture implement
         if (_name == null) {
             _name = name.toLowerCase();
         }
+        if (request_headers == null) {
+            if (headerParser == null) {
+                return null;
+            }
+            return headerParser.get(_name);
+        }
         return request_headers.get(_name);
     }
 
     @Override
     public Map<String, String> getRequestHeaders() {
+        if (request_headers == null) {
+            request_headers = new HashMap<>();
+            if (headerParser != null) {
+                headerParser.putAll(request_headers);
+            }
+        }
         return request_headers;
     }
 
     @Override
     public String getRequestParam(String key) {
+        decodeParams();
         return params.get(key);
     }
 
     @Override
     public Map<String, String> getRequestParams() {
+        decodeParams();
         return params;
     }
 
     @Override
     public String getRequestURI() {
+        if (requestURI == null && urlStart != -1) {
+            requestURI = headerParser.string(urlStart, queryIndex());
+        }
         return requestURI;
     }
 
     @Override
     public String getRequestURL() {
+        if (requestURL == null && urlStart != -1) {
+            requestURL = headerParser.string(urlStart, urlEnd);
+        }
         return requestURL;
     }
 
+    private void decodeParams() {
+        if (paramsDecoded) {
+            return;
+        }
+        paramsDecoded = true;
+        if (params == null) {
+            params = new HashMap<>();
+        }
+        if (urlStart == -1) {
+            return;
+        }
+        int index = queryIndex();
+        if (index < urlEnd) {
+            parseParamString(headerParser.string(index + 1, urlEnd));
+        }
+    }
+
+    private int queryIndex() {
+        byte[] array = headerParser.array();
+        int index = urlStart;
+        for (; index < urlEnd && array[index] != '?'; index++) {}
+        return index;
+    }
+
     @Override
     public Map<String, String> getResponseHeaders() {
         if (response_headers == null) {
@@ -213,6 +301,11 @@ public abstract class AbstractHttpFuture extends AbstractChannelFuture implement
         return hasBodyContent;
     }
 
+    @Override
+    public boolean isChunked() {
+        return chunked;
+    }
+
     public boolean isUpdateWebSocketProtocol() {
         return updateWebSocketProtocol;
     }
@@ -261,7 +354,10 @@ public abstract class AbstractHttpFuture extends AbstractChannelFuture implement
 
     protected abstract void parseContentType(String contentType);
 
-    protected abstract void parseFirstLine(String line);
+    /**
+     * 解析请求行或状态行，start至end为该行在parser中的位置
+     */
+    protected abstract void parseFirstLine(HttpHeaderParser parser, int start, int end);
 
     protected void parseParamString(String paramString) {
         boolean findKey = true;
@@ -293,81 +389,222 @@ public abstract class AbstractHttpFuture extends AbstractChannelFuture implement
 
     @Override
     public boolean read(NioSocketChannel channel, ByteBuf buffer) throws IOException {
-        if (!header_complete) {
-            readHeader(buffer);
-            if (!header_complete) {
+        HttpHeaderParser headerParser = this.headerParser;
+        if (!headerParser.isComplete()) {
+            if (!headerParser.parse(buffer)) {
                 return false;
             }
-            host = getRequestHeader(HttpHeader.Req_Host);
+            parseFirstLine(headerParser, headerParser.firstLineStart(),
+                    headerParser.firstLineEnd());
+            headerLength = headerParser.length();
             String contentLengthStr = getRequestHeader(HttpHeader.Req_Content_Length);
             if (!StringUtil.isNullOrBlank(contentLengthStr)) {
-                this.contentLength = Integer.parseInt(contentLengthStr);
+                this.bodyRemaining = Long.parseLong(contentLengthStr);
+                this.contentLength = (int) Math.min(bodyRemaining, Integer.MAX_VALUE);
+            }
+            String transferEncoding = getRequestHeader(HttpHeader.Req_Transfer_Encoding);
+            if (transferEncoding != null && transferEncoding.indexOf("chunked") != -1) {
+                // 同时存在时忽略Content-Length
+                this.chunked = true;
+                this.bodyRemaining = 0;
             }
             String contentType = getRequestHeader(HttpHeader.Req_Content_Type);
             parseContentType(contentType);
-            String cookie = getRequestHeader(HttpHeader.Req_Cookie);
-            if (!StringUtil.isNullOrBlank(cookie)) {
-                parse_cookies(cookie);
-            }
-            if (contentLength < 1) {
+            if (!chunked && bodyRemaining < 1) {
                 return true;
-            } else {
-                hasBodyContent = true;
-                // FIXME 写入临时文件
-                setByteBuf(allocate(channel, contentLength, bodyLimit));
             }
+            startBody(channel, contentLength);
         }
-        ByteBuf buf = getByteBuf();
-        buf.read(buffer);
-        if (buf.hasRemaining()) {
-            return false;
-        }
-        buf.flip();
-        bodyArray = buf.getBytes();
-        if (CONTENT_APPLICATION_URLENCODED.equals(contentType)) {
-            // FIXME encoding
-            String paramString = new String(bodyArray, context.getEncoding());
-            parseParamString(paramString);
-            this.readText = paramString;
+        if (chunked) {
+            if (!readChunked(channel, buffer)) {
+                return false;
+            }
         } else {
-            // FIXME 解析BODY中的内容
+            int length = (int) Math.min(buffer.remaining(), bodyRemaining);
+            readBody(channel, buffer, length);
+            bodyRemaining -= length;
+            if (bodyRemaining > 0) {
+                return false;
+            }
         }
+        completeBody(channel);
         return true;
     }
 
-    private void readHeader(ByteBuf buffer) throws IOException {
-        StringBuilder currentHeaderLine = this.currentHeaderLine;
+    private boolean readChunked(NioSocketChannel channel, ByteBuf buffer) throws IOException {
         for (; buffer.hasRemaining();) {
-            if (++headerLength > headerLimit) {
-                throw new IOException("max http header length " + headerLimit);
+            if (chunkState == CHUNK_DATA) {
+                int length = (int) Math.min(buffer.remaining(), chunkRemaining);
+                readBody(channel, buffer, length);
+                chunkRemaining -= length;
+                if (chunkRemaining == 0) {
+                    chunkState = CHUNK_DATA_END;
+                }
+                continue;
             }
             byte b = buffer.getByte();
-            if (b == '\n') {
-                if (currentHeaderLine.length() == 0) {
-                    header_complete = true;
-                    break;
-                } else {
-                    String line = currentHeaderLine.toString();
-                    if (parseFirstLine) {
-                        parseFirstLine = false;
-                        parseFirstLine(line);
+            if (b == '\r') {
+                continue;
+            }
+            switch (chunkState) {
+                case CHUNK_SIZE:
+                    if (b == '\n') {
+                        if (chunkLineLength == 0) {
+                            throw new IOException("illegal chunk size");
+                        }
+                        chunkLineLength = 0;
+                        chunkState = chunkRemaining == 0 ? CHUNK_TRAILER : CHUNK_DATA;
+                    } else if (b == ';') {
+                        chunkState = CHUNK_EXT;
                     } else {
-                        int p = line.indexOf(":");
-                        if (p == -1) {
-                            continue;
+                        int digit = Character.digit(b, 16);
+                        if (digit == -1 || ++chunkLineLength > 15) {
+                            throw new IOException("illegal chunk size");
                         }
-                        String name = line.substring(0, p).trim();
-                        String value = line.substring(p + 1).trim();
-                        setRequestHeader(name, value);
+                        chunkRemaining = (chunkRemaining << 4) | digit;
                     }
-                    currentHeaderLine.setLength(0);
+                    break;
+                case CHUNK_EXT:
+                    // 忽略chunk extension
+                    if (b == '\n') {
+                        if (chunkLineLength == 0) {
+                            throw new IOException("illegal chunk size");
+                        }
+                        chunkLineLength = 0;
+                        chunkState = chunkRemaining == 0 ? CHUNK_TRAILER : CHUNK_DATA;
+                    }
+                    break;
+                case CHUNK_DATA_END:
+                    if (b != '\n') {
+                        throw new IOException("illegal chunk data end");
+                    }
+                    chunkState = CHUNK_SIZE;
+                    break;
+                case CHUNK_TRAILER:
+                    // 忽略trailer，空行表示结束
+                    if (b == '\n') {
+                        if (chunkLineLength == 0) {
+                            return true;
+                        }
+                        chunkLineLength = 0;
+                    } else if (++headerLength > headerLimit) {
+                        throw new IOException("max http header length " + headerLimit);
+                    } else {
+                        chunkLineLength++;
+                    }
+                    break;
+                default:
+                    throw new IOException("illegal chunk state " + chunkState);
+            }
+        }
+        return false;
+    }
+
+    private void readBody(NioSocketChannel channel, ByteBuf buffer, int length)
+            throws IOException {
+        if (length == 0) {
+            return;
+        }
+        int limit = buffer.limit();
+        int end = buffer.position() + length;
+        buffer.limit(end);
+        try {
+            writeBody(channel, buffer);
+        } finally {
+            buffer.limit(limit);
+            buffer.position(end);
+        }
+    }
+
+    /**
+     * header解析完成且存在body时调用，contentLength未知时传0
+     */
+    protected void startBody(NioSocketChannel channel, int contentLength) throws IOException {
+        this.contentLength = contentLength;
+        this.hasBodyContent = true;
+        ProtocolCodec codec = channel.getProtocolCodec();
+        if (codec instanceof AbstractHttpCodec) {
+            HttpBodyListener listener = ((AbstractHttpCodec) codec).getBodyListener();
+            if (listener != null && listener.onHeaderComplete(channel.getSession(), this)) {
+                this.bodyListener = listener;
+            }
+        }
+    }
+
+    protected void writeBody(NioSocketChannel channel, ByteBuf buf) throws IOException {
+        int length = buf.remaining();
+        long bodyLength = this.bodyLength + length;
+        this.bodyLength = bodyLength;
+        if (bodyListener != null) {
+            bodyListener.onBody(channel.getSession(), this, buf);
+            return;
+        }
+        if (bodyFileChannel == null) {
+            // Content-Length已知时超过bodyLimit直接写入临时文件
+            boolean sized = !chunked && contentLength > 0;
+            if (sized ? contentLength <= bodyLimit : bodyLength <= bodyLimit) {
+                if (bodyArray == null) {
+                    bodyArray = new byte[sized ? contentLength : Math.max(length, 256)];
+                } else if (bodyArray.length < bodyLength) {
+                    long capacity = Math.max(bodyLength, (long) bodyArray.length << 1);
+                    bodyArray = Arrays.copyOf(bodyArray, (int) Math.min(capacity, bodyLimit));
                 }
-                continue;
-            } else if (b == '\r') {
-                continue;
-            } else {
-                currentHeaderLine.append((char) b);
+                buf.get(bodyArray, (int) (bodyLength - length), length);
+                return;
             }
+            openBodyFile(channel, bodyLength - length);
+        }
+        write(bodyFileChannel, buf.nioBuffer());
+    }
+
+    private void openBodyFile(NioSocketChannel channel, long cached) throws IOException {
+        File dir = null;
+        ProtocolCodec codec = channel.getProtocolCodec();
+        if (codec instanceof AbstractHttpCodec) {
+            dir = ((AbstractHttpCodec) codec).getBodySpillDir();
+        }
+        if (dir == null) {
+            throw new IOException("max http body length " + bodyLimit);
+        }
+        bodyFile = File.createTempFile("http-body-", ".tmp", dir);
+        bodyFileChannel = new FileOutputStream(bodyFile).getChannel();
+        if (bodyArray != null) {
+            write(bodyFileChannel, ByteBuffer.wrap(bodyArray, 0, (int) cached));
+            bodyArray = null;
+        }
+    }
+
+    protected void completeBody(NioSocketChannel channel) throws IOException {
+        if (bodyListener != null) {
+            bodyListener.onBodyComplete(channel.getSession(), this);
+            return;
+        }
+        if (bodyFileChannel != null) {
+            FileChannel fileChannel = bodyFileChannel;
+            bodyFileChannel = null;
+            fileChannel.close();
+            return;
+        }
+        if (bodyArray == null) {
+            bodyArray = new byte[0];
+        } else if (bodyArray.length != bodyLength) {
+            bodyArray = Arrays.copyOf(bodyArray, (int) bodyLength);
+        }
+        if (CONTENT_APPLICATION_URLENCODED.equals(contentType)) {
+            // 先解析url中的参数，body中的参数优先
+            decodeParams();
+            // FIXME encoding
+            String paramString = new String(bodyArray, context.getEncoding());
+            parseParamString(paramString);
+            this.readText = paramString;
+        } else {
+            // FIXME 解析BODY中的内容
+        }
+    }
+
+    private static void write(FileChannel fileChannel, ByteBuffer src) throws IOException {
+        for (; src.hasRemaining();) {
+            fileChannel.write(src);
         }
     }
 
@@ -382,7 +619,7 @@ public abstract class AbstractHttpFuture extends AbstractChannelFuture implement
         if (_name == null) {
             _name = name.toLowerCase();
         }
-        request_headers.put(_name, value);
+        getRequestHeaders().put(_name, value);
     }
 
     @Override
@@ -393,11 +630,17 @@ public abstract class AbstractHttpFuture extends AbstractChannelFuture implement
     @Override
     public void setRequestParams(Map<String, String> params) {
         this.params = params;
+        this.paramsDecoded = true;
     }
 
     @Override
     public void setRequestURL(String url) {
         this.requestURL = url;
+        this.urlStart = -1;
+        this.paramsDecoded = true;
+        if (params == null) {
+            params = new HashMap<>();
+        }
         int index = url.indexOf("?");
         if (index > -1) {
             String paramString = url.substring(index + 1, url.length());
@@ -424,9 +667,7 @@ public abstract class AbstractHttpFuture extends AbstractChannelFuture implement
 
     @Override
     public void setReuestParam(String key, String value) {
-        if (params == null) {
-            params = new HashMap<>();
-        }
+        decodeParams();
         this.params.put(key, value);
     }
 
@@ -468,6 +709,33 @@ public abstract class AbstractHttpFuture extends AbstractChannelFuture implement
         binaryBuffer.write(binary);
     }
 
+    @Override
+    public void release(NioEventLoop eventLoop) {
+        super.release(eventLoop);
+        if (bodyFileChannel != null) {
+            // body接收完整时已关闭，说明未接收完整，删除临时文件
+            CloseUtil.close(bodyFileChannel);
+            bodyFileChannel = null;
+            bodyFile.delete();
+            bodyFile = null;
+        }
+    }
+
+    /**
+     * url在parser中的位置，requestURL，requestURI及参数均在获取时才解析
+     */
+    protected void setRequestURL(int start, int end) {
+        this.urlStart = start;
+        this.urlEnd = end;
+        this.requestURL = null;
+        this.requestURI = null;
+        this.paramsDecoded = false;
+    }
+
+    protected void setBodyLimit(int bodyLimit) {
+        this.bodyLimit = bodyLimit;
+    }
+
     protected void setMethod(String method) {
         this.method = method;
     }
@@ -505,43 +773,43 @@ public abstract class AbstractHttpFuture extends AbstractChannelFuture implement
     protected HttpFuture reset(NioSocketChannel channel, int headerLimit, int bodyLimit) {
         this.binaryBuffer = null;
         this.bodyArray = null;
+        this.bodyFile = null;
+        this.bodyFileChannel = null;
+        this.bodyLength = 0;
+        this.bodyListener = null;
+        this.bodyRemaining = 0;
         this.boundary = null;
+        this.chunked = false;
+        this.chunkLineLength = 0;
+        this.chunkRemaining = 0;
+        this.chunkState = CHUNK_SIZE;
         this.contentLength = 0;
         this.contentType = null;
         this.clear(cookieList);
         this.clear(cookies);
+        this.cookiesDecoded = false;
         this.hasBodyContent = false;
-        this.header_complete = false;
         this.headerLength = 0;
-        this.headerLimit = headerLimit;
         this.host = null;
         this.method = null;
-        this.parseFirstLine = true;
+        this.clear(params);
+        this.paramsDecoded = false;
         this.readText = null;
+        this.request_headers = null;
         this.requestURI = null;
         this.requestURL = null;
         this.clear(response_headers);
-        ;
         this.status = HttpStatus.C200;
         this.updateWebSocketProtocol = false;
+        this.urlStart = -1;
         this.version = null;
         this.headerLimit = headerLimit;
         this.bodyLimit = bodyLimit;
         this.context = channel.getContext();
-        if (currentHeaderLine == null) {
-            currentHeaderLine = new StringBuilder();
-        } else {
-            currentHeaderLine.setLength(0);
-        }
-        if (request_headers == null) {
-            request_headers = new HashMap<>();
-        } else {
-            request_headers.clear();
-        }
-        if (params == null) {
-            params = new HashMap<>();
+        if (headerParser == null) {
+            headerParser = new HttpHeaderParser(headerLimit);
         } else {
-            params.clear();
+            headerParser.reset(headerLimit);
         }
         setByteBuf(EmptyByteBuf.get());
         super.reset();
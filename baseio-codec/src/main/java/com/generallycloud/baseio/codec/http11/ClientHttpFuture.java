@@ -72,10 +72,18 @@ public class ClientHttpFuture extends AbstractHttpFuture {
     }
 
     @Override
-    protected void parseFirstLine(String line) {
-        int index = line.indexOf(' ');
-        int status = Integer.parseInt(line.substring(index + 1, index + 4));
-        setVersion(line.substring(0, index));
+    protected void parseFirstLine(HttpHeaderParser parser, int start, int end) {
+        byte[] array = parser.array();
+        int index = start;
+        for (; index < end && array[index] != ' '; index++) {}
+        if (index + 4 > end) {
+            throw new IllegalArgumentException("illegal http status line");
+        }
+        int status = 0;
+        for (int i = index + 1; i < index + 4; i++) {
+            status = status * 10 + (array[i] - '0');
+        }
+        setVersion(parser.string(start, index, VERSIONS));
         setStatus(HttpStatus.getHttpStatus(status));
     }
 
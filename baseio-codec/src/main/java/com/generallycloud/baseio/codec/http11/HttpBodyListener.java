@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.codec.http11;
+
+import java.io.IOException;
+
+import com.generallycloud.baseio.buffer.ByteBuf;
+import com.generallycloud.baseio.component.SocketSession;
+
+/**
+ * 流式接收http body，所有方法均在eventLoop线程中调用
+ * 
+ * @author wangkai
+ *
+ */
+public interface HttpBodyListener {
+
+    /**
+     * header解析完成并且存在body时调用
+     * @return true则body通过onBody分段回调，不再缓存到内存或临时文件
+     */
+    boolean onHeaderComplete(SocketSession session, HttpFuture future) throws IOException;
+
+    /**
+     * buf的position至limit为本次收到的body，仅在本次调用内有效
+     */
+    void onBody(SocketSession session, HttpFuture future, ByteBuf buf) throws IOException;
+
+    /**
+     * body接收完毕，之后future交由IoEventHandle处理
+     */
+    void onBodyComplete(SocketSession session, HttpFuture future) throws IOException;
+
+}
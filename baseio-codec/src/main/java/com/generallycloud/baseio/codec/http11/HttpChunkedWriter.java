@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.codec.http11;
+
+import com.generallycloud.baseio.buffer.ByteBuf;
+import com.generallycloud.baseio.component.SocketSession;
+import com.generallycloud.baseio.protocol.DefaultChannelFuture;
+
+/**
+ * 写出Transfer-Encoding: chunked的body，需要先写出chunked的响应头，
+ * 见{@link ServerHttpFuture#setChunkedResponse(boolean)}
+ * 
+ * @author wangkai
+ *
+ */
+public class HttpChunkedWriter {
+
+    private static final byte[] CRLF       = "\r\n".getBytes();
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes();
+    private final SocketSession session;
+
+    public HttpChunkedWriter(SocketSession session) {
+        this.session = session;
+    }
+
+    public void write(byte[] data) {
+        write(data, 0, data.length);
+    }
+
+    public void write(byte[] data, int off, int len) {
+        if (len == 0) {
+            // 长度为0的chunk表示结束
+            return;
+        }
+        ByteBuf buf = allocate(len);
+        buf.put(data, off, len);
+        flush(buf);
+    }
+
+    /**
+     * 写出buf中position至limit的内容，buf的position会移动到limit
+     */
+    public void write(ByteBuf data) {
+        int len = data.remaining();
+        if (len == 0) {
+            return;
+        }
+        ByteBuf buf = allocate(len);
+        buf.read(data);
+        flush(buf);
+    }
+
+    public void close() {
+        ByteBuf buf = session.allocator().allocate(LAST_CHUNK.length);
+        buf.put(LAST_CHUNK);
+        flushChannelFuture(buf);
+    }
+
+    private ByteBuf allocate(int len) {
+        byte[] size = Integer.toHexString(len).getBytes();
+        ByteBuf buf = session.allocator().allocate(size.length + len + 4);
+        buf.put(size);
+        buf.put(CRLF);
+        return buf;
+    }
+
+    private void flush(ByteBuf buf) {
+        buf.put(CRLF);
+        flushChannelFuture(buf);
+    }
+
+    private void flushChannelFuture(ByteBuf buf) {
+        session.flushChannelFuture(new DefaultChannelFuture(buf.flip(), session.isEnableSsl()));
+    }
+
+}
@@ -18,33 +18,95 @@ package com.generallycloud.baseio.codec.http11;
 import java.io.IOException;
 
 import com.generallycloud.baseio.TimeoutException;
+import com.generallycloud.baseio.common.CloseUtil;
 import com.generallycloud.baseio.component.ChannelContext;
 import com.generallycloud.baseio.component.SocketSession;
-import com.generallycloud.baseio.concurrent.Waiter;
 
+/**
+ * 同一连接上的请求以http/1.1 pipeline方式写出，不必等待上一个请求的响应，
+ * 可以在多个线程中共享同一个HttpClient
+ */
 public class HttpClient {
 
     private ChannelContext    context;
     private SocketSession     session;
     private HttpIOEventHandle ioEventHandle;
+    private long              timeout = 3000;
 
     public HttpClient(SocketSession session) {
         this.session = session;
         this.context = session.getContext();
         this.ioEventHandle = (HttpIOEventHandle) context.getIoEventHandle();
+        // 未注册时连接关闭不会结束未响应的请求，等待的线程将无法返回
+        if (!context.getSessionEventListeners().contains(ioEventHandle)) {
+            throw new IllegalArgumentException(
+                    "HttpIOEventHandle must be added as SessionEventListener");
+        }
     }
 
-    public synchronized HttpFuture request(HttpFuture future, long timeout) throws IOException {
-        Waiter waiter = ioEventHandle.newWaiter();
-        session.flush(future);
-        if (waiter.await(timeout)) {
-            throw new TimeoutException("timeout");
+    /**
+     * 异步发送请求，超时后以TimeoutException结束并关闭连接，
+     * timeout(ms)小于等于0时使用getTimeout()，callback可以为null
+     */
+    public HttpResponse request(HttpFuture future, long timeout, HttpCallback callback) {
+        final HttpResponse response = new HttpResponse(future, callback);
+        if (timeout <= 0) {
+            timeout = this.timeout;
         }
-        return (HttpFuture) waiter.getResponse();
+        response.setTimeoutTask(session.unsafe().getEventLoop().schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                // 服务端未按时响应，后续pipeline上的响应也会被阻塞，关闭连接以便重连
+                if (response.fail(new TimeoutException("timeout"))) {
+                    CloseUtil.close(session);
+                }
+            }
+        }, timeout));
+        ioEventHandle.write(session, future, response);
+        return response;
+    }
+
+    public HttpFuture request(HttpFuture future, long timeout) throws IOException {
+        return request(future, timeout, null).get();
+    }
+
+    public HttpFuture request(HttpFuture future) throws IOException {
+        return request(future, timeout);
+    }
+
+    public HttpResponse get(String url, long timeout, HttpCallback callback) {
+        return request(new ClientHttpFuture(context, url), timeout, callback);
+    }
+
+    public ChannelContext getContext() {
+        return context;
+    }
+
+    public int getPendingSize() {
+        return ioEventHandle.getPendingSize();
+    }
+
+    public SocketSession getSession() {
+        return session;
     }
 
-    public synchronized HttpFuture request(HttpFuture future) throws IOException {
-        return request(future, 3000);
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public boolean isClosed() {
+        return session.isClosed();
+    }
+
+    /**
+     * 默认的请求超时(ms)，必须大于0
+     */
+    public void setTimeout(long timeout) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout: " + timeout);
+        }
+        this.timeout = timeout;
     }
 
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.codec.http11;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.generallycloud.baseio.LifeCycleUtil;
+import com.generallycloud.baseio.common.CloseUtil;
+import com.generallycloud.baseio.component.ChannelConnector;
+import com.generallycloud.baseio.component.ChannelContext;
+import com.generallycloud.baseio.component.NioEventLoopGroup;
+import com.generallycloud.baseio.concurrent.FixedAtomicInteger;
+import com.generallycloud.baseio.configuration.Configuration;
+
+/**
+ * 按host:port划分的keep-alive连接池，每个host最多maxConnections条连接，
+ * 连接按需建立并分布在group的各个NioEventLoop上，连接关闭后在下次使用时重连，
+ * 只有pool自己创建的group才会由pool启动和停止
+ *
+ * @author wangkai
+ *
+ */
+public class HttpClientPool implements Closeable {
+
+    private NioEventLoopGroup     group;
+    private boolean               ownGroup;
+    private Map<String, HostPool> hostPools = new HashMap<>();
+    private int                   maxConnections;
+    private long                  timeout   = 3000;
+
+    /**
+     * 使用pool创建的group(maxConnections个eventLoop)，第一次使用时启动，close时停止
+     */
+    public HttpClientPool(int maxConnections) {
+        this(null, true, maxConnections);
+    }
+
+    /**
+     * 使用调用方的group，多个connector共用该group所以必须是sharable的，pool不会停止该group
+     */
+    public HttpClientPool(NioEventLoopGroup group, int maxConnections) {
+        this(group, false, maxConnections);
+    }
+
+    private HttpClientPool(NioEventLoopGroup group, boolean ownGroup, int maxConnections) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("maxConnections: " + maxConnections);
+        }
+        if (ownGroup) {
+            group = new NioEventLoopGroup(maxConnections);
+            group.setSharable(true);
+        } else if (!group.isSharable()) {
+            throw new IllegalArgumentException("group must be sharable");
+        }
+        this.group = group;
+        this.ownGroup = ownGroup;
+        this.maxConnections = maxConnections;
+    }
+
+    @Override
+    public void close() throws IOException {
+        HostPool[] pools;
+        synchronized (this) {
+            pools = hostPools.values().toArray(new HostPool[hostPools.size()]);
+            hostPools.clear();
+        }
+        for (HostPool pool : pools) {
+            synchronized (pool) {
+                for (ChannelConnector connector : pool.connectors) {
+                    CloseUtil.close(connector);
+                }
+            }
+        }
+        if (ownGroup) {
+            LifeCycleUtil.stop(group);
+        }
+    }
+
+    private HttpClient connect(String host, int port) throws IOException {
+        HttpIOEventHandle ioEventHandle = new HttpIOEventHandle();
+        ChannelContext context = new ChannelContext(new Configuration(host, port));
+        ChannelConnector connector = new ChannelConnector(context, group.getNext());
+        context.setIoEventHandle(ioEventHandle);
+        context.addSessionEventListener(ioEventHandle);
+        context.setProtocolCodec(new ClientHttpCodec());
+        connector.setTimeout(timeout);
+        try {
+            HttpClient client = new HttpClient(connector.connect());
+            client.setTimeout(timeout);
+            return client;
+        } catch (IOException e) {
+            CloseUtil.close(connector);
+            throw e;
+        }
+    }
+
+    /**
+     * 在该host的连接中轮询选择一条，未建立或已关闭的连接会在这里(重新)建立
+     */
+    public HttpClient getClient(String host, int port) throws IOException {
+        HostPool pool = getHostPool(host, port);
+        int index = pool.index.getAndIncrement();
+        synchronized (pool) {
+            HttpClient client = pool.clients[index];
+            if (client == null || client.isClosed()) {
+                CloseUtil.close(pool.connectors[index]);
+                client = connect(host, port);
+                pool.clients[index] = client;
+                pool.connectors[index] = (ChannelConnector) client.getContext()
+                        .getChannelService();
+            }
+            return client;
+        }
+    }
+
+    private synchronized HostPool getHostPool(String host, int port) throws IOException {
+        String key = host + ":" + port;
+        HostPool pool = hostPools.get(key);
+        if (pool == null) {
+            if (ownGroup && hostPools.isEmpty()) {
+                LifeCycleUtil.start(group);
+            }
+            pool = new HostPool(maxConnections);
+            hostPools.put(key, pool);
+        }
+        return pool;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public HttpResponse request(String host, int port, HttpFuture future, HttpCallback callback)
+            throws IOException {
+        return getClient(host, port).request(future, timeout, callback);
+    }
+
+    public HttpFuture request(String host, int port, HttpFuture future) throws IOException {
+        return getClient(host, port).request(future, timeout);
+    }
+
+    /**
+     * 连接超时及请求超时(ms)，必须大于0
+     */
+    public void setTimeout(long timeout) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout: " + timeout);
+        }
+        this.timeout = timeout;
+    }
+
+    static class HostPool {
+
+        final HttpClient[]       clients;
+        final ChannelConnector[] connectors;
+        final FixedAtomicInteger index;
+
+        HostPool(int size) {
+            this.clients = new HttpClient[size];
+            this.connectors = new ChannelConnector[size];
+            this.index = new FixedAtomicInteger(size - 1);
+        }
+    }
+
+}
@@ -15,6 +15,7 @@
  */
 package com.generallycloud.baseio.codec.http11;
 
+import java.io.File;
 import java.util.List;
 import java.util.Map;
 
@@ -99,6 +100,16 @@ public abstract interface HttpFuture extends HttpMessage {
 
     public abstract boolean hasBodyContent();
 
+    /**
+     * 超过bodyLimit并写入临时文件的body，需要由使用者删除
+     */
+    public abstract File getBodyFile();
+
+    /**
+     * body是否为Transfer-Encoding: chunked
+     */
+    public abstract boolean isChunked();
+
     public abstract HttpStatus getStatus();
 
     public abstract void setStatus(HttpStatus status);
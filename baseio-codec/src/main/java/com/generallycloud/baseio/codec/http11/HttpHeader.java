@@ -73,6 +73,8 @@ public class HttpHeader {
     public static final String Req_Referer             = "referer";
     //客户端愿意接受的传输编码，并通知服务器接受接受尾加头信息    TE: trailers,deflate;q=0.5
     public static final String Req_TE                  = "te";
+    //请求实体的传输编码  Transfer-Encoding: chunked
+    public static final String Req_Transfer_Encoding   = "transfer-encoding";
     //向服务器指定某种传输协议以便服务器进行转换（如果支持） Upgrade: HTTP/2.0, SHTTP/1.3, IRC/6.9, RTA/x11
     public static final String Req_Upgrade             = "upgrade";
     //User-Agent的内容包含发出请求的用户信息    User-Agent: Mozilla/5.0 (Linux; X11)
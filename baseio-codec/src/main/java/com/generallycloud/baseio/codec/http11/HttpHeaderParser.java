@@ -0,0 +1,305 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.codec.http11;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import com.generallycloud.baseio.buffer.ByteBuf;
+
+/**
+ * 基于byte的http header解析，header原样拷贝到一个可复用的byte[]中，
+ * HttpHeader中Req_开头的header按名称放入固定的slot，其余的header只记录位置，
+ * 均在获取时才创建String
+ * 
+ * @author wangkai
+ *
+ */
+public class HttpHeaderParser {
+
+    static final Charset                      ISO_8859_1 = Charset.forName("ISO-8859-1");
+    // 按名称排序的Req_ header，下标即slot
+    private static final String[]             KNOWN_NAMES;
+    private static final byte[][]             KNOWN_BYTES;
+    // 按名称长度分组的slot
+    private static final int[][]              KNOWN_BY_LENGTH;
+    private static final Map<String, Integer> KNOWN_INDEX = new HashMap<>();
+
+    static {
+        String[] names = new HashSet<>(HttpHeader.REQ_MAPPING.values()).toArray(new String[0]);
+        Arrays.sort(names);
+        int maxLength = 0;
+        byte[][] bytes = new byte[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            bytes[i] = names[i].getBytes(ISO_8859_1);
+            maxLength = Math.max(maxLength, bytes[i].length);
+            KNOWN_INDEX.put(names[i], i);
+        }
+        int[][] byLength = new int[maxLength + 1][];
+        for (int i = 0; i < names.length; i++) {
+            int[] slots = byLength[bytes[i].length];
+            slots = slots == null ? new int[1] : Arrays.copyOf(slots, slots.length + 1);
+            slots[slots.length - 1] = i;
+            byLength[bytes[i].length] = slots;
+        }
+        KNOWN_NAMES = names;
+        KNOWN_BYTES = bytes;
+        KNOWN_BY_LENGTH = byLength;
+    }
+
+    private byte[]   array          = new byte[256];
+    private boolean  complete;
+    private int      firstLineEnd   = -1;
+    private int      firstLineStart;
+    private int      headerLimit;
+    // value的起始与结束位置，起始位置为-1表示不存在
+    private int[]    known          = new int[KNOWN_NAMES.length * 2];
+    private String[] knownValues    = new String[KNOWN_NAMES.length];
+    private int      length;
+    private int      lineStart;
+    // name起始，name结束，value起始，value结束
+    private int[]    others         = new int[32];
+    private int      othersSize;
+
+    public HttpHeaderParser(int headerLimit) {
+        reset(headerLimit);
+    }
+
+    /**
+     * slot of the header name(lower case), -1 if not a known header
+     */
+    public static int indexOf(String lowerCaseName) {
+        Integer index = KNOWN_INDEX.get(lowerCaseName);
+        return index == null ? -1 : index;
+    }
+
+    public byte[] array() {
+        return array;
+    }
+
+    public int firstLineEnd() {
+        return firstLineEnd;
+    }
+
+    public int firstLineStart() {
+        return firstLineStart;
+    }
+
+    public String get(int index) {
+        String value = knownValues[index];
+        if (value == null) {
+            int start = known[index << 1];
+            if (start == -1) {
+                return null;
+            }
+            value = string(start, known[(index << 1) + 1]);
+            knownValues[index] = value;
+        }
+        return value;
+    }
+
+    public String get(String lowerCaseName) {
+        int index = indexOf(lowerCaseName);
+        if (index != -1) {
+            return get(index);
+        }
+        int[] others = this.others;
+        for (int i = 0; i < othersSize; i += 4) {
+            if (equalsIgnoreCase(others[i], others[i + 1], lowerCaseName)) {
+                return string(others[i + 2], others[i + 3]);
+            }
+        }
+        return null;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return true if header complete
+     */
+    public boolean parse(ByteBuf buffer) throws IOException {
+        byte[] array = this.array;
+        int length = this.length;
+        for (; buffer.hasRemaining();) {
+            if (length == headerLimit) {
+                throw new IOException("max http header length " + headerLimit);
+            }
+            if (length == array.length) {
+                array = Arrays.copyOf(array, Math.min(length << 1, headerLimit));
+                this.array = array;
+            }
+            byte b = buffer.getByte();
+            array[length++] = b;
+            if (b != '\n') {
+                continue;
+            }
+            int lineEnd = length - 1;
+            if (lineEnd > lineStart && array[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+            if (lineEnd == lineStart) {
+                if (firstLineEnd == -1) {
+                    // 忽略请求之前的空行
+                    lineStart = length;
+                    continue;
+                }
+                this.length = length;
+                this.complete = true;
+                return true;
+            }
+            if (firstLineEnd == -1) {
+                firstLineStart = lineStart;
+                firstLineEnd = lineEnd;
+            } else {
+                parseLine(lineStart, lineEnd);
+            }
+            lineStart = length;
+        }
+        this.length = length;
+        return false;
+    }
+
+    private void parseLine(int start, int end) {
+        byte[] array = this.array;
+        int colon = start;
+        for (; colon < end && array[colon] != ':'; colon++) {}
+        if (colon == end) {
+            return;
+        }
+        int nameEnd = colon;
+        for (; nameEnd > start && isWhitespace(array[nameEnd - 1]); nameEnd--) {}
+        int valueStart = colon + 1;
+        for (; valueStart < end && isWhitespace(array[valueStart]); valueStart++) {}
+        int valueEnd = end;
+        for (; valueEnd > valueStart && isWhitespace(array[valueEnd - 1]); valueEnd--) {}
+        int index = knownIndex(start, nameEnd);
+        if (index != -1) {
+            known[index << 1] = valueStart;
+            known[(index << 1) + 1] = valueEnd;
+            return;
+        }
+        if (othersSize == others.length) {
+            others = Arrays.copyOf(others, othersSize << 1);
+        }
+        others[othersSize++] = start;
+        others[othersSize++] = nameEnd;
+        others[othersSize++] = valueStart;
+        others[othersSize++] = valueEnd;
+    }
+
+    private int knownIndex(int start, int end) {
+        int length = end - start;
+        if (length >= KNOWN_BY_LENGTH.length) {
+            return -1;
+        }
+        int[] slots = KNOWN_BY_LENGTH[length];
+        if (slots == null) {
+            return -1;
+        }
+        byte[] array = this.array;
+        for (int slot : slots) {
+            byte[] name = KNOWN_BYTES[slot];
+            int i = 0;
+            // name中只有小写字母，'-'与数字，|0x20不会使其他字符与之相等
+            for (; i < length && (array[start + i] | 0x20) == name[i]; i++) {}
+            if (i == length) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private boolean equalsIgnoreCase(int start, int end, String lowerCaseName) {
+        if (end - start != lowerCaseName.length()) {
+            return false;
+        }
+        byte[] array = this.array;
+        for (int i = start; i < end; i++) {
+            if (Character.toLowerCase((char) (array[i] & 0xff)) != lowerCaseName
+                    .charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    /**
+     * 将全部header放入map，用于需要完整map的场景
+     */
+    public void putAll(Map<String, String> headers) {
+        for (int i = 0; i < KNOWN_NAMES.length; i++) {
+            String value = get(i);
+            if (value != null) {
+                headers.put(KNOWN_NAMES[i], value);
+            }
+        }
+        int[] others = this.others;
+        for (int i = 0; i < othersSize; i += 4) {
+            String name = string(others[i], others[i + 1]).toLowerCase();
+            headers.put(name, string(others[i + 2], others[i + 3]));
+        }
+    }
+
+    public void reset(int headerLimit) {
+        this.complete = false;
+        this.firstLineEnd = -1;
+        this.firstLineStart = 0;
+        this.headerLimit = headerLimit;
+        this.length = 0;
+        this.lineStart = 0;
+        this.othersSize = 0;
+        Arrays.fill(known, -1);
+        Arrays.fill(knownValues, null);
+    }
+
+    public String string(int start, int end) {
+        return new String(array, start, end - start, ISO_8859_1);
+    }
+
+    /**
+     * 与values中的某个值相同时返回该值，避免创建String
+     */
+    public String string(int start, int end, String[] values) {
+        byte[] array = this.array;
+        int length = end - start;
+        for (String value : values) {
+            if (value.length() != length) {
+                continue;
+            }
+            int i = 0;
+            for (; i < length && array[start + i] == value.charAt(i); i++) {}
+            if (i == length) {
+                return value;
+            }
+        }
+        return string(start, end);
+    }
+
+}
@@ -15,27 +15,94 @@
  */
 package com.generallycloud.baseio.codec.http11;
 
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+import com.generallycloud.baseio.ClosedChannelException;
 import com.generallycloud.baseio.component.IoEventHandleAdaptor;
+import com.generallycloud.baseio.component.SessionEventListener;
 import com.generallycloud.baseio.component.SocketSession;
-import com.generallycloud.baseio.concurrent.Waiter;
 import com.generallycloud.baseio.protocol.Future;
 
-public class HttpIOEventHandle extends IoEventHandleAdaptor {
+/**
+ * 客户端使用，需要同时作为SessionEventListener注册到context，
+ * 以便连接关闭时结束所有未响应的请求
+ */
+public class HttpIOEventHandle extends IoEventHandleAdaptor implements SessionEventListener {
 
-    private Waiter waiter;
+    // http/1.1 pipeline的响应严格按请求顺序返回，这里按写出顺序排队
+    private ArrayDeque<HttpResponse> pendings = new ArrayDeque<>();
 
     @Override
     public void accept(SocketSession session, Future future) throws Exception {
-        HttpFuture f = (HttpFuture) future;
-        Waiter waiter = this.waiter;
-        if (waiter != null) {
-            this.waiter = null;
-            waiter.response(f);
+        HttpResponse response;
+        synchronized (pendings) {
+            response = pendings.poll();
+        }
+        // 已超时的请求仍然占据队列中的位置，其响应到达后在这里丢弃
+        if (response != null) {
+            response.complete((HttpFuture) future);
+        }
+    }
+
+    @Override
+    public void exceptionCaught(SocketSession session, Future future, Exception ex) {
+        HttpResponse response = null;
+        synchronized (pendings) {
+            for (Iterator<HttpResponse> it = pendings.iterator(); it.hasNext();) {
+                HttpResponse r = it.next();
+                if (r.getRequest() == future) {
+                    it.remove();
+                    response = r;
+                    break;
+                }
+            }
+        }
+        if (response != null) {
+            response.fail(ex);
+            return;
         }
+        super.exceptionCaught(session, future, ex);
     }
 
-    public Waiter newWaiter() {
-        this.waiter = new Waiter();
-        return this.waiter;
+    public int getPendingSize() {
+        synchronized (pendings) {
+            return pendings.size();
+        }
     }
+
+    @Override
+    public void sessionClosed(SocketSession session) {
+        HttpResponse[] responses;
+        synchronized (pendings) {
+            responses = pendings.toArray(new HttpResponse[pendings.size()]);
+            pendings.clear();
+        }
+        if (responses.length == 0) {
+            return;
+        }
+        ClosedChannelException e = new ClosedChannelException(session.toString());
+        for (HttpResponse response : responses) {
+            response.fail(e);
+        }
+    }
+
+    @Override
+    public void sessionOpened(SocketSession session) throws Exception {}
+
+    @Override
+    public void sessionWritabilityChanged(SocketSession session, boolean writable) {}
+
+    /**
+     * 入队并写出请求，多个线程并发写入时由session.flush()合并为一次写出
+     */
+    public void write(SocketSession session, HttpFuture future, HttpResponse response) {
+        // 入队与write需要原子完成，保证队列顺序与写出顺序一致
+        synchronized (pendings) {
+            pendings.offer(response);
+            session.write(future);
+        }
+        session.flush();
+    }
+
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.codec.http11;
+
+import java.io.IOException;
+
+import com.generallycloud.baseio.TimeoutException;
+import com.generallycloud.baseio.concurrent.ScheduledTask;
+import com.generallycloud.baseio.log.Logger;
+import com.generallycloud.baseio.log.LoggerFactory;
+
+/**
+ * 一个已发出的http请求的结果，同一连接上的响应按请求的写出顺序依次完成，
+ * 超时由连接所在NioEventLoop的定时器触发，不占用等待线程
+ *
+ * @author wangkai
+ *
+ */
+public class HttpResponse {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpResponse.class);
+
+    private HttpCallback        callback;
+    private Throwable           cause;
+    private boolean             done;
+    private HttpFuture          future;
+    private HttpFuture          request;
+    private ScheduledTask       timeoutTask;
+
+    public HttpResponse(HttpFuture request, HttpCallback callback) {
+        this.request = request;
+        this.callback = callback;
+    }
+
+    /**
+     * 等待响应，超时或连接关闭时抛出对应的IOException，
+     * 每个请求都有超时任务，等待的时间不会超过请求的超时时间
+     */
+    public HttpFuture get() throws IOException {
+        synchronized (this) {
+            for (; !done;) {
+                try {
+                    this.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new TimeoutException("interrupted", e);
+                }
+            }
+        }
+        if (cause != null) {
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+        return future;
+    }
+
+    public Throwable getCause() {
+        return cause;
+    }
+
+    public HttpFuture getFuture() {
+        return future;
+    }
+
+    public HttpFuture getRequest() {
+        return request;
+    }
+
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    public boolean isFailed() {
+        return cause != null;
+    }
+
+    boolean complete(HttpFuture future) {
+        return complete(future, null);
+    }
+
+    boolean fail(Throwable cause) {
+        return complete(null, cause);
+    }
+
+    private boolean complete(HttpFuture future, Throwable cause) {
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            this.done = true;
+            this.future = future;
+            this.cause = cause;
+            this.notifyAll();
+        }
+        ScheduledTask timeoutTask = this.timeoutTask;
+        if (timeoutTask != null) {
+            timeoutTask.cancel();
+        }
+        HttpCallback callback = this.callback;
+        if (callback != null) {
+            try {
+                callback.onResponse(this);
+            } catch (Exception e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+        return true;
+    }
+
+    void setTimeoutTask(ScheduledTask timeoutTask) {
+        this.timeoutTask = timeoutTask;
+    }
+
+}
@@ -36,9 +36,13 @@ import com.generallycloud.baseio.protocol.Future;
 public class ServerHttpCodec extends AbstractHttpCodec {
 
     public static final String  FUTURE_STACK_KEY         = "FixedThreadStack_ServerHttpFuture";
+    // 预留给响应头的字节数，响应头超出时退回到拷贝body
+    public static final int     WRITE_BUF_RESERVE        = 256;
     private static final byte[] PROTOCOL                 = "HTTP/1.1 ".getBytes();
     private static final byte[] SERVER_CL                = "\r\nServer: baseio/0.0.1\r\nContent-Length: "
             .getBytes();
+    private static final byte[] SERVER_CHUNKED           = "\r\nServer: baseio/0.0.1\r\nTransfer-Encoding: chunked\r\n"
+            .getBytes();
     private static final byte[] SET_COOKIE               = "Set-Cookie:".getBytes();
     private int                 bodyLimit                = 1024 * 512;
     private int                 headerLimit              = 1024 * 8;
@@ -84,37 +88,81 @@ public class ServerHttpCodec extends AbstractHttpCodec {
             }
             ServerHttpFuture future = stack.pop();
             if (future == null) {
-                return new ServerHttpFuture(channel, headerLimit, bodyLimit);
+                future = new ServerHttpFuture(channel, headerLimit, bodyLimit);
+            } else {
+                future.reset(channel, headerLimit, bodyLimit);
             }
-            return future.reset(channel, headerLimit, bodyLimit);
+            future.setWriteBufAllocator(channel.allocator(), WRITE_BUF_RESERVE);
+            return future;
         }
-        return new ServerHttpFuture(channel, headerLimit, bodyLimit);
+        ServerHttpFuture future = new ServerHttpFuture(channel, headerLimit, bodyLimit);
+        future.setWriteBufAllocator(channel.allocator(), WRITE_BUF_RESERVE);
+        return future;
     }
 
-    private void encode(ByteBufAllocator allocator, ServerHttpFuture f, int length, byte[] array)
+    private void encode(ByteBufAllocator allocator, ServerHttpFuture f, long length, byte[] array)
             throws IOException {
         ByteBuf buf = allocator.allocate(256);
         try {
-            buf.put(PROTOCOL);
-            buf.put(f.getStatus().getHeaderBinary());
-            buf.put(SERVER_CL);
-            buf.put(String.valueOf(length).getBytes());
-            buf.putByte(R);
-            buf.putByte(N);
-            writeHeaders(f, buf);
-            List<Cookie> cookieList = f.getCookieList();
-            if (cookieList != null) {
-                for (Cookie c : cookieList) {
-                    writeBuf(buf, SET_COOKIE);
-                    writeBuf(buf, c.toString().getBytes());
+            writeHead(f, buf, length);
+            if (array != null && length != 0) {
+                if (f.isChunkedResponse()) {
+                    writeChunkSize(buf, length);
+                    writeBuf(buf, array, 0, (int) length);
                     writeBuf(buf, R);
                     writeBuf(buf, N);
+                } else {
+                    writeBuf(buf, array, 0, (int) length);
                 }
             }
-            writeBuf(buf, R);
-            writeBuf(buf, N);
-            if (length != 0) {
-                writeBuf(buf, array, 0, length);
+        } catch (Exception e) {
+            buf.release(buf.getReleaseVersion());
+            throw e;
+        }
+        f.setByteBuf(buf.flip());
+    }
+
+    // body已写入writeBuf，响应头回填到body之前的预留区域，预留区域不足时退回到拷贝body
+    private void encodeWriteBuf(ByteBufAllocator allocator, ServerHttpFuture f, int length,
+            ByteBuf body) throws IOException {
+        ByteBuf buf = allocator.allocate(256);
+        boolean chunked = f.isChunkedResponse();
+        try {
+            writeHead(f, buf, length);
+            if (chunked) {
+                writeChunkSize(buf, length);
+            }
+        } catch (Exception e) {
+            buf.release(buf.getReleaseVersion());
+            throw e;
+        }
+        int reserve = f.getWriteBufReserve();
+        int headLength = buf.position();
+        if (headLength <= reserve && (!chunked || body.remaining() >= 2)) {
+            if (chunked) {
+                body.putByte(R);
+                body.putByte(N);
+            }
+            int start = reserve - headLength;
+            body.flip();
+            body.position(start);
+            body.read(buf.flip());
+            buf.release(buf.getReleaseVersion());
+            body.position(start);
+            f.setByteBuf(body);
+            return;
+        }
+        try {
+            body.flip();
+            body.position(reserve);
+            if (buf.remaining() < length + 2) {
+                buf.reallocate(headLength + length + 2, true);
+                buf.limit(buf.capacity());
+            }
+            buf.read(body);
+            if (chunked) {
+                buf.putByte(R);
+                buf.putByte(N);
             }
         } catch (Exception e) {
             buf.release(buf.getReleaseVersion());
@@ -123,6 +171,37 @@ public class ServerHttpCodec extends AbstractHttpCodec {
         f.setByteBuf(buf.flip());
     }
 
+    private void writeHead(ServerHttpFuture f, ByteBuf buf, long length) {
+        buf.put(PROTOCOL);
+        buf.put(f.getStatus().getHeaderBinary());
+        if (f.isChunkedResponse()) {
+            buf.put(SERVER_CHUNKED);
+        } else {
+            buf.put(SERVER_CL);
+            buf.put(String.valueOf(length).getBytes());
+            buf.putByte(R);
+            buf.putByte(N);
+        }
+        writeHeaders(f, buf);
+        List<Cookie> cookieList = f.getCookieList();
+        if (cookieList != null) {
+            for (Cookie c : cookieList) {
+                writeBuf(buf, SET_COOKIE);
+                writeBuf(buf, c.toString().getBytes());
+                writeBuf(buf, R);
+                writeBuf(buf, N);
+            }
+        }
+        writeBuf(buf, R);
+        writeBuf(buf, N);
+    }
+
+    private void writeChunkSize(ByteBuf buf, long length) {
+        writeBuf(buf, Long.toHexString(length).getBytes());
+        writeBuf(buf, R);
+        writeBuf(buf, N);
+    }
+
     @Override
     public void encode(NioSocketChannel channel, ChannelFuture readFuture) throws IOException {
         ByteBufAllocator allocator = channel.allocator();
@@ -134,6 +213,11 @@ public class ServerHttpCodec extends AbstractHttpCodec {
         }
         f.setResponseHeader("Date",
                 HttpHeaderDateFormat.getFormat().format(System.currentTimeMillis()));
+        // body由随后flush的FileRegionChannelFuture写出
+        if (f.getFileRegionLength() > 0) {
+            encode(allocator, f, f.getFileRegionLength(), null);
+            return;
+        }
         ByteArrayOutputStream os = f.getBinaryBuffer();
         if (os != null) {
             encode(allocator, f, os.size(), os.array());
@@ -144,6 +228,11 @@ public class ServerHttpCodec extends AbstractHttpCodec {
             encode(allocator, f, 0, null);
             return;
         }
+        ByteBuf body = f.getWriteBuf();
+        if (body != null) {
+            encodeWriteBuf(allocator, f, writeSize, body);
+            return;
+        }
         encode(allocator, f, writeSize, f.getWriteBuffer());
     }
 
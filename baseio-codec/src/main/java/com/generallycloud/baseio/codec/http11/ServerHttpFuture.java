@@ -15,7 +15,6 @@
  */
 package com.generallycloud.baseio.codec.http11;
 
-import java.util.HashMap;
 import java.util.Map;
 
 import com.generallycloud.baseio.collection.FixedThreadStack;
@@ -27,9 +26,11 @@ import com.generallycloud.baseio.component.NioSocketChannel;
 
 public class ServerHttpFuture extends AbstractHttpFuture {
 
+    private boolean chunkedResponse;
+    private long    fileRegionLength;
+
     public ServerHttpFuture(NioSocketChannel channel, int headerLimit, int bodyLimit) {
-        super(channel, bodyLimit, bodyLimit);
-        setRequestParams(new HashMap<String, String>());
+        super(channel, headerLimit, bodyLimit);
     }
 
     public ServerHttpFuture(ChannelContext context) {
@@ -46,6 +47,30 @@ public class ServerHttpFuture extends AbstractHttpFuture {
         headers.put(HttpHeader.Connection, "keep-alive"); // or close
     }
 
+    public boolean isChunkedResponse() {
+        return chunkedResponse;
+    }
+
+    /**
+     * 以Transfer-Encoding: chunked写出响应头，已写入的内容作为第一个chunk，
+     * 之后的chunk通过HttpChunkedWriter写出
+     */
+    public void setChunkedResponse(boolean chunkedResponse) {
+        this.chunkedResponse = chunkedResponse;
+    }
+
+    public long getFileRegionLength() {
+        return fileRegionLength;
+    }
+
+    /**
+     * 响应的body由随后通过flushChannelFuture写出的FileRegionChannelFuture提供，
+     * 此处仅用于写出Content-Length
+     */
+    public void setFileRegionLength(long fileRegionLength) {
+        this.fileRegionLength = fileRegionLength;
+    }
+
     @Override
     protected void parseContentType(String contentType) {
         if (StringUtil.isNullOrBlank(contentType)) {
@@ -68,12 +93,18 @@ public class ServerHttpFuture extends AbstractHttpFuture {
     }
 
     @Override
-    protected void parseFirstLine(String line) {
-        int index1 = line.indexOf(' ');
-        int index2 = line.indexOf(' ', index1 + 1);
-        setRequestURL(line.substring(index1 + 1, index2));
-        setMethod(line.substring(0, index1));
-        setVersion(line.substring(index2 + 1));
+    protected void parseFirstLine(HttpHeaderParser parser, int start, int end) {
+        byte[] array = parser.array();
+        int index1 = start;
+        for (; index1 < end && array[index1] != ' '; index1++) {}
+        int index2 = index1 + 1;
+        for (; index2 < end && array[index2] != ' '; index2++) {}
+        if (index2 >= end) {
+            throw new IllegalArgumentException("illegal http request line");
+        }
+        setMethod(parser.string(start, index1, METHODS));
+        setRequestURL(index1 + 1, index2);
+        setVersion(parser.string(index2 + 1, end, VERSIONS));
     }
 
     @Override
@@ -82,14 +113,23 @@ public class ServerHttpFuture extends AbstractHttpFuture {
         //FIXME ..final statck is null or not null
         FixedThreadStack<ServerHttpFuture> stack = (FixedThreadStack<ServerHttpFuture>) eventLoop
                 .getAttribute(ServerHttpCodec.FUTURE_STACK_KEY);
-        if (stack != null) {
+        if (stack != null && isRecyclable()) {
             stack.push(this);
         }
     }
 
+    /**
+     * 是否可以在release后放回ServerHttpCodec的FixedThreadStack中复用
+     */
+    protected boolean isRecyclable() {
+        return true;
+    }
+
     @Override
     public ServerHttpFuture reset(NioSocketChannel channel, int headerLimit, int bodyLimit) {
         super.reset(channel, headerLimit, bodyLimit);
+        this.chunkedResponse = false;
+        this.fileRegionLength = 0;
         setDefaultResponseHeaders(getResponseHeaders());
         return this;
     }
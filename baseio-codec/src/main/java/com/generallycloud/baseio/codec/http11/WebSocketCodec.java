@@ -58,14 +58,16 @@ import com.generallycloud.baseio.protocol.ProtocolCodec;
 */
 public class WebSocketCodec implements ProtocolCodec {
 
-    public static final String   FUTURE_STACK_KEY = "FixedThreadStack_WebSocketFuture";
-    public static final int      PROTOCOL_HEADER  = 2;
-    public static final String   PROTOCOL_ID      = "WebSocket";
-    public static final int      TYPE_BINARY      = 2;
-    public static final int      TYPE_CLOSE       = 8;
-    public static final int      TYPE_PING        = 9;
-    public static final int      TYPE_PONG        = 10;
-    public static final int      TYPE_TEXT        = 1;
+    public static final String   FUTURE_STACK_KEY  = "FixedThreadStack_WebSocketFuture";
+    public static final int      PROTOCOL_HEADER   = 2;
+    public static final String   PROTOCOL_ID       = "WebSocket";
+    public static final int      TYPE_BINARY       = 2;
+    public static final int      TYPE_CLOSE        = 8;
+    public static final int      TYPE_PING         = 9;
+    public static final int      TYPE_PONG         = 10;
+    public static final int      TYPE_TEXT         = 1;
+    // 报文头最长6个字节，见encode
+    public static final int      WRITE_BUF_RESERVE = 6;
     public static WebSocketCodec WS_PROTOCOL_CODEC;
 
     static void init(ChannelContext context, int limit, int futureStackSize) {
@@ -110,13 +112,18 @@ public class WebSocketCodec implements ProtocolCodec {
             }
             WebSocketFutureImpl future = stack.pop();
             if (future == null) {
-                return new WebSocketFutureImpl(channel,
+                future = new WebSocketFutureImpl(channel,
                         channel.allocator().allocate(PROTOCOL_HEADER), limit);
+            } else {
+                future.reset(channel, channel.allocator().allocate(PROTOCOL_HEADER), limit);
             }
-            return future.reset(channel, channel.allocator().allocate(PROTOCOL_HEADER), limit);
+            future.setWriteBufAllocator(channel.allocator(), WRITE_BUF_RESERVE);
+            return future;
         }
-        return new WebSocketFutureImpl(channel, channel.allocator().allocate(PROTOCOL_HEADER),
-                limit);
+        WebSocketFutureImpl future = new WebSocketFutureImpl(channel,
+                channel.allocator().allocate(PROTOCOL_HEADER), limit);
+        future.setWriteBufAllocator(channel.allocator(), WRITE_BUF_RESERVE);
+        return future;
     }
 
     @Override
@@ -142,7 +149,17 @@ public class WebSocketCodec implements ProtocolCodec {
             header[1] = 127;
             MathUtil.int2Byte(header, size, 2);
         }
-        ByteBuf buf = allocator.allocate(header.length + size);
+        ByteBuf buf = f.getWriteBuf();
+        if (buf != null) {
+            int start = f.getWriteBufReserve() - header.length;
+            buf.flip();
+            buf.position(start);
+            buf.put(header);
+            buf.position(start);
+            future.setByteBuf(buf);
+            return;
+        }
+        buf = allocator.allocate(header.length + size);
         buf.put(header);
         buf.put(data, 0, size);
         future.setByteBuf(buf.flip());
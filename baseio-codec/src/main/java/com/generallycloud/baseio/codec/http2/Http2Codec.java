@@ -18,22 +18,14 @@ package com.generallycloud.baseio.codec.http2;
 import java.io.IOException;
 
 import com.generallycloud.baseio.buffer.ByteBuf;
-import com.generallycloud.baseio.buffer.ByteBufAllocator;
-import com.generallycloud.baseio.codec.http2.future.Http2Frame;
+import com.generallycloud.baseio.codec.http11.AbstractHttpCodec;
 import com.generallycloud.baseio.codec.http2.future.Http2FrameHeaderImpl;
-import com.generallycloud.baseio.codec.http2.future.Http2FrameType;
-import com.generallycloud.baseio.codec.http2.future.Http2HeadersFrame;
 import com.generallycloud.baseio.codec.http2.future.Http2PrefaceFuture;
-import com.generallycloud.baseio.codec.http2.future.Http2SettingsFrame;
-import com.generallycloud.baseio.codec.http2.hpack.DefaultHttp2HeadersEncoder;
-import com.generallycloud.baseio.codec.http2.hpack.Http2HeadersEncoder;
-import com.generallycloud.baseio.common.MathUtil;
 import com.generallycloud.baseio.component.ChannelContext;
 import com.generallycloud.baseio.component.NioSocketChannel;
 import com.generallycloud.baseio.component.SocketSession;
 import com.generallycloud.baseio.protocol.ChannelFuture;
 import com.generallycloud.baseio.protocol.Future;
-import com.generallycloud.baseio.protocol.ProtocolCodec;
 
 /**
  * <pre>
@@ -99,13 +91,25 @@ import com.generallycloud.baseio.protocol.ProtocolCodec;
  * 
  */
 //http://httpwg.org/specs/rfc7540.html
-public class Http2Codec implements ProtocolCodec {
+public class Http2Codec extends AbstractHttpCodec {
 
-    public static final int     PROTOCOL_HEADER         = 9;
-    public static final int     PROTOCOL_PING           = -1;
-    public static final int     PROTOCOL_PONG           = -2;
-    public static final int     PROTOCOL_PREFACE_HEADER = 24;
-    private Http2HeadersEncoder http2HeadersEncoder     = new DefaultHttp2HeadersEncoder();
+    public static final int PROTOCOL_HEADER         = 9;
+    public static final int PROTOCOL_PING           = -1;
+    public static final int PROTOCOL_PONG           = -2;
+    public static final int PROTOCOL_PREFACE_HEADER = 24;
+    private int             headerLimit             = 1024 * 8;
+    private int             bodyLimit               = 1024 * 512;
+    private int             maxConcurrentStreams    = 128;
+    private int             initialWindowSize       = Http2Connection.DEFAULT_WINDOW_SIZE;
+    private int             connectionWindowSize    = 1024 * 1024;
+    private int             maxFrameSize            = Http2Connection.DEFAULT_FRAME_SIZE;
+
+    public Http2Codec() {}
+
+    public Http2Codec(int headerLimit, int bodyLimit) {
+        this.headerLimit = headerLimit;
+        this.bodyLimit = bodyLimit;
+    }
 
     private ByteBuf allocate(NioSocketChannel channel, int capacity) {
         return channel.allocator().allocate(capacity);
@@ -132,63 +136,37 @@ public class Http2Codec implements ProtocolCodec {
 
     @Override
     public void encode(NioSocketChannel channel, ChannelFuture future) throws IOException {
-        ByteBufAllocator allocator = channel.allocator();
-        Http2Frame frame = (Http2Frame) future;
-        Http2FrameType frameType = frame.getHttp2FrameType();
-        byte[] payload = null;
-        switch (frameType) {
-            case FRAME_TYPE_CONTINUATION:
-                break;
-            case FRAME_TYPE_DATA:
-                break;
-            case FRAME_TYPE_FRAME_HEADER:
-                break;
-            case FRAME_TYPE_GOAWAY:
-                break;
-            case FRAME_TYPE_HEADERS:
-                Http2HeadersFrame hf = (Http2HeadersFrame) frame;
-                //          http2HeadersEncoder.encodeHeaders(headers, buffer);
-                break;
-            case FRAME_TYPE_PING:
-                break;
-            case FRAME_TYPE_PREFACE:
-                break;
-            case FRAME_TYPE_PRIORITY:
-                break;
-            case FRAME_TYPE_PUSH_PROMISE:
-                break;
-            case FRAME_TYPE_RST_STREAM:
-                break;
-            case FRAME_TYPE_SETTINGS:
-                Http2SettingsFrame sf = (Http2SettingsFrame) frame;
-                long[] settings = sf.getSettings();
-                payload = new byte[6 * 6];
-                for (int i = 0; i < 6; i++) {
-                    int realI = i + 1;
-                    int offset = i * 6;
-                    MathUtil.unsignedShort2Byte(payload, realI, offset);
-                    MathUtil.unsignedInt2Byte(payload, settings[realI], offset + 2);
-                }
-                break;
-            case FRAME_TYPE_WINDOW_UPDATE:
-                break;
-            default:
-                break;
+        if (!(future instanceof ServerHttp2Future)) {
+            throw new IOException("unsupported future: " + future.getClass().getName());
         }
-        int length = payload.length;
-        ByteBuf buf = allocator.allocate(length + PROTOCOL_HEADER);
-        byte b2 = (byte) ((length & 0xff));
-        byte b1 = (byte) ((length >> 8 * 1) & 0xff);
-        byte b0 = (byte) ((length >> 8 * 2) & 0xff);
-        byte b3 = frameType.getByteValue();
-        buf.putByte(b0);
-        buf.putByte(b1);
-        buf.putByte(b2);
-        buf.putByte(b3);
-        buf.putByte((byte) 0);
-        buf.putInt(frame.getHeader().getStreamIdentifier());
-        buf.put(payload);
-        future.setByteBuf(buf.flip());
+        // 控制帧由Http2Connection直接写出，这里只编码响应
+        ServerHttp2Future f = (ServerHttp2Future) future;
+        Http2SocketSession session = (Http2SocketSession) channel.getSession();
+        f.setByteBuf(session.getConnection().encode(f));
+    }
+
+    public int getBodyLimit() {
+        return bodyLimit;
+    }
+
+    public int getConnectionWindowSize() {
+        return connectionWindowSize;
+    }
+
+    public int getHeaderLimit() {
+        return headerLimit;
+    }
+
+    public int getInitialWindowSize() {
+        return initialWindowSize;
+    }
+
+    public int getMaxConcurrentStreams() {
+        return maxConcurrentStreams;
+    }
+
+    public int getMaxFrameSize() {
+        return maxFrameSize;
     }
 
     @Override
@@ -199,4 +177,38 @@ public class Http2Codec implements ProtocolCodec {
     @Override
     public void initialize(ChannelContext context) {}
 
+    public void setBodyLimit(int bodyLimit) {
+        this.bodyLimit = bodyLimit;
+    }
+
+    /**
+     * 连接级别的接收窗口，不小于65535
+     */
+    public void setConnectionWindowSize(int connectionWindowSize) {
+        this.connectionWindowSize = Math.max(connectionWindowSize,
+                Http2Connection.DEFAULT_WINDOW_SIZE);
+    }
+
+    public void setHeaderLimit(int headerLimit) {
+        this.headerLimit = headerLimit;
+    }
+
+    public void setInitialWindowSize(int initialWindowSize) {
+        this.initialWindowSize = initialWindowSize;
+    }
+
+    public void setMaxConcurrentStreams(int maxConcurrentStreams) {
+        this.maxConcurrentStreams = maxConcurrentStreams;
+    }
+
+    /**
+     * 取值范围[16384, 16777215]
+     */
+    public void setMaxFrameSize(int maxFrameSize) {
+        if (maxFrameSize < Http2Connection.DEFAULT_FRAME_SIZE || maxFrameSize > 0xFFFFFF) {
+            throw new IllegalArgumentException("maxFrameSize: " + maxFrameSize);
+        }
+        this.maxFrameSize = maxFrameSize;
+    }
+
 }
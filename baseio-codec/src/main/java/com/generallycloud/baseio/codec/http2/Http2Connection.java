@@ -0,0 +1,709 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.codec.http2;
+
+import static com.generallycloud.baseio.codec.http2.future.Http2SettingsFrame.SETTINGS_ENABLE_PUSH;
+import static com.generallycloud.baseio.codec.http2.future.Http2SettingsFrame.SETTINGS_INITIAL_WINDOW_SIZE;
+import static com.generallycloud.baseio.codec.http2.future.Http2SettingsFrame.SETTINGS_MAX_CONCURRENT_STREAMS;
+import static com.generallycloud.baseio.codec.http2.future.Http2SettingsFrame.SETTINGS_MAX_FRAME_SIZE;
+import static com.generallycloud.baseio.codec.http2.future.Http2SettingsFrame.SETTINGS_MAX_HEADER_LIST_SIZE;
+import static com.generallycloud.baseio.codec.http2.hpack.Http2Error.CANCEL;
+import static com.generallycloud.baseio.codec.http2.hpack.Http2Error.ENHANCE_YOUR_CALM;
+import static com.generallycloud.baseio.codec.http2.hpack.Http2Error.FLOW_CONTROL_ERROR;
+import static com.generallycloud.baseio.codec.http2.hpack.Http2Error.PROTOCOL_ERROR;
+import static com.generallycloud.baseio.codec.http2.hpack.Http2Error.REFUSED_STREAM;
+import static com.generallycloud.baseio.codec.http2.hpack.Http2Error.STREAM_CLOSED;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.generallycloud.baseio.buffer.ByteBuf;
+import com.generallycloud.baseio.buffer.UnpooledByteBufAllocator;
+import com.generallycloud.baseio.codec.http11.Cookie;
+import com.generallycloud.baseio.codec.http11.HttpHeader;
+import com.generallycloud.baseio.codec.http11.HttpHeaderDateFormat;
+import com.generallycloud.baseio.codec.http2.future.Http2ContinuationFrame;
+import com.generallycloud.baseio.codec.http2.future.Http2DataFrame;
+import com.generallycloud.baseio.codec.http2.future.Http2Frame;
+import com.generallycloud.baseio.codec.http2.future.Http2FrameType;
+import com.generallycloud.baseio.codec.http2.future.Http2HeadersFrame;
+import com.generallycloud.baseio.codec.http2.future.Http2PingFrame;
+import com.generallycloud.baseio.codec.http2.future.Http2SettingsFrame;
+import com.generallycloud.baseio.codec.http2.future.Http2WindowUpdateFrame;
+import com.generallycloud.baseio.codec.http2.hpack.Decoder;
+import com.generallycloud.baseio.codec.http2.hpack.Encoder;
+import com.generallycloud.baseio.codec.http2.hpack.Http2Exception;
+import com.generallycloud.baseio.codec.http2.hpack.Http2HeadersEncoder;
+import com.generallycloud.baseio.codec.http2.hpack.Http2HeadersImpl;
+import com.generallycloud.baseio.collection.IntObjectHashMap;
+import com.generallycloud.baseio.common.ReleaseUtil;
+import com.generallycloud.baseio.component.ByteArrayOutputStream;
+import com.generallycloud.baseio.component.NioSocketChannel;
+import com.generallycloud.baseio.protocol.ChannelFuture;
+import com.generallycloud.baseio.protocol.DefaultChannelFuture;
+
+/**
+ * http2连接级别的状态：HPACK上下文，stream，连接及stream的流量控制窗口。
+ * 帧均在event loop中处理，响应的encode可能发生在业务线程，因此涉及stream
+ * 及窗口的操作均需持有该对象的锁
+ * 
+ * @author wangkai
+ *
+ */
+public class Http2Connection {
+
+    public static final int          DEFAULT_WINDOW_SIZE = 65535;
+    public static final int          DEFAULT_FRAME_SIZE  = 16384;
+    private static final int         FRAME_HEADER        = Http2Codec.PROTOCOL_HEADER;
+    private static final Set<String> CONNECTION_HEADERS  = new HashSet<>();
+
+    static {
+        CONNECTION_HEADERS.add("connection");
+        CONNECTION_HEADERS.add("content-length");
+        CONNECTION_HEADERS.add("keep-alive");
+        CONNECTION_HEADERS.add("proxy-connection");
+        CONNECTION_HEADERS.add("transfer-encoding");
+        CONNECTION_HEADERS.add("upgrade");
+    }
+
+    private final NioSocketChannel              channel;
+    private final Http2Codec                    codec;
+    private final Decoder                       decoder      = new Decoder();
+    // 不使用动态表，header block之间互不依赖，可以在任意线程encode
+    private final Encoder                       encoder      = new Encoder(true, 16, 0);
+    private final IntObjectHashMap<Http2Stream> streams      = new IntObjectHashMap<>();
+    // 对端的settings，以key为下标
+    private final long[]                        settings     = { 0, 4096, 1, Integer.MAX_VALUE,
+            DEFAULT_WINDOW_SIZE, DEFAULT_FRAME_SIZE, Integer.MAX_VALUE };
+    private final List<ChannelFuture>           readFutures  = new ArrayList<>(1);
+    private int                                 lastStreamId;
+    private int                                 sendWindow   = DEFAULT_WINDOW_SIZE;
+    private int                                 recvWindow   = DEFAULT_WINDOW_SIZE;
+    // 等待CONTINUATION的stream，0表示没有
+    private int                                 continuationStreamId;
+    private boolean                             continuationEndStream;
+    private ByteArrayOutputStream               headerBlock;
+
+    Http2Connection(Http2SocketSession session, Http2Codec codec) {
+        this.channel = session.unsafe();
+        this.codec = codec;
+    }
+
+    /**
+     * 收到客户端的connection preface后写出服务端的SETTINGS
+     */
+    public void onPreface() throws IOException {
+        decoder.setMaxHeaderListSize(codec.getHeaderLimit());
+        int length = 6 * 3;
+        if (codec.getMaxFrameSize() != DEFAULT_FRAME_SIZE) {
+            length += 6;
+        }
+        int increment = codec.getConnectionWindowSize() - DEFAULT_WINDOW_SIZE;
+        ByteBuf buf = allocate(FRAME_HEADER + length + FRAME_HEADER + 4);
+        putFrameHeader(buf, length, Http2FrameType.FRAME_TYPE_SETTINGS, 0, 0);
+        putSetting(buf, SETTINGS_MAX_CONCURRENT_STREAMS, codec.getMaxConcurrentStreams());
+        putSetting(buf, SETTINGS_INITIAL_WINDOW_SIZE, codec.getInitialWindowSize());
+        putSetting(buf, SETTINGS_MAX_HEADER_LIST_SIZE, codec.getHeaderLimit());
+        if (codec.getMaxFrameSize() != DEFAULT_FRAME_SIZE) {
+            putSetting(buf, SETTINGS_MAX_FRAME_SIZE, codec.getMaxFrameSize());
+        }
+        if (increment > 0) {
+            putFrameHeader(buf, 4, Http2FrameType.FRAME_TYPE_WINDOW_UPDATE, 0, 0);
+            buf.putInt(increment);
+        }
+        synchronized (this) {
+            recvWindow = codec.getConnectionWindowSize();
+        }
+        flush(buf);
+    }
+
+    public void onFrame(Http2Frame frame) throws IOException {
+        ServerHttp2Future future;
+        synchronized (this) {
+            future = handleFrame(frame);
+        }
+        if (future != null) {
+            // 请求接收完整，交给IoEventHandle处理
+            readFutures.add(future);
+            channel.getContext().getForeFutureAcceptor().accept(channel.getSession(),
+                    readFutures);
+        }
+    }
+
+    /**
+     * stream级别的错误写出RST_STREAM，连接级别的错误写出GOAWAY后关闭连接
+     */
+    public void onError(Http2Exception e) throws IOException {
+        if (Http2Exception.isStreamError(e)) {
+            resetStream(Http2Exception.streamId(e), e.error().code());
+            return;
+        }
+        int lastStreamId;
+        synchronized (this) {
+            lastStreamId = this.lastStreamId;
+        }
+        ByteBuf buf = allocate(FRAME_HEADER + 8);
+        putFrameHeader(buf, 8, Http2FrameType.FRAME_TYPE_GOAWAY, 0, 0);
+        buf.putInt(lastStreamId);
+        buf.putInt((int) e.error().code());
+        flush(buf);
+        throw e;
+    }
+
+    private ServerHttp2Future handleFrame(Http2Frame frame) throws IOException {
+        Http2FrameType type = frame.getHttp2FrameType();
+        int streamId = frame.getHeader().getStreamIdentifier();
+        if (continuationStreamId != 0 && (type != Http2FrameType.FRAME_TYPE_CONTINUATION
+                || streamId != continuationStreamId)) {
+            throw Http2Exception.connectionError(PROTOCOL_ERROR, "continuation expected");
+        }
+        if (type == null) {
+            // 忽略未知类型的帧
+            return null;
+        }
+        switch (type) {
+            case FRAME_TYPE_DATA:
+                return onData((Http2DataFrame) frame, streamId);
+            case FRAME_TYPE_HEADERS:
+                return onHeaders((Http2HeadersFrame) frame, streamId);
+            case FRAME_TYPE_CONTINUATION:
+                return onContinuation((Http2ContinuationFrame) frame, streamId);
+            case FRAME_TYPE_PRIORITY:
+                // 不支持优先级，忽略
+                checkStreamId(streamId);
+                return null;
+            case FRAME_TYPE_RST_STREAM:
+                onRstStream(streamId);
+                return null;
+            case FRAME_TYPE_SETTINGS:
+                onSettings((Http2SettingsFrame) frame, streamId);
+                return null;
+            case FRAME_TYPE_PUSH_PROMISE:
+                throw Http2Exception.connectionError(PROTOCOL_ERROR, "push promise from client");
+            case FRAME_TYPE_PING:
+                onPing((Http2PingFrame) frame, streamId);
+                return null;
+            case FRAME_TYPE_GOAWAY:
+                // 对端处理完已有的stream后会关闭连接
+                checkConnectionStreamId(streamId);
+                return null;
+            case FRAME_TYPE_WINDOW_UPDATE:
+                onWindowUpdate((Http2WindowUpdateFrame) frame, streamId);
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private ServerHttp2Future onData(Http2DataFrame frame, int streamId) throws IOException {
+        checkStreamId(streamId);
+        int length = frame.getFlowControlledLength();
+        recvWindow -= length;
+        if (recvWindow < 0) {
+            throw Http2Exception.connectionError(FLOW_CONTROL_ERROR, "connection window");
+        }
+        // 已关闭的stream上的DATA也需要归还连接窗口
+        updateRecvWindow();
+        Http2Stream stream = streams.get(streamId);
+        if (stream == null || stream.remoteClosed) {
+            checkIdleStream(streamId);
+            throw Http2Exception.streamError(streamId, STREAM_CLOSED, "stream closed");
+        }
+        stream.recvWindow -= length;
+        if (stream.recvWindow < 0) {
+            throw Http2Exception.streamError(streamId, FLOW_CONTROL_ERROR, "stream window");
+        }
+        ByteBuf data = frame.getData();
+        stream.bodyLength += data.remaining();
+        if (stream.contentLength != -1 && stream.bodyLength > stream.contentLength) {
+            throw Http2Exception.streamError(streamId, PROTOCOL_ERROR, "content-length");
+        }
+        if (data.hasRemaining()) {
+            try {
+                stream.future.onBody(channel, data);
+            } catch (Http2Exception e) {
+                throw e;
+            } catch (IOException e) {
+                throw Http2Exception.streamError(streamId, CANCEL, e, e.getMessage());
+            }
+        }
+        if (frame.isEndStream()) {
+            return endStream(stream);
+        }
+        // stream窗口消耗过半时归还
+        int initialWindowSize = codec.getInitialWindowSize();
+        if (stream.recvWindow <= initialWindowSize >> 1) {
+            writeWindowUpdate(streamId, initialWindowSize - stream.recvWindow);
+            stream.recvWindow = initialWindowSize;
+        }
+        return null;
+    }
+
+    private ServerHttp2Future onHeaders(Http2HeadersFrame frame, int streamId)
+            throws IOException {
+        checkStreamId(streamId);
+        ByteBuf fragment = frame.getFragment();
+        if (!frame.isEndHeaders()) {
+            continuationStreamId = streamId;
+            continuationEndStream = frame.isEndStream();
+            headerBlock = new ByteArrayOutputStream(Math.max(fragment.remaining(), 256));
+            appendHeaderBlock(fragment);
+            return null;
+        }
+        return onHeaderBlock(streamId, fragment, frame.isEndStream());
+    }
+
+    private ServerHttp2Future onContinuation(Http2ContinuationFrame frame, int streamId)
+            throws IOException {
+        if (continuationStreamId == 0) {
+            throw Http2Exception.connectionError(PROTOCOL_ERROR, "unexpected continuation");
+        }
+        appendHeaderBlock(frame.getFragment());
+        if (!frame.isEndHeaders()) {
+            return null;
+        }
+        ByteArrayOutputStream block = headerBlock;
+        boolean endStream = continuationEndStream;
+        continuationStreamId = 0;
+        headerBlock = null;
+        ByteBuf buf = UnpooledByteBufAllocator.getHeap()
+                .wrap(ByteBuffer.wrap(block.array(), 0, block.size()));
+        return onHeaderBlock(streamId, buf, endStream);
+    }
+
+    private void appendHeaderBlock(ByteBuf fragment) throws IOException {
+        if (headerBlock.size() + fragment.remaining() > codec.getHeaderLimit()) {
+            throw Http2Exception.connectionError(ENHANCE_YOUR_CALM, "max header block %d",
+                    codec.getHeaderLimit());
+        }
+        byte[] array = new byte[fragment.remaining()];
+        fragment.get(array);
+        headerBlock.write(array);
+    }
+
+    private ServerHttp2Future onHeaderBlock(int streamId, ByteBuf block, boolean endStream)
+            throws IOException {
+        // 无论stream是否有效都需要解码以保持HPACK上下文一致
+        Http2HeadersImpl headers = new Http2HeadersImpl();
+        decoder.decode(streamId, block, headers);
+        Http2Stream stream = streams.get(streamId);
+        if (stream != null) {
+            // trailer，忽略其中的header
+            if (stream.remoteClosed) {
+                throw Http2Exception.streamError(streamId, STREAM_CLOSED, "stream closed");
+            }
+            if (!endStream) {
+                throw Http2Exception.streamError(streamId, PROTOCOL_ERROR, "illegal trailer");
+            }
+            return endStream(stream);
+        }
+        if ((streamId & 1) == 0) {
+            throw Http2Exception.connectionError(PROTOCOL_ERROR, "illegal stream id %d",
+                    streamId);
+        }
+        if (streamId <= lastStreamId) {
+            throw Http2Exception.connectionError(STREAM_CLOSED, "stream closed %d", streamId);
+        }
+        lastStreamId = streamId;
+        if (streams.size() >= codec.getMaxConcurrentStreams()) {
+            throw Http2Exception.streamError(streamId, REFUSED_STREAM, "max concurrent streams");
+        }
+        if (headers.method() == null || headers.path() == null) {
+            throw Http2Exception.streamError(streamId, PROTOCOL_ERROR, "missing pseudo header");
+        }
+        ServerHttp2Future future = new ServerHttp2Future(channel, this, streamId,
+                codec.getBodyLimit());
+        future.setHttp2Headers(headers);
+        stream = new Http2Stream(streamId, future,
+                (int) settings[SETTINGS_INITIAL_WINDOW_SIZE], codec.getInitialWindowSize());
+        streams.put(streamId, stream);
+        if (endStream) {
+            stream.remoteClosed = true;
+            return future;
+        }
+        String contentLength = future.getRequestHeader(HttpHeader.Req_Content_Length);
+        if (contentLength != null) {
+            try {
+                stream.contentLength = Integer.parseInt(contentLength.trim());
+            } catch (NumberFormatException e) {
+                throw Http2Exception.streamError(streamId, PROTOCOL_ERROR, "content-length");
+            }
+        }
+        future.onBodyStart(channel, Math.max(stream.contentLength, 0));
+        return null;
+    }
+
+    private ServerHttp2Future endStream(Http2Stream stream) throws IOException {
+        if (stream.contentLength != -1 && stream.bodyLength != stream.contentLength) {
+            throw Http2Exception.streamError(stream.id, PROTOCOL_ERROR, "content-length");
+        }
+        stream.remoteClosed = true;
+        stream.future.onBodyComplete(channel);
+        if (stream.localClosed) {
+            streams.remove(stream.id);
+        }
+        return stream.future;
+    }
+
+    private void onRstStream(int streamId) throws IOException {
+        checkStreamId(streamId);
+        checkIdleStream(streamId);
+        Http2Stream stream = streams.remove(streamId);
+        if (stream != null) {
+            closeStream(stream);
+        }
+    }
+
+    private void onSettings(Http2SettingsFrame frame, int streamId) throws IOException {
+        checkConnectionStreamId(streamId);
+        if (frame.isAck()) {
+            return;
+        }
+        long[] values = frame.getSettings();
+        long enablePush = values[SETTINGS_ENABLE_PUSH];
+        if (enablePush > 1) {
+            throw Http2Exception.connectionError(PROTOCOL_ERROR, "enable push %d", enablePush);
+        }
+        long maxFrameSize = values[SETTINGS_MAX_FRAME_SIZE];
+        if (maxFrameSize != -1
+                && (maxFrameSize < DEFAULT_FRAME_SIZE || maxFrameSize > 0xFFFFFF)) {
+            throw Http2Exception.connectionError(PROTOCOL_ERROR, "max frame size %d",
+                    maxFrameSize);
+        }
+        long windowSize = values[SETTINGS_INITIAL_WINDOW_SIZE];
+        if (windowSize > Integer.MAX_VALUE) {
+            throw Http2Exception.connectionError(FLOW_CONTROL_ERROR, "window size %d",
+                    windowSize);
+        }
+        int delta = 0;
+        if (windowSize != -1) {
+            delta = (int) (windowSize - settings[SETTINGS_INITIAL_WINDOW_SIZE]);
+            for (Http2Stream stream : streams.values()) {
+                long window = (long) stream.sendWindow + delta;
+                if (window > Integer.MAX_VALUE) {
+                    throw Http2Exception.connectionError(FLOW_CONTROL_ERROR, "window overflow");
+                }
+                stream.sendWindow = (int) window;
+            }
+        }
+        // HEADER_TABLE_SIZE不影响不使用动态表的encoder
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] != -1) {
+                settings[i] = values[i];
+            }
+        }
+        ByteBuf buf = allocate(FRAME_HEADER);
+        putFrameHeader(buf, 0, Http2FrameType.FRAME_TYPE_SETTINGS, Http2SettingsFrame.FLAG_ACK,
+                0);
+        flush(buf);
+        if (delta > 0) {
+            flushPending();
+        }
+    }
+
+    private void onPing(Http2PingFrame frame, int streamId) throws IOException {
+        checkConnectionStreamId(streamId);
+        if (frame.isAck()) {
+            return;
+        }
+        ByteBuf buf = allocate(FRAME_HEADER + 8);
+        putFrameHeader(buf, 8, Http2FrameType.FRAME_TYPE_PING, Http2PingFrame.FLAG_ACK, 0);
+        buf.put(frame.getOpaqueData());
+        flush(buf);
+    }
+
+    private void onWindowUpdate(Http2WindowUpdateFrame frame, int streamId) throws IOException {
+        int increment = frame.getUpdateValue();
+        if (increment == 0) {
+            // 流0上的错误只能是连接错误(RFC 7540 6.9)，需要GOAWAY
+            if (streamId == 0) {
+                throw Http2Exception.connectionError(PROTOCOL_ERROR, "window increment 0");
+            }
+            throw Http2Exception.streamError(streamId, PROTOCOL_ERROR, "window increment 0");
+        }
+        if (streamId == 0) {
+            long window = (long) sendWindow + increment;
+            if (window > Integer.MAX_VALUE) {
+                throw Http2Exception.connectionError(FLOW_CONTROL_ERROR, "window overflow");
+            }
+            sendWindow = (int) window;
+        } else {
+            Http2Stream stream = streams.get(streamId);
+            if (stream == null) {
+                checkIdleStream(streamId);
+                return;
+            }
+            long window = (long) stream.sendWindow + increment;
+            if (window > Integer.MAX_VALUE) {
+                throw Http2Exception.streamError(streamId, FLOW_CONTROL_ERROR,
+                        "window overflow");
+            }
+            stream.sendWindow = (int) window;
+        }
+        flushPending();
+    }
+
+    /**
+     * 编码响应：HEADERS(及CONTINUATION)帧，以及发送窗口允许的DATA帧，
+     * 剩余的body在响应写出且窗口更新后继续写出
+     */
+    synchronized ByteBuf encode(ServerHttp2Future f) throws IOException {
+        int streamId = f.getStreamId();
+        Http2Stream stream = streams.get(streamId);
+        if (stream == null || stream.localClosed) {
+            throw new IOException("http2 stream closed: " + streamId);
+        }
+        if (f.isChunkedResponse() || f.getFileRegionLength() > 0) {
+            throw new IOException("chunked or file region response unsupported in http2");
+        }
+        byte[] array = null;
+        int length = 0;
+        if (f.getBinaryBuffer() != null) {
+            array = f.getBinaryBuffer().array();
+            length = f.getBinaryBuffer().size();
+        } else if (f.getWriteSize() > 0) {
+            array = f.getWriteBuffer();
+            length = f.getWriteSize();
+        }
+        Http2HeadersImpl headers = new Http2HeadersImpl();
+        headers.status(String.valueOf(f.getStatus().getStatus()));
+        f.setResponseHeader(HttpHeader.Date,
+                HttpHeaderDateFormat.getFormat().format(System.currentTimeMillis()));
+        int capacity = 64;
+        for (Entry<String, String> header : f.getResponseHeaders().entrySet()) {
+            String name = header.getKey().toLowerCase();
+            if (CONNECTION_HEADERS.contains(name)) {
+                continue;
+            }
+            headers.add(name, header.getValue());
+            capacity += (name.length() + header.getValue().length()) * 2 + 12;
+        }
+        if (f.getCookieList() != null) {
+            for (Cookie c : f.getCookieList()) {
+                String value = c.toString();
+                headers.add("set-cookie", value);
+                capacity += value.length() * 2 + 24;
+            }
+        }
+        headers.add(HttpHeader.Req_Content_Length, String.valueOf(length));
+        ByteBuf block = allocate(capacity);
+        try {
+            encoder.encodeHeaders(streamId, block, headers,
+                    Http2HeadersEncoder.NEVER_SENSITIVE);
+            block.flip();
+            int maxFrameSize = (int) settings[SETTINGS_MAX_FRAME_SIZE];
+            int blockSize = block.remaining();
+            int headerFrames = Math.max(1, (blockSize + maxFrameSize - 1) / maxFrameSize);
+            int sendable = Math.max(0, Math.min(length, Math.min(sendWindow, stream.sendWindow)));
+            int dataFrames = (sendable + maxFrameSize - 1) / maxFrameSize;
+            ByteBuf buf = allocate(
+                    (headerFrames + dataFrames) * FRAME_HEADER + blockSize + sendable);
+            Http2FrameType type = Http2FrameType.FRAME_TYPE_HEADERS;
+            for (;;) {
+                int frameSize = Math.min(block.remaining(), maxFrameSize);
+                int flags = 0;
+                if (type == Http2FrameType.FRAME_TYPE_HEADERS && length == 0) {
+                    flags |= Http2HeadersFrame.FLAG_END_STREAM;
+                }
+                if (frameSize == block.remaining()) {
+                    flags |= Http2HeadersFrame.FLAG_END_HEADERS;
+                }
+                putFrameHeader(buf, frameSize, type, flags, streamId);
+                int limit = block.limit();
+                block.limit(block.position() + frameSize);
+                buf.read(block);
+                block.limit(limit);
+                if (!block.hasRemaining()) {
+                    break;
+                }
+                type = Http2FrameType.FRAME_TYPE_CONTINUATION;
+            }
+            putData(buf, streamId, array, 0, sendable, length);
+            sendWindow -= sendable;
+            stream.sendWindow -= sendable;
+            if (sendable < length) {
+                stream.pendingArray = array;
+                stream.pendingOffset = sendable;
+                stream.pendingEnd = length;
+            } else {
+                closeLocal(stream);
+            }
+            return buf.flip();
+        } finally {
+            ReleaseUtil.release(block);
+        }
+    }
+
+    /**
+     * 响应写出(或写出失败)后调用，此后才能写出该stream剩余的DATA
+     */
+    synchronized void onResponseReleased(int streamId) {
+        Http2Stream stream = streams.get(streamId);
+        if (stream == null || stream.pendingArray == null || stream.pendingReady) {
+            return;
+        }
+        stream.pendingReady = true;
+        flushPending();
+    }
+
+    private void flushPending() {
+        if (sendWindow <= 0 || !channel.isOpened()) {
+            return;
+        }
+        int maxFrameSize = (int) settings[SETTINGS_MAX_FRAME_SIZE];
+        List<Http2Stream> completed = null;
+        for (Http2Stream stream : streams.values()) {
+            if (stream.pendingArray == null || !stream.pendingReady || stream.sendWindow <= 0) {
+                continue;
+            }
+            int remaining = stream.pendingEnd - stream.pendingOffset;
+            int sendable = Math.min(remaining, Math.min(sendWindow, stream.sendWindow));
+            int frames = (sendable + maxFrameSize - 1) / maxFrameSize;
+            ByteBuf buf = allocate(frames * FRAME_HEADER + sendable);
+            putData(buf, stream.id, stream.pendingArray, stream.pendingOffset, sendable,
+                    stream.pendingEnd);
+            flush(buf);
+            sendWindow -= sendable;
+            stream.sendWindow -= sendable;
+            stream.pendingOffset += sendable;
+            if (stream.pendingOffset == stream.pendingEnd) {
+                if (completed == null) {
+                    completed = new ArrayList<>();
+                }
+                completed.add(stream);
+            }
+            if (sendWindow <= 0) {
+                break;
+            }
+        }
+        if (completed != null) {
+            for (Http2Stream stream : completed) {
+                stream.pendingArray = null;
+                closeLocal(stream);
+            }
+        }
+    }
+
+    /**
+     * 写出array中[offset, offset + length)的DATA帧，写到end时设置END_STREAM
+     */
+    private void putData(ByteBuf buf, int streamId, byte[] array, int offset, int length,
+            int end) {
+        int maxFrameSize = (int) settings[SETTINGS_MAX_FRAME_SIZE];
+        int limit = offset + length;
+        for (; offset < limit;) {
+            int frameSize = Math.min(limit - offset, maxFrameSize);
+            int flags = offset + frameSize == end ? Http2DataFrame.FLAG_END_STREAM : 0;
+            putFrameHeader(buf, frameSize, Http2FrameType.FRAME_TYPE_DATA, flags, streamId);
+            buf.put(array, offset, frameSize);
+            offset += frameSize;
+        }
+    }
+
+    private void closeLocal(Http2Stream stream) {
+        stream.localClosed = true;
+        if (stream.remoteClosed) {
+            streams.remove(stream.id);
+        }
+    }
+
+    private void closeStream(Http2Stream stream) {
+        stream.pendingArray = null;
+        if (!stream.remoteClosed) {
+            // 请求未接收完整，删除可能存在的临时文件
+            stream.remoteClosed = true;
+            stream.future.release(channel.getEventLoop());
+        }
+    }
+
+    private void resetStream(int streamId, long errorCode) {
+        synchronized (this) {
+            Http2Stream stream = streams.remove(streamId);
+            if (stream != null) {
+                closeStream(stream);
+            }
+        }
+        ByteBuf buf = allocate(FRAME_HEADER + 4);
+        putFrameHeader(buf, 4, Http2FrameType.FRAME_TYPE_RST_STREAM, 0, streamId);
+        buf.putInt((int) errorCode);
+        flush(buf);
+    }
+
+    private void updateRecvWindow() {
+        int windowSize = codec.getConnectionWindowSize();
+        if (recvWindow <= windowSize >> 1) {
+            writeWindowUpdate(0, windowSize - recvWindow);
+            recvWindow = windowSize;
+        }
+    }
+
+    private void writeWindowUpdate(int streamId, int increment) {
+        ByteBuf buf = allocate(FRAME_HEADER + 4);
+        putFrameHeader(buf, 4, Http2FrameType.FRAME_TYPE_WINDOW_UPDATE, 0, streamId);
+        buf.putInt(increment);
+        flush(buf);
+    }
+
+    private void checkStreamId(int streamId) throws Http2Exception {
+        if (streamId == 0) {
+            throw Http2Exception.connectionError(PROTOCOL_ERROR, "illegal stream id 0");
+        }
+    }
+
+    private void checkConnectionStreamId(int streamId) throws Http2Exception {
+        if (streamId != 0) {
+            throw Http2Exception.connectionError(PROTOCOL_ERROR, "illegal stream id %d",
+                    streamId);
+        }
+    }
+
+    private void checkIdleStream(int streamId) throws Http2Exception {
+        if (streamId > lastStreamId) {
+            throw Http2Exception.connectionError(PROTOCOL_ERROR, "idle stream %d", streamId);
+        }
+    }
+
+    private ByteBuf allocate(int capacity) {
+        return channel.allocator().allocate(capacity);
+    }
+
+    private void flush(ByteBuf buf) {
+        ChannelFuture future = new DefaultChannelFuture(buf.flip(),
+                channel.getContext().isEnableSsl());
+        channel.flushChannelFuture(future);
+    }
+
+    private static void putSetting(ByteBuf buf, int key, long value) {
+        buf.putShort((short) key);
+        buf.putInt((int) value);
+    }
+
+    private static void putFrameHeader(ByteBuf buf, int length, Http2FrameType type, int flags,
+            int streamId) {
+        buf.putByte((byte) (length >>> 16));
+        buf.putByte((byte) (length >>> 8));
+        buf.putByte((byte) length);
+        buf.putByte(type.getByteValue());
+        buf.putByte((byte) flags);
+        buf.putInt(streamId);
+    }
+
+}
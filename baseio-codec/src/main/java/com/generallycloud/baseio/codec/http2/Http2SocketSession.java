@@ -15,21 +15,17 @@
  */
 package com.generallycloud.baseio.codec.http2;
 
-import com.generallycloud.baseio.codec.http2.hpack.Http2Headers;
 import com.generallycloud.baseio.component.SocketSession;
 
 public interface Http2SocketSession extends SocketSession {
 
-    public abstract long getSettings(int i);
-
-    public abstract long[] getSettings();
-
-    public abstract void setSettings(int key, long value);
+    /**
+     * 连接级别的状态（HPACK，stream，流量控制窗口等）
+     */
+    public abstract Http2Connection getConnection();
 
     public abstract boolean isPrefaceRead();
 
-    public abstract Http2Headers getHttp2Headers();
-
     public abstract void setPrefaceRead(boolean prefaceRead);
 
 }
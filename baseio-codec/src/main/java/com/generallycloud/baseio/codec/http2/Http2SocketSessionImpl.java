@@ -15,8 +15,6 @@
  */
 package com.generallycloud.baseio.codec.http2;
 
-import com.generallycloud.baseio.codec.http2.hpack.Http2Headers;
-import com.generallycloud.baseio.codec.http2.hpack.Http2HeadersImpl;
 import com.generallycloud.baseio.component.NioSocketChannel;
 import com.generallycloud.baseio.component.SocketSessionImpl;
 
@@ -26,30 +24,17 @@ public class Http2SocketSessionImpl extends SocketSessionImpl implements Http2So
         super(channel);
     }
 
-    private boolean      prefaceRead  = true;
+    private boolean         prefaceRead = true;
 
-    private long[]       settings     = new long[] { 0, 4096, 1, 128, 65535, 16384, 0 };
-
-    private Http2Headers http2Headers = new Http2HeadersImpl();
-
-    @Override
-    public long getSettings(int i) {
-        return settings[i];
-    }
-
-    @Override
-    public void setSettings(int key, long value) {
-        settings[key] = value;
-    }
-
-    @Override
-    public long[] getSettings() {
-        return settings;
-    }
+    private Http2Connection connection;
 
     @Override
-    public Http2Headers getHttp2Headers() {
-        return http2Headers;
+    public Http2Connection getConnection() {
+        // ALPN协商前codec可能为http1.1，用到时才创建
+        if (connection == null) {
+            connection = new Http2Connection(this, (Http2Codec) getProtocolCodec());
+        }
+        return connection;
     }
 
     @Override
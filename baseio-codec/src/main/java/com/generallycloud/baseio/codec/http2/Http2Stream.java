@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.codec.http2;
+
+/**
+ * 服务端stream的状态，由Http2Connection加锁访问
+ * 
+ * @author wangkai
+ *
+ */
+class Http2Stream {
+
+    final int               id;
+    final ServerHttp2Future future;
+    // 请求中的content-length，-1表示未知
+    int                     contentLength = -1;
+    long                    bodyLength;
+    int                     recvWindow;
+    int                     sendWindow;
+    // 对端已发送END_STREAM
+    boolean                 remoteClosed;
+    // 响应已全部写出
+    boolean                 localClosed;
+    // 受发送窗口限制尚未写出的响应body
+    byte[]                  pendingArray;
+    int                     pendingOffset;
+    int                     pendingEnd;
+    // 响应的HEADERS写出后才能继续写出剩余的DATA
+    boolean                 pendingReady;
+
+    Http2Stream(int id, ServerHttp2Future future, int sendWindow, int recvWindow) {
+        this.id = id;
+        this.future = future;
+        this.sendWindow = sendWindow;
+        this.recvWindow = recvWindow;
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.codec.http2;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.generallycloud.baseio.buffer.ByteBuf;
+import com.generallycloud.baseio.codec.http11.HttpHeader;
+import com.generallycloud.baseio.codec.http11.ServerHttpFuture;
+import com.generallycloud.baseio.codec.http2.hpack.Http2Headers;
+import com.generallycloud.baseio.component.NioEventLoop;
+import com.generallycloud.baseio.component.NioSocketChannel;
+
+/**
+ * http2 stream上的请求，与http1.1共用HttpFuture的接口，响应写出时由Http2Codec编码为
+ * HEADERS及DATA帧
+ * 
+ * @author wangkai
+ *
+ */
+public class ServerHttp2Future extends ServerHttpFuture {
+
+    public static final String    VERSION = "HTTP/2.0";
+
+    private final Http2Connection connection;
+    private final int             streamId;
+
+    ServerHttp2Future(NioSocketChannel channel, Http2Connection connection, int streamId,
+            int bodyLimit) {
+        super(channel.getContext());
+        this.connection = connection;
+        this.streamId = streamId;
+        this.setBodyLimit(bodyLimit);
+        this.setVersion(VERSION);
+    }
+
+    public int getStreamId() {
+        return streamId;
+    }
+
+    void setHttp2Headers(Http2Headers headers) {
+        Map<String, String> map = new HashMap<>();
+        for (Entry<String, String> header : headers) {
+            String name = header.getKey();
+            if (name.charAt(0) == ':') {
+                continue;
+            }
+            String value = header.getValue();
+            String old = map.get(name);
+            if (old != null) {
+                // 多个cookie以"; "连接，其它header以", "连接
+                value = old + (HttpHeader.Req_Cookie.equals(name) ? "; " : ", ")
+                        + value;
+            }
+            map.put(name, value);
+        }
+        String authority = headers.authority();
+        if (authority != null && !map.containsKey(HttpHeader.Req_Host)) {
+            map.put(HttpHeader.Req_Host, authority);
+        }
+        setRequestHeaders(map);
+        setMethod(headers.method());
+        setRequestURL(headers.path());
+        parseContentType(map.get(HttpHeader.Req_Content_Type));
+    }
+
+    void onBodyStart(NioSocketChannel channel, int contentLength) throws IOException {
+        startBody(channel, contentLength);
+    }
+
+    void onBody(NioSocketChannel channel, ByteBuf buf) throws IOException {
+        writeBody(channel, buf);
+    }
+
+    void onBodyComplete(NioSocketChannel channel) throws IOException {
+        if (hasBodyContent()) {
+            completeBody(channel);
+        }
+    }
+
+    @Override
+    protected boolean isRecyclable() {
+        return false;
+    }
+
+    @Override
+    public void release(NioEventLoop eventLoop) {
+        super.release(eventLoop);
+        // HEADERS已写出，可以继续写出受窗口限制的DATA
+        connection.onResponseReleased(streamId);
+    }
+
+}
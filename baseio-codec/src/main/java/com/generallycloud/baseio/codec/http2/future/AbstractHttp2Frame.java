@@ -15,6 +15,10 @@
  */
 package com.generallycloud.baseio.codec.http2.future;
 
+import java.io.IOException;
+
+import com.generallycloud.baseio.buffer.ByteBuf;
+import com.generallycloud.baseio.component.NioSocketChannel;
 import com.generallycloud.baseio.protocol.AbstractChannelFuture;
 
 public abstract class AbstractHttp2Frame extends AbstractChannelFuture implements SocketHttp2Frame {
@@ -25,9 +29,35 @@ public abstract class AbstractHttp2Frame extends AbstractChannelFuture implement
         this.header = header;
     }
 
+    protected AbstractHttp2Frame(ByteBuf buf, Http2FrameHeader header) {
+        this.header = header;
+        this.setByteBuf(buf);
+    }
+
     @Override
     public Http2FrameHeader getHeader() {
         return header;
     }
 
+    /**
+     * 读取完整的payload后解析，帧由Http2Connection在帧读取完成后处理
+     */
+    @Override
+    public boolean read(NioSocketChannel channel, ByteBuf buffer) throws IOException {
+        ByteBuf buf = getByteBuf();
+        buf.read(buffer);
+        if (buf.hasRemaining()) {
+            return false;
+        }
+        doComplete(channel, buf.flip());
+        return true;
+    }
+
+    protected abstract void doComplete(NioSocketChannel channel, ByteBuf buf) throws IOException;
+
+    @Override
+    public boolean isSilent() {
+        return true;
+    }
+
 }
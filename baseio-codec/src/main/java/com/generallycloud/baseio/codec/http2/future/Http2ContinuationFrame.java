@@ -0,0 +1,31 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.codec.http2.future;
+
+import com.generallycloud.baseio.buffer.ByteBuf;
+
+public interface Http2ContinuationFrame extends Http2Frame {
+
+    public static final int FLAG_END_HEADERS = 0x4;
+
+    public abstract boolean isEndHeaders();
+
+    /**
+     * header block fragment，仅在帧处理期间有效
+     */
+    public abstract ByteBuf getFragment();
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.codec.http2.future;
+
+import java.io.IOException;
+
+import com.generallycloud.baseio.buffer.ByteBuf;
+import com.generallycloud.baseio.component.NioSocketChannel;
+
+public class Http2DataFrameImpl extends AbstractHttp2Frame implements Http2DataFrame {
+
+    private boolean endStream;
+    private int     length;
+    private int     padLength;
+
+    public Http2DataFrameImpl(ByteBuf buf, Http2FrameHeader header) {
+        super(buf, header);
+    }
+
+    @Override
+    protected void doComplete(NioSocketChannel channel, ByteBuf buf) throws IOException {
+        byte flags = getHeader().getFlags();
+        this.endStream = (flags & FLAG_END_STREAM) != 0;
+        this.length = buf.limit();
+        if ((flags & FLAG_PADDED) != 0) {
+            padLength = Http2HeadersFrameImpl.readPadLength(buf);
+        }
+    }
+
+    @Override
+    public Http2FrameType getHttp2FrameType() {
+        return Http2FrameType.FRAME_TYPE_DATA;
+    }
+
+    @Override
+    public boolean isEndStream() {
+        return endStream;
+    }
+
+    @Override
+    public int getPadLength() {
+        return padLength;
+    }
+
+    @Override
+    public ByteBuf getData() {
+        return getByteBuf();
+    }
+
+    @Override
+    public int getFlowControlledLength() {
+        return length;
+    }
+
+}
@@ -15,9 +15,15 @@
  */
 package com.generallycloud.baseio.codec.http2.future;
 
+import static com.generallycloud.baseio.codec.http2.hpack.Http2Error.FRAME_SIZE_ERROR;
+
 import java.io.IOException;
 
 import com.generallycloud.baseio.buffer.ByteBuf;
+import com.generallycloud.baseio.buffer.EmptyByteBuf;
+import com.generallycloud.baseio.codec.http2.Http2Codec;
+import com.generallycloud.baseio.codec.http2.Http2SocketSession;
+import com.generallycloud.baseio.codec.http2.hpack.Http2Exception;
 import com.generallycloud.baseio.common.MathUtil;
 import com.generallycloud.baseio.component.NioEventLoop;
 import com.generallycloud.baseio.component.NioSocketChannel;
@@ -39,7 +45,7 @@ public class Http2FrameHeaderImpl extends AbstractChannelFuture implements Http2
 
     public Http2FrameHeaderImpl() {}
 
-    private void doHeaderComplete(NioSocketChannel channel, ByteBuf buf) {
+    private void doHeaderComplete(NioSocketChannel channel, ByteBuf buf) throws IOException {
         byte b0 = buf.getByte();
         byte b1 = buf.getByte();
         byte b2 = buf.getByte();
@@ -47,21 +53,34 @@ public class Http2FrameHeaderImpl extends AbstractChannelFuture implements Http2
         int type = buf.getUnsignedByte();
         this.flags = buf.getByte();
         this.streamIdentifier = MathUtil.int2int31(buf.getInt());
-        this.frame = genFrame(channel, type, length);
+        Http2Codec codec = (Http2Codec) channel.getProtocolCodec();
+        if (length > codec.getMaxFrameSize()) {
+            throw Http2Exception.connectionError(FRAME_SIZE_ERROR, "frame length %d", length);
+        }
+        this.frame = genFrame(channel, Http2FrameType.getValue(type), length);
     }
 
     @Override
     public boolean read(NioSocketChannel channel, ByteBuf buffer) throws IOException {
         ByteBuf buf = getByteBuf();
-        if (!header_complete) {
-            buf.read(buffer);
-            if (buf.hasRemaining()) {
+        Http2SocketSession session = (Http2SocketSession) channel.getSession();
+        try {
+            if (!header_complete) {
+                buf.read(buffer);
+                if (buf.hasRemaining()) {
+                    return false;
+                }
+                header_complete = true;
+                doHeaderComplete(channel, buf.flip());
+            }
+            if (!frame.read(channel, buffer)) {
                 return false;
             }
-            header_complete = true;
-            doHeaderComplete(channel, buf.flip());
+            session.getConnection().onFrame(frame);
+        } catch (Http2Exception e) {
+            session.getConnection().onError(e);
         }
-        return frame.read(channel, buffer);
+        return true;
     }
 
     @Override
@@ -71,7 +90,7 @@ public class Http2FrameHeaderImpl extends AbstractChannelFuture implements Http2
 
     @Override
     public boolean isSilent() {
-        return frame.isSilent();
+        return true;
     }
 
     @Override
@@ -89,47 +108,68 @@ public class Http2FrameHeaderImpl extends AbstractChannelFuture implements Http2
         return frame;
     }
 
-    private SocketHttp2Frame genFrame(NioSocketChannel channel, Http2FrameType type, int length) {
+    private SocketHttp2Frame genFrame(NioSocketChannel channel, Http2FrameType type, int length)
+            throws IOException {
+        if (type == null) {
+            // 忽略未知类型的帧
+            return new Http2RawFrameImpl(allocate(channel, length), this, null);
+        }
         switch (type) {
             case FRAME_TYPE_CONTINUATION:
-                break;
+                return new Http2ContinuationFrameImpl(allocate(channel, length), this);
             case FRAME_TYPE_DATA:
-                break;
+                return new Http2DataFrameImpl(allocate(channel, length), this);
             case FRAME_TYPE_GOAWAY:
-                break;
+                checkLength(type, length < 8);
+                return new Http2GoAwayFrameImpl(allocate(channel, length), this);
             case FRAME_TYPE_HEADERS:
                 return new Http2HeadersFrameImpl(allocate(channel, length), this);
             case FRAME_TYPE_PING:
-                break;
+                checkLength(type, length != 8);
+                return new Http2PingFrameImpl(allocate(channel, length), this);
             case FRAME_TYPE_PRIORITY:
-                break;
+                checkLength(type, length != 5);
+                return new Http2RawFrameImpl(allocate(channel, length), this, type);
             case FRAME_TYPE_PUSH_PROMISE:
-                break;
+                return new Http2RawFrameImpl(allocate(channel, length), this, type);
             case FRAME_TYPE_RST_STREAM:
-                break;
+                checkLength(type, length != 4);
+                return new Http2RstStreamFrameImpl(allocate(channel, length), this);
             case FRAME_TYPE_SETTINGS:
                 return new Http2SettingsFrameImpl(allocate(channel, length), this);
             case FRAME_TYPE_WINDOW_UPDATE:
+                checkLength(type, length != 4);
                 return new Http2WindowUpdateFrameImpl(allocate(channel, length), this);
             default:
-                break;
+                return new Http2RawFrameImpl(allocate(channel, length), this, null);
+        }
+    }
+
+    private void checkLength(Http2FrameType type, boolean illegal) throws Http2Exception {
+        if (illegal) {
+            throw Http2Exception.connectionError(FRAME_SIZE_ERROR, "illegal %s frame", type);
         }
-        throw new IllegalArgumentException(type.toString());
     }
 
-    private SocketHttp2Frame genFrame(NioSocketChannel channel, int type, int length) {
-        return genFrame(channel, Http2FrameType.getValue(type), length);
+    @Override
+    protected ByteBuf allocate(NioSocketChannel channel, int length) {
+        if (length == 0) {
+            return EmptyByteBuf.get();
+        }
+        return channel.allocator().allocate(length);
     }
 
     @Override
     public void release(NioEventLoop eventLoop) {
         super.release(eventLoop);
-        frame.release(eventLoop);
+        if (frame != null) {
+            frame.release(eventLoop);
+        }
     }
 
     @Override
     public boolean isReleased() {
-        return frame.isReleased() && getByteBuf().isReleased();
+        return (frame == null || frame.isReleased()) && getByteBuf().isReleased();
     }
 
 }
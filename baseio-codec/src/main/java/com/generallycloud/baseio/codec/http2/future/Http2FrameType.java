@@ -56,7 +56,13 @@ public enum Http2FrameType {
         return null;
     }
 
+    /**
+     * 未知类型返回null
+     */
     public static Http2FrameType getValue(int i) {
+        if (i < 0 || i >= VALUES.length) {
+            return null;
+        }
         return VALUES[i];
     }
 
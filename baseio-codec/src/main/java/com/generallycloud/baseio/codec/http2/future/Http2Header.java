@@ -17,6 +17,9 @@ package com.generallycloud.baseio.codec.http2.future;
 
 public class Http2Header {
 
+    // RFC7541 4.1，每个header额外占用32字节
+    public static final int HEADER_ENTRY_OVERHEAD = 32;
+
     public Http2Header(String name, String value) {
         this(0, name, value);
     }
@@ -50,6 +53,6 @@ public class Http2Header {
     }
 
     public static int sizeOf(String name, String value) {
-        return name.length() + value.length();
+        return name.length() + value.length() + HEADER_ENTRY_OVERHEAD;
     }
 }
@@ -15,6 +15,8 @@
  */
 package com.generallycloud.baseio.codec.http2.future;
 
+import com.generallycloud.baseio.buffer.ByteBuf;
+
 public interface Http2HeadersFrame extends Http2Frame {
 
     public static final int FLAG_END_STREAM  = 0x1;
@@ -24,9 +26,18 @@ public interface Http2HeadersFrame extends Http2Frame {
 
     public abstract boolean isE();
 
+    public abstract boolean isEndHeaders();
+
+    public abstract boolean isEndStream();
+
     public abstract int getStreamDependency();
 
     public abstract short getWeight();
 
-    public byte getPadLength();
+    public int getPadLength();
+
+    /**
+     * header block fragment，仅在帧处理期间有效
+     */
+    public abstract ByteBuf getFragment();
 }
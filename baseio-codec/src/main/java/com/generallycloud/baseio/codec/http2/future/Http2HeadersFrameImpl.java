@@ -15,35 +15,39 @@
  */
 package com.generallycloud.baseio.codec.http2.future;
 
+import static com.generallycloud.baseio.codec.http2.hpack.Http2Error.PROTOCOL_ERROR;
+
 import java.io.IOException;
 
 import com.generallycloud.baseio.buffer.ByteBuf;
-import com.generallycloud.baseio.codec.http2.Http2SocketSession;
-import com.generallycloud.baseio.codec.http2.hpack.Decoder;
+import com.generallycloud.baseio.codec.http2.hpack.Http2Exception;
 import com.generallycloud.baseio.component.NioSocketChannel;
 
 public class Http2HeadersFrameImpl extends AbstractHttp2Frame implements Http2HeadersFrame {
 
-    private byte           padLength;
-    private boolean        e;
-    private int            streamDependency;
-    private short          weight;
-    private boolean        endStream;
-    private static Decoder decoder = new Decoder();
+    private int     padLength;
+    private boolean e;
+    private int     streamDependency;
+    private short   weight;
+    private boolean endStream;
+    private boolean endHeaders;
 
     public Http2HeadersFrameImpl(ByteBuf buf, Http2FrameHeader header) {
-        super(header);
-        this.setByteBuf(buf);
+        super(buf, header);
     }
 
-    private void doComplete(NioSocketChannel channel, ByteBuf buf) throws IOException {
-        Http2SocketSession session = (Http2SocketSession) channel.getSession();
+    @Override
+    protected void doComplete(NioSocketChannel channel, ByteBuf buf) throws IOException {
         byte flags = getHeader().getFlags();
-        this.endStream = (flags & FLAG_END_STREAM) > 0;
-        if ((flags & FLAG_PADDED) > 0) {
-            padLength = buf.getByte();
+        this.endStream = (flags & FLAG_END_STREAM) != 0;
+        this.endHeaders = (flags & FLAG_END_HEADERS) != 0;
+        if ((flags & FLAG_PADDED) != 0) {
+            padLength = readPadLength(buf);
         }
-        if ((flags & FLAG_PRIORITY) > 0) {
+        if ((flags & FLAG_PRIORITY) != 0) {
+            if (buf.remaining() < 5) {
+                throw Http2Exception.connectionError(PROTOCOL_ERROR, "illegal headers frame");
+            }
             streamDependency = buf.getInt();
             e = streamDependency < 0;
             if (e) {
@@ -51,23 +55,18 @@ public class Http2HeadersFrameImpl extends AbstractHttp2Frame implements Http2He
             }
             weight = buf.getUnsignedByte();
         }
-        decoder.decode(streamDependency, buf, session.getHttp2Headers());
     }
 
-    @Override
-    public boolean read(NioSocketChannel channel, ByteBuf buffer) throws IOException {
-        ByteBuf buf = getByteBuf();
-        buf.read(buffer);
-        if (buf.hasRemaining()) {
-            return false;
+    static int readPadLength(ByteBuf buf) throws Http2Exception {
+        if (!buf.hasRemaining()) {
+            throw Http2Exception.connectionError(PROTOCOL_ERROR, "illegal pad length");
         }
-        doComplete(channel, buf.flip());
-        return true;
-    }
-
-    @Override
-    public boolean isSilent() {
-        return !endStream;
+        int padLength = buf.getUnsignedByte();
+        if (padLength > buf.remaining()) {
+            throw Http2Exception.connectionError(PROTOCOL_ERROR, "illegal pad length");
+        }
+        buf.limit(buf.limit() - padLength);
+        return padLength;
     }
 
     @Override
@@ -80,6 +79,16 @@ public class Http2HeadersFrameImpl extends AbstractHttp2Frame implements Http2He
         return e;
     }
 
+    @Override
+    public boolean isEndHeaders() {
+        return endHeaders;
+    }
+
+    @Override
+    public boolean isEndStream() {
+        return endStream;
+    }
+
     @Override
     public int getStreamDependency() {
         return streamDependency;
@@ -91,8 +100,13 @@ public class Http2HeadersFrameImpl extends AbstractHttp2Frame implements Http2He
     }
 
     @Override
-    public byte getPadLength() {
+    public int getPadLength() {
         return padLength;
     }
 
+    @Override
+    public ByteBuf getFragment() {
+        return getByteBuf();
+    }
+
 }
@@ -16,24 +16,15 @@
 package com.generallycloud.baseio.codec.http2.future;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
 
 import com.generallycloud.baseio.buffer.ByteBuf;
-import com.generallycloud.baseio.buffer.UnpooledByteBufAllocator;
 import com.generallycloud.baseio.codec.http2.Http2SocketSession;
 import com.generallycloud.baseio.component.NioSocketChannel;
 import com.generallycloud.baseio.protocol.AbstractChannelFuture;
-import com.generallycloud.baseio.protocol.DefaultChannelFuture;
 
 public class Http2PrefaceFuture extends AbstractChannelFuture {
 
-    private static byte[]  PREFACE_BINARY = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes();
-
-    private static ByteBuf PREFACE_BUF;
-
-    static {
-        PREFACE_BUF = UnpooledByteBufAllocator.getHeap().wrap(ByteBuffer.wrap(PREFACE_BINARY));
-    }
+    private static byte[] PREFACE_BINARY = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes();
 
     public Http2PrefaceFuture(ByteBuf buf) {
         this.setByteBuf(buf);
@@ -50,7 +41,8 @@ public class Http2PrefaceFuture extends AbstractChannelFuture {
         if (!isPreface(buf)) {
             throw new IOException("not http2 preface");
         }
-        session.flushChannelFuture(new DefaultChannelFuture(PREFACE_BUF.duplicate()));
+        // 服务端的connection preface为SETTINGS帧
+        session.getConnection().onPreface();
     }
 
     private boolean isPreface(ByteBuf buf) {
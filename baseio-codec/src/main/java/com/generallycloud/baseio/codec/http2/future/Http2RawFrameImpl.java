@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.codec.http2.future;
+
+import java.io.IOException;
+
+import com.generallycloud.baseio.buffer.ByteBuf;
+import com.generallycloud.baseio.component.NioSocketChannel;
+
+/**
+ * 不需要解析payload的帧，如PRIORITY及未知类型的帧
+ * 
+ * @author wangkai
+ *
+ */
+public class Http2RawFrameImpl extends AbstractHttp2Frame {
+
+    private Http2FrameType frameType;
+
+    public Http2RawFrameImpl(ByteBuf buf, Http2FrameHeader header, Http2FrameType frameType) {
+        super(buf, header);
+        this.frameType = frameType;
+    }
+
+    @Override
+    protected void doComplete(NioSocketChannel channel, ByteBuf buf) throws IOException {}
+
+    /**
+     * 未知类型的帧返回null
+     */
+    @Override
+    public Http2FrameType getHttp2FrameType() {
+        return frameType;
+    }
+
+}
@@ -38,6 +38,13 @@ public interface Http2SettingsFrame extends Http2Frame {
     public static final int SETTINGS_MAX_FRAME_SIZE         = 0x5;
     public static final int SETTINGS_MAX_HEADER_LIST_SIZE   = 0x6;
 
+    public static final int FLAG_ACK                        = 0x1;
+
+    public abstract boolean isAck();
+
+    /**
+     * 以setting的key为下标，未出现的setting为-1
+     */
     public abstract long[] getSettings();
 
 }
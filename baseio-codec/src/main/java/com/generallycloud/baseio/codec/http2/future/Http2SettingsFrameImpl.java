@@ -15,52 +15,50 @@
  */
 package com.generallycloud.baseio.codec.http2.future;
 
+import static com.generallycloud.baseio.codec.http2.hpack.Http2Error.FRAME_SIZE_ERROR;
+
 import java.io.IOException;
+import java.util.Arrays;
 
 import com.generallycloud.baseio.buffer.ByteBuf;
-import com.generallycloud.baseio.codec.http2.Http2SocketSession;
+import com.generallycloud.baseio.codec.http2.hpack.Http2Exception;
 import com.generallycloud.baseio.component.NioSocketChannel;
 
 public class Http2SettingsFrameImpl extends AbstractHttp2Frame implements Http2SettingsFrame {
 
-    private long[] settings; //FIXME delete
+    private boolean ack;
 
-    public Http2SettingsFrameImpl(ByteBuf buf, Http2FrameHeader header) {
-        super(header);
-        this.setByteBuf(buf);
-    }
+    private long[]  settings = new long[SETTINGS_MAX_HEADER_LIST_SIZE + 1];
 
-    private void doComplete(NioSocketChannel channel, ByteBuf buf) throws IOException {
-        Http2SocketSession session = (Http2SocketSession) channel.getSession();
-        int settings = buf.limit() / 6;
-        for (int i = 0; i < settings; i++) {
-            int key = buf.getShort();
-            int value = buf.getInt();
-            session.setSettings(key, value);
-        }
-        this.settings = session.getSettings();
-        channel.flush(this);
+    public Http2SettingsFrameImpl(ByteBuf buf, Http2FrameHeader header) {
+        super(buf, header);
     }
 
     @Override
-    public boolean read(NioSocketChannel channel, ByteBuf buffer) throws IOException {
-        ByteBuf buf = getByteBuf();
-        buf.read(buffer);
-        if (buf.hasRemaining()) {
-            return false;
+    protected void doComplete(NioSocketChannel channel, ByteBuf buf) throws IOException {
+        this.ack = (getHeader().getFlags() & FLAG_ACK) != 0;
+        if (ack ? buf.limit() != 0 : buf.limit() % 6 != 0) {
+            throw Http2Exception.connectionError(FRAME_SIZE_ERROR, "illegal settings frame");
+        }
+        Arrays.fill(settings, -1);
+        for (; buf.hasRemaining();) {
+            int key = buf.getUnsignedShort();
+            long value = buf.getUnsignedInt();
+            // 忽略未知的setting
+            if (key > 0 && key < settings.length) {
+                settings[key] = value;
+            }
         }
-        doComplete(channel, buf.flip());
-        return true;
     }
 
     @Override
-    public boolean isSilent() {
-        return true;
+    public Http2FrameType getHttp2FrameType() {
+        return Http2FrameType.FRAME_TYPE_SETTINGS;
     }
 
     @Override
-    public Http2FrameType getHttp2FrameType() {
-        return Http2FrameType.FRAME_TYPE_SETTINGS;
+    public boolean isAck() {
+        return ack;
     }
 
     @Override
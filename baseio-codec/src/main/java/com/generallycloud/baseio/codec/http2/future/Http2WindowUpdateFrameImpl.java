@@ -27,34 +27,17 @@ public class Http2WindowUpdateFrameImpl extends AbstractHttp2Frame
     private int updateValue;
 
     public Http2WindowUpdateFrameImpl(ByteBuf buf, Http2FrameHeader header) {
-        super(header);
-        this.setByteBuf(buf);
-    }
-
-    private void doComplete(NioSocketChannel channel, ByteBuf buf) throws IOException {
-
-        this.updateValue = MathUtil.int2int31(buf.getInt());
+        super(buf, header);
     }
 
     @Override
-    public boolean read(NioSocketChannel channel, ByteBuf buffer) throws IOException {
-        ByteBuf buf = getByteBuf();
-        buf.read(buffer);
-        if (buf.hasRemaining()) {
-            return false;
-        }
-        doComplete(channel, buf.flip());
-        return true;
-    }
-
-    @Override
-    public boolean isSilent() {
-        return true;
+    protected void doComplete(NioSocketChannel channel, ByteBuf buf) throws IOException {
+        this.updateValue = MathUtil.int2int31(buf.getInt());
     }
 
     @Override
     public Http2FrameType getHttp2FrameType() {
-        return Http2FrameType.FRAME_TYPE_SETTINGS;
+        return Http2FrameType.FRAME_TYPE_WINDOW_UPDATE;
     }
 
     @Override
@@ -18,19 +18,16 @@ package com.generallycloud.baseio.codec.http2.hpack;
 import static com.generallycloud.baseio.codec.http2.hpack.Http2CodecUtil.MAX_HEADER_TABLE_SIZE;
 import static com.generallycloud.baseio.codec.http2.hpack.Http2CodecUtil.MIN_HEADER_TABLE_SIZE;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import com.generallycloud.baseio.codec.http2.future.Http2Header;
 
 final class DynamicTable {
 
     // a circular queue of header fields
-    private List<Http2Header> headers  = new ArrayList<>();
-    int                       head;
-    int                       tail;
-    private long              size;
-    private long              capacity = -1;
+    private Http2Header[] headers  = new Http2Header[0];
+    int                   head;
+    int                   tail;
+    private long          size;
+    private long          capacity = -1;
 
     /**
      * Creates a new dynamic table with the specified initial capacity.
@@ -43,7 +40,13 @@ final class DynamicTable {
      * Return the number of header fields in the dynamic table.
      */
     public int length() {
-        return headers.size();
+        int length;
+        if (head < tail) {
+            length = headers.length - tail + head;
+        } else {
+            length = head - tail;
+        }
+        return length;
     }
 
     /**
@@ -71,9 +74,9 @@ final class DynamicTable {
         }
         int i = head - index;
         if (i < 0) {
-            return headers.get(i + headers.size());
+            return headers[i + headers.length];
         } else {
-            return headers.get(index);
+            return headers[i];
         }
     }
 
@@ -92,21 +95,39 @@ final class DynamicTable {
         while (capacity - size < headerSize) {
             remove();
         }
-        headers.add(header);
+        headers[head++] = header;
         size += header.size();
+        if (head == headers.length) {
+            head = 0;
+        }
     }
 
     /**
      * Remove and return the oldest header field from the dynamic table.
      */
     public Http2Header remove() {
-        return null;
+        Http2Header removed = headers[tail];
+        if (removed == null) {
+            return null;
+        }
+        size -= removed.size();
+        headers[tail++] = null;
+        if (tail == headers.length) {
+            tail = 0;
+        }
+        return removed;
     }
 
     /**
      * Remove all entries from the dynamic table.
      */
     public void clear() {
+        while (tail != head) {
+            headers[tail++] = null;
+            if (tail == headers.length) {
+                tail = 0;
+            }
+        }
         head = 0;
         tail = 0;
         size = 0;
@@ -136,5 +157,32 @@ final class DynamicTable {
             }
         }
 
+        // 每个header至少占用32字节
+        int maxEntries = (int) (capacity / Http2Header.HEADER_ENTRY_OVERHEAD);
+        if (capacity % Http2Header.HEADER_ENTRY_OVERHEAD != 0) {
+            maxEntries++;
+        }
+
+        // check if capacity change requires us to reallocate the array
+        if (headers.length == maxEntries) {
+            return;
+        }
+
+        Http2Header[] tmp = new Http2Header[maxEntries];
+
+        // initially length will be 0 so there will be no copy
+        int len = length();
+        int cursor = tail;
+        for (int i = 0; i < len; i++) {
+            Http2Header entry = headers[cursor++];
+            tmp[i] = entry;
+            if (cursor == headers.length) {
+                cursor = 0;
+            }
+        }
+
+        tail = 0;
+        head = tail + len;
+        headers = tmp;
     }
 }
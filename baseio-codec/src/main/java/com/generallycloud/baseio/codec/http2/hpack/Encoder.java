@@ -69,8 +69,17 @@ public final class Encoder {
      * Creates a new encoder.
      */
     public Encoder(boolean ignoreMaxHeaderListSize, int arraySizeHint) {
+        this(ignoreMaxHeaderListSize, arraySizeHint, DEFAULT_HEADER_TABLE_SIZE);
+    }
+
+    /**
+     * Creates a new encoder. A maxHeaderTableSize of 0 never touches the
+     * dynamic table, header blocks are then independent of each other and
+     * may be sent in any order.
+     */
+    public Encoder(boolean ignoreMaxHeaderListSize, int arraySizeHint, long maxHeaderTableSize) {
         this.ignoreMaxHeaderListSize = ignoreMaxHeaderListSize;
-        maxHeaderTableSize = DEFAULT_HEADER_TABLE_SIZE;
+        this.maxHeaderTableSize = maxHeaderTableSize;
         maxHeaderListSize = DEFAULT_HEADER_LIST_SIZE;
         // Enforce a bound of [2, 128] because hashMask is a byte. The max
         // possible value of hashMask is one less
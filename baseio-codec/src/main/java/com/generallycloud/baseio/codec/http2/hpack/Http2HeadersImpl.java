@@ -15,57 +15,58 @@
  */
 package com.generallycloud.baseio.codec.http2.hpack;
 
-import java.util.HashMap;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map.Entry;
 
+/**
+ * 按添加顺序保存header，允许重复的name（如set-cookie），
+ * 编码时pseudo header需要先于普通header添加
+ */
 public class Http2HeadersImpl implements Http2Headers {
 
-    private HashMap<String, String> headers = new HashMap<>();
+    private List<Entry<String, String>> headers = new ArrayList<>();
 
-    private String                  method;
-    private String                  scheme;
-    private String                  authority;
-    private String                  path;
-    private String                  status;
+    private String                      method;
+    private String                      scheme;
+    private String                      authority;
+    private String                      path;
+    private String                      status;
 
     @Override
     public Iterator<Entry<String, String>> iterator() {
-        return headers.entrySet().iterator();
+        return headers.iterator();
     }
 
     @Override
     public Http2Headers method(String value) {
-        this.method = value;
-        this.headers.put(":method", value);
+        add(PseudoHeaderName.METHOD.value(), value);
         return this;
     }
 
     @Override
     public Http2Headers scheme(String value) {
-        this.scheme = value;
-        this.headers.put(":scheme", value);
+        add(PseudoHeaderName.SCHEME.value(), value);
         return this;
     }
 
     @Override
     public Http2Headers authority(String value) {
-        this.authority = value;
-        this.headers.put(":authority", value);
+        add(PseudoHeaderName.AUTHORITY.value(), value);
         return this;
     }
 
     @Override
     public Http2Headers path(String value) {
-        this.path = value;
-        this.headers.put(":path", value);
+        add(PseudoHeaderName.PATH.value(), value);
         return this;
     }
 
     @Override
     public Http2Headers status(String value) {
-        this.status = value;
-        this.headers.put(":status", value);
+        add(PseudoHeaderName.STATUS.value(), value);
         return this;
     }
 
@@ -96,7 +97,32 @@ public class Http2HeadersImpl implements Http2Headers {
 
     @Override
     public void add(String name, String value) {
-        this.headers.put(name, value);
+        if (name.length() > 0 && name.charAt(0) == ':') {
+            switch (name) {
+                case ":method":
+                    this.method = value;
+                    break;
+                case ":scheme":
+                    this.scheme = value;
+                    break;
+                case ":authority":
+                    this.authority = value;
+                    break;
+                case ":path":
+                    this.path = value;
+                    break;
+                case ":status":
+                    this.status = value;
+                    break;
+                default:
+                    break;
+            }
+        }
+        this.headers.add(new SimpleImmutableEntry<>(name, value));
+    }
+
+    public int size() {
+        return headers.size();
     }
 
 }
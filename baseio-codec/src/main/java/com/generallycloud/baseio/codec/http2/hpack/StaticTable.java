@@ -94,11 +94,15 @@ final class StaticTable {
 
         for (Http2Header header : STATIC_HEADER_TABLE) {
 
-            STATIC_MAP.put(header.getName(), header);
+            // 同名的header取第一个
+            if (!STATIC_MAP.containsKey(header.getName())) {
+                STATIC_MAP.put(header.getName(), header);
+            }
         }
     }
 
-    static final int length = STATIC_HEADER_TABLE.size();
+    // 下标0的:error仅用于占位，不计入静态表长度
+    static final int length = STATIC_HEADER_TABLE.size() - 1;
 
     static Http2Header getEntry(int index) {
         return STATIC_HEADER_TABLE.get(index);
@@ -108,21 +112,27 @@ final class StaticTable {
     private StaticTable() {}
 
     public static int getIndex(String name) {
-        return getIndex(name, "");
-    }
-
-    public static int getIndex(String name, String value) {
-
         Http2Header header = STATIC_MAP.get(name);
-
         if (header == null) {
             return -1;
         }
+        return header.getIndex();
+    }
 
-        if (header.getValue().equals(value)) {
-            return header.getIndex();
+    public static int getIndex(String name, String value) {
+        int index = getIndex(name);
+        if (index == -1) {
+            return -1;
         }
-
-        return 0;
+        for (; index <= length; index++) {
+            Http2Header header = STATIC_HEADER_TABLE.get(index);
+            if (!header.getName().equals(name)) {
+                break;
+            }
+            if (header.getValue().equals(value)) {
+                return index;
+            }
+        }
+        return -1;
     }
 }
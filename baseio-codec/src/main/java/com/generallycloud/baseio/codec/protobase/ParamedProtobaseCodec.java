@@ -54,7 +54,9 @@ public class ParamedProtobaseCodec extends ProtobaseCodec {
     public ChannelFuture decode(NioSocketChannel channel, ByteBuf buffer) throws IOException {
         ByteBufAllocator allocator = channel.allocator();
         ByteBuf buf = allocator.allocate(2);
-        return new ParamedProtobaseFutureImpl(buf);
+        ParamedProtobaseFutureImpl f = new ParamedProtobaseFutureImpl(buf);
+        f.setWriteBufAllocator(allocator, WRITE_BUF_RESERVE);
+        return f;
     }
 
     @Override
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.codec.protobase;
+
+import java.io.IOException;
+
+import com.generallycloud.baseio.buffer.ByteBuf;
+import com.generallycloud.baseio.component.NioSocketChannel;
+import com.generallycloud.baseio.protocol.ChannelFuture;
+
+/**
+ * 用于负载均衡代理，报文格式与ProtobaseCodec一致，收到的报文不解码正文，
+ * 转发时直接写出原始报文，省去text/binary的解码与重新编码
+ */
+public class PassthroughProtobaseCodec extends ProtobaseCodec {
+
+    public PassthroughProtobaseCodec() {
+        super();
+    }
+
+    public PassthroughProtobaseCodec(int limit) {
+        super(limit);
+    }
+
+    @Override
+    public ChannelFuture decode(NioSocketChannel channel, ByteBuf buffer) throws IOException {
+        ByteBuf buf = channel.allocator().allocate(2);
+        return new PassthroughProtobaseFutureImpl(buf, limit);
+    }
+
+    @Override
+    public void encode(NioSocketChannel channel, ChannelFuture future) throws IOException {
+        if (future instanceof PassthroughProtobaseFutureImpl) {
+            PassthroughProtobaseFutureImpl f = (PassthroughProtobaseFutureImpl) future;
+            if (f.isRawFrame()) {
+                if (f.getWriteSize() == 0) {
+                    f.encodeFrame(channel.allocator());
+                    return;
+                }
+                // 转发前被写入了新的text，放弃原始报文
+                f.releaseFrame();
+            }
+        }
+        super.encode(channel, future);
+    }
+
+    @Override
+    public String getProtocolId() {
+        return "PassthroughProtobase";
+    }
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.codec.protobase;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import com.generallycloud.baseio.balance.BalanceFuture;
+import com.generallycloud.baseio.buffer.ByteBuf;
+import com.generallycloud.baseio.buffer.ByteBufAllocator;
+import com.generallycloud.baseio.common.ReleaseUtil;
+import com.generallycloud.baseio.component.NioEventLoop;
+import com.generallycloud.baseio.component.NioSocketChannel;
+import com.generallycloud.baseio.component.SocketSession;
+import com.generallycloud.baseio.protocol.RetainedChannelFuture;
+
+/**
+ * 整帧读入同一个ByteBuf，只解析报文头，text/binary按需解码，
+ * 转发时直接写出原始报文，sessionId在原位置回填，
+ * 报文在flush之后由写出的路径释放，没有被flush的由ForeFutureAcceptor释放
+ */
+public class PassthroughProtobaseFutureImpl extends ProtobaseFutureImpl
+        implements RetainedChannelFuture {
+
+    private int     binaryLength;
+    private Charset charset;
+    private boolean frameHeld;
+    private int     frameLength;
+    private int     frameLimit;
+    private int     headerLength;
+    private byte    nameLength;
+    private boolean needRebuild;
+    private String  readText;
+    private int     sessionIdIndex;
+    private int     textLength;
+
+    public PassthroughProtobaseFutureImpl(ByteBuf buf, int frameLimit) {
+        super(buf);
+        this.frameLimit = frameLimit;
+    }
+
+    @Override
+    public boolean read(NioSocketChannel channel, ByteBuf buffer) throws IOException {
+        ByteBuf buf = getByteBuf();
+        if (frameLength == 0) {
+            if (headerLength == 0) {
+                buf.read(buffer);
+                if (buf.hasRemaining()) {
+                    return false;
+                }
+                byte h1 = buf.getByte(0);
+                int type = h1 & 0b11000000;
+                if (type > 0b01000000) {
+                    setHeartbeat(type == 0b10000000);
+                    return true;
+                }
+                nameLength = buf.getByte(1);
+                if (nameLength < 1) {
+                    throw new IOException("futureNameLength < 1");
+                }
+                headerLength = 6 + Integer.bitCount(h1 & 0b00011110) * 4;
+                buf = growFrame(buf, headerLength);
+            }
+            buf.read(buffer);
+            if (buf.hasRemaining()) {
+                return false;
+            }
+            parseHeader(buf);
+            if (frameLength > frameLimit || frameLength < 0) {
+                throw new IOException("max frame length " + frameLimit + ",frame length "
+                        + frameLength);
+            }
+            this.charset = channel.getEncoding();
+            buf = growFrame(buf, frameLength);
+        }
+        buf.read(buffer);
+        if (buf.hasRemaining()) {
+            return false;
+        }
+        buf.flip();
+        // name很短，直接解码，futureSent等回调可能在报文释放后才访问name
+        super.setFutureName(decode(headerLength, nameLength));
+        frameHeld = true;
+        return true;
+    }
+
+    private ByteBuf growFrame(ByteBuf buf, int limit) {
+        ByteBuf newBuf = buf.reallocate(limit, true);
+        // 重新分配后buf的releaseVersion可能已变化，需要重新记录
+        setByteBuf(newBuf);
+        return newBuf;
+    }
+
+    private void parseHeader(ByteBuf buf) {
+        byte h1 = buf.getByte(0);
+        int index = 2;
+        textLength = buf.getInt(index);
+        index += 4;
+        super.setBroadcast((h1 & 0b00100000) != 0);
+        if ((h1 & 0b00010000) != 0) {
+            super.setFutureId(buf.getInt(index));
+            index += 4;
+        }
+        if ((h1 & 0b00001000) != 0) {
+            sessionIdIndex = index;
+            super.setSessionId(buf.getInt(index));
+            index += 4;
+        }
+        if ((h1 & 0b00000100) != 0) {
+            super.setHashCode(buf.getInt(index));
+            index += 4;
+        }
+        if ((h1 & 0b00000010) != 0) {
+            binaryLength = buf.getInt(index);
+        }
+        frameLength = headerLength + nameLength + textLength + binaryLength;
+    }
+
+    /**
+     * 是否持有一个完整的原始报文，只有这样的future才能原样转发
+     */
+    public boolean isRawFrame() {
+        return frameHeld;
+    }
+
+    /**
+     * 转发前由codec调用，报文中没有sessionId字段时补上该字段重建一次报文
+     */
+    protected void encodeFrame(ByteBufAllocator allocator) {
+        ByteBuf frame = getByteBuf();
+        if (!needRebuild) {
+            frame.position(0);
+            frame.limit(frameLength);
+            return;
+        }
+        int index = 6 + ((frame.getByte(0) & 0b00010000) != 0 ? 4 : 0);
+        ByteBuf buf = allocator.allocate(frameLength + 4);
+        buf.putByte((byte) (frame.getByte(0) | 0b00001000));
+        frame.position(1);
+        frame.limit(index);
+        buf.read(frame);
+        buf.putInt(getSessionId());
+        frame.limit(frameLength);
+        buf.read(frame);
+        buf.flip();
+        ReleaseUtil.release(frame);
+        setByteBuf(buf);
+        sessionIdIndex = index;
+        headerLength += 4;
+        frameLength += 4;
+        needRebuild = false;
+    }
+
+    /**
+     * 放弃原始报文，之后按普通的ProtobaseFuture编码
+     */
+    protected void releaseFrame() {
+        frameHeld = false;
+        // 只归还原始报文，新写入的text还在writeBuf中
+        ReleaseUtil.release(getByteBuf());
+    }
+
+    @Override
+    public byte[] getReadBinary() {
+        if (!frameHeld || binaryLength == 0) {
+            return null;
+        }
+        return readBytes(frameLength - binaryLength, binaryLength);
+    }
+
+    @Override
+    public int getReadBinarySize() {
+        return binaryLength;
+    }
+
+    @Override
+    public String getReadText() {
+        if (readText == null && frameHeld && textLength > 0) {
+            readText = decode(headerLength + nameLength, textLength);
+        }
+        return readText;
+    }
+
+    @Override
+    public int getTextLength() {
+        return textLength;
+    }
+
+    @Override
+    public boolean hasReadBinary() {
+        return binaryLength > 0;
+    }
+
+    @Override
+    public void setSessionId(int sessionId) {
+        super.setSessionId(sessionId);
+        if (!frameHeld) {
+            return;
+        }
+        if (sessionIdIndex == 0) {
+            needRebuild = sessionId > 0;
+            return;
+        }
+        ByteBuf buf = getByteBuf();
+        buf.position(sessionIdIndex);
+        buf.putInt(sessionId);
+        buf.position(0);
+    }
+
+    /**
+     * flush之前报文仍可能被转发，框架读完后的释放及handler的释放都不生效，
+     * 统一由ForeFutureAcceptor在accept结束后调用releaseRetained释放
+     */
+    @Override
+    public void release(NioEventLoop eventLoop) {
+        if (frameHeld && !flushed()) {
+            return;
+        }
+        super.release(eventLoop);
+    }
+
+    @Override
+    public void releaseRetained(NioEventLoop eventLoop) {
+        if (flushed()) {
+            return;
+        }
+        frameHeld = false;
+        super.release(eventLoop);
+    }
+
+    @Override
+    public BalanceFuture translate(SocketSession session) {
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return getFutureName() + "@frame:" + frameLength;
+    }
+
+    private String decode(int index, int length) {
+        return new String(readBytes(index, length), charset);
+    }
+
+    private byte[] readBytes(int index, int length) {
+        ByteBuf buf = getByteBuf();
+        byte[] bytes = new byte[length];
+        int position = buf.position();
+        buf.position(index);
+        buf.get(bytes);
+        buf.position(position);
+        return bytes;
+    }
+
+}
@@ -51,6 +51,9 @@ public class ProtobaseCodec implements ProtocolCodec {
 
     private static final ByteBuf PONG;
 
+    // 固定头部最长22字节，future name不超过42字节时报文头可直接回填到预留区域
+    protected static final int   WRITE_BUF_RESERVE = 64;
+
     static {
         ByteBufAllocator allocator = UnpooledByteBufAllocator.getHeap();
         PING = allocator.allocate(2);
@@ -87,7 +90,9 @@ public class ProtobaseCodec implements ProtocolCodec {
     public ChannelFuture decode(NioSocketChannel channel, ByteBuf buffer) throws IOException {
         ByteBufAllocator allocator = channel.allocator();
         ByteBuf buf = allocator.allocate(2);
-        return new ProtobaseFutureImpl(buf);
+        ProtobaseFutureImpl f = new ProtobaseFutureImpl(buf);
+        f.setWriteBufAllocator(allocator, WRITE_BUF_RESERVE);
+        return f;
     }
 
     @Override
@@ -111,6 +116,7 @@ public class ProtobaseCodec implements ProtocolCodec {
         int allLen = 6 + futureNameLength;
         int textWriteSize = f.getWriteSize();
         int binaryWriteSize = f.getWriteBinarySize();
+        int binaryRegionSize = f.getWriteBinaryRegionSize();
         byte h1 = 0b01000000;
         if (f.isBroadcast()) {
             h1 |= 0b00100000;
@@ -127,17 +133,53 @@ public class ProtobaseCodec implements ProtocolCodec {
             h1 |= 0b00000100;
             allLen += 4;
         }
-        if (f.getWriteBinarySize() > 0) {
+        if (binaryWriteSize > 0 || binaryRegionSize > 0) {
             h1 |= 0b00000010;
             allLen += 4;
-            allLen += f.getWriteBinarySize();
+            allLen += binaryWriteSize;
         }
         if (textWriteSize > 0) {
             allLen += textWriteSize;
         }
-        ByteBuf buf = allocator.allocate(allLen);
+        int headerLen = allLen - textWriteSize - binaryWriteSize;
+        ByteBuf buf = f.getWriteBuf();
+        if (buf != null && headerLen <= f.getWriteBufReserve()
+                && buf.remaining() >= binaryWriteSize) {
+            // text已写入writeBuf，报文头回填到text之前的预留区域
+            if (binaryWriteSize > 0) {
+                buf.put(f.getWriteBinary(), 0, binaryWriteSize);
+            }
+            int start = f.getWriteBufReserve() - headerLen;
+            buf.flip();
+            buf.position(start);
+            writeHeader(buf, f, h1, futureNameBytes, textWriteSize, binaryWriteSize,
+                    binaryRegionSize);
+            buf.position(start);
+            future.setByteBuf(buf);
+            return;
+        }
+        buf = allocator.allocate(allLen);
+        writeHeader(buf, f, h1, futureNameBytes, textWriteSize, binaryWriteSize,
+                binaryRegionSize);
+        if (textWriteSize > 0) {
+            if (f.getWriteBuf() != null) {
+                ByteBuf text = f.getWriteBuf().flip();
+                text.position(f.getWriteBufReserve());
+                buf.read(text);
+            } else {
+                buf.put(f.getWriteBuffer(), 0, textWriteSize);
+            }
+        }
+        if (binaryWriteSize > 0) {
+            buf.put(f.getWriteBinary(), 0, binaryWriteSize);
+        }
+        future.setByteBuf(buf.flip());
+    }
+
+    private void writeHeader(ByteBuf buf, ProtobaseFuture f, byte h1, byte[] futureNameBytes,
+            int textWriteSize, int binaryWriteSize, int binaryRegionSize) {
         buf.putByte(h1);
-        buf.putByte(futureNameLength);
+        buf.putByte((byte) futureNameBytes.length);
         buf.putInt(textWriteSize);
         if (f.getFutureId() > 0) {
             buf.putInt(f.getFutureId());
@@ -148,17 +190,10 @@ public class ProtobaseCodec implements ProtocolCodec {
         if (f.getHashCode() > 0) {
             buf.putInt(f.getHashCode());
         }
-        if (binaryWriteSize > 0) {
-            buf.putInt(binaryWriteSize);
+        if (binaryWriteSize > 0 || binaryRegionSize > 0) {
+            buf.putInt(binaryWriteSize + binaryRegionSize);
         }
         buf.put(futureNameBytes);
-        if (textWriteSize > 0) {
-            buf.put(f.getWriteBuffer(), 0, textWriteSize);
-        }
-        if (binaryWriteSize > 0) {
-            buf.put(f.getWriteBinary(), 0, binaryWriteSize);
-        }
-        future.setByteBuf(buf.flip());
     }
 
     @Override
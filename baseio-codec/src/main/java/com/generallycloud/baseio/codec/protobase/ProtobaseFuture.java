@@ -35,12 +35,20 @@ public interface ProtobaseFuture
 
     int getWriteBinarySize();
 
+    int getWriteBinaryRegionSize();
+
     boolean hasReadBinary();
 
     void setFutureId(int futureId);
 
     void setFutureName(String futureName);
 
+    /**
+     * binary部分由随后通过flushChannelFuture写出的FileRegionChannelFuture提供，
+     * 此处仅写出binary的长度
+     */
+    void setWriteBinaryRegionSize(int size);
+
     void writeBinary(byte b);
 
     void writeBinary(byte[] bytes);
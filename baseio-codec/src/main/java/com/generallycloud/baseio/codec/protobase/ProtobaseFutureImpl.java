@@ -35,6 +35,7 @@ public class ProtobaseFutureImpl extends AbstractChannelFuture implements Protob
     private int     binaryLengthLimit;
     private byte[]  binaryReadBuffer;
     private int     binaryReadSize;
+    private int     binaryRegionSize;
     private byte[]  binaryWriteBuffer;
     private int     binaryWriteSize;
     private int     futureId;
@@ -118,6 +119,11 @@ public class ProtobaseFutureImpl extends AbstractChannelFuture implements Protob
         return binaryWriteSize;
     }
 
+    @Override
+    public int getWriteBinaryRegionSize() {
+        return binaryRegionSize;
+    }
+
     @Override
     public boolean hasReadBinary() {
         return binaryReadSize > 0;
@@ -165,7 +171,7 @@ public class ProtobaseFutureImpl extends AbstractChannelFuture implements Protob
                 throw new IOException("futureNameLength < 1");
             }
             nextLen += futureNameLength;
-            buf.reallocate(nextLen);
+            buf = reallocate(buf, nextLen);
         }
         if (futureName == null) {
             buf.read(buffer);
@@ -189,7 +195,7 @@ public class ProtobaseFutureImpl extends AbstractChannelFuture implements Protob
             Charset charset = channel.getEncoding();
             ByteBuffer memory = buf.nioBuffer();
             futureName = StringUtil.decode(charset, memory);
-            buf.reallocate(textLength + binaryReadSize);
+            buf = reallocate(buf, textLength + binaryReadSize);
         }
         buf.read(buffer);
         if (buf.hasRemaining()) {
@@ -211,6 +217,13 @@ public class ProtobaseFutureImpl extends AbstractChannelFuture implements Protob
         return true;
     }
 
+    private ByteBuf reallocate(ByteBuf buf, int limit) {
+        ByteBuf newBuf = buf.reallocate(limit);
+        // 重新分配后buf的releaseVersion可能已变化，需要重新记录，否则释放时被忽略
+        setByteBuf(newBuf);
+        return newBuf;
+    }
+
     @Override
     public void setBroadcast(boolean broadcast) {
         this.isBroadcast = broadcast;
@@ -226,6 +239,11 @@ public class ProtobaseFutureImpl extends AbstractChannelFuture implements Protob
         this.futureName = futureName;
     }
 
+    @Override
+    public void setWriteBinaryRegionSize(int size) {
+        this.binaryRegionSize = size;
+    }
+
     @Override
     public void setHashCode(int hashCode) {
         this.hashCode = hashCode;
@@ -266,7 +284,7 @@ public class ProtobaseFutureImpl extends AbstractChannelFuture implements Protob
 
     @Override
     public void writeBinary(byte[] bytes) {
-        write(bytes, 0, bytes.length);
+        writeBinary(bytes, 0, bytes.length);
     }
 
     @Override
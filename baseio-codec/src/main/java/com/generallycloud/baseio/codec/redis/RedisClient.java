@@ -17,12 +17,14 @@ package com.generallycloud.baseio.codec.redis;
 
 import java.io.IOException;
 
-import com.generallycloud.baseio.TimeoutException;
 import com.generallycloud.baseio.codec.redis.RedisFuture.RedisCommand;
 import com.generallycloud.baseio.component.ChannelContext;
 import com.generallycloud.baseio.component.SocketSession;
-import com.generallycloud.baseio.concurrent.Waiter;
 
+/**
+ * 同一连接上的命令以pipeline方式写出，不必等待上一条命令的响应，
+ * 可以在多个线程中共享同一个RedisClient
+ */
 //FIXME check null
 public class RedisClient {
 
@@ -42,19 +44,24 @@ public class RedisClient {
         this.ioEventHandle = (RedisIOEventHandle) context.getIoEventHandle();
     }
 
-    private synchronized RedisNode sendCommand(byte[] command, byte[]... args) throws IOException {
-        RedisFuture future = new RedisCmdFuture();
+    /**
+     * 异步发送命令，callback可以为null
+     */
+    public RedisResponse sendCommand(RedisCallback callback, byte[] command, byte[]... args) {
+        RedisCmdFuture future = new RedisCmdFuture();
         future.writeCommand(command, args);
-        Waiter waiter = ioEventHandle.newWaiter();
-        session.flush(future);
-        if (waiter.await(timeout)) {
-            throw new TimeoutException("timeout");
-        }
-        return (RedisNode) waiter.getResponse();
+        RedisResponse response = new RedisResponse(callback);
+        ioEventHandle.write(session, future, response);
+        return response;
+    }
+
+    public RedisResponse sendCommand(RedisCallback callback, RedisCommand command,
+            byte[]... args) {
+        return sendCommand(callback, command.raw, args);
     }
 
     private RedisNode sendCommand(RedisCommand command, byte[]... args) throws IOException {
-        return sendCommand(command.raw, args);
+        return sendCommand(null, command.raw, args).get(timeout);
     }
 
     public String set(String key, String value) throws IOException {
@@ -64,15 +71,38 @@ public class RedisClient {
         return (String) node.getValue();
     }
 
+    public RedisResponse set(String key, String value, RedisCallback callback) {
+        byte[] _key = key.getBytes(context.getEncoding());
+        byte[] _value = value.getBytes(context.getEncoding());
+        return sendCommand(callback, RedisCommand.SET, _key, _value);
+    }
+
     public String get(String key) throws IOException {
         byte[] _key = key.getBytes(context.getEncoding());
         RedisNode node = sendCommand(RedisCommand.GET, _key);
         return (String) node.getValue();
     }
 
+    public RedisResponse get(String key, RedisCallback callback) {
+        byte[] _key = key.getBytes(context.getEncoding());
+        return sendCommand(callback, RedisCommand.GET, _key);
+    }
+
     public String ping() throws IOException {
         RedisNode node = sendCommand(RedisCommand.PING);
         return (String) node.getValue();
     }
 
+    public RedisResponse ping(RedisCallback callback) {
+        return sendCommand(callback, RedisCommand.PING);
+    }
+
+    public SocketSession getSession() {
+        return session;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
 }
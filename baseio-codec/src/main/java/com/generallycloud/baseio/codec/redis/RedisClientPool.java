@@ -0,0 +1,208 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.codec.redis;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.generallycloud.baseio.LifeCycleUtil;
+import com.generallycloud.baseio.common.CloseUtil;
+import com.generallycloud.baseio.component.ChannelConnector;
+import com.generallycloud.baseio.component.ChannelContext;
+import com.generallycloud.baseio.component.NioEventLoopGroup;
+import com.generallycloud.baseio.concurrent.FixedAtomicInteger;
+import com.generallycloud.baseio.configuration.Configuration;
+
+/**
+ * redis连接池，每个节点建立connections条pipeline连接，分布在group的各个NioEventLoop上，
+ * 配置多个节点时按key的CRC16 hash slot路由，16384个slot按节点顺序平均分配，
+ * 只有pool自己创建的group才会由pool启动和停止
+ *
+ * @author wangkai
+ *
+ */
+public class RedisClientPool implements Closeable {
+
+    public static final int      SLOTS        = 16384;
+
+    private static final int[]   CRC16_TABLE  = new int[256];
+
+    private RedisClient[][]      clients;
+    private int                  connections;
+    private ChannelConnector[]   connectors;
+    private NioEventLoopGroup    group;
+    private boolean              ownGroup;
+    private Configuration[]      nodes;
+    private FixedAtomicInteger[] indexes;
+    private long                 timeout      = 3000;
+
+    static {
+        // CRC16-CCITT(XMODEM)，与redis cluster计算key slot的算法一致
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 8;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+            CRC16_TABLE[i] = crc & 0xffff;
+        }
+    }
+
+    /**
+     * 使用pool创建的group(每个节点的连接数个eventLoop)，connect时启动，close时停止
+     */
+    public RedisClientPool(int connections, Configuration... nodes) {
+        this(null, true, connections, nodes);
+    }
+
+    /**
+     * 使用调用方的group，多个connector共用该group所以必须是sharable的，pool不会停止该group
+     */
+    public RedisClientPool(NioEventLoopGroup group, int connections, Configuration... nodes) {
+        this(group, false, connections, nodes);
+    }
+
+    private RedisClientPool(NioEventLoopGroup group, boolean ownGroup, int connections,
+            Configuration... nodes) {
+        if (nodes.length == 0) {
+            throw new IllegalArgumentException("empty nodes");
+        }
+        if (connections < 1) {
+            throw new IllegalArgumentException("connections: " + connections);
+        }
+        if (ownGroup) {
+            group = new NioEventLoopGroup(connections);
+            group.setSharable(true);
+        } else if (!group.isSharable()) {
+            throw new IllegalArgumentException("group must be sharable");
+        }
+        this.group = group;
+        this.ownGroup = ownGroup;
+        this.connections = connections;
+        this.nodes = nodes;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (connectors != null) {
+            for (ChannelConnector connector : connectors) {
+                CloseUtil.close(connector);
+            }
+            connectors = null;
+            clients = null;
+        }
+        if (ownGroup) {
+            LifeCycleUtil.stop(group);
+        }
+    }
+
+    public synchronized void connect() throws IOException {
+        if (connectors != null) {
+            return;
+        }
+        if (ownGroup) {
+            LifeCycleUtil.start(group);
+        }
+        ChannelConnector[] connectors = new ChannelConnector[nodes.length * connections];
+        RedisClient[][] clients = new RedisClient[nodes.length][connections];
+        FixedAtomicInteger[] indexes = new FixedAtomicInteger[nodes.length];
+        boolean connected = false;
+        try {
+            for (int i = 0; i < nodes.length; i++) {
+                indexes[i] = new FixedAtomicInteger(connections - 1);
+                for (int j = 0; j < connections; j++) {
+                    RedisIOEventHandle ioEventHandle = new RedisIOEventHandle();
+                    ChannelContext context = new ChannelContext(nodes[i]);
+                    ChannelConnector connector = new ChannelConnector(context, group.getNext());
+                    context.setIoEventHandle(ioEventHandle);
+                    context.addSessionEventListener(ioEventHandle);
+                    context.setProtocolCodec(new RedisCodec());
+                    connector.setTimeout(timeout);
+                    connectors[i * connections + j] = connector;
+                    clients[i][j] = new RedisClient(connector.connect(), timeout);
+                }
+            }
+            connected = true;
+        } finally {
+            if (!connected) {
+                for (ChannelConnector connector : connectors) {
+                    CloseUtil.close(connector);
+                }
+                if (ownGroup) {
+                    LifeCycleUtil.stop(group);
+                }
+            }
+        }
+        this.indexes = indexes;
+        this.clients = clients;
+        this.connectors = connectors;
+    }
+
+    /**
+     * 按key所在的slot选择节点，再在该节点的连接中轮询
+     */
+    public RedisClient getClient(byte[] key) {
+        int node = nodes.length == 1 ? 0 : slot(key) * nodes.length / SLOTS;
+        return clients[node][indexes[node].getAndIncrement()];
+    }
+
+    public RedisClient getClient(String key) {
+        return getClient(key.getBytes(nodes[0].getCharset()));
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * key包含非空的{hash tag}时只计算tag部分，以便相关的key落在同一个slot
+     */
+    public static int slot(byte[] key) {
+        int start = 0;
+        int end = key.length;
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] == '{') {
+                for (int j = i + 1; j < key.length; j++) {
+                    if (key[j] == '}') {
+                        if (j > i + 1) {
+                            start = i + 1;
+                            end = j;
+                        }
+                        break;
+                    }
+                }
+                break;
+            }
+        }
+        return crc16(key, start, end) & (SLOTS - 1);
+    }
+
+    public static int crc16(byte[] data, int start, int end) {
+        int crc = 0;
+        for (int i = start; i < end; i++) {
+            crc = ((crc << 8) ^ CRC16_TABLE[((crc >>> 8) ^ data[i]) & 0xff]) & 0xffff;
+        }
+        return crc;
+    }
+
+}
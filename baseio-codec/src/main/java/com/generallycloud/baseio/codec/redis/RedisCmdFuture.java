@@ -22,6 +22,8 @@ import com.generallycloud.baseio.component.NioSocketChannel;
 
 public class RedisCmdFuture extends AbstractRedisFuture {
 
+    private RedisResponse response;
+
     @Override
     public boolean read(NioSocketChannel channel, ByteBuf buffer) throws IOException {
         return true;
@@ -32,4 +34,12 @@ public class RedisCmdFuture extends AbstractRedisFuture {
         return null;
     }
 
+    RedisResponse getResponse() {
+        return response;
+    }
+
+    void setResponse(RedisResponse response) {
+        this.response = response;
+    }
+
 }
@@ -15,28 +15,82 @@
  */
 package com.generallycloud.baseio.codec.redis;
 
+import java.util.ArrayDeque;
+
+import com.generallycloud.baseio.ClosedChannelException;
 import com.generallycloud.baseio.component.IoEventHandleAdaptor;
+import com.generallycloud.baseio.component.SessionEventListener;
 import com.generallycloud.baseio.component.SocketSession;
-import com.generallycloud.baseio.concurrent.Waiter;
 import com.generallycloud.baseio.protocol.Future;
 
-public class RedisIOEventHandle extends IoEventHandleAdaptor {
+/**
+ * 客户端使用，需要同时作为SessionEventListener注册到context，
+ * 以便连接关闭时结束所有未响应的命令
+ */
+public class RedisIOEventHandle extends IoEventHandleAdaptor implements SessionEventListener {
 
-    private Waiter waiter;
+    // redis在同一连接上严格按请求顺序返回响应，这里按写出顺序排队
+    private ArrayDeque<RedisResponse> pendings = new ArrayDeque<>();
 
     @Override
     public void accept(SocketSession session, Future future) throws Exception {
-        RedisFuture f = (RedisFuture) future;
-        Waiter waiter = this.waiter;
-        if (waiter != null) {
-            this.waiter = null;
-            waiter.response(f);
+        RedisResponse response;
+        synchronized (pendings) {
+            response = pendings.poll();
+        }
+        if (response != null) {
+            response.complete(((RedisFuture) future).getRedisNode());
+        }
+    }
+
+    @Override
+    public void exceptionCaught(SocketSession session, Future future, Exception ex) {
+        if (future instanceof RedisCmdFuture) {
+            RedisResponse response = ((RedisCmdFuture) future).getResponse();
+            if (response != null) {
+                synchronized (pendings) {
+                    pendings.remove(response);
+                }
+                response.fail(ex);
+                return;
+            }
+        }
+        super.exceptionCaught(session, future, ex);
+    }
+
+    @Override
+    public void sessionClosed(SocketSession session) {
+        RedisResponse[] responses;
+        synchronized (pendings) {
+            responses = pendings.toArray(new RedisResponse[pendings.size()]);
+            pendings.clear();
+        }
+        if (responses.length == 0) {
+            return;
+        }
+        ClosedChannelException e = new ClosedChannelException(session.toString());
+        for (RedisResponse response : responses) {
+            response.fail(e);
         }
     }
 
-    public Waiter newWaiter() {
-        this.waiter = new Waiter();
-        return this.waiter;
+    @Override
+    public void sessionOpened(SocketSession session) throws Exception {}
+
+    @Override
+    public void sessionWritabilityChanged(SocketSession session, boolean writable) {}
+
+    /**
+     * 入队并写出命令，多个线程并发写入时由session.flush()合并为一次写出
+     */
+    public void write(SocketSession session, RedisCmdFuture future, RedisResponse response) {
+        future.setResponse(response);
+        // 入队与write需要原子完成，保证队列顺序与写出顺序一致
+        synchronized (pendings) {
+            pendings.offer(response);
+            session.write(future);
+        }
+        session.flush();
     }
 
 }
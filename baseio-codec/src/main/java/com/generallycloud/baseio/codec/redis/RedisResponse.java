@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.codec.redis;
+
+import java.io.IOException;
+
+import com.generallycloud.baseio.TimeoutException;
+import com.generallycloud.baseio.log.Logger;
+import com.generallycloud.baseio.log.LoggerFactory;
+
+/**
+ * 一条已发出的redis命令的结果，同一连接上的响应按命令的写出顺序依次完成
+ *
+ * @author wangkai
+ *
+ */
+public class RedisResponse {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisResponse.class);
+
+    private RedisCallback       callback;
+    private Throwable           cause;
+    private boolean             done;
+    private RedisNode           redisNode;
+
+    public RedisResponse(RedisCallback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * 等待响应，超时抛出TimeoutException，连接关闭等失败抛出IOException
+     */
+    public RedisNode get(long timeout) throws IOException {
+        synchronized (this) {
+            long deadline = System.currentTimeMillis() + timeout;
+            for (; !done;) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) {
+                    throw new TimeoutException("timeout");
+                }
+                try {
+                    this.wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new TimeoutException("interrupted", e);
+                }
+            }
+        }
+        if (cause != null) {
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+        return redisNode;
+    }
+
+    public Throwable getCause() {
+        return cause;
+    }
+
+    public RedisNode getRedisNode() {
+        return redisNode;
+    }
+
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    public boolean isFailed() {
+        return cause != null;
+    }
+
+    void complete(RedisNode redisNode) {
+        complete(redisNode, null);
+    }
+
+    void fail(Throwable cause) {
+        complete(null, cause);
+    }
+
+    private void complete(RedisNode redisNode, Throwable cause) {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            this.done = true;
+            this.redisNode = redisNode;
+            this.cause = cause;
+            this.notifyAll();
+        }
+        RedisCallback callback = this.callback;
+        if (callback != null) {
+            try {
+                callback.onResponse(this);
+            } catch (Exception e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+    }
+
+}
@@ -187,7 +187,7 @@ public abstract class AbstractHeapByteBuf extends AbstractByteBuf {
         int start = ix(index);
         int end = start + length;
         try {
-            for (int i = end; i >= start; i--) {
+            for (int i = end - 1; i >= start; i--) {
                 if (!processor.process(array[i])) {
                     return i - start;
                 }
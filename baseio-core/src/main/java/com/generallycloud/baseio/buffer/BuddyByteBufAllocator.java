@@ -0,0 +1,172 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.buffer;
+
+/**
+ * 伙伴算法内存池，按2^order个unit分级（order即size class），
+ * 每个order维护一条空闲链表，申请与释放均为O(log capacity)，
+ * 不再像SimpleByteBufAllocator那样线性扫描整个内存池
+ *
+ * @author wangkai
+ *
+ */
+public class BuddyByteBufAllocator extends PooledByteBufAllocator {
+
+    private static final int NIL = -1;
+
+    // 0:非block起始位置, order + 1:空闲block, -(order + 1):已分配block
+    private int[]            blocks;
+    // 各order空闲链表的表头
+    private int[]            heads;
+    private int[]            nexts;
+    private int[]            prevs;
+    // 第n位为1表示order为n的空闲链表不为空
+    private int              freeOrders;
+    private int              maxOrder;
+    private int              free;
+
+    public BuddyByteBufAllocator(int capacity, int unitMemorySize, int bufRecycleSize,
+            boolean isDirect) {
+        super(capacity, unitMemorySize, bufRecycleSize, isDirect);
+    }
+
+    @Override
+    PooledByteBuf allocate(ByteBufNew byteBufNew, int limit, int size) {
+        int order = order(size);
+        if (order > maxOrder) {
+            return null;
+        }
+        int orders = freeOrders & (-1 << order);
+        if (orders == 0) {
+            return null;
+        }
+        int k = Integer.numberOfTrailingZeros(orders);
+        int blockBegin = heads[k];
+        remove(blockBegin, k);
+        // 将多余的部分拆分为伙伴放回对应的空闲链表
+        for (; k > order;) {
+            k--;
+            push(blockBegin + (1 << k), k);
+        }
+        blocks[blockBegin] = -(order + 1);
+        return byteBufNew.newByteBuf(this).produce(blockBegin, blockBegin + (1 << order), limit,
+                bufVersions++);
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        super.doStart();
+        this.maxOrder = 31 - Integer.numberOfLeadingZeros(capacity);
+        this.blocks = new int[capacity];
+        this.nexts = new int[capacity];
+        this.prevs = new int[capacity];
+        this.heads = new int[maxOrder + 1];
+        this.freeOrders = 0;
+        this.free = 0;
+        for (int i = 0; i < heads.length; i++) {
+            heads[i] = NIL;
+        }
+        // capacity不是2的幂时，拆分为若干个对齐的block
+        int begin = 0;
+        for (; begin < capacity;) {
+            int order = 31 - Integer.numberOfLeadingZeros(capacity - begin);
+            if (begin != 0) {
+                order = Math.min(order, Integer.numberOfTrailingZeros(begin));
+            }
+            push(begin, order);
+            begin += 1 << order;
+        }
+    }
+
+    private int order(int size) {
+        if (size <= 1) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    private void push(int blockBegin, int order) {
+        int head = heads[order];
+        blocks[blockBegin] = order + 1;
+        prevs[blockBegin] = NIL;
+        nexts[blockBegin] = head;
+        if (head != NIL) {
+            prevs[head] = blockBegin;
+        }
+        heads[order] = blockBegin;
+        freeOrders |= 1 << order;
+        free += 1 << order;
+    }
+
+    private void remove(int blockBegin, int order) {
+        int prev = prevs[blockBegin];
+        int next = nexts[blockBegin];
+        if (prev == NIL) {
+            heads[order] = next;
+            if (next == NIL) {
+                freeOrders &= ~(1 << order);
+            }
+        } else {
+            nexts[prev] = next;
+        }
+        if (next != NIL) {
+            prevs[next] = prev;
+        }
+        blocks[blockBegin] = 0;
+        free -= 1 << order;
+    }
+
+    @Override
+    protected int sizeClass(int units) {
+        return order(units);
+    }
+
+    @Override
+    void release0(PooledByteBuf buf) {
+        int blockBegin = buf.getBeginUnit();
+        int block = blocks[blockBegin];
+        if (block >= 0) {
+            return;
+        }
+        int order = -block - 1;
+        blocks[blockBegin] = 0;
+        for (; order < maxOrder;) {
+            int buddy = blockBegin ^ (1 << order);
+            if (buddy + (1 << order) > capacity || blocks[buddy] != order + 1) {
+                break;
+            }
+            remove(buddy, order);
+            blockBegin = Math.min(blockBegin, buddy);
+            order++;
+        }
+        push(blockBegin, order);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder();
+        b.append(this.getClass().getSimpleName());
+        b.append("[free=");
+        b.append(free);
+        b.append(",memory=");
+        b.append(capacity);
+        b.append(",isDirect=");
+        b.append(isDirect);
+        b.append("]");
+        return b.toString();
+    }
+
+}
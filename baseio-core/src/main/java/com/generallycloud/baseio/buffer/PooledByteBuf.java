@@ -19,6 +19,10 @@ public interface PooledByteBuf extends ByteBuf {
 
     int getBeginUnit();
 
+    PooledByteBuf getNextFree();
+
+    void setNextFree(PooledByteBuf nextFree);
+
     PooledByteBuf produce(int begin, int end, int newLimit, long version);
 
     PooledByteBuf produce(PooledByteBuf buf);
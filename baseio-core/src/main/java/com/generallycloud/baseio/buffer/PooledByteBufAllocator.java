@@ -15,24 +15,37 @@
  */
 package com.generallycloud.baseio.buffer;
 
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
 
-import com.generallycloud.baseio.common.ReleaseUtil;
-
 /**
  * @author wangkai
  *
  */
 public abstract class PooledByteBufAllocator extends AbstractByteBufAllocator {
 
-    protected ByteBufFactory         bufFactory;
-    protected long                   bufVersions = 1;
-    protected int                    capacity;
-    protected ReentrantLock          lock        = new ReentrantLock();
-    protected int                    mask;
-    protected int                    unitMemorySize;
-    protected int                    bufRecycleSize;
-    protected PooledByteBufAllocator next;
+    static final int                       CACHE_UNITS   = 8;
+
+    protected ByteBufFactory               bufFactory;
+    protected long                         bufVersions   = 1;
+    protected int                          capacity;
+    protected ReentrantLock                lock          = new ReentrantLock();
+    protected int                          mask;
+    protected int                          unitMemorySize;
+    protected int                          bufRecycleSize;
+    protected PooledByteBufAllocator       next;
+    // 只有owner线程会访问caches，owner线程释放的小块内存先缓存起来，
+    // 再次申请时无需加锁
+    private PooledByteBuf[][]              caches;
+    private int[]                          cacheSizes;
+    private int                            cacheSize;
+    private int                            cachedBufs;
+    private long                           cacheVersions = Long.MIN_VALUE;
+    private Thread                         owner;
+    // 停止后owner线程不再使用caches，其它线程释放的buf由自己回收
+    private volatile boolean               stopped       = true;
+    // 非owner线程释放的buf放入这里，由持有锁的线程批量释放
+    private AtomicReference<PooledByteBuf> returns       = new AtomicReference<>();
 
     public PooledByteBufAllocator(int capacity, int unitMemorySize, int bufRecycleSize,
             boolean isDirect) {
@@ -44,16 +57,26 @@ public abstract class PooledByteBufAllocator extends AbstractByteBufAllocator {
 
     private PooledByteBuf allocate(ByteBufNew byteBufNew, int limit) {
         int size = (limit + unitMemorySize - 1) / unitMemorySize;
+        boolean inOwner = byteBufNew == bufFactory && Thread.currentThread() == owner;
+        if (inOwner && cachedBufs > 0) {
+            PooledByteBuf buf = pollCache(limit, size);
+            if (buf != null) {
+                return buf;
+            }
+        }
         ReentrantLock lock = this.lock;
         lock.lock();
         try {
             if (!isRunning()) {
                 return null;
             }
-            int mask = this.mask;
-            PooledByteBuf buf = allocate(byteBufNew, limit, mask, this.capacity, size);
-            if (buf == null) {
-                buf = allocate(byteBufNew, limit, 0, mask, size);
+            if (returns.get() != null) {
+                drainReturns();
+            }
+            PooledByteBuf buf = allocate(byteBufNew, limit, size);
+            if (buf == null && inOwner && cachedBufs > 0) {
+                freeCaches();
+                buf = allocate(byteBufNew, limit, size);
             }
             return buf;
         } finally {
@@ -61,7 +84,10 @@ public abstract class PooledByteBufAllocator extends AbstractByteBufAllocator {
         }
     }
 
-    abstract PooledByteBuf allocate(ByteBufNew byteBufNew, int limit, int start, int end, int size);
+    /**
+     * allocate size units, invoked with lock held
+     */
+    abstract PooledByteBuf allocate(ByteBufNew byteBufNew, int limit, int size);
 
     @Override
     public ByteBuf allocate(int limit) {
@@ -91,6 +117,14 @@ public abstract class PooledByteBufAllocator extends AbstractByteBufAllocator {
                     : new HeapByteBufFactory(bufRecycleSize);
         }
         bufFactory.initializeMemory(capacity * unitMemorySize);
+        if (cacheSize > 0) {
+            int sizeClasses = sizeClass(CACHE_UNITS) + 1;
+            this.caches = new PooledByteBuf[sizeClasses][cacheSize];
+            this.cacheSizes = new int[sizeClasses];
+        }
+        this.cachedBufs = 0;
+        this.returns.set(null);
+        this.stopped = false;
     }
 
     @Override
@@ -98,12 +132,92 @@ public abstract class PooledByteBufAllocator extends AbstractByteBufAllocator {
         ReentrantLock lock = this.lock;
         lock.lock();
         try {
+            // caches由owner线程无锁访问，这里不能置空，重新启动时会重建
+            this.stopped = true;
+            drainReturns();
             freeMemory();
         } finally {
             lock.unlock();
         }
     }
 
+    // invoked with lock held
+    private void drainReturns() {
+        PooledByteBuf buf = returns.getAndSet(null);
+        for (; buf != null;) {
+            PooledByteBuf next = buf.getNextFree();
+            buf.setNextFree(null);
+            release0(buf);
+            bufFactory.freeBuf(buf);
+            buf = next;
+        }
+    }
+
+    // invoked with lock held by owner thread
+    private void freeCaches() {
+        PooledByteBuf[][] caches = this.caches;
+        int[] cacheSizes = this.cacheSizes;
+        for (int i = 0; i < caches.length; i++) {
+            PooledByteBuf[] cache = caches[i];
+            for (int j = 0; j < cacheSizes[i]; j++) {
+                release0(cache[j]);
+                bufFactory.freeBuf(cache[j]);
+                cache[j] = null;
+            }
+            cacheSizes[i] = 0;
+        }
+        cachedBufs = 0;
+    }
+
+    private boolean offerCache(PooledByteBuf buf) {
+        PooledByteBuf[][] caches = this.caches;
+        int[] cacheSizes = this.cacheSizes;
+        if (caches == null || stopped) {
+            return false;
+        }
+        int units = buf.capacity() / unitMemorySize;
+        if (units > CACHE_UNITS) {
+            return false;
+        }
+        int sizeClass = sizeClass(units);
+        int cacheSize = cacheSizes[sizeClass];
+        if (cacheSize == this.cacheSize) {
+            return false;
+        }
+        caches[sizeClass][cacheSize] = buf;
+        cacheSizes[sizeClass] = cacheSize + 1;
+        cachedBufs++;
+        return true;
+    }
+
+    private PooledByteBuf pollCache(int limit, int size) {
+        PooledByteBuf[][] caches = this.caches;
+        int[] cacheSizes = this.cacheSizes;
+        if (size > CACHE_UNITS || caches == null || stopped) {
+            return null;
+        }
+        int sizeClass = sizeClass(size);
+        int cacheSize = cacheSizes[sizeClass];
+        if (cacheSize == 0) {
+            return null;
+        }
+        PooledByteBuf[] cache = caches[sizeClass];
+        PooledByteBuf buf = cache[--cacheSize];
+        cache[cacheSize] = null;
+        cacheSizes[sizeClass] = cacheSize;
+        cachedBufs--;
+        int begin = buf.getBeginUnit();
+        int end = begin + buf.capacity() / unitMemorySize;
+        return buf.produce(begin, end, limit, cacheVersions++);
+    }
+
+    /**
+     * 同一size class中的内存块可以互相替代，默认每个unit数量为一个size class
+     */
+    protected int sizeClass(int units) {
+        return units;
+    }
+
     @Override
     public void freeMemory() {
         bufFactory.freeMemory();
@@ -136,7 +250,7 @@ public abstract class PooledByteBufAllocator extends AbstractByteBufAllocator {
             release((PooledByteBuf) buf, false);
             return buf.newByteBuf(this).produce(newBuf);
         }
-        ReleaseUtil.release(buf, buf.getReleaseVersion());
+        release((PooledByteBuf) buf, false);
         ByteBuf newBuf = allocate(buf, limit);
         if (newBuf == null) {
             throw new BufferException("reallocate failed");
@@ -144,7 +258,81 @@ public abstract class PooledByteBufAllocator extends AbstractByteBufAllocator {
         return newBuf;
     }
 
-    protected abstract void release(PooledByteBuf buf, boolean recycle);
+    @Override
+    public void release(ByteBuf buf) {
+        PooledByteBuf pooledBuf = (PooledByteBuf) buf;
+        Thread owner = this.owner;
+        if (owner == null) {
+            release(pooledBuf, true);
+            return;
+        }
+        if (Thread.currentThread() == owner) {
+            if (offerCache(pooledBuf)) {
+                return;
+            }
+            release(pooledBuf, true);
+            return;
+        }
+        AtomicReference<PooledByteBuf> returns = this.returns;
+        for (;;) {
+            PooledByteBuf head = returns.get();
+            pooledBuf.setNextFree(head);
+            if (returns.compareAndSet(head, pooledBuf)) {
+                break;
+            }
+        }
+        if (stopped) {
+            // 停止时doStop已经回收过returns，之后放入的buf在这里回收
+            ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                drainReturns();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    protected void release(PooledByteBuf buf, boolean recycle) {
+        ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (returns.get() != null) {
+                drainReturns();
+            }
+            release0(buf);
+            if (recycle) {
+                bufFactory.freeBuf(buf);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * free units of this buf, invoked with lock held
+     */
+    abstract void release0(PooledByteBuf buf);
+
+    public Thread getOwner() {
+        return owner;
+    }
+
+    /**
+     * 设置owner线程后，owner线程释放的buf会优先缓存在本地，
+     * 其它线程释放的buf会放入无锁队列，等待持有锁的线程批量回收
+     */
+    public void setOwner(Thread owner) {
+        this.owner = owner;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
 
     protected void setNext(PooledByteBufAllocator allocator) {
         this.next = allocator;
@@ -38,10 +38,18 @@ public class PooledByteBufAllocatorGroup extends AbstractLifeCycle
             int unitMemorySize = group.getMemoryPoolUnit();
             int bufRecycleSize = group.getBufRecycleSize();
             boolean direct = group.isEnableMemoryPoolDirect();
+            boolean buddy = group.isEnableMemoryPoolBuddy();
+            int bufCacheSize = group.getBufCacheSize();
             this.allocators = new PooledByteBufAllocator[core];
             for (int i = 0; i < allocators.length; i++) {
-                allocators[i] = new SimpleByteBufAllocator(capacity, unitMemorySize, bufRecycleSize,
-                        direct);
+                if (buddy) {
+                    allocators[i] = new BuddyByteBufAllocator(capacity, unitMemorySize,
+                            bufRecycleSize, direct);
+                } else {
+                    allocators[i] = new SimpleByteBufAllocator(capacity, unitMemorySize,
+                            bufRecycleSize, direct);
+                }
+                allocators[i].setCacheSize(bufCacheSize);
             }
         }
         PooledByteBufAllocator first = allocators[0];
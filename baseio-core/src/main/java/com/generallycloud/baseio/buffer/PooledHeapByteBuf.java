@@ -21,13 +21,24 @@ public class PooledHeapByteBuf extends AbstractHeapByteBuf implements PooledByte
         super(allocator, memory);
     }
 
-    private int beginUnit;
+    private int           beginUnit;
+    private PooledByteBuf nextFree;
 
     @Override
     public int getBeginUnit() {
         return beginUnit;
     }
 
+    @Override
+    public PooledByteBuf getNextFree() {
+        return nextFree;
+    }
+
+    @Override
+    public void setNextFree(PooledByteBuf nextFree) {
+        this.nextFree = nextFree;
+    }
+
     @Override
     public PooledByteBuf newByteBuf(ByteBufAllocator allocator) {
         return this;
@@ -16,7 +16,6 @@
 package com.generallycloud.baseio.buffer;
 
 import java.util.BitSet;
-import java.util.concurrent.locks.ReentrantLock;
 
 public class SimpleByteBufAllocator extends PooledByteBufAllocator {
 
@@ -28,9 +27,18 @@ public class SimpleByteBufAllocator extends PooledByteBufAllocator {
     private int[]  blockEnds;
     private BitSet frees;
 
-    //FIXME 判断余下的是否足够，否则退出循环
     @Override
-    PooledByteBuf allocate(ByteBufNew byteBufNew, int limit, int start, int end, int size) {
+    PooledByteBuf allocate(ByteBufNew byteBufNew, int limit, int size) {
+        int mask = this.mask;
+        PooledByteBuf buf = allocate(byteBufNew, limit, mask, this.capacity, size);
+        if (buf == null) {
+            buf = allocate(byteBufNew, limit, 0, mask, size);
+        }
+        return buf;
+    }
+
+    //FIXME 判断余下的是否足够，否则退出循环
+    private PooledByteBuf allocate(ByteBufNew byteBufNew, int limit, int start, int end, int size) {
         int freeSize = 0;
         for (; start < end;) {
             int blockEnd = start;
@@ -62,22 +70,8 @@ public class SimpleByteBufAllocator extends PooledByteBufAllocator {
     }
 
     @Override
-    public void release(ByteBuf buf) {
-        release((PooledByteBuf) buf, true);
-    }
-
-    @Override
-    protected void release(PooledByteBuf buf, boolean recycle) {
-        ReentrantLock lock = this.lock;
-        lock.lock();
-        try {
-            frees.set(buf.getBeginUnit());
-            if (recycle) {
-                bufFactory.freeBuf(buf);
-            }
-        } finally {
-            lock.unlock();
-        }
+    void release0(PooledByteBuf buf) {
+        frees.set(buf.getBeginUnit());
     }
 
     //FIXME ..not correct
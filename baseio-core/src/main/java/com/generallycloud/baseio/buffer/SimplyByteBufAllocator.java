@@ -15,8 +15,6 @@
  */
 package com.generallycloud.baseio.buffer;
 
-import java.util.concurrent.locks.ReentrantLock;
-
 import com.generallycloud.baseio.log.Logger;
 import com.generallycloud.baseio.log.LoggerFactory;
 
@@ -41,6 +39,15 @@ public class SimplyByteBufAllocator extends PooledByteBufAllocator {
     }
 
     @Override
+    PooledByteBuf allocate(ByteBufNew byteBufNew, int limit, int size) {
+        int mask = this.mask;
+        PooledByteBuf buf = allocate(byteBufNew, limit, mask, this.capacity, size);
+        if (buf == null) {
+            buf = allocate(byteBufNew, limit, 0, mask, size);
+        }
+        return buf;
+    }
+
     protected PooledByteBuf allocate(ByteBufNew byteBufNew, int limit, int begin, int end,
             int size) {
 
@@ -192,22 +199,8 @@ public class SimplyByteBufAllocator extends PooledByteBufAllocator {
     }
 
     @Override
-    public void release(ByteBuf buf) {
-        release((PooledByteBuf) buf, true);
-    }
-
-    @Override
-    protected void release(PooledByteBuf buf, boolean recycle) {
-        ReentrantLock lock = this.lock;
-        lock.lock();
-        try {
-            doRelease(getUnits()[buf.getBeginUnit()]);
-            if (recycle) {
-                bufFactory.freeBuf(buf);
-            }
-        } finally {
-            lock.unlock();
-        }
+    void release0(PooledByteBuf buf) {
+        doRelease(getUnits()[buf.getBeginUnit()]);
     }
 
 }
@@ -64,8 +64,11 @@ public class UnpooledDirectByteBuf extends AbstractDirectByteBuf {
         }
         //请勿移除此行，DirectByteBuffer需要手动回收，doRelease要确保被执行
         addReferenceCount();
-        return new DuplicatedByteBuf(new UnpooledDirectByteBuf(allocator, memory.duplicate()),
-                this);
+        UnpooledDirectByteBuf buf = new UnpooledDirectByteBuf(allocator, memory.duplicate());
+        // 构造时limit被重置为capacity，需要与原buf保持一致
+        buf.limit(limit());
+        buf.position(position());
+        return new DuplicatedByteBuf(buf, this);
     }
 
     @Override
@@ -80,8 +83,8 @@ public class UnpooledDirectByteBuf extends AbstractDirectByteBuf {
         if (refCntUpdater.compareAndSet(this, referenceCount, referenceCount - 1)) {
             if (referenceCount == 1) {
                 ByteBufUtil.release(memory);
-                return;
             }
+            return;
         }
         for (;;) {
             referenceCount = this.referenceCount;
@@ -91,8 +94,8 @@ public class UnpooledDirectByteBuf extends AbstractDirectByteBuf {
             if (refCntUpdater.compareAndSet(this, referenceCount, referenceCount - 1)) {
                 if (referenceCount == 1) {
                     ByteBufUtil.release(memory);
-                    return;
                 }
+                return;
             }
         }
     }
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 广播组，成员按所属的NioEventLoop分组保存在写时复制的数组中，
+ * 广播时无需加锁和快照，每个eventLoop每次广播只收到一个任务
+ * 
+ * @author wangkai
+ *
+ */
+public abstract class BroadcastGroup<T> {
+
+    private static final Slot[] EMPTY = new Slot[0];
+
+    private final ReentrantLock lock  = new ReentrantLock();
+    private volatile int        size;
+    private volatile Slot[]     slots = EMPTY;
+
+    public boolean add(T member) {
+        NioEventLoop eventLoop = getEventLoop(member);
+        ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Slot[] slots = this.slots;
+            int index = indexOf(slots, eventLoop);
+            if (index == -1) {
+                Slot[] newSlots = Arrays.copyOf(slots, slots.length + 1);
+                newSlots[slots.length] = new Slot(eventLoop, new Object[] { member });
+                this.slots = newSlots;
+            } else {
+                Object[] members = slots[index].members;
+                for (Object m : members) {
+                    if (m == member) {
+                        return false;
+                    }
+                }
+                Object[] newMembers = Arrays.copyOf(members, members.length + 1);
+                newMembers[members.length] = member;
+                Slot[] newSlots = slots.clone();
+                newSlots[index] = new Slot(eventLoop, newMembers);
+                this.slots = newSlots;
+            }
+            size++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean remove(T member) {
+        NioEventLoop eventLoop = getEventLoop(member);
+        ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Slot[] slots = this.slots;
+            int index = indexOf(slots, eventLoop);
+            if (index == -1) {
+                return false;
+            }
+            Object[] members = slots[index].members;
+            int i = 0;
+            for (; i < members.length; i++) {
+                if (members[i] == member) {
+                    break;
+                }
+            }
+            if (i == members.length) {
+                return false;
+            }
+            if (members.length == 1) {
+                Slot[] newSlots = new Slot[slots.length - 1];
+                System.arraycopy(slots, 0, newSlots, 0, index);
+                System.arraycopy(slots, index + 1, newSlots, index, slots.length - index - 1);
+                this.slots = newSlots;
+            } else {
+                Object[] newMembers = new Object[members.length - 1];
+                System.arraycopy(members, 0, newMembers, 0, i);
+                System.arraycopy(members, i + 1, newMembers, i, members.length - i - 1);
+                Slot[] newSlots = slots.clone();
+                newSlots[index] = new Slot(eventLoop, newMembers);
+                this.slots = newSlots;
+            }
+            size--;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int indexOf(Slot[] slots, NioEventLoop eventLoop) {
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i].eventLoop == eventLoop) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 返回当前成员的快照，会产生新的list，不要在广播路径上使用
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> getMembers() {
+        Slot[] slots = this.slots;
+        List<T> list = new ArrayList<>(size);
+        for (Slot slot : slots) {
+            for (Object m : slot.members) {
+                list.add((T) m);
+            }
+        }
+        return list;
+    }
+
+    protected Slot[] getSlots() {
+        return slots;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    protected abstract NioEventLoop getEventLoop(T member);
+
+    /**
+     * 同一个eventLoop下的成员，创建后不再修改
+     */
+    protected static final class Slot {
+
+        private final NioEventLoop eventLoop;
+        private final Object[]     members;
+
+        Slot(NioEventLoop eventLoop, Object[] members) {
+            this.eventLoop = eventLoop;
+            this.members = members;
+        }
+
+        public NioEventLoop getEventLoop() {
+            return eventLoop;
+        }
+
+        public Object[] getMembers() {
+            return members;
+        }
+
+    }
+
+}
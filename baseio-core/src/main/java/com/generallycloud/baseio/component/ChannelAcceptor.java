@@ -16,9 +16,12 @@
 package com.generallycloud.baseio.component;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
 import java.net.BindException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
 import java.nio.channels.ServerSocketChannel;
 import java.util.Collection;
 
@@ -38,14 +41,18 @@ import com.generallycloud.baseio.protocol.Future;
  */
 public class ChannelAcceptor implements ChannelService {
 
-    private boolean              active = false;
-    private ChannelContext       context;
-    private NioEventLoopGroup    group;
-    private Logger               logger = LoggerFactory.getLogger(getClass());
-    private ServerSocketChannel  selectableChannel;
-    private InetSocketAddress    serverAddress;
-    private ServerSocket         serverSocket;
-    private SocketSessionManager sessionManager;
+    // SO_REUSEPORT在jdk9中才加入StandardSocketOptions，低版本jdk中为null
+    private static final SocketOption<Boolean> SO_REUSEPORT = findReusePortOption();
+
+    private boolean               active = false;
+    private ChannelContext        context;
+    private NioEventLoopGroup     group;
+    private Logger                logger = LoggerFactory.getLogger(getClass());
+    private ServerSocketChannel[] reusePortChannels;
+    private ServerSocketChannel   selectableChannel;
+    private InetSocketAddress     serverAddress;
+    private ServerSocket          serverSocket;
+    private SocketSessionManager  sessionManager;
 
     public ChannelAcceptor(ChannelContext context) {
         this(context, new NioEventLoopGroup());
@@ -72,23 +79,62 @@ public class ChannelAcceptor implements ChannelService {
         LifeCycleUtil.start(getContext());
         int port = getContext().getConfiguration().getPort();
         this.serverAddress = new InetSocketAddress(port);
+        this.sessionManager = context.getSessionManager();
+        if (isEnableReusePort()) {
+            bindReusePort(port);
+            this.active = true;
+            LoggerUtil.prettyLog(logger, "server listening @{} with {} reuse port acceptors",
+                    getServerSocketAddress(), reusePortChannels.length);
+            return;
+        }
         this.selectableChannel = ServerSocketChannel.open();
         this.selectableChannel.configureBlocking(false);
         this.serverSocket = ((ServerSocketChannel) selectableChannel).socket();
         this.group.registSelector(context);
-        this.sessionManager = context.getSessionManager();
         try {
             this.serverSocket.bind(serverAddress, 50);
         } catch (IOException e) {
-            if ("Already bound".equalsIgnoreCase(e.getMessage()) || e instanceof BindException) {
-                throw new BindException("Already bound at " + port);
-            }
-            throw e;
+            throw bindException(e, port);
         }
         this.active = true;
         LoggerUtil.prettyLog(logger, "server listening @{}", getServerSocketAddress());
     }
 
+    private IOException bindException(IOException e, int port) {
+        if ("Already bound".equalsIgnoreCase(e.getMessage()) || e instanceof BindException) {
+            return new BindException("Already bound at " + port);
+        }
+        return e;
+    }
+
+    // 每个eventLoop绑定一个开启了SO_REUSEPORT的ServerSocketChannel，由内核分配连接
+    private void bindReusePort(int port) throws IOException {
+        ServerSocketChannel[] channels = new ServerSocketChannel[group.getEventLoopSize()];
+        this.reusePortChannels = channels;
+        try {
+            for (int i = 0; i < channels.length; i++) {
+                ServerSocketChannel channel = ServerSocketChannel.open();
+                channels[i] = channel;
+                channel.configureBlocking(false);
+                channel.setOption(SO_REUSEPORT, true);
+            }
+            this.selectableChannel = channels[0];
+            this.serverSocket = channels[0].socket();
+            this.group.registSelector(context);
+            for (ServerSocketChannel channel : channels) {
+                channel.bind(serverAddress, 50);
+            }
+        } catch (IOException e) {
+            for (ServerSocketChannel channel : channels) {
+                CloseUtil.close(channel);
+            }
+            this.reusePortChannels = null;
+            this.selectableChannel = null;
+            this.serverSocket = null;
+            throw bindException(e, port);
+        }
+    }
+
     public void broadcast(Future future) throws IOException {
         sessionManager.broadcast(future);
     }
@@ -115,6 +161,14 @@ public class ChannelAcceptor implements ChannelService {
         return selectableChannel;
     }
 
+    // reuse port模式下每个eventLoop拥有各自的ServerSocketChannel
+    ServerSocketChannel getSelectableChannel(NioEventLoop eventLoop) {
+        if (reusePortChannels == null || eventLoop.getIndex() < 0) {
+            return selectableChannel;
+        }
+        return reusePortChannels[eventLoop.getIndex()];
+    }
+
     @Override
     public InetSocketAddress getServerSocketAddress() {
         return serverAddress;
@@ -125,10 +179,55 @@ public class ChannelAcceptor implements ChannelService {
         return active;
     }
 
+    private boolean isEnableReusePort() {
+        if (!group.isEnableReusePort()) {
+            return false;
+        }
+        if (group.isSharable()) {
+            logger.error("reuse port is not supported by sharable event loop group");
+            return false;
+        }
+        if (SO_REUSEPORT == null) {
+            logger.error("SO_REUSEPORT is not supported by current jdk");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 是否已经通过SO_REUSEPORT绑定了多个ServerSocketChannel
+     */
+    public boolean isReusePort() {
+        return reusePortChannels != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> findReusePortOption() {
+        try {
+            Field field = StandardSocketOptions.class.getField("SO_REUSEPORT");
+            SocketOption<Boolean> option = (SocketOption<Boolean>) field.get(null);
+            ServerSocketChannel channel = ServerSocketChannel.open();
+            try {
+                if (channel.supportedOptions().contains(option)) {
+                    return option;
+                }
+            } finally {
+                CloseUtil.close(channel);
+            }
+        } catch (Exception e) {}
+        return null;
+    }
+
     public synchronized void unbind() throws TimeoutException {
         active = false;
         CloseUtil.close(serverSocket);
         CloseUtil.close(selectableChannel);
+        if (reusePortChannels != null) {
+            for (ServerSocketChannel channel : reusePortChannels) {
+                CloseUtil.close(channel);
+            }
+            reusePortChannels = null;
+        }
         LifeCycleUtil.stop(group);
         LifeCycleUtil.stop(context);
     }
@@ -32,6 +32,7 @@ import com.generallycloud.baseio.component.ssl.SslContext;
 import com.generallycloud.baseio.concurrent.ExecutorEventLoopGroup;
 import com.generallycloud.baseio.concurrent.LineEventLoopGroup;
 import com.generallycloud.baseio.concurrent.ThreadEventLoopGroup;
+import com.generallycloud.baseio.concurrent.VirtualThreadEventLoopGroup;
 import com.generallycloud.baseio.configuration.Configuration;
 import com.generallycloud.baseio.log.Logger;
 import com.generallycloud.baseio.log.LoggerFactory;
@@ -39,7 +40,8 @@ import com.generallycloud.baseio.protocol.ProtocolCodec;
 
 public class ChannelContext extends AbstractLifeCycle {
 
-    private Map<Object, Object>            attributes    = new HashMap<>();
+    private Map<String, ProtocolCodec>     appProtocolCodecs = new HashMap<>();
+    private Map<Object, Object>            attributes        = new HashMap<>();
     private ChannelService                 channelService;
     private Configuration                  configuration;
     private boolean                        enableSsl;
@@ -47,17 +49,17 @@ public class ChannelContext extends AbstractLifeCycle {
     private ExecutorEventLoopGroup         executorEventLoopGroup;
     private ForeFutureAcceptor             foreFutureAcceptor;
     private boolean                        initialized;
-    private IoEventHandleAdaptor           ioEventHandle = new DefaultIoEventHandle();
-    private Logger                         logger        = LoggerFactory.getLogger(getClass());
+    private IoEventHandleAdaptor           ioEventHandle     = new DefaultIoEventHandle();
+    private Logger                         logger            = LoggerFactory.getLogger(getClass());
     private ProtocolCodec                  protocolCodec;
     private NioEventLoopGroup              nioEventLoopGroup;
     private SocketSessionFactory           sessionFactory;
     private SocketSessionManager           sessionManager;
-    private List<SessionEventListener>     ssels         = new ArrayList<>();
-    private List<SessionIdleEventListener> ssiels        = new ArrayList<>();
+    private List<SessionEventListener>     ssels             = new ArrayList<>();
+    private List<SessionIdleEventListener> ssiels            = new ArrayList<>();
     private SslContext                     sslContext;
     private NioSocketChannel               simulateSocketChannel;
-    private long                           startupTime   = System.currentTimeMillis();
+    private long                           startupTime       = System.currentTimeMillis();
 
     public ChannelContext(Configuration configuration) {
         this.configuration = configuration;
@@ -111,9 +113,16 @@ public class ChannelContext extends AbstractLifeCycle {
         }
         sessionManager = new SocketSessionManager(this);
         protocolCodec.initialize(this);
+        for (ProtocolCodec codec : appProtocolCodecs.values()) {
+            codec.initialize(this);
+        }
         ioEventHandle.initialize(this);
         if (executorEventLoopGroup == null) {
-            if (getConfiguration().isEnableWorkEventLoop()) {
+            if (configuration.isEnableWorkEventLoop()
+                    && configuration.isEnableVirtualWorkEventLoop()) {
+                executorEventLoopGroup = new VirtualThreadEventLoopGroup("event-process",
+                        configuration.getWorkEventQueueSize(), eventLoopSize * 64);
+            } else if (configuration.isEnableWorkEventLoop()) {
                 executorEventLoopGroup = new ThreadEventLoopGroup(this, "event-process",
                         eventLoopSize);
             } else {
@@ -143,6 +152,13 @@ public class ChannelContext extends AbstractLifeCycle {
         this.attributes.clear();
     }
 
+    /**
+     * ssl握手完成后按ALPN协商的协议选择的codec，未注册时沿用默认codec
+     */
+    public ProtocolCodec getAppProtocolCodec(String protocol) {
+        return appProtocolCodecs.get(protocol);
+    }
+
     public Object getAttribute(Object key) {
         return this.attributes.get(key);
     }
@@ -219,6 +235,11 @@ public class ChannelContext extends AbstractLifeCycle {
         this.attributes.put(key, value);
     }
 
+    public void setAppProtocolCodec(String protocol, ProtocolCodec protocolCodec) {
+        checkNotRunning();
+        this.appProtocolCodecs.put(protocol, protocolCodec);
+    }
+
     public void setChannelService(ChannelService service) {
         this.channelService = service;
     }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.Channel;
+
+/**
+ * 传输层的多路复用器，NioEventLoop通过该接口完成注册、select、wakeup
+ * 以及处理已就绪的key，读写及interest ops通过SelectorKey完成，
+ * 不依赖java.nio.channels.Selector，实现由NioEventLoopGroup的
+ * ChannelSelectorProvider指定，默认为NioChannelSelector
+ * 
+ * @author wangkai
+ *
+ */
+public interface ChannelSelector extends Closeable {
+
+    int OP_READ    = 1 << 0;
+
+    int OP_WRITE   = 1 << 2;
+
+    int OP_CONNECT = 1 << 3;
+
+    int OP_ACCEPT  = 1 << 4;
+
+    /**
+     * 将已就绪的key依次交给handler处理，处理完成后清空
+     */
+    void handleSelectedKeys(SelectedKeyHandler handler);
+
+    SelectorKey keyFor(Channel channel);
+
+    SelectorKey register(Channel channel, int ops, Object attachment) throws IOException;
+
+    int select(long timeout) throws IOException;
+
+    int selectNow() throws IOException;
+
+    void wakeup();
+
+    interface SelectedKeyHandler {
+
+        void accept(SelectorKey key);
+
+    }
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.component;
+
+import java.io.IOException;
+
+import com.generallycloud.baseio.protocol.DatagramPacket;
+
+/**
+ * 处理NioDatagramChannel收到的报文，在eventLoop线程中调用
+ * 
+ * @author wangkai
+ *
+ */
+public interface DatagramPacketAcceptor {
+
+    void accept(DatagramSession session, DatagramPacket packet) throws IOException;
+
+}
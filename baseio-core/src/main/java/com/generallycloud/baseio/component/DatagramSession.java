@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.component;
+
+import java.io.Closeable;
+import java.net.SocketAddress;
+
+import com.generallycloud.baseio.protocol.DatagramPacket;
+
+/**
+ * NioDatagramChannel上的一个远端地址，可以绑定到一个tcp的SocketSession上，
+ * 绑定后通过{@link #get(SocketSession)}由SocketSession找到对应的DatagramSession
+ * 
+ * @author wangkai
+ *
+ */
+public class DatagramSession implements Closeable {
+
+    public static final String       SESSION_KEY = "DatagramSession";
+
+    private final NioDatagramChannel channel;
+    private final SocketAddress      remoteAddress;
+    private volatile SocketSession   socketSession;
+    private volatile Object          attachment;
+    // 最后一次收到该地址报文的时间，长时间没有报文的session会被channel清除
+    private volatile long            lastAccess;
+
+    DatagramSession(NioDatagramChannel channel, SocketAddress remoteAddress) {
+        this.channel = channel;
+        this.remoteAddress = remoteAddress;
+        this.lastAccess = System.currentTimeMillis();
+    }
+
+    public static DatagramSession get(SocketSession session) {
+        return (DatagramSession) session.getAttribute(SESSION_KEY);
+    }
+
+    /**
+     * 与tcp的SocketSession互相绑定
+     */
+    public void bind(SocketSession session) {
+        this.socketSession = session;
+        session.setAttribute(SESSION_KEY, this);
+    }
+
+    /**
+     * 发送一个报文，可以在任意线程调用，报文会在eventLoop中与其他待发送的报文一起批量发送
+     */
+    public void sendPacket(DatagramPacket packet) {
+        channel.send(remoteAddress, packet.getData());
+    }
+
+    public void sendPacket(byte[] data) {
+        channel.send(remoteAddress, data);
+    }
+
+    public NioDatagramChannel getChannel() {
+        return channel;
+    }
+
+    public SocketAddress getRemoteSocketAddress() {
+        return remoteAddress;
+    }
+
+    public SocketSession getSocketSession() {
+        return socketSession;
+    }
+
+    public long getLastAccessTime() {
+        return lastAccess;
+    }
+
+    void setLastAccessTime(long lastAccess) {
+        this.lastAccess = lastAccess;
+    }
+
+    public Object getAttachment() {
+        return attachment;
+    }
+
+    public void setAttachment(Object attachment) {
+        this.attachment = attachment;
+    }
+
+    /**
+     * 从channel中移除该session并解除与SocketSession的绑定，不会关闭channel
+     */
+    @Override
+    public void close() {
+        channel.removeSession(this);
+        SocketSession session = socketSession;
+        if (session != null) {
+            socketSession = null;
+            if (session.getAttribute(SESSION_KEY) == this) {
+                session.removeAttribute(SESSION_KEY);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DatagramSession(" + remoteAddress + ")";
+    }
+
+}
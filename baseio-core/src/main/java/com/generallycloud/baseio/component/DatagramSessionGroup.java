@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.component;
+
+import java.io.IOException;
+
+import com.generallycloud.baseio.log.Logger;
+import com.generallycloud.baseio.log.LoggerFactory;
+import com.generallycloud.baseio.protocol.DatagramPacket;
+
+/**
+ * udp广播组，同一个channel下的成员共享一次拷贝到sendBuffer的数据
+ * 
+ * @author wangkai
+ *
+ */
+public class DatagramSessionGroup extends BroadcastGroup<DatagramSession> {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatagramSessionGroup.class);
+
+    @Override
+    protected NioEventLoop getEventLoop(DatagramSession session) {
+        return session.getChannel().getEventLoop();
+    }
+
+    public void broadcast(DatagramPacket packet) {
+        broadcast(packet.getData(), null);
+    }
+
+    /**
+     * 向除except之外的全部成员广播，广播期间data不可修改
+     */
+    public void broadcast(DatagramPacket packet, DatagramSession except) {
+        broadcast(packet.getData(), except);
+    }
+
+    public void broadcast(byte[] data, DatagramSession except) {
+        for (Slot slot : getSlots()) {
+            slot.getEventLoop().dispatch(new FanOutTask(slot, data, except));
+        }
+    }
+
+    static final class FanOutTask implements NioEventLoopTask {
+
+        private final byte[]          data;
+        private final DatagramSession except;
+        private final Slot            slot;
+
+        FanOutTask(Slot slot, byte[] data, DatagramSession except) {
+            this.slot = slot;
+            this.data = data;
+            this.except = except;
+        }
+
+        @Override
+        public void close() throws IOException {}
+
+        @Override
+        public void fireEvent(NioEventLoop eventLoop) {
+            NioDatagramChannel last = null;
+            for (Object m : slot.getMembers()) {
+                DatagramSession session = (DatagramSession) m;
+                if (session == except) {
+                    continue;
+                }
+                NioDatagramChannel channel = session.getChannel();
+                if (channel != last) {
+                    if (last != null) {
+                        last.endShared();
+                    }
+                    last = channel;
+                }
+                try {
+                    channel.sendShared(session.getRemoteSocketAddress(), data);
+                } catch (Throwable e) {
+                    logger.debug(e.getMessage(), e);
+                }
+            }
+            if (last != null) {
+                last.endShared();
+            }
+        }
+
+    }
+
+}
@@ -16,6 +16,7 @@
 package com.generallycloud.baseio.component;
 
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 import com.generallycloud.baseio.concurrent.ExecutorEventLoop;
 import com.generallycloud.baseio.log.Logger;
@@ -23,6 +24,7 @@ import com.generallycloud.baseio.log.LoggerFactory;
 import com.generallycloud.baseio.protocol.ChannelFuture;
 import com.generallycloud.baseio.protocol.Future;
 import com.generallycloud.baseio.protocol.ProtocolCodec;
+import com.generallycloud.baseio.protocol.RetainedChannelFuture;
 
 public class ForeFutureAcceptor {
 
@@ -46,38 +48,76 @@ public class ForeFutureAcceptor {
         }
         final ChannelContext context = session.getContext();
         final IoEventHandle eventHandle = context.getIoEventHandle();
+        if (enableWorkEventLoop) {
+            acceptBatch(session, eventHandle, futures);
+            futures.clear();
+            return;
+        }
         for (int i = 0; i < futures.size(); i++) {
-            final ChannelFuture future = futures.get(i);
+            ChannelFuture future = futures.get(i);
             if (future.isSilent()) {
+                releaseRetained(session, future);
                 continue;
             }
             if (future.isHeartbeat()) {
                 acceptHeartBeat(session, future);
+                releaseRetained(session, future);
                 continue;
             }
-            if (enableWorkEventLoop) {
-                ExecutorEventLoop eventLoop = session.getExecutorEventLoop();
-                eventLoop.dispatch(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            eventHandle.accept(session, future);
-                        } catch (Exception e) {
-                            eventHandle.exceptionCaught(session, future, e);
-                        }
-                    }
-                });
-            } else {
-                try {
-                    eventHandle.accept(session, future);
-                } catch (Exception e) {
-                    eventHandle.exceptionCaught(session, future, e);
-                }
+            try {
+                eventHandle.accept(session, future);
+            } catch (Exception e) {
+                eventHandle.exceptionCaught(session, future, e);
             }
+            releaseRetained(session, future);
         }
         futures.clear();
     }
 
+    // 一次读取解出的全部future作为一个任务投递，readFutures会被io线程复用，需要拷贝
+    private void acceptBatch(SocketSession session, IoEventHandle eventHandle,
+            List<ChannelFuture> futures) {
+        ChannelFuture[] batch = null;
+        int size = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            ChannelFuture future = futures.get(i);
+            if (future.isSilent()) {
+                releaseRetained(session, future);
+                continue;
+            }
+            if (future.isHeartbeat()) {
+                acceptHeartBeat(session, future);
+                releaseRetained(session, future);
+                continue;
+            }
+            if (batch == null) {
+                batch = new ChannelFuture[futures.size() - i];
+            }
+            batch[size++] = future;
+        }
+        if (size == 0) {
+            return;
+        }
+        ExecutorEventLoop eventLoop = session.getExecutorEventLoop();
+        try {
+            eventLoop.dispatch(new FutureBatchJob(session, eventHandle, batch, size));
+        } catch (RejectedExecutionException e) {
+            // 队列已满或已停止，batch中的future不会再被处理，需要在这里释放
+            for (int i = 0; i < size; i++) {
+                ChannelFuture future = batch[i];
+                eventHandle.exceptionCaught(session, future, e);
+                releaseRetained(session, future);
+            }
+        }
+    }
+
+    // 持有读取时报文的future，accept结束后没有被转发(flush)的在这里释放
+    private static void releaseRetained(SocketSession session, ChannelFuture future) {
+        if (future instanceof RetainedChannelFuture) {
+            ((RetainedChannelFuture) future).releaseRetained(session.unsafe().getEventLoop());
+        }
+    }
+
     protected void acceptHeartBeat(final SocketSession session, final ChannelFuture future) {
         if (future.isPING()) {
             heartBeatLogger.logRequest(session);
@@ -127,4 +167,33 @@ public class ForeFutureAcceptor {
         void logResponse(SocketSession session);
     }
 
+    private static class FutureBatchJob implements Runnable {
+
+        private final ChannelFuture[] futures;
+        private final IoEventHandle   eventHandle;
+        private final SocketSession   session;
+        private final int             size;
+
+        FutureBatchJob(SocketSession session, IoEventHandle eventHandle,
+                ChannelFuture[] futures, int size) {
+            this.session = session;
+            this.eventHandle = eventHandle;
+            this.futures = futures;
+            this.size = size;
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < size; i++) {
+                ChannelFuture future = futures[i];
+                try {
+                    eventHandle.accept(session, future);
+                } catch (Exception e) {
+                    eventHandle.exceptionCaught(session, future, e);
+                }
+                releaseRetained(session, future);
+            }
+        }
+    }
+
 }
@@ -32,4 +32,9 @@ public class LoggerSocketSEListener implements SessionEventListener {
         logger.info("session closed:{}", session);
     }
 
+    @Override
+    public void sessionWritabilityChanged(SocketSession session, boolean writable) {
+        logger.info("session writability changed:{},writable:{}", session, writable);
+    }
+
 }
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.component;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.Channel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.WritableByteChannel;
+import java.nio.channels.spi.SelectorProvider;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import com.generallycloud.baseio.common.ClassUtil;
+
+/**
+ * 基于java.nio.channels.Selector的实现，如果可以则通过反射将selectedKeys
+ * 替换为数组实现的SelectionKeySet，避免遍历HashSet
+ * <p>
+ * ChannelSelector中的ops常量与SelectionKey取值相同，无需转换
+ * 
+ * @author wangkai
+ *
+ */
+public class NioChannelSelector implements ChannelSelector {
+
+    private final Selector        selector;
+    private final SelectionKeySet selectionKeySet;
+
+    NioChannelSelector(Selector selector, SelectionKeySet selectionKeySet) {
+        this.selector = selector;
+        this.selectionKeySet = selectionKeySet;
+    }
+
+    @Override
+    public void close() throws IOException {
+        selector.close();
+    }
+
+    public Selector getSelector() {
+        return selector;
+    }
+
+    @Override
+    public void handleSelectedKeys(SelectedKeyHandler handler) {
+        if (selectionKeySet != null) {
+            SelectionKeySet keySet = selectionKeySet;
+            for (int i = 0; i < keySet.size; i++) {
+                SelectionKey k = keySet.keys[i];
+                keySet.keys[i] = null;
+                handler.accept((NioSelectorKey) k.attachment());
+            }
+            keySet.reset();
+        } else {
+            Set<SelectionKey> sks = selector.selectedKeys();
+            for (SelectionKey k : sks) {
+                handler.accept((NioSelectorKey) k.attachment());
+            }
+            sks.clear();
+        }
+    }
+
+    @Override
+    public SelectorKey keyFor(Channel channel) {
+        SelectionKey k = ((SelectableChannel) channel).keyFor(selector);
+        if (k == null) {
+            return null;
+        }
+        return (NioSelectorKey) k.attachment();
+    }
+
+    @Override
+    public SelectorKey register(Channel channel, int ops, Object attachment)
+            throws IOException {
+        SelectableChannel ch = (SelectableChannel) channel;
+        SelectionKey k = ch.keyFor(selector);
+        if (k != null && k.isValid()) {
+            // 与SelectableChannel.register一致，已注册过的channel更新ops及attachment
+            NioSelectorKey key = (NioSelectorKey) k.attachment();
+            k.interestOps(ops);
+            key.attach(attachment);
+            return key;
+        }
+        NioSelectorKey key = new NioSelectorKey(attachment);
+        key.key = ch.register(selector, ops, key);
+        return key;
+    }
+
+    @Override
+    public int select(long timeout) throws IOException {
+        return selector.select(timeout);
+    }
+
+    @Override
+    public int selectNow() throws IOException {
+        return selector.selectNow();
+    }
+
+    @Override
+    public void wakeup() {
+        selector.wakeup();
+    }
+
+    public static NioChannelSelector open() throws IOException {
+        return open(true);
+    }
+
+    @SuppressWarnings("rawtypes")
+    public static NioChannelSelector open(boolean optimizeSelectedKeys) throws IOException {
+        SelectorProvider provider = SelectorProvider.provider();
+        final Selector selector = provider.openSelector();
+        if (!optimizeSelectedKeys) {
+            return new NioChannelSelector(selector, null);
+        }
+        Object res = AccessController.doPrivileged(new PrivilegedAction<Object>() {
+            @Override
+            public Object run() {
+                try {
+                    return Class.forName("sun.nio.ch.SelectorImpl");
+                } catch (Throwable cause) {
+                    return cause;
+                }
+            }
+        });
+        if (res instanceof Throwable) {
+            return new NioChannelSelector(selector, null);
+        }
+        final Class selectorImplClass = (Class) res;
+        final SelectionKeySet keySet = new SelectionKeySet();
+        res = AccessController.doPrivileged(new PrivilegedAction<Object>() {
+            @Override
+            public Object run() {
+                try {
+                    Field selectedKeysField = selectorImplClass.getDeclaredField("selectedKeys");
+                    Field publicSelectedKeysField = selectorImplClass
+                            .getDeclaredField("publicSelectedKeys");
+
+                    Throwable cause = ClassUtil.trySetAccessible(selectedKeysField);
+                    if (cause != null) {
+                        return cause;
+                    }
+                    cause = ClassUtil.trySetAccessible(publicSelectedKeysField);
+                    if (cause != null) {
+                        return cause;
+                    }
+
+                    selectedKeysField.set(selector, keySet);
+                    publicSelectedKeysField.set(selector, keySet);
+                    return null;
+                } catch (Exception e) {
+                    return e;
+                }
+            }
+        });
+        if (res instanceof Throwable) {
+            return new NioChannelSelector(selector, null);
+        }
+        return new NioChannelSelector(selector, keySet);
+    }
+
+    /**
+     * SelectionKey的attachment为该对象，业务的attachment保存在这里
+     */
+    static final class NioSelectorKey implements SelectorKey {
+
+        private volatile Object attachment;
+        private SelectionKey    key;
+
+        NioSelectorKey(Object attachment) {
+            this.attachment = attachment;
+        }
+
+        @Override
+        public void attach(Object attachment) {
+            this.attachment = attachment;
+        }
+
+        @Override
+        public Object attachment() {
+            return attachment;
+        }
+
+        @Override
+        public void cancel() {
+            key.cancel();
+        }
+
+        @Override
+        public Channel channel() {
+            return key.channel();
+        }
+
+        @Override
+        public int interestOps() {
+            return key.interestOps();
+        }
+
+        @Override
+        public void interestOps(int ops) {
+            key.interestOps(ops);
+        }
+
+        @Override
+        public boolean isValid() {
+            return key.isValid();
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return ((ByteChannel) key.channel()).read(dst);
+        }
+
+        @Override
+        public int readyOps() {
+            return key.readyOps();
+        }
+
+        @Override
+        public long transferFrom(FileChannel file, long position, long count)
+                throws IOException {
+            return file.transferTo(position, count, (WritableByteChannel) key.channel());
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return ((ByteChannel) key.channel()).write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return ((GatheringByteChannel) key.channel()).write(srcs, offset, length);
+        }
+
+    }
+
+    static class SelectionKeySet extends AbstractSet<SelectionKey> {
+
+        SelectionKey[] keys;
+        int            size;
+
+        SelectionKeySet() {
+            keys = new SelectionKey[1024];
+        }
+
+        @Override
+        public boolean add(SelectionKey o) {
+            keys[size++] = o;
+            if (size == keys.length) {
+                increaseCapacity();
+            }
+            return true;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return false;
+        }
+
+        private void increaseCapacity() {
+            SelectionKey[] newKeys = new SelectionKey[keys.length << 1];
+            System.arraycopy(keys, 0, newKeys, 0, size);
+            keys = newKeys;
+        }
+
+        @Override
+        public Iterator<SelectionKey> iterator() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return false;
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.component;
+
+import java.io.IOException;
+
+/**
+ * 创建NioChannelSelector，optimizeSelectedKeys为true时(默认)尝试通过反射
+ * 将selectedKeys替换为数组实现
+ * 
+ * @author wangkai
+ *
+ */
+public class NioChannelSelectorProvider implements ChannelSelectorProvider {
+
+    private final boolean optimizeSelectedKeys;
+
+    public NioChannelSelectorProvider() {
+        this(true);
+    }
+
+    public NioChannelSelectorProvider(boolean optimizeSelectedKeys) {
+        this.optimizeSelectedKeys = optimizeSelectedKeys;
+    }
+
+    public boolean isOptimizeSelectedKeys() {
+        return optimizeSelectedKeys;
+    }
+
+    @Override
+    public ChannelSelector open() throws IOException {
+        return NioChannelSelector.open(optimizeSelectedKeys);
+    }
+
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.generallycloud.baseio.buffer.ByteBuf;
+import com.generallycloud.baseio.common.CloseUtil;
+import com.generallycloud.baseio.concurrent.ScheduledTask;
+import com.generallycloud.baseio.concurrent.ScmpArrayQueue;
+import com.generallycloud.baseio.concurrent.Waiter;
+import com.generallycloud.baseio.log.Logger;
+import com.generallycloud.baseio.log.LoggerFactory;
+import com.generallycloud.baseio.protocol.DatagramPacket;
+
+/**
+ * 注册在NioEventLoop上的udp channel，读事件时使用eventLoop的读缓冲连续接收多个报文，
+ * 发送的报文先进入无锁队列，由eventLoop在一次唤醒中批量发送
+ * <p>
+ * 每个远端地址对应一个session，session数量有上限，超过idle时间没有收到报文且未绑定
+ * (或绑定的SocketSession已关闭)的session会被定期清除，避免伪造的源地址撑满session表
+ * 
+ * @author wangkai
+ *
+ */
+public class NioDatagramChannel implements Closeable {
+
+    private static final Logger                                 logger      = LoggerFactory
+            .getLogger(NioDatagramChannel.class);
+    // 每次读事件最多连续接收的报文数，避免单个channel占住eventLoop
+    private static final int                                    READ_BATCH  = 64;
+    private static final int                                    SEND_BUFFER = 1024 * 64;
+
+    private final DatagramPacketAcceptor                        acceptor;
+    private volatile boolean                                    closed;
+    private DatagramWrite                                       current;
+    private final NioEventLoop                                  eventLoop;
+    private final NioEventLoopTask                              flushTask   = new FlushTask();
+    private boolean                                             interestWrite;
+    private final DatagramChannel                               javaChannel;
+    private boolean                                             reading;
+    private SelectorKey                                         selectionKey;
+    private final ByteBuffer                                    sendBuffer;
+    private final ConcurrentMap<SocketAddress, DatagramSession> sessions;
+    private byte[]                                              sharedData;
+    private final ScmpArrayQueue<DatagramWrite>                 writeQueue;
+    private volatile int                                        maxSessions = 1024 * 64;
+    private final long                                          sessionIdleTime;
+    private ScheduledTask                                       evictTask;
+
+    private NioDatagramChannel(NioEventLoop eventLoop, DatagramChannel javaChannel,
+            DatagramPacketAcceptor acceptor) {
+        this.eventLoop = eventLoop;
+        this.javaChannel = javaChannel;
+        this.acceptor = acceptor;
+        this.sendBuffer = ByteBuffer.allocateDirect(SEND_BUFFER);
+        this.sessions = new ConcurrentHashMap<>();
+        this.writeQueue = new ScmpArrayQueue<>();
+        this.sessionIdleTime = eventLoop.getGroup().getIdleTime();
+    }
+
+    /**
+     * 打开一个udp channel并注册到eventLoop上，local为null时绑定任意端口
+     */
+    public static NioDatagramChannel open(NioEventLoop eventLoop, SocketAddress local,
+            DatagramPacketAcceptor acceptor) throws IOException {
+        DatagramChannel javaChannel = DatagramChannel.open();
+        try {
+            javaChannel.configureBlocking(false);
+            javaChannel.bind(local);
+        } catch (IOException e) {
+            CloseUtil.close(javaChannel);
+            throw e;
+        }
+        NioDatagramChannel channel = new NioDatagramChannel(eventLoop, javaChannel, acceptor);
+        try {
+            channel.register();
+        } catch (IOException e) {
+            CloseUtil.close(javaChannel);
+            throw e;
+        }
+        return channel;
+    }
+
+    private void register() throws IOException {
+        if (eventLoop.inEventLoop()) {
+            register0();
+            return;
+        }
+        final Waiter waiter = new Waiter();
+        eventLoop.dispatch(new NioEventLoopTask() {
+            @Override
+            public void close() throws IOException {
+                waiter.response(new IOException("closed nio eventloop"));
+            }
+
+            @Override
+            public void fireEvent(NioEventLoop eventLoop) throws IOException {
+                try {
+                    register0();
+                    waiter.response(null);
+                } catch (IOException e) {
+                    waiter.response(e);
+                    throw e;
+                }
+            }
+        });
+        waiter.await();
+        Object res = waiter.getResponse();
+        if (res instanceof IOException) {
+            throw (IOException) res;
+        }
+    }
+
+    private void register0() throws IOException {
+        selectionKey = eventLoop.getChannelSelector().register(javaChannel,
+                ChannelSelector.OP_READ, this);
+        evictTask = eventLoop.scheduleAtFixedRate(new EvictTask(), sessionIdleTime,
+                sessionIdleTime);
+    }
+
+    /**
+     * 返回remote对应的session，不存在时创建，session数量达到上限时抛出RejectedExecutionException
+     */
+    public DatagramSession getSession(SocketAddress remote) {
+        DatagramSession session = sessions.get(remote);
+        if (session == null) {
+            if (sessions.size() >= maxSessions) {
+                throw new RejectedExecutionException(
+                        "datagram session size limit:" + maxSessions + ",remote:" + remote);
+            }
+            session = new DatagramSession(this, remote);
+            DatagramSession old = sessions.putIfAbsent(remote, session);
+            if (old != null) {
+                session = old;
+            }
+        }
+        return session;
+    }
+
+    void removeSession(DatagramSession session) {
+        sessions.remove(session.getRemoteSocketAddress(), session);
+    }
+
+    // 在eventLoop线程中调用
+    void read(ByteBuf buf) throws IOException {
+        reading = true;
+        try {
+            for (int i = 0; i < READ_BATCH; i++) {
+                buf.clear();
+                SocketAddress remote = javaChannel.receive(buf.nioBuffer());
+                if (remote == null) {
+                    break;
+                }
+                buf.reverse();
+                buf.flip();
+                if (buf.remaining() < DatagramPacket.PACKET_HEADER) {
+                    continue;
+                }
+                DatagramPacket packet = DatagramPacket.createPacket(buf);
+                DatagramSession session;
+                try {
+                    session = getSession(remote);
+                } catch (RejectedExecutionException e) {
+                    // session表已满时丢弃新地址的报文，已有的session不受影响
+                    logger.debug(e.getMessage());
+                    continue;
+                }
+                session.setLastAccessTime(System.currentTimeMillis());
+                try {
+                    acceptor.accept(session, packet);
+                } catch (Throwable e) {
+                    logger.error(e.getMessage(), e);
+                }
+            }
+        } finally {
+            reading = false;
+        }
+        // 处理本批报文期间产生的待发送报文一起发送
+        write();
+    }
+
+    void send(SocketAddress target, byte[] data) {
+        if (closed) {
+            return;
+        }
+        if (data.length > SEND_BUFFER) {
+            throw new IllegalArgumentException("datagram too large: " + data.length);
+        }
+        // 只有队列由空变为非空时才需要触发发送，其余情况已有发送在进行
+        if (!writeQueue.offer(new DatagramWrite(target, data))) {
+            return;
+        }
+        if (eventLoop.inEventLoop()) {
+            if (!reading) {
+                write();
+            }
+        } else {
+            eventLoop.dispatch(flushTask);
+        }
+    }
+
+    /**
+     * 在eventLoop线程中调用，广播时同一份数据只拷贝一次到sendBuffer，
+     * 有排队的报文或者socket缓冲区满时退回到send
+     */
+    void sendShared(SocketAddress target, byte[] data) {
+        if (closed) {
+            return;
+        }
+        if (current != null || writeQueue.size() != 0) {
+            send(target, data);
+            return;
+        }
+        ByteBuffer buf = sendBuffer;
+        if (sharedData != data) {
+            if (data.length > SEND_BUFFER) {
+                throw new IllegalArgumentException("datagram too large: " + data.length);
+            }
+            buf.clear();
+            buf.put(data);
+            sharedData = data;
+        }
+        buf.flip();
+        try {
+            if (javaChannel.send(buf, target) == 0) {
+                send(target, data);
+            }
+        } catch (IOException e) {
+            logger.debug(e.getMessage() + " target:" + target, e);
+        }
+        buf.position(data.length);
+        buf.limit(buf.capacity());
+    }
+
+    // 一次广播结束，sendBuffer中的数据不再复用
+    void endShared() {
+        sharedData = null;
+    }
+
+    // 在eventLoop线程中调用，socket缓冲区满时关注OP_WRITE，可写后继续
+    void write() {
+        if (closed) {
+            return;
+        }
+        sharedData = null;
+        ByteBuffer buf = sendBuffer;
+        for (;;) {
+            DatagramWrite w = current;
+            if (w == null) {
+                w = writeQueue.poll();
+                if (w == null) {
+                    break;
+                }
+            }
+            buf.clear();
+            buf.put(w.data);
+            buf.flip();
+            try {
+                if (javaChannel.send(buf, w.target) == 0) {
+                    current = w;
+                    interestWrite(true);
+                    return;
+                }
+            } catch (IOException e) {
+                // udp发送失败只影响当前报文
+                logger.debug(e.getMessage() + " target:" + w.target, e);
+            }
+            current = null;
+        }
+        // 生产者已领取下标但尚未写入时poll会返回null，通过OP_WRITE在下一轮继续
+        interestWrite(writeQueue.size() > 0);
+    }
+
+    private void interestWrite(boolean interest) {
+        if (interestWrite == interest || !selectionKey.isValid()) {
+            return;
+        }
+        interestWrite = interest;
+        if (interest) {
+            selectionKey.interestOps(ChannelSelector.OP_READ | ChannelSelector.OP_WRITE);
+        } else {
+            selectionKey.interestOps(ChannelSelector.OP_READ);
+        }
+    }
+
+    public Collection<DatagramSession> getSessions() {
+        return sessions.values();
+    }
+
+    public NioEventLoop getEventLoop() {
+        return eventLoop;
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    /**
+     * session数量上限，达到上限后新地址的报文会被丢弃
+     */
+    public void setMaxSessions(int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+    public SocketAddress getLocalAddress() throws IOException {
+        return javaChannel.getLocalAddress();
+    }
+
+    public boolean isOpened() {
+        return !closed;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        ScheduledTask evictTask = this.evictTask;
+        if (evictTask != null) {
+            evictTask.cancel();
+        }
+        CloseUtil.close(javaChannel);
+        sessions.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "NioDatagramChannel(" + javaChannel.socket().getLocalSocketAddress() + ")";
+    }
+
+    static final class DatagramWrite {
+
+        final SocketAddress target;
+        final byte[]        data;
+
+        DatagramWrite(SocketAddress target, byte[] data) {
+            this.target = target;
+            this.data = data;
+        }
+    }
+
+    // 在eventLoop线程中执行，清除超过idle时间没有收到报文的session
+    class EvictTask implements Runnable {
+
+        @Override
+        public void run() {
+            long deadline = System.currentTimeMillis() - sessionIdleTime;
+            for (DatagramSession session : sessions.values()) {
+                if (session.getLastAccessTime() > deadline) {
+                    continue;
+                }
+                SocketSession socketSession = session.getSocketSession();
+                if (socketSession != null && socketSession.isOpened()) {
+                    continue;
+                }
+                session.close();
+            }
+        }
+    }
+
+    class FlushTask implements NioEventLoopTask {
+
+        @Override
+        public void close() throws IOException {}
+
+        @Override
+        public void fireEvent(NioEventLoop eventLoop) throws IOException {
+            write();
+        }
+    }
+
+}
@@ -16,20 +16,13 @@
 package com.generallycloud.baseio.component;
 
 import java.io.IOException;
-import java.lang.reflect.Field;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectableChannel;
-import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.nio.channels.spi.SelectorProvider;
-import java.security.AccessController;
-import java.security.PrivilegedAction;
-import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -40,17 +33,19 @@ import javax.net.ssl.SSLHandshakeException;
 
 import com.generallycloud.baseio.buffer.ByteBuf;
 import com.generallycloud.baseio.buffer.ByteBufAllocator;
+import com.generallycloud.baseio.buffer.PooledByteBufAllocator;
 import com.generallycloud.baseio.buffer.UnpooledByteBufAllocator;
 import com.generallycloud.baseio.collection.Attributes;
 import com.generallycloud.baseio.collection.IntObjectHashMap;
-import com.generallycloud.baseio.common.ClassUtil;
 import com.generallycloud.baseio.common.CloseUtil;
 import com.generallycloud.baseio.common.MessageFormatter;
 import com.generallycloud.baseio.common.ReleaseUtil;
 import com.generallycloud.baseio.common.ThreadUtil;
 import com.generallycloud.baseio.component.ssl.SslHandler;
 import com.generallycloud.baseio.concurrent.AbstractEventLoop;
-import com.generallycloud.baseio.concurrent.BufferedArrayList;
+import com.generallycloud.baseio.concurrent.ScheduledTask;
+import com.generallycloud.baseio.concurrent.ScmpArrayQueue;
+import com.generallycloud.baseio.concurrent.TimingWheel;
 import com.generallycloud.baseio.concurrent.Waiter;
 import com.generallycloud.baseio.log.Logger;
 import com.generallycloud.baseio.log.LoggerFactory;
@@ -62,25 +57,27 @@ import com.generallycloud.baseio.protocol.SslFuture;
  *
  */
 //FIXME 使用ThreadLocal
-public class NioEventLoop extends AbstractEventLoop implements Attributes {
+public class NioEventLoop extends AbstractEventLoop
+        implements Attributes, ChannelSelector.SelectedKeyHandler {
 
     private static final Logger                 logger           = LoggerFactory
             .getLogger(NioEventLoop.class);
+    // 时间轮每个tick 100ms，一圈512个tick
+    private static final long                   TIMER_TICK       = 100;
+    private static final int                    TIMER_WHEEL_SIZE = 512;
     private ByteBufAllocator                    allocator;
     private Map<Object, Object>                 attributes       = new HashMap<>();
     private ByteBuf                             buf;
-    private BufferedArrayList<NioEventLoopTask> events           = new BufferedArrayList<>();
+    private ScmpArrayQueue<NioEventLoopTask>    events           = new ScmpArrayQueue<>();
     private NioEventLoopGroup                   group;
     private volatile boolean                    hasTask          = false;
     private final int                           index;
-    private long                                lastIdleTime     = 0;
     private AtomicBoolean                       selecting        = new AtomicBoolean();
-    private SelectionKeySet                     selectionKeySet;
-    private Selector                            selector;
+    private ChannelSelector                     selector;
     private IntObjectHashMap<SocketSession>     sessions         = new IntObjectHashMap<>();
     private final int                           sessionSizeLimit = 1024 * 64;
     private SslFuture                           sslTemporary;
-    private AtomicBoolean                       wakener          = new AtomicBoolean();      // true eventLooper, false offerer
+    private TimingWheel                         timingWheel;
     private ByteBuffer[]                        writeBuffers;
     private List<ChannelFuture>                 readFutures;
     private final boolean                       sharable;
@@ -99,16 +96,22 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
         this.allocator = group.getAllocatorGroup().getNext();
     }
 
-    private void accept(SelectionKey k) {
+    @Override
+    public void accept(SelectorKey k) {
         if (!k.isValid()) {
             k.cancel();
             return;
         }
         int readyOps = k.readyOps();
+        Object attachment = k.attachment();
+        if (attachment instanceof NioDatagramChannel) {
+            acceptDatagram((NioDatagramChannel) attachment, readyOps);
+            return;
+        }
         if (sharable) {
             if (isAcceptor) {
-                if ((readyOps & SelectionKey.OP_ACCEPT) != 0
-                        || (readyOps & SelectionKey.OP_CONNECT) != 0) {
+                if ((readyOps & ChannelSelector.OP_ACCEPT) != 0
+                        || (readyOps & ChannelSelector.OP_CONNECT) != 0) {
                     // 说明该链接未打开
                     try {
                         registChannel(k);
@@ -122,7 +125,7 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
                 if (ch == null || !ch.isOpened()) {
                     return;
                 }
-                if ((readyOps & SelectionKey.OP_WRITE) != 0) {
+                if ((readyOps & ChannelSelector.OP_WRITE) != 0) {
                     try {
                         ch.write();
                     } catch (Throwable e) {
@@ -140,8 +143,8 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
                 }
             }
         } else {
-            if ((readyOps & SelectionKey.OP_CONNECT) != 0
-                    || (readyOps & SelectionKey.OP_ACCEPT) != 0) {
+            if ((readyOps & ChannelSelector.OP_CONNECT) != 0
+                    || (readyOps & ChannelSelector.OP_ACCEPT) != 0) {
                 // 说明该链接未打开
                 try {
                     registChannel(k);
@@ -154,7 +157,7 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
             if (ch == null || !ch.isOpened()) {
                 return;
             }
-            if ((readyOps & SelectionKey.OP_WRITE) != 0) {
+            if ((readyOps & ChannelSelector.OP_WRITE) != 0) {
                 try {
                     ch.write();
                 } catch (Throwable e) {
@@ -173,18 +176,35 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
         }
     }
 
+    // udp的读写异常只影响单个报文，不关闭channel
+    private void acceptDatagram(NioDatagramChannel ch, int readyOps) {
+        if (!ch.isOpened()) {
+            return;
+        }
+        if ((readyOps & ChannelSelector.OP_WRITE) != 0) {
+            ch.write();
+        }
+        if ((readyOps & ChannelSelector.OP_READ) != 0) {
+            try {
+                ch.read(buf);
+            } catch (Throwable e) {
+                logger.error(e.getMessage() + " channel:" + ch, e);
+            }
+        }
+    }
+
     public ByteBufAllocator allocator() {
         return allocator;
     }
 
-    public void registChannel(SelectionKey k) throws IOException {
+    public void registChannel(SelectorKey k) throws IOException {
         final ChannelContext context = (ChannelContext) k.attachment();
         final ChannelService channelService = context.getChannelService();
         final NioEventLoop thisEventLoop = this;
         final int channelId = group.getChannelIds().getAndIncrement();
         if (channelService instanceof ChannelAcceptor) {
             ChannelAcceptor acceptor = (ChannelAcceptor) channelService;
-            ServerSocketChannel serverChannel = acceptor.getSelectableChannel();
+            ServerSocketChannel serverChannel = acceptor.getSelectableChannel(this);
             //有时候还未regist selector，但是却能selector到sk
             //如果getLocalAddress为空则不处理该sk
             if (serverChannel.getLocalAddress() == null) {
@@ -194,7 +214,8 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
             if (channel == null) {
                 return;
             }
-            NioEventLoop targetEventLoop = group.getNext();
+            // reuse port模式下由内核分配连接，直接注册到当前eventLoop
+            NioEventLoop targetEventLoop = acceptor.isReusePort() ? this : group.getNext();
             // 配置为非阻塞
             channel.configureBlocking(false);
             // 注册到selector，等待连接
@@ -228,10 +249,10 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
                     targetEL = group.getEventLoop(0);
                 }
                 if (sharable) {
-                    //我也不知道为什么要这么做，如果不这么做当eventLoopGroup为共享时
-                    //且acceptor eventLoop同时注册了accept和connect时，selector.select()会
-                    //立刻返回但是selected却为0，导致CPU100%
-                    SelectionKey sk = javaChannel.keyFor(selector);
+                    //eventLoopGroup为共享时，javaChannel将注册到另一个eventLoop上，
+                    //而此处的key仍然关注OP_CONNECT，连接建立后该事件会一直就绪，
+                    //导致selector.select()立刻返回但是selected却为0，CPU100%，需要cancel
+                    SelectorKey sk = selector.keyFor(javaChannel);
                     if (sk != null) {
                         sk.cancel();
                     }
@@ -266,8 +287,12 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
         CloseUtil.close(selector);
     }
 
-    private void closeEvents(BufferedArrayList<NioEventLoopTask> events) {
-        for (NioEventLoopTask event : events.getBuffer()) {
+    private void closeEvents(ScmpArrayQueue<NioEventLoopTask> events) {
+        for (;;) {
+            NioEventLoopTask event = events.poll();
+            if (event == null) {
+                return;
+            }
             CloseUtil.close(event);
         }
     }
@@ -297,7 +322,10 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
             CloseUtil.close(event);
             return;
         }
-        events.offer(event);
+        // 只有队列由空变为非空时才需要唤醒，其余情况eventLoop在select之前会检查队列
+        if (!events.offer(event)) {
+            return;
+        }
 
         /* ----------------------------------------------------------------- */
         // 这里不需要再次判断了，因为close方法会延迟执行，
@@ -321,13 +349,17 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
             this.sslTemporary = new SslFuture(buf, 1024 * 64);
         }
         this.selector = openSelector();
+        this.timingWheel = new TimingWheel(TIMER_TICK, TIMER_WHEEL_SIZE,
+                System.currentTimeMillis());
+        if (!isAcceptor && allocator instanceof PooledByteBufAllocator) {
+            ((PooledByteBufAllocator) allocator).setOwner(getMonitor());
+        }
     }
 
     @Override
     protected void doStop() {
         ThreadUtil.sleep(8);
         closeEvents(events);
-        closeEvents(events);
         closeSessions();
         CloseUtil.close(selector);
         ReleaseUtil.release(sslTemporary, this);
@@ -368,10 +400,22 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
         return index;
     }
 
-    public Selector getSelector() {
+    public ChannelSelector getChannelSelector() {
         return selector;
     }
 
+    /**
+     * @deprecated 使用{@link #getChannelSelector()}，
+     *             ChannelSelector不是NioChannelSelector时抛出UnsupportedOperationException
+     */
+    @Deprecated
+    public Selector getSelector() {
+        if (selector instanceof NioChannelSelector) {
+            return ((NioChannelSelector) selector).getSelector();
+        }
+        throw new UnsupportedOperationException("not a nio selector: " + selector);
+    }
+
     public SslHandler getSslHandler() {
         return (SslHandler) attributes.get(SslHandler.SSL_HANDlER_EVENT_LOOP_KEY);
     }
@@ -395,8 +439,8 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
     @Override
     public void loop() {
         final long idle = group.getIdleTime();
-        final Selector selector = this.selector;
-        long nextIdle = 0;
+        final ChannelSelector selector = this.selector;
+        final TimingWheel timingWheel = this.timingWheel;
         long selectTime = idle;
         for (;;) {
             if (!running) {
@@ -410,9 +454,8 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
                     hasTask = false;
                 } else {
                     if (selecting.compareAndSet(false, true)) {
-                        // Im not sure events.size if visible immediately by other thread ?
-                        // can we use events.getBufferSize() > 0 ?
-                        if (hasTask) {
+                        // 队列不为空时dispatch不会再唤醒，这里不能进入等待
+                        if (hasTask || events.size() > 0) {
                             selected = selector.selectNow();
                         } else {
                             // FIXME try
@@ -426,35 +469,22 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
                     }
                 }
                 if (selected > 0) {
-                    if (selectionKeySet != null) {
-                        SelectionKeySet keySet = selectionKeySet;
-                        for (int i = 0; i < keySet.size; i++) {
-                            SelectionKey k = keySet.keys[i];
-                            keySet.keys[i] = null;
-                            accept(k);
-                        }
-                        keySet.reset();
-                    } else {
-                        Set<SelectionKey> sks = selector.selectedKeys();
-                        for (SelectionKey k : sks) {
-                            accept(k);
-                        }
-                        sks.clear();
-                    }
+                    selector.handleSelectedKeys(this);
                 }
-                if (events.size() > 0) {
-                    List<NioEventLoopTask> es = events.getBuffer();
-                    for (int i = 0; i < es.size(); i++) {
-                        handleEvent(es.get(i));
+                // 只处理本轮之前offer的event，避免持续dispatch时饿死io
+                for (int i = events.size(); i > 0; i--) {
+                    NioEventLoopTask event = events.poll();
+                    if (event == null) {
+                        break;
                     }
+                    handleEvent(event);
                 }
                 long now = System.currentTimeMillis();
-                if (now >= nextIdle) {
-                    sessionIdle(now);
-                    nextIdle = now + idle;
+                timingWheel.expire(now);
+                if (timingWheel.isEmpty()) {
                     selectTime = idle;
                 } else {
-                    selectTime = nextIdle - now;
+                    selectTime = Math.min(idle, timingWheel.nextTickDelay(now));
                 }
             } catch (Throwable e) {
                 logger.error(e.getMessage(), e);
@@ -462,55 +492,8 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
         }
     }
 
-    @SuppressWarnings("rawtypes")
-    private Selector openSelector() throws IOException {
-        SelectorProvider provider = SelectorProvider.provider();
-        Object res = AccessController.doPrivileged(new PrivilegedAction<Object>() {
-            @Override
-            public Object run() {
-                try {
-                    return Class.forName("sun.nio.ch.SelectorImpl");
-                } catch (Throwable cause) {
-                    return cause;
-                }
-            }
-        });
-        final Selector selector = provider.openSelector();
-        if (res instanceof Throwable) {
-            return selector;
-        }
-        final Class selectorImplClass = (Class) res;
-        final SelectionKeySet keySet = new SelectionKeySet();
-        res = AccessController.doPrivileged(new PrivilegedAction<Object>() {
-            @Override
-            public Object run() {
-                try {
-                    Field selectedKeysField = selectorImplClass.getDeclaredField("selectedKeys");
-                    Field publicSelectedKeysField = selectorImplClass
-                            .getDeclaredField("publicSelectedKeys");
-
-                    Throwable cause = ClassUtil.trySetAccessible(selectedKeysField);
-                    if (cause != null) {
-                        return cause;
-                    }
-                    cause = ClassUtil.trySetAccessible(publicSelectedKeysField);
-                    if (cause != null) {
-                        return cause;
-                    }
-
-                    selectedKeysField.set(selector, keySet);
-                    publicSelectedKeysField.set(selector, keySet);
-                    return null;
-                } catch (Exception e) {
-                    return e;
-                }
-            }
-        });
-        if (res instanceof Throwable) {
-            return selector;
-        }
-        selectionKeySet = keySet;
-        return selector;
+    private ChannelSelector openSelector() throws IOException {
+        return group.getChannelSelectorProvider().open();
     }
 
     protected void putSession(SocketSession session) throws RejectedExecutionException {
@@ -526,17 +509,24 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
         }
         sessions.put(sessionId.intValue(), session);
         session.getContext().getSessionManager().putSession(session);
+        // 每个session在各自的idle周期到期时检查，避免每个周期集中遍历全部session
+        if (!session.getContext().getSessionIdleEventListeners().isEmpty()) {
+            SessionIdleTask idleTask = new SessionIdleTask(session, timingWheel,
+                    group.getIdleTime());
+            session.unsafe().setIdleTask(idleTask.task);
+            timingWheel.add(idleTask.task);
+        }
     }
 
     private NioSocketChannel registChannel(SocketChannel javaChannel, NioEventLoop eventLoop,
             ChannelContext context, int channelId) throws IOException {
-        SelectionKey sk = javaChannel.register(eventLoop.selector, SelectionKey.OP_READ);
-        // 绑定SocketChannel到SelectionKey
+        SelectorKey sk = eventLoop.selector.register(javaChannel, ChannelSelector.OP_READ, null);
+        // 绑定SocketChannel到SelectorKey
         NioSocketChannel channel = (NioSocketChannel) sk.attachment();
         if (channel != null) {
             return channel;
         }
-        channel = new NioSocketChannel(eventLoop, sk, context, channelId);
+        channel = new NioSocketChannel(eventLoop, sk, javaChannel, context, channelId);
         sk.attach(channel);
         // fire session open event
         channel.fireOpend();
@@ -546,7 +536,7 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
         return channel;
     }
 
-    private SelectionKey registSelector(NioEventLoop eventLoop, ChannelContext context)
+    private SelectorKey registSelector(NioEventLoop eventLoop, ChannelContext context)
             throws IOException {
         ChannelService channelService = context.getChannelService();
         SelectableChannel channel = channelService.getSelectableChannel();
@@ -556,9 +546,10 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
         }
         if (channelService instanceof ChannelAcceptor) {
             //FIXME 使用多eventLoop accept是否导致卡顿 是否要区分accept和read
-            return channel.register(eventLoop.selector, SelectionKey.OP_ACCEPT, context);
+            channel = ((ChannelAcceptor) channelService).getSelectableChannel(eventLoop);
+            return eventLoop.selector.register(channel, ChannelSelector.OP_ACCEPT, context);
         } else {
-            return channel.register(eventLoop.selector, SelectionKey.OP_CONNECT, context);
+            return eventLoop.selector.register(channel, ChannelSelector.OP_CONNECT, context);
         }
     }
 
@@ -587,7 +578,7 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
                 @Override
                 public void fireEvent(NioEventLoop eventLoop) throws IOException {
                     try {
-                        SelectionKey sk = registSelector(eventLoop, context);
+                        SelectorKey sk = registSelector(eventLoop, context);
                         waiter.response(sk);
                     } catch (Exception e) {
                         waiter.response(e);
@@ -610,7 +601,7 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
         //                    continue;
         //                }
         //                try {
-        //                    sk.channel().register(newSel, SelectionKey.OP_READ);
+        //                    sk.channel().register(newSel, ChannelSelector.OP_READ);
         //                } catch (ClosedChannelException e) {
         //                    Object atta = sk.attachment();
         //                    if (atta instanceof Closeable) {
@@ -629,6 +620,10 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
     }
 
     protected void removeSession(SocketSession session) {
+        ScheduledTask idleTask = session.unsafe().getIdleTask();
+        if (idleTask != null) {
+            idleTask.cancel();
+        }
         sessions.remove(session.getSessionId());
         session.getContext().getSessionManager().removeSession(session);
     }
@@ -637,41 +632,42 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
         return sessions.get(sessionId);
     }
 
-    private void sessionIdle(long currentTime) {
-        long lastIdleTime = this.lastIdleTime;
-        this.lastIdleTime = currentTime;
-        IntObjectHashMap<SocketSession> sessions = this.sessions;
-        if (sessions.size() == 0) {
-            return;
+    /**
+     * delay(ms)后在eventLoop线程中执行task，可以在任意线程调用
+     */
+    public ScheduledTask schedule(Runnable task, long delay) {
+        return schedule(new ScheduledTask(task, System.currentTimeMillis() + delay, 0));
+    }
+
+    /**
+     * initialDelay(ms)后在eventLoop线程中每隔period(ms)执行一次task，可以在任意线程调用
+     */
+    public ScheduledTask scheduleAtFixedRate(Runnable task, long initialDelay, long period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period: " + period);
         }
-        if (sharable) {
-            for (SocketSession session : sessions.values()) {
-                ChannelContext context = session.getContext();
-                List<SessionIdleEventListener> ls = context.getSessionIdleEventListeners();
-                if (ls.size() == 1) {
-                    try {
-                        ls.get(0).sessionIdled(session, lastIdleTime, currentTime);
-                    } catch (Exception e) {
-                        logger.error(e.getMessage(), e);
-                    }
-                } else {
-                    for (SessionIdleEventListener l : ls) {
-                        try {
-                            l.sessionIdled(session, lastIdleTime, currentTime);
-                        } catch (Exception e) {
-                            logger.error(e.getMessage(), e);
-                        }
-                    }
-                }
+        return schedule(
+                new ScheduledTask(task, System.currentTimeMillis() + initialDelay, period));
+    }
+
+    private ScheduledTask schedule(final ScheduledTask task) {
+        if (inEventLoop()) {
+            timingWheel.add(task);
+            return task;
+        }
+        dispatch(new NioEventLoopTask() {
+
+            @Override
+            public void close() throws IOException {
+                task.cancel();
             }
-        } else {
-            List<SessionIdleEventListener> ls = context.getSessionIdleEventListeners();
-            for (SessionIdleEventListener l : ls) {
-                for (SocketSession session : sessions.values()) {
-                    l.sessionIdled(session, lastIdleTime, currentTime);
-                }
+
+            @Override
+            public void fireEvent(NioEventLoop eventLoop) throws IOException {
+                timingWheel.add(task);
             }
-        }
+        });
+        return task;
     }
 
     @Override
@@ -683,15 +679,14 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
     // 执行stop的时候如果确保不会再有数据进来
     @Override
     public void wakeup() {
-        if (wakener.compareAndSet(false, true)) {
-            hasTask = true;
-            if (selecting.compareAndSet(false, true)) {
-                selecting.set(false);
-            } else {
-                selector.wakeup();
-                super.wakeup();
-            }
-            wakener.set(false);
+        // dispatch只在队列由空变为非空时唤醒，这里不能因为其他线程正在唤醒而跳过，
+        // 否则该线程可能在eventLoop检查队列之前就已经完成唤醒，本次唤醒丢失
+        hasTask = true;
+        if (selecting.compareAndSet(false, true)) {
+            selecting.set(false);
+        } else {
+            selector.wakeup();
+            super.wakeup();
         }
     }
 
@@ -710,52 +705,46 @@ public class NioEventLoop extends AbstractEventLoop implements Attributes {
         return desc;
     }
 
-    class SelectionKeySet extends AbstractSet<SelectionKey> {
+    /**
+     * 不按固定周期执行，到期时如果期间有读取则按最后一次访问时间顺延，
+     * 只有空闲满一个周期才通知listener
+     */
+    private static final class SessionIdleTask implements Runnable {
 
-        SelectionKey[] keys;
-        int            size;
+        private final long          idle;
+        private long                lastIdleTime;
+        private final SocketSession session;
+        private final ScheduledTask task;
+        private final TimingWheel   timingWheel;
 
-        SelectionKeySet() {
-            keys = new SelectionKey[1024];
+        SessionIdleTask(SocketSession session, TimingWheel timingWheel, long idle) {
+            this.idle = idle;
+            this.session = session;
+            this.timingWheel = timingWheel;
+            this.lastIdleTime = System.currentTimeMillis();
+            this.task = new ScheduledTask(this, lastIdleTime + idle, 0);
         }
 
         @Override
-        public boolean add(SelectionKey o) {
-            keys[size++] = o;
-            if (size == keys.length) {
-                increaseCapacity();
+        public void run() {
+            long currentTime = System.currentTimeMillis();
+            // 距离上一次通知不足一个周期时也不通知，避免listener连续收到空闲事件
+            long deadline = Math.max(session.getLastAccessTime(), lastIdleTime) + idle;
+            if (deadline > currentTime) {
+                timingWheel.schedule(task, deadline);
+                return;
+            }
+            for (SessionIdleEventListener l : session.getContext().getSessionIdleEventListeners()) {
+                try {
+                    l.sessionIdled(session, lastIdleTime, currentTime);
+                } catch (Exception e) {
+                    logger.error(e.getMessage(), e);
+                }
+            }
+            lastIdleTime = currentTime;
+            if (session.isOpened()) {
+                timingWheel.schedule(task, currentTime + idle);
             }
-            return true;
-        }
-
-        @Override
-        public boolean contains(Object o) {
-            return false;
-        }
-
-        private void increaseCapacity() {
-            SelectionKey[] newKeys = new SelectionKey[keys.length << 1];
-            System.arraycopy(keys, 0, newKeys, 0, size);
-            keys = newKeys;
-        }
-
-        @Override
-        public Iterator<SelectionKey> iterator() {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public boolean remove(Object o) {
-            return false;
-        }
-
-        void reset() {
-            size = 0;
-        }
-
-        @Override
-        public int size() {
-            return size;
         }
     }
 
@@ -30,27 +30,43 @@ import com.generallycloud.baseio.concurrent.FixedAtomicInteger;
  */
 public class NioEventLoopGroup extends AbstractEventLoopGroup {
 
-    private int                   bufRecycleSize         = 1024 * 4;
-    private ByteBufAllocatorGroup allocatorGroup;
-    private int                   channelReadBuffer      = 1024 * 512;
-    private boolean               enableMemoryPool       = true;
+    private int                     bufRecycleSize           = 1024 * 4;
+    //event loop线程释放的buf，每个size class缓存的数量
+    private int                     bufCacheSize             = 16;
+    private ByteBufAllocatorGroup   allocatorGroup;
+    private int                     channelReadBuffer        = 1024 * 512;
+    private boolean                 enableMemoryPool         = true;
     //内存池是否使用启用堆外内存
-    private boolean               enableMemoryPoolDirect = true;
-    private long                  idleTime               = 30 * 1000;
+    private boolean                 enableMemoryPoolDirect   = true;
+    //内存池是否使用伙伴算法分配内存
+    private boolean                 enableMemoryPoolBuddy    = false;
+    private long                    idleTime                 = 30 * 1000;
     //内存池内存单元数量（单核）
-    private int                   memoryPoolCapacity;
-    private int                   memoryPoolRate         = 32;
+    private int                     memoryPoolCapacity;
+    private int                     memoryPoolRate           = 32;
     //内存池单元大小
-    private int                   memoryPoolUnit         = 512;
-    private NioEventLoop[]        eventLoops;
+    private int                     memoryPoolUnit           = 512;
+    private NioEventLoop[]          eventLoops;
     //单条连接write(srcs)的数量
-    private int                   writeBuffers           = 8;
-    private int                   readFutures            = 8;
-    private FixedAtomicInteger    channelIds;
-    private boolean               enableSsl;
-    private boolean               sharable;
-    private ChannelContext        context;
-    private NioEventLoop          acceptorEventLoop;
+    private int                     writeBuffers             = 8;
+    //单条连接待写出的字节数超过该值时连接变为不可写，0表示不限制
+    private long                    writeBufferHighWaterMark = 1024 * 1024 * 64;
+    //单条连接待写出的字节数低于该值时连接恢复可写
+    private long                    writeBufferLowWaterMark  = 1024 * 1024 * 32;
+    //连接不可写时暂停读取该连接
+    private boolean                 enablePauseReadWhenUnwritable;
+    //连接不可写时拒绝flush
+    private boolean                 enableRejectWhenUnwritable;
+    //每个event loop各自绑定一个开启SO_REUSEPORT的ServerSocketChannel(需要jdk9+)
+    private boolean                 enableReusePort;
+    private int                     readFutures              = 8;
+    //每个event loop启动时由该provider创建各自的ChannelSelector
+    private ChannelSelectorProvider channelSelectorProvider  = new NioChannelSelectorProvider();
+    private FixedAtomicInteger      channelIds;
+    private boolean                 enableSsl;
+    private boolean                 sharable;
+    private ChannelContext          context;
+    private NioEventLoop            acceptorEventLoop;
 
     public NioEventLoopGroup() {
         this(Runtime.getRuntime().availableProcessors() * 2);
@@ -103,6 +119,10 @@ public class NioEventLoopGroup extends AbstractEventLoopGroup {
         return bufRecycleSize;
     }
 
+    public int getBufCacheSize() {
+        return bufCacheSize;
+    }
+
     public ByteBufAllocatorGroup getAllocatorGroup() {
         return allocatorGroup;
     }
@@ -141,6 +161,26 @@ public class NioEventLoopGroup extends AbstractEventLoopGroup {
         return writeBuffers;
     }
 
+    public long getWriteBufferHighWaterMark() {
+        return writeBufferHighWaterMark;
+    }
+
+    public long getWriteBufferLowWaterMark() {
+        return writeBufferLowWaterMark;
+    }
+
+    public boolean isEnablePauseReadWhenUnwritable() {
+        return enablePauseReadWhenUnwritable;
+    }
+
+    public boolean isEnableRejectWhenUnwritable() {
+        return enableRejectWhenUnwritable;
+    }
+
+    public boolean isEnableReusePort() {
+        return enableReusePort;
+    }
+
     @Override
     protected NioEventLoop[] initEventLoops() {
         eventLoops = new NioEventLoop[getEventLoopSize()];
@@ -155,6 +195,10 @@ public class NioEventLoopGroup extends AbstractEventLoopGroup {
         return enableMemoryPoolDirect;
     }
 
+    public boolean isEnableMemoryPoolBuddy() {
+        return enableMemoryPoolBuddy;
+    }
+
     @Override
     protected NioEventLoop newEventLoop(int index) {
         return new NioEventLoop(this, index, false);
@@ -164,6 +208,10 @@ public class NioEventLoopGroup extends AbstractEventLoopGroup {
         this.bufRecycleSize = bufRecycleSize;
     }
 
+    public void setBufCacheSize(int bufCacheSize) {
+        this.bufCacheSize = bufCacheSize;
+    }
+
     public void setChannelReadBuffer(int channelReadBuffer) {
         this.channelReadBuffer = channelReadBuffer;
     }
@@ -176,6 +224,10 @@ public class NioEventLoopGroup extends AbstractEventLoopGroup {
         this.enableMemoryPoolDirect = enableMemoryPoolDirect;
     }
 
+    public void setEnableMemoryPoolBuddy(boolean enableMemoryPoolBuddy) {
+        this.enableMemoryPoolBuddy = enableMemoryPoolBuddy;
+    }
+
     public void setIdleTime(long idleTime) {
         this.idleTime = idleTime;
     }
@@ -196,6 +248,26 @@ public class NioEventLoopGroup extends AbstractEventLoopGroup {
         this.writeBuffers = writeBuffers;
     }
 
+    public void setWriteBufferHighWaterMark(long writeBufferHighWaterMark) {
+        this.writeBufferHighWaterMark = writeBufferHighWaterMark;
+    }
+
+    public void setWriteBufferLowWaterMark(long writeBufferLowWaterMark) {
+        this.writeBufferLowWaterMark = writeBufferLowWaterMark;
+    }
+
+    public void setEnablePauseReadWhenUnwritable(boolean enablePauseReadWhenUnwritable) {
+        this.enablePauseReadWhenUnwritable = enablePauseReadWhenUnwritable;
+    }
+
+    public void setEnableRejectWhenUnwritable(boolean enableRejectWhenUnwritable) {
+        this.enableRejectWhenUnwritable = enableRejectWhenUnwritable;
+    }
+
+    public void setEnableReusePort(boolean enableReusePort) {
+        this.enableReusePort = enableReusePort;
+    }
+
     public FixedAtomicInteger getChannelIds() {
         return channelIds;
     }
@@ -236,6 +308,14 @@ public class NioEventLoopGroup extends AbstractEventLoopGroup {
         this.context = context;
     }
 
+    public ChannelSelectorProvider getChannelSelectorProvider() {
+        return channelSelectorProvider;
+    }
+
+    public void setChannelSelectorProvider(ChannelSelectorProvider channelSelectorProvider) {
+        this.channelSelectorProvider = channelSelectorProvider;
+    }
+
     public int getReadFutures() {
         return readFutures;
     }
@@ -19,11 +19,16 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketOption;
 import java.nio.ByteBuffer;
-import java.nio.channels.SelectionKey;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.locks.ReentrantLock;
 
 import javax.net.ssl.SSLEngine;
@@ -33,17 +38,21 @@ import com.generallycloud.baseio.ClosedChannelException;
 import com.generallycloud.baseio.buffer.ByteBuf;
 import com.generallycloud.baseio.buffer.ByteBufAllocator;
 import com.generallycloud.baseio.buffer.EmptyByteBuf;
+import com.generallycloud.baseio.buffer.UnpooledByteBufAllocator;
 import com.generallycloud.baseio.common.CloseUtil;
 import com.generallycloud.baseio.common.ReleaseUtil;
 import com.generallycloud.baseio.common.StringUtil;
+import com.generallycloud.baseio.component.ssl.SSLUtil;
 import com.generallycloud.baseio.component.ssl.SslHandler;
 import com.generallycloud.baseio.concurrent.ExecutorEventLoop;
 import com.generallycloud.baseio.concurrent.LinkedQueue;
+import com.generallycloud.baseio.concurrent.ScheduledTask;
 import com.generallycloud.baseio.concurrent.ScspLinkedQueue;
 import com.generallycloud.baseio.log.Logger;
 import com.generallycloud.baseio.log.LoggerFactory;
 import com.generallycloud.baseio.protocol.ChannelFuture;
 import com.generallycloud.baseio.protocol.DefaultChannelFuture;
+import com.generallycloud.baseio.protocol.FileRegionChannelFuture;
 import com.generallycloud.baseio.protocol.Future;
 import com.generallycloud.baseio.protocol.ProtocolCodec;
 import com.generallycloud.baseio.protocol.SslFuture;
@@ -53,6 +62,20 @@ public class NioSocketChannel implements NioEventLoopTask {
     private static final InetSocketAddress ERROR_SOCKET_ADDRESS = new InetSocketAddress(0);
     private static final Logger            logger               = LoggerFactory
             .getLogger(NioSocketChannel.class);
+    private static final int               SSL_FILE_CHUNK       = 1024 * 64;
+    private static final AtomicLongFieldUpdater<NioSocketChannel>    pendingWriteBytesUpdater;
+    private static final AtomicIntegerFieldUpdater<NioSocketChannel> writableUpdater;
+    private static final AtomicIntegerFieldUpdater<NioSocketChannel> flushScheduledUpdater;
+
+    static {
+        pendingWriteBytesUpdater = AtomicLongFieldUpdater.newUpdater(NioSocketChannel.class,
+                "pendingWriteBytes");
+        writableUpdater = AtomicIntegerFieldUpdater.newUpdater(NioSocketChannel.class,
+                "writable");
+        flushScheduledUpdater = AtomicIntegerFieldUpdater.newUpdater(NioSocketChannel.class,
+                "flushScheduled");
+    }
+
     private ByteBufAllocator               allocator;
     private SocketChannel                  channel;
     private String                         channelDesc;
@@ -62,7 +85,7 @@ public class NioSocketChannel implements NioEventLoopTask {
     private long                           creationTime         = System.currentTimeMillis();
     private ChannelFuture[]                currentWriteFutures;
     private int                            currentWriteFuturesLen;
-    private final boolean                 enableSsl;
+    private final boolean                  enableSsl;
     private final NioEventLoop             eventLoop;
     private long                           lastAccess;
     private String                         localAddr;
@@ -74,15 +97,26 @@ public class NioSocketChannel implements NioEventLoopTask {
     private String                         remoteAddr;
     private String                         remoteAddrPort;
     private int                            remotePort;
-    private final SelectionKey             selectionKey;
+    private final SelectorKey              selectionKey;
     private SocketSession                  session;
     private SSLEngine                      sslEngine;
     private transient SslFuture            sslReadFuture;
     private LinkedQueue<ChannelFuture>     writeFutures;
     private ExecutorEventLoop              executorEventLoop;
-
-    NioSocketChannel(NioEventLoop eventLoop, SelectionKey selectionKey, ChannelContext context,
-            int channelId) {
+    private ScheduledTask                  idleTask;
+    private volatile long                  pendingWriteBytes;
+    private volatile int                   writable             = 1;
+    private long                           writeBufferHighWaterMark;
+    private long                           writeBufferLowWaterMark;
+    private boolean                        enablePauseReadWhenUnwritable;
+    private boolean                        enableRejectWhenUnwritable;
+    private boolean                        readPaused;
+    private boolean                        writableFired        = true;
+    // 1:已在eventLoop的队列中，等待write
+    private volatile int                   flushScheduled;
+
+    NioSocketChannel(NioEventLoop eventLoop, SelectorKey selectionKey, SocketChannel channel,
+            ChannelContext context, int channelId) {
         NioEventLoopGroup group = eventLoop.getGroup();
         this.eventLoop = eventLoop;
         this.context = context;
@@ -93,10 +127,14 @@ public class NioSocketChannel implements NioEventLoopTask {
         this.protocolCodec = context.getProtocolCodec();
         this.currentWriteFutures = new ChannelFuture[group.getWriteBuffers()];
         this.executorEventLoop = context.getExecutorEventLoopGroup().getNext();
-        this.channel = (SocketChannel) selectionKey.channel();
+        this.channel = channel;
         this.lastAccess = creationTime + group.getIdleTime();
         this.session = context.getSessionFactory().newUnsafeSession(this);
         this.writeFutures = new ScspLinkedQueue<>(new DefaultChannelFuture(EmptyByteBuf.get()));
+        this.writeBufferHighWaterMark = group.getWriteBufferHighWaterMark();
+        this.writeBufferLowWaterMark = group.getWriteBufferLowWaterMark();
+        this.enablePauseReadWhenUnwritable = group.isEnablePauseReadWhenUnwritable();
+        this.enableRejectWhenUnwritable = group.isEnableRejectWhenUnwritable();
     }
 
     NioSocketChannel(ChannelContext context, ByteBufAllocator allocator) {
@@ -233,8 +271,20 @@ public class NioSocketChannel implements NioEventLoopTask {
         }
     }
 
-    private void doFlush() {
-        eventLoop.dispatch(this);
+    /**
+     * 调度write已入队的future，channel已经在eventLoop的队列中时不会再次dispatch
+     */
+    public void flush() {
+        if (!isOpened()) {
+            return;
+        }
+        if (inEventLoop() && (selectionKey.interestOps() & ChannelSelector.OP_WRITE) != 0) {
+            // 等待OP_WRITE时由selector触发write
+            return;
+        }
+        if (flushScheduledUpdater.compareAndSet(this, 0, 1)) {
+            eventLoop.dispatch(this);
+        }
     }
 
     private void exceptionCaught(Future future, Exception ex) {
@@ -251,6 +301,15 @@ public class NioSocketChannel implements NioEventLoopTask {
         if (getContext().getSslContext().isClient()) {
             ChannelConnector connector = (ChannelConnector) getContext().getChannelService();
             connector.finishConnect(getSession(), e);
+            return;
+        }
+        // 按ALPN协商结果切换codec，如h2
+        String protocol = SSLUtil.getApplicationProtocol(sslEngine);
+        if (protocol != null) {
+            ProtocolCodec codec = getContext().getAppProtocolCodec(protocol);
+            if (codec != null) {
+                setProtocolCodec(codec);
+            }
         }
     }
 
@@ -271,6 +330,8 @@ public class NioSocketChannel implements NioEventLoopTask {
         if (!isOpened()) {
             throw new ClosedChannelException("closed");
         }
+        // 先清除标记再write，之后offer的future会重新dispatch
+        flushScheduled = 0;
         write();
     }
 
@@ -305,28 +366,71 @@ public class NioSocketChannel implements NioEventLoopTask {
     }
 
     public void flush(ChannelFuture future) {
+        if (write(future)) {
+            flush();
+        }
+    }
+
+    /**
+     * encode并入队，不调度write，需要调用flush()
+     */
+    public boolean write(ChannelFuture future) {
         if (future == null || future.flushed()) {
-            return;
+            return false;
         }
         future.flush();
         if (!isOpened()) {
             exceptionCaught(future, new ClosedChannelException(toString()));
-            return;
+            return false;
         }
         try {
             future.setNeedSsl(getContext().isEnableSsl());
             ProtocolCodec codec = getProtocolCodec();
             codec.encode(this, future);
-            flushChannelFuture(future);
         } catch (Exception e) {
             exceptionCaught(future, e);
+            return false;
         }
+        return writeChannelFuture(future);
+    }
+
+    /**
+     * encode协议头后与file region作为一个整体入队，保证两者之间不会插入其它写入
+     */
+    public void flush(ChannelFuture header, FileRegionChannelFuture region) {
+        // 失败时只对header回调exceptionCaught，region直接释放
+        if (header.flushed()) {
+            ReleaseUtil.release(region, eventLoop);
+            return;
+        }
+        header.flush();
+        if (!isOpened()) {
+            ReleaseUtil.release(region, eventLoop);
+            exceptionCaught(header, new ClosedChannelException(toString()));
+            return;
+        }
+        try {
+            header.setNeedSsl(getContext().isEnableSsl());
+            getProtocolCodec().encode(this, header);
+        } catch (Exception e) {
+            ReleaseUtil.release(region, eventLoop);
+            exceptionCaught(header, e);
+            return;
+        }
+        region.setHeader(header);
+        flushChannelFuture(region);
     }
 
     //FIXME ..处理silent
     public void flushFutures(Collection<ChannelFuture> futures) {
+        if (writeFutures(futures)) {
+            flush();
+        }
+    }
+
+    public boolean writeFutures(Collection<ChannelFuture> futures) {
         if (futures == null || futures.isEmpty()) {
-            return;
+            return false;
         }
         if (!isOpened()) {
             Exception e = new ClosedChannelException(session.toString());
@@ -336,7 +440,7 @@ public class NioSocketChannel implements NioEventLoopTask {
                 }
                 exceptionCaught(future, e);
             }
-            return;
+            return false;
         }
         try {
             for (ChannelFuture f : futures) {
@@ -356,127 +460,156 @@ public class NioSocketChannel implements NioEventLoopTask {
                 exceptionCaught(future, e);
             }
             CloseUtil.close(this);
-            return;
+            return false;
         }
-        flushChannelFutures(futures);
+        return writeChannelFutures(futures);
     }
 
     public void flushChannelFuture(ChannelFuture future) {
+        if (writeChannelFuture(future)) {
+            flush();
+        }
+    }
+
+    /**
+     * 已encode的future入队，不调度write，需要调用flush()
+     */
+    public boolean writeChannelFuture(ChannelFuture future) {
         SocketSession session = getSession();
         if (inEventLoop()) {
             if (!isOpened()) {
                 exceptionCaught(future, new ClosedChannelException(session.toString()));
-                return;
+                return false;
             }
-            // FIXME 该连接写入过多啦
-            writeFutures.offer(future);
-            // 如果write futures != 1 说明在offer之后至少有2个write future(或者没了)
-            // 说明之前的尚未写入完整，或者正在写入，此时无需dispatch
-            if (writeFutures.size() != 1) {
-                return;
+            if (enableRejectWhenUnwritable && !isWritable()) {
+                exceptionCaught(future, newUnwritableException());
+                return false;
             }
-            if ((selectionKey.interestOps() & SelectionKey.OP_WRITE) != 0) {
-                return;
+            writeFutures.offer(future);
+            incrementPendingWriteBytes(remaining(future));
+            return true;
+        }
+        ReentrantLock lock = getCloseLock();
+        lock.lock();
+        try {
+            if (!isOpened()) {
+                exceptionCaught(future, new ClosedChannelException(session.toString()));
+                return false;
             }
-        }else{
-            ReentrantLock lock = getCloseLock();
-            lock.lock();
-            try {
-                if (!isOpened()) {
-                    exceptionCaught(future, new ClosedChannelException(session.toString()));
-                    return;
-                }
-                // FIXME 该连接写入过多啦
-                writeFutures.offer(future);
-                // 如果write futures != 1 说明在offer之后至少有2个write future(或者没了)
-                // 说明之前的尚未写入完整，或者正在写入，此时无需dispatch
-                if (writeFutures.size() != 1) {
-                    return;
-                }
-            } catch (Exception e) {
-                exceptionCaught(future, e);
-                return;
-            } finally {
-                lock.unlock();
+            if (enableRejectWhenUnwritable && !isWritable()) {
+                exceptionCaught(future, newUnwritableException());
+                return false;
             }
+            writeFutures.offer(future);
+            incrementPendingWriteBytes(remaining(future));
+            return true;
+        } catch (Exception e) {
+            exceptionCaught(future, e);
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 在eventLoop线程中把广播共享的buf直接写入socket，没有待写的future时才直接写以保证顺序，
+     * 返回false时buf中剩余的部分需要由调用方入队，关闭、不可写等情况也交由入队的路径处理，
+     * 写完时以共享的future回调futureSent(不释放，由广播组释放)
+     */
+    boolean writeShared(ChannelFuture future, ByteBuffer buf) {
+        if (!isOpened() || !isWritable()) {
+            return false;
+        }
+        if (enableSsl || currentWriteFuturesLen != 0 || writeFutures.size() != 0) {
+            return false;
+        }
+        // 与入队的路径一致：flush时计入pending write bytes，被写循环取走时扣除，
+        // 没有写完的部分由调用方入队时重新计入
+        long bytes = buf.remaining();
+        incrementPendingWriteBytes(bytes);
+        try {
+            selectionKey.write(buf);
+        } catch (IOException e) {
+            logger.debug(e.getMessage(), e);
+            CloseUtil.close(this);
+            return false;
+        } finally {
+            decrementPendingWriteBytes(bytes);
+        }
+        if (buf.hasRemaining()) {
+            return false;
+        }
+        try {
+            context.getIoEventHandle().futureSent(session, future);
+        } catch (Throwable e) {
+            logger.debug(e.getMessage(), e);
         }
-        doFlush();
+        return true;
     }
 
     public void flushChannelFutures(Collection<ChannelFuture> futures) {
+        if (writeChannelFutures(futures)) {
+            flush();
+        }
+    }
+
+    public boolean writeChannelFutures(Collection<ChannelFuture> futures) {
         if (futures == null || futures.isEmpty()) {
-            return;
+            return false;
         }
-        SocketSession session = getSession();
         if (inEventLoop()) {
-            try {
-                if (!isOpened()) {
-                    Exception e = new ClosedChannelException(session.toString());
-                    for (ChannelFuture future : futures) {
-                        exceptionCaught(future, e);
-                    }
-                    return;
-                }
-                int size = 0;
-                for (ChannelFuture future : futures) {
-                    if (future.isHeartbeat()) {
-                        continue;
-                    }
-                    size++;
-                    writeFutures.offer(future);
-                }
-                if (writeFutures.size() != size) {
-                    return;
-                }
-            } catch (Exception e) {
-                //will happen ?
+            return offerChannelFutures(futures);
+        }
+        ReentrantLock lock = getCloseLock();
+        lock.lock();
+        try {
+            return offerChannelFutures(futures);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean offerChannelFutures(Collection<ChannelFuture> futures) {
+        try {
+            if (!isOpened()) {
+                Exception e = new ClosedChannelException(session.toString());
                 for (ChannelFuture future : futures) {
-                    if (future.isHeartbeat()) {
-                        continue;
-                    }
                     exceptionCaught(future, e);
                 }
-                return;
-            }
-            if ((selectionKey.interestOps() & SelectionKey.OP_WRITE) != 0) {
-                return;
+                return false;
             }
-        }else{
-            ReentrantLock lock = getCloseLock();
-            lock.lock();
-            try {
-                if (!isOpened()) {
-                    Exception e = new ClosedChannelException(session.toString());
-                    for (ChannelFuture future : futures) {
-                        exceptionCaught(future, e);
-                    }
-                    return;
-                }
-                int size = 0;
+            if (enableRejectWhenUnwritable && !isWritable()) {
+                Exception e = newUnwritableException();
                 for (ChannelFuture future : futures) {
                     if (future.isHeartbeat()) {
                         continue;
                     }
-                    size++;
-                    writeFutures.offer(future);
+                    exceptionCaught(future, e);
                 }
-                if (writeFutures.size() != size) {
-                    return;
+                return false;
+            }
+            int size = 0;
+            long bytes = 0;
+            for (ChannelFuture future : futures) {
+                if (future.isHeartbeat()) {
+                    continue;
                 }
-            } catch (Exception e) {
-                //will happen ?
-                for (ChannelFuture future : futures) {
-                    if (future.isHeartbeat()) {
-                        continue;
-                    }
-                    exceptionCaught(future, e);
+                size++;
+                bytes += remaining(future);
+                writeFutures.offer(future);
+            }
+            incrementPendingWriteBytes(bytes);
+            return size > 0;
+        } catch (Exception e) {
+            //will happen ?
+            for (ChannelFuture future : futures) {
+                if (future.isHeartbeat()) {
+                    continue;
                 }
-                return;
-            } finally {
-                lock.unlock();
+                exceptionCaught(future, e);
             }
+            return false;
         }
-        doFlush();
     }
 
     public Integer getChannelId() {
@@ -584,20 +717,92 @@ public class NioSocketChannel implements NioEventLoopTask {
         return writeFutures.size();
     }
 
+    /**
+     * bytes flushed but not yet taken by the write loop
+     */
+    public long getPendingWriteBytes() {
+        return pendingWriteBytes;
+    }
+
     public boolean inEventLoop() {
         return eventLoop.inEventLoop();
     }
 
-    private void interestRead(SelectionKey key) {
-        int interestOps = key.interestOps();
-        if (SelectionKey.OP_READ != interestOps) {
-            key.interestOps(SelectionKey.OP_READ);
+    private void incrementPendingWriteBytes(long bytes) {
+        long pending = pendingWriteBytesUpdater.addAndGet(this, bytes);
+        if (writeBufferHighWaterMark > 0 && pending > writeBufferHighWaterMark
+                && writableUpdater.compareAndSet(this, 1, 0)) {
+            fireWritabilityChanged();
+        }
+    }
+
+    private void decrementPendingWriteBytes(long bytes) {
+        long pending = pendingWriteBytesUpdater.addAndGet(this, -bytes);
+        if (pending <= writeBufferLowWaterMark && writable == 0
+                && writableUpdater.compareAndSet(this, 0, 1)) {
+            fireWritabilityChanged();
+        }
+    }
+
+    private void fireWritabilityChanged() {
+        if (inEventLoop()) {
+            fireWritabilityChanged0();
+        } else {
+            eventLoop.dispatch(new NioEventLoopTask() {
+
+                @Override
+                public void close() throws IOException {}
+
+                @Override
+                public void fireEvent(NioEventLoop eventLoop) throws IOException {
+                    fireWritabilityChanged0();
+                }
+            });
+        }
+    }
+
+    private void fireWritabilityChanged0() {
+        boolean writable = isWritable();
+        if (!isOpened() || writableFired == writable) {
+            return;
+        }
+        writableFired = writable;
+        if (enablePauseReadWhenUnwritable) {
+            readPaused = !writable;
+            int interestOps = selectionKey.interestOps();
+            if (writable) {
+                selectionKey.interestOps(interestOps | ChannelSelector.OP_READ);
+            } else {
+                selectionKey.interestOps(interestOps & ~ChannelSelector.OP_READ);
+            }
+        }
+        SocketSession session = getSession();
+        for (SessionEventListener l : getContext().getSessionEventListeners()) {
+            try {
+                l.sessionWritabilityChanged(session, writable);
+            } catch (Exception e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    private RejectedExecutionException newUnwritableException() {
+        return new RejectedExecutionException("pending write bytes over high water mark:"
+                + writeBufferHighWaterMark + ",session:" + session);
+    }
+
+    private void interestRead(SelectorKey key) {
+        int interestOps = readPaused ? 0 : ChannelSelector.OP_READ;
+        if (interestOps != key.interestOps()) {
+            key.interestOps(interestOps);
         }
     }
 
-    private void interestWrite(SelectionKey key) {
-        if ((SelectionKey.OP_READ | SelectionKey.OP_WRITE) != key.interestOps()) {
-            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    private void interestWrite(SelectorKey key) {
+        int interestOps = readPaused ? ChannelSelector.OP_WRITE
+                : ChannelSelector.OP_READ | ChannelSelector.OP_WRITE;
+        if (interestOps != key.interestOps()) {
+            key.interestOps(interestOps);
         }
     }
 
@@ -609,10 +814,22 @@ public class NioSocketChannel implements NioEventLoopTask {
         return enableSsl;
     }
 
+    ScheduledTask getIdleTask() {
+        return idleTask;
+    }
+
+    void setIdleTask(ScheduledTask idleTask) {
+        this.idleTask = idleTask;
+    }
+
     public boolean isOpened() {
         return opened;
     }
 
+    public boolean isWritable() {
+        return writable == 1;
+    }
+
     protected void read(ByteBuf buf) throws Exception {
         lastAccess = System.currentTimeMillis();
         buf.clear();
@@ -622,8 +839,7 @@ public class NioSocketChannel implements NioEventLoopTask {
                 buf.read(remainingBuf);
             }
         }
-        SocketChannel javaChannel = javaChannel();
-        int length = javaChannel.read(buf.nioBuffer());
+        int length = selectionKey.read(buf.nioBuffer());
         if (length < 1) {
             if (length == -1) {
                 CloseUtil.close(this);
@@ -694,6 +910,13 @@ public class NioSocketChannel implements NioEventLoopTask {
         }
     }
 
+    private static long remaining(ChannelFuture future) {
+        if (future instanceof FileRegionChannelFuture) {
+            return ((FileRegionChannelFuture) future).remainingBytes();
+        }
+        return future.getByteBuf().remaining();
+    }
+
     public <T> void setOption(SocketOption<T> name, T value) throws IOException {
         channel.setOption(name, value);
     }
@@ -736,41 +959,56 @@ public class NioSocketChannel implements NioEventLoopTask {
         final int maxLen = currentWriteFutures.length;
         for (;;) {
             int i = currentWriteFuturesLen;
-            for (; i < maxLen; i++) {
-                ChannelFuture future = writeFutures.poll();
-                if (future == null) {
-                    break;
+            long polledBytes = 0;
+            // file region需要单独写出，在其写完之前不再poll后续的future
+            if (i == 0 || !(currentWriteFutures[i - 1] instanceof FileRegionChannelFuture)) {
+                for (; i < maxLen; i++) {
+                    ChannelFuture future = writeFutures.poll();
+                    if (future == null) {
+                        break;
+                    }
+                    polledBytes += remaining(future);
+                    currentWriteFutures[i] = future;
+                    if (future instanceof FileRegionChannelFuture) {
+                        i++;
+                        break;
+                    }
                 }
-                currentWriteFutures[i] = future;
+            }
+            if (polledBytes > 0) {
+                decrementPendingWriteBytes(polledBytes);
             }
             currentWriteFuturesLen = i;
             if (currentWriteFuturesLen == 0) {
                 interestRead(selectionKey);
                 return;
             }
-            //FIXME ...是否要清空buffers
-            for (i = 0; i < currentWriteFuturesLen; i++) {
-                ChannelFuture future = currentWriteFutures[i];
-                if (future.isNeedSsl()) {
-                    future.setNeedSsl(false);
-                    // FIXME 部分情况下可以不在业务线程做wrapssl
-                    ByteBuf old = future.getByteBuf();
-                    long version = old.getReleaseVersion();
-                    SslHandler handler = eventLoop.getSslHandler();
-                    try {
-                        ByteBuf newBuf = handler.wrap(this, old);
-                        newBuf.nioBuffer();
-                        future.setByteBuf(newBuf);
-                    } finally {
-                        ReleaseUtil.release(old, version);
+            IoEventHandle ioEventHandle = context.getIoEventHandle();
+            // 先写出file region之前的buf
+            int len = currentWriteFuturesLen;
+            FileRegionChannelFuture region = null;
+            if (currentWriteFutures[len - 1] instanceof FileRegionChannelFuture) {
+                region = (FileRegionChannelFuture) currentWriteFutures[--len];
+                if (len == 0) {
+                    if (!writeFileRegion(region)) {
+                        interestWrite(selectionKey);
+                        return;
                     }
+                    currentWriteFutures[0] = null;
+                    currentWriteFuturesLen = 0;
+                    futureSent(ioEventHandle, region);
+                    continue;
                 }
+            }
+            //FIXME ...是否要清空buffers
+            for (i = 0; i < len; i++) {
+                ChannelFuture future = currentWriteFutures[i];
+                wrapSsl(future);
                 writeBuffers[i] = future.getByteBuf().nioBuffer();
             }
-            IoEventHandle ioEventHandle = context.getIoEventHandle();
-            if (currentWriteFuturesLen == 1) {
+            if (len == 1) {
                 ByteBuffer nioBuf = writeBuffers[0];
-                channel.write(nioBuf);
+                selectionKey.write(nioBuf);
                 if (nioBuf.hasRemaining()) {
                     currentWriteFutures[0].getByteBuf().reverse();
                     interestWrite(selectionKey);
@@ -778,23 +1016,20 @@ public class NioSocketChannel implements NioEventLoopTask {
                 } else {
                     ChannelFuture future = currentWriteFutures[0];
                     currentWriteFutures[0] = null;
-                    try {
-                        future.release(eventLoop);
-                    } catch (Throwable e) {
-                        logger.error(e.getMessage(), e);
-                    }
-                    try {
-                        ioEventHandle.futureSent(session, future);
-                    } catch (Throwable e) {
-                        logger.debug(e.getMessage(), e);
+                    futureSent(ioEventHandle, future);
+                    if (region != null) {
+                        currentWriteFutures[0] = region;
+                        currentWriteFutures[1] = null;
+                        currentWriteFuturesLen = 1;
+                        continue;
                     }
                     currentWriteFuturesLen = 0;
                     interestRead(selectionKey);
                     return;
                 }
             } else {
-                channel.write(writeBuffers, 0, currentWriteFuturesLen);
-                for (i = 0; i < currentWriteFuturesLen; i++) {
+                selectionKey.write(writeBuffers, 0, len);
+                for (i = 0; i < len; i++) {
                     ChannelFuture future = currentWriteFutures[i];
                     if (writeBuffers[i].hasRemaining()) {
                         int remain = currentWriteFuturesLen - i;
@@ -814,21 +1049,17 @@ public class NioSocketChannel implements NioEventLoopTask {
                         interestWrite(selectionKey);
                         return;
                     } else {
-                        try {
-                            future.release(eventLoop);
-                        } catch (Throwable e) {
-                            logger.error(e.getMessage(), e);
-                        }
-                        try {
-                            ioEventHandle.futureSent(session, future);
-                        } catch (Throwable e) {
-                            logger.debug(e.getMessage(), e);
-                        }
+                        futureSent(ioEventHandle, future);
                     }
                 }
                 for (int j = 0; j < currentWriteFuturesLen; j++) {
                     currentWriteFutures[j] = null;
                 }
+                if (region != null) {
+                    currentWriteFutures[0] = region;
+                    currentWriteFuturesLen = 1;
+                    continue;
+                }
                 if (currentWriteFuturesLen != maxLen) {
                     currentWriteFuturesLen = 0;
                     interestRead(selectionKey);
@@ -839,6 +1070,99 @@ public class NioSocketChannel implements NioEventLoopTask {
         }
     }
 
+    private void wrapSsl(ChannelFuture future) throws IOException {
+        if (!future.isNeedSsl()) {
+            return;
+        }
+        future.setNeedSsl(false);
+        // FIXME 部分情况下可以不在业务线程做wrapssl
+        ByteBuf old = future.getByteBuf();
+        long version = old.getReleaseVersion();
+        SslHandler handler = eventLoop.getSslHandler();
+        try {
+            ByteBuf newBuf = handler.wrap(this, old);
+            newBuf.nioBuffer();
+            future.setByteBuf(newBuf);
+        } finally {
+            ReleaseUtil.release(old, version);
+        }
+    }
+
+    private void futureSent(IoEventHandle ioEventHandle, ChannelFuture future) {
+        try {
+            future.release(eventLoop);
+        } catch (Throwable e) {
+            logger.error(e.getMessage(), e);
+        }
+        try {
+            ioEventHandle.futureSent(session, future);
+        } catch (Throwable e) {
+            logger.debug(e.getMessage(), e);
+        }
+    }
+
+    // 返回file region是否已经写完
+    private boolean writeFileRegion(FileRegionChannelFuture region) throws IOException {
+        ChannelFuture header = region.getHeader();
+        if (header != null) {
+            wrapSsl(header);
+            ByteBuffer nioBuf = header.getByteBuf().nioBuffer();
+            selectionKey.write(nioBuf);
+            if (nioBuf.hasRemaining()) {
+                header.getByteBuf().reverse();
+                return false;
+            }
+            region.setHeader(null);
+            futureSent(context.getIoEventHandle(), header);
+        }
+        if (!isEnableSsl()) {
+            FileChannel fileChannel = region.getFileChannel();
+            for (; region.remaining() > 0;) {
+                long n = selectionKey.transferFrom(fileChannel, region.getPosition(),
+                        region.remaining());
+                if (n <= 0) {
+                    if (region.getPosition() >= fileChannel.size()) {
+                        throw new IOException("file truncated: " + fileChannel.size());
+                    }
+                    return false;
+                }
+                region.skip(n);
+            }
+            return true;
+        }
+        for (;;) {
+            ByteBuf buf = region.getByteBuf();
+            if (buf.hasRemaining()) {
+                ByteBuffer nioBuf = buf.nioBuffer();
+                selectionKey.write(nioBuf);
+                if (nioBuf.hasRemaining()) {
+                    buf.reverse();
+                    return false;
+                }
+                ReleaseUtil.release(buf, buf.getReleaseVersion());
+                region.setByteBuf(EmptyByteBuf.get());
+            }
+            if (region.remaining() == 0) {
+                return true;
+            }
+            // ssl无法transferTo，按块mmap后交给SslHandler wrap
+            int size = (int) Math.min(region.remaining(), SSL_FILE_CHUNK);
+            MappedByteBuffer mapped = region.getFileChannel().map(MapMode.READ_ONLY,
+                    region.getPosition(), size);
+            ByteBuf src = UnpooledByteBufAllocator.getDirect().wrap(mapped);
+            try {
+                ByteBuf newBuf = eventLoop.getSslHandler().wrap(this, src);
+                region.setByteBuf(newBuf);
+                region.skip(src.position());
+                if (src.position() == 0 && !newBuf.hasRemaining()) {
+                    throw new SSLException("ssl handshake not finished");
+                }
+            } finally {
+                ReleaseUtil.release(src, src.getReleaseVersion());
+            }
+        }
+    }
+
     protected SocketChannel javaChannel() {
         return channel;
     }
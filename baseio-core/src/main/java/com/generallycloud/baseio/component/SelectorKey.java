@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.FileChannel;
+
+/**
+ * channel在ChannelSelector上的注册，ops使用ChannelSelector中定义的常量，
+ * 读、写(包括gather write)以及file region的写出都通过该接口完成
+ * 
+ * @author wangkai
+ *
+ */
+public interface SelectorKey {
+
+    void attach(Object attachment);
+
+    Object attachment();
+
+    void cancel();
+
+    Channel channel();
+
+    int interestOps();
+
+    void interestOps(int ops);
+
+    boolean isValid();
+
+    int read(ByteBuffer dst) throws IOException;
+
+    int readyOps();
+
+    /**
+     * 将file中position开始的count个字节写出，返回实际写出的字节数
+     */
+    long transferFrom(FileChannel file, long position, long count) throws IOException;
+
+    int write(ByteBuffer src) throws IOException;
+
+    long write(ByteBuffer[] srcs, int offset, int length) throws IOException;
+
+}
@@ -23,4 +23,6 @@ public interface SessionEventListener extends EventListener {
 
     void sessionClosed(SocketSession session);
 
+    void sessionWritabilityChanged(SocketSession session, boolean writable);
+
 }
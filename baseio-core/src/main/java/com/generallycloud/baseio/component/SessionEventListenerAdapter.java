@@ -23,4 +23,7 @@ public class SessionEventListenerAdapter implements SessionEventListener {
     @Override
     public void sessionClosed(SocketSession session) {}
 
+    @Override
+    public void sessionWritabilityChanged(SocketSession session, boolean writable) {}
+
 }
@@ -27,6 +27,7 @@ import javax.net.ssl.SSLEngine;
 import com.generallycloud.baseio.buffer.ByteBufAllocator;
 import com.generallycloud.baseio.concurrent.ExecutorEventLoop;
 import com.generallycloud.baseio.protocol.ChannelFuture;
+import com.generallycloud.baseio.protocol.FileRegionChannelFuture;
 import com.generallycloud.baseio.protocol.Future;
 import com.generallycloud.baseio.protocol.ProtocolCodec;
 
@@ -40,6 +41,13 @@ public interface SocketSession extends Closeable {
      */
     void flush(Future future);
 
+    /**
+     * flush未encode的协议头及其后的file region，两者作为一个整体入队
+     * @param header
+     * @param region
+     */
+    void flush(Future header, FileRegionChannelFuture region);
+
     /**
      * flush已encode的future
      * @param future
@@ -50,6 +58,27 @@ public interface SocketSession extends Closeable {
 
     void flushChannelFutures(Collection<ChannelFuture> futures);
 
+    /**
+     * 调度write之前入队的future，用于配合write批量写出
+     */
+    void flush();
+
+    /**
+     * encode并入队未encode的future，不会立即写出，需要调用flush()
+     * @param future
+     */
+    void write(Future future);
+
+    /**
+     * 入队已encode的future，不会立即写出，需要调用flush()
+     * @param future
+     */
+    void writeChannelFuture(ChannelFuture future);
+
+    void writeFutures(Collection<ChannelFuture> futures);
+
+    void writeChannelFutures(Collection<ChannelFuture> futures);
+
     Object getAttachment();
 
     Object getAttribute(Object key);
@@ -96,6 +125,12 @@ public interface SocketSession extends Closeable {
 
     boolean isOpened();
 
+    /**
+     * false if pending write bytes over write buffer high water mark,
+     * true again after pending write bytes below low water mark
+     */
+    boolean isWritable();
+
     Object removeAttribute(Object key);
 
     void setAttachment(Object attachment);
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.generallycloud.baseio.common.ReleaseUtil;
+import com.generallycloud.baseio.log.Logger;
+import com.generallycloud.baseio.log.LoggerFactory;
+import com.generallycloud.baseio.protocol.ChannelFuture;
+import com.generallycloud.baseio.protocol.FileRegionChannelFuture;
+
+/**
+ * tcp广播组，同一个eventLoop下的成员共享同一个已encode的buf，
+ * 空闲的channel直接写出，只有写不完或者需要ssl的channel才duplicate入队
+ * 
+ * @author wangkai
+ *
+ */
+public class SocketSessionGroup extends BroadcastGroup<SocketSession> {
+
+    private static final Logger logger = LoggerFactory.getLogger(SocketSessionGroup.class);
+
+    @Override
+    protected NioEventLoop getEventLoop(SocketSession session) {
+        return session.unsafe().getEventLoop();
+    }
+
+    /**
+     * 广播已encode的future，future由广播组持有，全部eventLoop写完后释放
+     */
+    public void broadcastChannelFuture(ChannelFuture future) {
+        Slot[] slots = getSlots();
+        if (slots.length == 0) {
+            ReleaseUtil.release(future, null);
+            return;
+        }
+        SharedFuture shared = new SharedFuture(future, slots.length);
+        if (future instanceof FileRegionChannelFuture) {
+            // file region无法共享nioBuffer，每个成员duplicate后各自入队
+            for (Slot slot : slots) {
+                slot.getEventLoop().dispatch(new FanOutTask(shared, slot, null));
+            }
+            return;
+        }
+        // 每个eventLoop使用各自的视图，共享的nioBuffer之后不再被修改
+        ByteBuffer src = future.getByteBuf().nioBuffer();
+        for (Slot slot : slots) {
+            slot.getEventLoop().dispatch(new FanOutTask(shared, slot, src.duplicate()));
+        }
+    }
+
+    static final class SharedFuture extends AtomicInteger {
+
+        private static final long   serialVersionUID = 1L;
+
+        private final ChannelFuture future;
+
+        SharedFuture(ChannelFuture future, int refs) {
+            super(refs);
+            this.future = future;
+        }
+
+        void release(NioEventLoop eventLoop) {
+            if (decrementAndGet() == 0) {
+                ReleaseUtil.release(future, eventLoop);
+            }
+        }
+
+    }
+
+    static final class FanOutTask implements NioEventLoopTask {
+
+        private final SharedFuture shared;
+        private final Slot         slot;
+        private final ByteBuffer   view;
+
+        FanOutTask(SharedFuture shared, Slot slot, ByteBuffer view) {
+            this.shared = shared;
+            this.slot = slot;
+            this.view = view;
+        }
+
+        @Override
+        public void close() throws IOException {
+            shared.release(null);
+        }
+
+        @Override
+        public void fireEvent(NioEventLoop eventLoop) {
+            ByteBuffer view = this.view;
+            if (view == null) {
+                for (Object m : slot.getMembers()) {
+                    NioSocketChannel channel = ((SocketSession) m).unsafe();
+                    try {
+                        channel.flushChannelFuture(shared.future.duplicate());
+                    } catch (Throwable e) {
+                        logger.debug(e.getMessage(), e);
+                    }
+                }
+                shared.release(eventLoop);
+                return;
+            }
+            int start = view.position();
+            for (Object m : slot.getMembers()) {
+                NioSocketChannel channel = ((SocketSession) m).unsafe();
+                view.position(start);
+                try {
+                    if (channel.writeShared(shared.future, view)) {
+                        continue;
+                    }
+                    // 前面还有未写完的future、本次没有写完或者不可写，剩余部分按原有方式入队
+                    ChannelFuture future = shared.future.duplicate();
+                    future.getByteBuf().skipBytes(view.position() - start);
+                    channel.flushChannelFuture(future);
+                } catch (Throwable e) {
+                    logger.debug(e.getMessage(), e);
+                }
+            }
+            shared.release(eventLoop);
+        }
+
+    }
+
+}
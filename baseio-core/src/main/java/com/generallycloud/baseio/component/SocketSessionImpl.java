@@ -27,6 +27,7 @@ import com.generallycloud.baseio.buffer.ByteBufAllocator;
 import com.generallycloud.baseio.common.CloseUtil;
 import com.generallycloud.baseio.concurrent.ExecutorEventLoop;
 import com.generallycloud.baseio.protocol.ChannelFuture;
+import com.generallycloud.baseio.protocol.FileRegionChannelFuture;
 import com.generallycloud.baseio.protocol.Future;
 import com.generallycloud.baseio.protocol.ProtocolCodec;
 
@@ -55,6 +56,11 @@ public class SocketSessionImpl implements SocketSession {
         unsafe().flush((ChannelFuture) future);
     }
 
+    @Override
+    public void flush(Future header, FileRegionChannelFuture region) {
+        unsafe().flush((ChannelFuture) header, region);
+    }
+
     @Override
     public void flushChannelFuture(ChannelFuture future) {
         unsafe().flushChannelFuture(future);
@@ -70,6 +76,31 @@ public class SocketSessionImpl implements SocketSession {
         unsafe().flushChannelFutures(futures);
     }
 
+    @Override
+    public void flush() {
+        unsafe().flush();
+    }
+
+    @Override
+    public void write(Future future) {
+        unsafe().write((ChannelFuture) future);
+    }
+
+    @Override
+    public void writeChannelFuture(ChannelFuture future) {
+        unsafe().writeChannelFuture(future);
+    }
+
+    @Override
+    public void writeFutures(Collection<ChannelFuture> futures) {
+        unsafe().writeFutures(futures);
+    }
+
+    @Override
+    public void writeChannelFutures(Collection<ChannelFuture> futures) {
+        unsafe().writeChannelFutures(futures);
+    }
+
     @Override
     public Object getAttachment() {
         return attachment;
@@ -190,6 +221,11 @@ public class SocketSessionImpl implements SocketSession {
         return unsafe().isOpened();
     }
 
+    @Override
+    public boolean isWritable() {
+        return unsafe().isWritable();
+    }
+
     @Override
     public Object removeAttribute(Object key) {
         return attributes.remove(key);
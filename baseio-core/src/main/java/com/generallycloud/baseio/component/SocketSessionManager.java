@@ -21,6 +21,7 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.generallycloud.baseio.common.ReleaseUtil;
 import com.generallycloud.baseio.protocol.ChannelFuture;
 import com.generallycloud.baseio.protocol.Future;
 
@@ -32,6 +33,7 @@ public class SocketSessionManager {
 
     private Map<Integer, SocketSession> sessions         = new ConcurrentHashMap<>();
     private Map<Integer, SocketSession> readOnlySessions = Collections.unmodifiableMap(sessions);
+    private SocketSessionGroup          sessionGroup     = new SocketSessionGroup();
     private ChannelContext              context;
 
     public SocketSessionManager(ChannelContext context) {
@@ -48,18 +50,32 @@ public class SocketSessionManager {
 
     public void putSession(SocketSession session) {
         sessions.put(session.getSessionId(), session);
+        sessionGroup.add(session);
     }
 
     public void removeSession(SocketSession session) {
         sessions.remove(session.getSessionId());
+        sessionGroup.remove(session);
     }
 
     public void broadcast(Future future) throws IOException {
-        broadcast(future, sessions.values());
+        ChannelFuture f = (ChannelFuture) future;
+        // 与flush一致，之后future(包括读取时持有的报文)由广播负责释放
+        f.flush();
+        if (sessionGroup.isEmpty()) {
+            ReleaseUtil.release(f, null);
+            return;
+        }
+        NioSocketChannel channel = context.getSimulateSocketChannel();
+        context.getProtocolCodec().encode(channel, f);
+        sessionGroup.broadcastChannelFuture(f);
     }
 
+    /**
+     * 向全部session广播已encode的future，future的释放由广播组负责
+     */
     public void broadcastChannelFuture(ChannelFuture future) {
-        broadcastChannelFuture(future, sessions.values());
+        sessionGroup.broadcastChannelFuture(future);
     }
 
     public void broadcast(Future future, Collection<SocketSession> sessions) throws IOException {
@@ -68,10 +84,20 @@ public class SocketSessionManager {
         }
         NioSocketChannel channel = context.getSimulateSocketChannel();
         ChannelFuture f = (ChannelFuture) future;
-        context.getProtocolCodec().encode(channel, f);
-        broadcastChannelFuture(f, sessions);
+        // 与flush一致，之后future由广播负责释放，duplicate复制完成后即可释放原future
+        f.flush();
+        try {
+            context.getProtocolCodec().encode(channel, f);
+            broadcastChannelFuture(f, sessions);
+        } finally {
+            ReleaseUtil.release(f, null);
+        }
     }
 
+    /**
+     * 每个session写出future的duplicate，原future仍由调用方持有并负责释放，
+     * file region的fileChannel在全部duplicate写完后关闭
+     */
     public void broadcastChannelFuture(ChannelFuture future, Collection<SocketSession> sessions) {
         if (sessions.size() == 0) {
             return;
@@ -85,4 +111,8 @@ public class SocketSessionManager {
         return readOnlySessions;
     }
 
+    public SocketSessionGroup getSessionGroup() {
+        return sessionGroup;
+    }
+
 }
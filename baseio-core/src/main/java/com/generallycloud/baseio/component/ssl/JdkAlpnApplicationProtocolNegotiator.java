@@ -45,7 +45,7 @@ public final class JdkAlpnApplicationProtocolNegotiator
     public static class ALPNSslEngineWrapperFactory implements SslEngineWrapperFactory {
 
         public ALPNSslEngineWrapperFactory() {
-            if (!isAvailable()) {
+            if (!isAvailable() && !JdkNativeAlpnSslEngine.isAvailable()) {
                 throw new RuntimeException(
                         "ALPN unsupported. Is your classpatch configured correctly?"
                                 + "\n See http://www.eclipse.org/jetty/documentation/current/alpn-chapter.html#alpn-starting；"
@@ -56,7 +56,11 @@ public final class JdkAlpnApplicationProtocolNegotiator
         @Override
         public SSLEngine wrapSslEngine(SSLEngine engine,
                 JdkApplicationProtocolNegotiator applicationNegotiator, boolean isServer) {
-            return new JdkAlpnSslEngine(engine, applicationNegotiator, isServer);
+            if (isAvailable()) {
+                return new JdkAlpnSslEngine(engine, applicationNegotiator, isServer);
+            }
+            // 未配置alpn-boot时使用JDK(8u252+)自带的ALPN
+            return new JdkNativeAlpnSslEngine(engine, applicationNegotiator, isServer);
         }
 
         private static boolean available;
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.component.ssl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+
+import com.generallycloud.baseio.common.StringUtil;
+
+/**
+ * 基于JDK(8u252+，9+)自带ALPN API的实现，无需在bootclasspath中配置alpn-boot，
+ * 这些API在1.7中不存在，全部通过反射调用
+ * 
+ * @author wangkai
+ *
+ */
+final class JdkNativeAlpnSslEngine extends JdkSslEngine {
+
+    private static Boolean available;
+    private static Class<?> biFunction;
+    private static Method   getApplicationProtocol;
+    private static Method   setApplicationProtocols;
+    private static Method   setHandshakeApplicationProtocolSelector;
+
+    private final boolean   server;
+
+    JdkNativeAlpnSslEngine(SSLEngine engine,
+            final JdkApplicationProtocolNegotiator applicationNegotiator, boolean server) {
+        super(engine);
+        this.server = server;
+        if (server) {
+            final ProtocolSelector protocolSelector = applicationNegotiator
+                    .protocolSelectorFactory()
+                    .newSelector(this, new LinkedHashSet<>(applicationNegotiator.protocols()));
+            Object selector = Proxy.newProxyInstance(JdkNativeAlpnSslEngine.class.getClassLoader(),
+                    new Class<?>[] { biFunction }, new InvocationHandler() {
+
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            if (!"apply".equals(method.getName())) {
+                                return invokeObjectMethod(proxy, method, args);
+                            }
+                            try {
+                                @SuppressWarnings("unchecked")
+                                List<String> protocols = (List<String>) args[1];
+                                String protocol = protocolSelector.select(protocols);
+                                // 空字符串表示不协商，null表示握手失败
+                                return protocol == null ? "" : protocol;
+                            } catch (Throwable t) {
+                                return null;
+                            }
+                        }
+                    });
+            invoke(setHandshakeApplicationProtocolSelector, engine, selector);
+        } else {
+            List<String> protocols = applicationNegotiator.protocols();
+            SSLParameters parameters = engine.getSSLParameters();
+            invoke(setApplicationProtocols, parameters,
+                    (Object) protocols.toArray(new String[protocols.size()]));
+            engine.setSSLParameters(parameters);
+        }
+    }
+
+    @Override
+    public String getApplicationProtocol() {
+        if (server) {
+            return super.getApplicationProtocol();
+        }
+        String protocol = (String) invoke(getApplicationProtocol, unwrap());
+        return StringUtil.isNullOrBlank(protocol) ? null : protocol;
+    }
+
+    // isAvailable()已确认这些方法存在且为public
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 代理对象上的equals、hashCode、toString
+    private static Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+        String name = method.getName();
+        if ("equals".equals(name)) {
+            return proxy == args[0];
+        }
+        if ("hashCode".equals(name)) {
+            return System.identityHashCode(proxy);
+        }
+        if ("toString".equals(name)) {
+            return "AlpnProtocolSelector@" + Integer.toHexString(System.identityHashCode(proxy));
+        }
+        throw new UnsupportedOperationException(name);
+    }
+
+    static synchronized boolean isAvailable() {
+        if (available == null) {
+            try {
+                biFunction = Class.forName("java.util.function.BiFunction");
+                setHandshakeApplicationProtocolSelector = SSLEngine.class
+                        .getMethod("setHandshakeApplicationProtocolSelector", biFunction);
+                getApplicationProtocol = SSLEngine.class.getMethod("getApplicationProtocol");
+                setApplicationProtocols = SSLParameters.class.getMethod("setApplicationProtocols",
+                        String[].class);
+                available = true;
+            } catch (Exception e) {
+                available = false;
+            }
+        }
+        return available;
+    }
+
+}
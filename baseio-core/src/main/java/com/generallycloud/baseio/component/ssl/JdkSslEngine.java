@@ -37,6 +37,14 @@ class JdkSslEngine extends SSLEngine {
         return session;
     }
 
+    /**
+     * ALPN协商得到的应用层协议，未协商时返回null，
+     * 与JDK9+的SSLEngine.getApplicationProtocol()同名，为兼容1.7编译不加@Override
+     */
+    public String getApplicationProtocol() {
+        return session.getApplicationProtocol();
+    }
+
     public SSLEngine unwrap() {
         return engine;
     }
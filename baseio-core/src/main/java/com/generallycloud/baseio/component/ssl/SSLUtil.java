@@ -20,6 +20,7 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 
+import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLException;
 
 import com.generallycloud.baseio.common.CloseUtil;
@@ -59,6 +60,16 @@ public class SSLUtil {
         return SslContextBuilder.forClient(trustAll).build();
     }
 
+    /**
+     * ALPN协商得到的应用层协议，未启用ALPN或未协商时返回null
+     */
+    public static String getApplicationProtocol(SSLEngine engine) {
+        if (engine instanceof JdkSslEngine) {
+            return ((JdkSslEngine) engine).getApplicationProtocol();
+        }
+        return null;
+    }
+
     private static SslContext doInit(File privateKey, File certificate) throws IOException {
         LoggerUtil.prettyLog(logger, "load certificate public  key: {}",
                 certificate.getCanonicalPath());
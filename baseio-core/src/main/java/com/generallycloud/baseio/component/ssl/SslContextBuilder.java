@@ -148,7 +148,8 @@ public final class SslContextBuilder {
                     return new JdkAlpnApplicationProtocolNegotiator(true,
                             config.supportedProtocols());
                 } else if (sfb == SelectorFailureBehavior.NO_ADVERTISE) {
-                    new JdkAlpnApplicationProtocolNegotiator(false, config.supportedProtocols());
+                    return new JdkAlpnApplicationProtocolNegotiator(false,
+                            config.supportedProtocols());
                 }
                 throw new UnsupportedOperationException("JDK provider does not support "
                         + config.selectorFailureBehavior() + " failure behavior");
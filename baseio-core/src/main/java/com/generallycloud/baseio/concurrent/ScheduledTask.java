@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.concurrent;
+
+/**
+ * 放入TimingWheel中的任务，cancel可以在任意线程调用
+ * 
+ * @author wangkai
+ *
+ */
+public final class ScheduledTask {
+
+    private volatile boolean cancelled;
+    long                     deadline;
+    ScheduledTask            next;
+    private final long       period;
+    ScheduledTask            prev;
+    long                     rounds;
+    private final Runnable   task;
+    TimingWheel              wheel;
+
+    /**
+     * @param deadline 到期时间(ms)
+     * @param period 大于0时每隔period(ms)重复执行
+     */
+    public ScheduledTask(Runnable task, long deadline, long period) {
+        this.task = task;
+        this.deadline = deadline;
+        this.period = period;
+    }
+
+    /**
+     * 不会中断正在执行的任务，已放入TimingWheel的任务在到期时被移除
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public long getPeriod() {
+        return period;
+    }
+
+    public Runnable getTask() {
+        return task;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isPeriodic() {
+        return period > 0;
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * 无锁的单消费者多生产者无界队列，元素存放在按chunk链接的数组中，
+ * 生产者通过getAndIncrement领取下标后写入对应的槽位，消费者按下标顺序读取
+ * <p>
+ * offer返回true表示offer之前队列为空，此时消费者可能正在等待，
+ * 调用方只需要在这种情况下唤醒消费者，消费者在等待前需要确认size()为0
+ * 
+ * @author wangkai
+ *
+ */
+public class ScmpArrayQueue<T> {
+
+    private static final int                                                CHUNK_SIZE = 1024;
+    // Class字面量只能是原始类型，newUpdater返回的updater无法带上泛型参数
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<ScmpArrayQueue>             producerIndexUpdater;
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<ScmpArrayQueue, Chunk> producerChunkUpdater;
+
+    static {
+        producerIndexUpdater = AtomicLongFieldUpdater.newUpdater(ScmpArrayQueue.class,
+                "producerIndex");
+        producerChunkUpdater = AtomicReferenceFieldUpdater.newUpdater(ScmpArrayQueue.class,
+                Chunk.class, "producerChunk");
+    }
+
+    // 生产者与消费者各自修改的字段之间填充，避免false sharing
+    long                    p00, p01, p02, p03, p04, p05, p06, p07;
+    private volatile long   producerIndex;
+    long                    p10, p11, p12, p13, p14, p15, p16, p17;
+    private volatile long   consumerIndex;
+    long                    p20, p21, p22, p23, p24, p25, p26, p27;
+    private volatile Chunk  producerChunk;
+    private Chunk           consumerChunk;
+
+    public ScmpArrayQueue() {
+        Chunk chunk = new Chunk(0);
+        this.producerChunk = chunk;
+        this.consumerChunk = chunk;
+    }
+
+    public boolean offer(T t) {
+        if (t == null) {
+            throw new NullPointerException();
+        }
+        // 必须在领取下标之前读取producerChunk，保证chunk.base <= index
+        Chunk chunk = producerChunk;
+        long index = producerIndexUpdater.getAndIncrement(this);
+        for (; index >= chunk.base + CHUNK_SIZE;) {
+            Chunk next = chunk.next;
+            if (next == null) {
+                Chunk newChunk = new Chunk(chunk.base + CHUNK_SIZE);
+                if (Chunk.nextUpdater.compareAndSet(chunk, null, newChunk)) {
+                    next = newChunk;
+                } else {
+                    next = chunk.next;
+                }
+            }
+            Chunk current = producerChunk;
+            if (current.base < next.base) {
+                producerChunkUpdater.compareAndSet(this, current, next);
+            }
+            chunk = next;
+        }
+        chunk.slots.lazySet((int) (index - chunk.base), t);
+        return index == consumerIndex;
+    }
+
+    // 仅允许消费者线程调用，如果生产者已领取下标但尚未写入，同样返回null
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long index = consumerIndex;
+        Chunk chunk = consumerChunk;
+        int offset = (int) (index - chunk.base);
+        if (offset == CHUNK_SIZE) {
+            Chunk next = chunk.next;
+            if (next == null) {
+                return null;
+            }
+            consumerChunk = chunk = next;
+            offset = 0;
+        }
+        Object t = chunk.slots.get(offset);
+        if (t == null) {
+            return null;
+        }
+        chunk.slots.lazySet(offset, null);
+        // 这里不能使用lazySet，需要与offer中对consumerIndex的读取形成happens-before，
+        // 否则消费者可能在生产者判断队列不为空的同时进入等待
+        consumerIndex = index + 1;
+        return (T) t;
+    }
+
+    public int size() {
+        long size = producerIndex - consumerIndex;
+        if (size < 0) {
+            return 0;
+        }
+        if (size > Integer.MAX_VALUE) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) size;
+    }
+
+    static final class Chunk {
+
+        static final AtomicReferenceFieldUpdater<Chunk, Chunk> nextUpdater;
+
+        static {
+            nextUpdater = AtomicReferenceFieldUpdater.newUpdater(Chunk.class, Chunk.class,
+                    "next");
+        }
+
+        final long                         base;
+        final AtomicReferenceArray<Object> slots;
+        volatile Chunk                     next;
+
+        Chunk(long base) {
+            this.base = base;
+            this.slots = new AtomicReferenceArray<>(CHUNK_SIZE);
+        }
+
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.concurrent;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.generallycloud.baseio.log.Logger;
+import com.generallycloud.baseio.log.LoggerFactory;
+
+/**
+ * 单个连接的串行队列，队列由空变为非空时向group的executor提交一次drain，
+ * drain依次执行队列中的任务直到队列为空，因此同一连接的任务不会并发执行
+ */
+public class SerialEventLoop implements ExecutorEventLoop, Runnable {
+
+    private static Logger               logger = LoggerFactory.getLogger(SerialEventLoop.class);
+
+    private VirtualThreadEventLoopGroup group;
+    private Queue<Runnable>             jobs   = new ConcurrentLinkedQueue<>();
+    private volatile Thread             runner;
+    // 排队及正在执行的任务数
+    private AtomicInteger               size   = new AtomicInteger();
+
+    SerialEventLoop(VirtualThreadEventLoopGroup group) {
+        this.group = group;
+    }
+
+    @Override
+    public void dispatch(Runnable job) throws RejectedExecutionException {
+        if (job == null) {
+            return;
+        }
+        if (!group.isRunning() || size.get() >= group.getMaxEventQueueSize()) {
+            throw new RejectedExecutionException();
+        }
+        jobs.offer(job);
+        if (size.getAndIncrement() == 0) {
+            group.getExecutor().execute(this);
+        }
+    }
+
+    @Override
+    public void run() {
+        Thread thread = Thread.currentThread();
+        runner = thread;
+        try {
+            for (;;) {
+                Runnable job = jobs.poll();
+                try {
+                    job.run();
+                } catch (Throwable e) {
+                    logger.error(e.getMessage(), e);
+                }
+                if (size.decrementAndGet() == 0) {
+                    return;
+                }
+            }
+        } finally {
+            if (runner == thread) {
+                runner = null;
+            }
+        }
+    }
+
+    @Override
+    public ExecutorEventLoopGroup getGroup() {
+        return group;
+    }
+
+    @Override
+    public Thread getMonitor() {
+        return runner;
+    }
+
+    @Override
+    public boolean inEventLoop() {
+        return inEventLoop(Thread.currentThread());
+    }
+
+    @Override
+    public boolean inEventLoop(Thread thread) {
+        return runner == thread;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return group.isRunning();
+    }
+
+    @Override
+    public void loop() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void startup(String threadName) throws Exception {}
+
+    @Override
+    public void stop() {}
+
+    @Override
+    public void wakeup() {}
+
+}
@@ -15,10 +15,8 @@
  */
 package com.generallycloud.baseio.concurrent;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import com.generallycloud.baseio.common.ThreadUtil;
 import com.generallycloud.baseio.component.ChannelContext;
@@ -26,6 +24,10 @@ import com.generallycloud.baseio.configuration.Configuration;
 import com.generallycloud.baseio.log.Logger;
 import com.generallycloud.baseio.log.LoggerFactory;
 
+/**
+ * 单线程的work event loop，任务存放在无锁的ScmpArrayQueue中，
+ * 每次唤醒后执行完全部已入队的任务，队列为空时park，由入队时的生产者unpark
+ */
 public class ThreadEventLoop extends AbstractEventLoop implements ExecutorEventLoop {
 
     private ChannelContext         context;
@@ -34,36 +36,62 @@ public class ThreadEventLoop extends AbstractEventLoop implements ExecutorEventL
 
     private ExecutorEventLoopGroup executorEventLoopGroup;
 
+    private int                    maxEventQueueSize;
+
     public ThreadEventLoop(ExecutorEventLoopGroup eventLoopGroup, ChannelContext context) {
         this.executorEventLoopGroup = eventLoopGroup;
         this.context = context;
     }
 
-    private BlockingQueue<Runnable> jobs;
+    private ScmpArrayQueue<Runnable> jobs;
 
     @Override
     protected void doLoop() throws InterruptedException {
-        Runnable runnable = jobs.poll(32, TimeUnit.MILLISECONDS);
-        if (runnable == null) {
+        ScmpArrayQueue<Runnable> jobs = this.jobs;
+        for (;;) {
+            Runnable runnable = jobs.poll();
+            if (runnable == null) {
+                break;
+            }
+            try {
+                runnable.run();
+            } catch (Throwable e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+        if (jobs.size() > 0) {
+            // 生产者已领取下标但尚未写入
+            Thread.yield();
+            return;
+        }
+        if (!running) {
             return;
         }
-        runnable.run();
+        // 队列由空变为非空时生产者会unpark，先于park的unpark同样有效
+        LockSupport.park(this);
     }
 
     @Override
     protected void doStartup() throws Exception {
         Configuration sc = context.getConfiguration();
-        int eventQueueSize = sc.getWorkEventQueueSize();
-        this.jobs = new ArrayBlockingQueue<>(eventQueueSize);
+        this.maxEventQueueSize = sc.getWorkEventQueueSize();
+        this.jobs = new ScmpArrayQueue<>();
         super.doStartup();
     }
 
-    //FIXME 观察这里是否部分event没有被fire
     @Override
     public void dispatch(Runnable job) throws RejectedExecutionException {
-        if (!isRunning() || !jobs.offer(job)) {
+        if (!isRunning() || jobs.size() >= maxEventQueueSize) {
             throw new RejectedExecutionException();
         }
+        if (jobs.offer(job)) {
+            LockSupport.unpark(getMonitor());
+        }
+    }
+
+    @Override
+    public void wakeup() {
+        LockSupport.unpark(getMonitor());
     }
 
     @Override
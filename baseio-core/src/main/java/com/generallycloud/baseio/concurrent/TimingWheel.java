@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.concurrent;
+
+import com.generallycloud.baseio.log.Logger;
+import com.generallycloud.baseio.log.LoggerFactory;
+
+/**
+ * 哈希时间轮，非线程安全，由所属线程(如NioEventLoop)在每轮循环中调用expire，
+ * 每个tick只处理对应槽位中的任务，添加与移除均为O(1)
+ * 
+ * @author wangkai
+ *
+ */
+public class TimingWheel {
+
+    private static final Logger   logger = LoggerFactory.getLogger(TimingWheel.class);
+
+    private final ScheduledTask[] buckets;
+    private final int             mask;
+    private int                   size;
+    private final long            startTime;
+    // 下一个待处理的tick
+    private long                  tick;
+    private final long            tickDuration;
+
+    public TimingWheel(long tickDuration, int ticksPerWheel, long startTime) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration: " + tickDuration);
+        }
+        int length = 1;
+        for (; length < ticksPerWheel;) {
+            length <<= 1;
+        }
+        this.buckets = new ScheduledTask[length];
+        this.mask = length - 1;
+        this.tickDuration = tickDuration;
+        this.startTime = startTime;
+    }
+
+    public void add(ScheduledTask task) {
+        if (task.wheel != null) {
+            throw new IllegalStateException("task already scheduled");
+        }
+        // 向上取整，保证不会提前执行
+        long ticks = (task.deadline - startTime + tickDuration - 1) / tickDuration;
+        if (ticks < tick) {
+            ticks = tick;
+        }
+        task.rounds = (ticks - tick) / buckets.length;
+        int index = (int) (ticks & mask);
+        ScheduledTask head = buckets[index];
+        task.prev = null;
+        task.next = head;
+        if (head != null) {
+            head.prev = task;
+        }
+        buckets[index] = task;
+        task.wheel = this;
+        size++;
+    }
+
+    /**
+     * 以新的到期时间重新加入非周期任务，可以在该任务执行时调用，用于按需延后下一次执行
+     */
+    public void schedule(ScheduledTask task, long deadline) {
+        task.deadline = deadline;
+        add(task);
+    }
+
+    /**
+     * 执行截止到now为止到期的任务
+     */
+    public void expire(long now) {
+        long target = (now - startTime) / tickDuration;
+        for (; tick <= target;) {
+            if (size == 0) {
+                tick = target + 1;
+                return;
+            }
+            int index = (int) (tick & mask);
+            ScheduledTask expired = null;
+            ScheduledTask task = buckets[index];
+            for (; task != null;) {
+                ScheduledTask next = task.next;
+                if (task.isCancelled()) {
+                    remove(task, index);
+                } else if (task.rounds > 0) {
+                    task.rounds--;
+                } else {
+                    remove(task, index);
+                    task.next = expired;
+                    expired = task;
+                }
+                task = next;
+            }
+            // 先推进tick，执行时重新添加的任务不会落入已处理的槽位
+            tick++;
+            for (; expired != null;) {
+                ScheduledTask next = expired.next;
+                expired.next = null;
+                run(expired);
+                expired = next;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 距离下一个tick的时间，最小为1
+     */
+    public long nextTickDelay(long now) {
+        return Math.max(startTime + tick * tickDuration - now, 1);
+    }
+
+    private void remove(ScheduledTask task, int index) {
+        ScheduledTask prev = task.prev;
+        ScheduledTask next = task.next;
+        if (prev == null) {
+            buckets[index] = next;
+        } else {
+            prev.next = next;
+        }
+        if (next != null) {
+            next.prev = prev;
+        }
+        task.prev = null;
+        task.next = null;
+        task.wheel = null;
+        size--;
+    }
+
+    private void run(ScheduledTask task) {
+        try {
+            task.getTask().run();
+        } catch (Throwable e) {
+            logger.error(e.getMessage(), e);
+        }
+        if (task.isPeriodic() && !task.isCancelled()) {
+            task.deadline += task.getPeriod();
+            add(task);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.generallycloud.baseio.AbstractLifeCycle;
+import com.generallycloud.baseio.log.Logger;
+import com.generallycloud.baseio.log.LoggerFactory;
+
+/**
+ * 在虚拟线程(JDK21+)上执行业务，适用于handler中有阻塞调用(JDBC、RedisClient等)的场景。
+ * <p>
+ * 每次getNext()返回一个新的SerialEventLoop，即每个连接一个串行队列，
+ * 同一连接的future按顺序执行，不同连接之间互不阻塞。
+ * 运行时不支持虚拟线程时退回到fallbackThreads个平台线程的线程池
+ * </p>
+ */
+public class VirtualThreadEventLoopGroup extends AbstractLifeCycle
+        implements ExecutorEventLoopGroup {
+
+    private static Logger   logger = LoggerFactory.getLogger(VirtualThreadEventLoopGroup.class);
+
+    private String          eventLoopName;
+    private ExecutorService executor;
+    private int             fallbackThreads;
+    private int             maxEventQueueSize;
+    private boolean         virtual;
+
+    /**
+     * @param eventLoopName 线程名前缀
+     * @param maxEventQueueSize 单个连接最多排队的future数
+     * @param fallbackThreads 不支持虚拟线程时使用的平台线程数
+     */
+    public VirtualThreadEventLoopGroup(String eventLoopName, int maxEventQueueSize,
+            int fallbackThreads) {
+        this.eventLoopName = eventLoopName;
+        this.maxEventQueueSize = maxEventQueueSize;
+        this.fallbackThreads = fallbackThreads;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        executor = newVirtualThreadExecutor(eventLoopName);
+        virtual = executor != null;
+        if (!virtual) {
+            logger.info("virtual thread not supported, use {} platform threads",
+                    fallbackThreads);
+            executor = Executors.newFixedThreadPool(fallbackThreads,
+                    new NamedThreadFactory(eventLoopName));
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    // Thread.ofVirtual().name(prefix, 0).factory()，JDK21以下返回null
+    private static ExecutorService newVirtualThreadExecutor(String name) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method nameMethod = builderClass.getMethod("name", String.class, long.class);
+            builder = nameMethod.invoke(builder, name + "-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory")
+                    .invoke(builder);
+            Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor",
+                    ThreadFactory.class);
+            return (ExecutorService) newExecutor.invoke(null, factory);
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    /**
+     * 不适用，每个连接的event loop由getNext()单独创建
+     */
+    @Override
+    public EventLoop getEventLoop(int index) {
+        throw new UnsupportedOperationException();
+    }
+
+    ExecutorService getExecutor() {
+        return executor;
+    }
+
+    int getMaxEventQueueSize() {
+        return maxEventQueueSize;
+    }
+
+    /**
+     * 每次调用返回一个新的串行event loop，供一个连接使用
+     */
+    @Override
+    public ExecutorEventLoop getNext() {
+        return new SerialEventLoop(this);
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    static class NamedThreadFactory implements ThreadFactory {
+
+        private final String        namePrefix;
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        NamedThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, namePrefix + "-" + threadNumber.getAndIncrement());
+        }
+
+    }
+
+}
@@ -30,6 +30,8 @@ public class Configuration {
     private boolean enableSsl;
     //是否启用work event loop，如果启用，则future在work event loop中处理
     private boolean enableWorkEventLoop;
+    //work event loop是否使用虚拟线程(JDK21+)，每个连接一个串行队列，不支持时退回到平台线程池
+    private boolean enableVirtualWorkEventLoop;
     private String  certCrt;
     private String  certKey;
     private String  sslKeystore;
@@ -76,6 +78,10 @@ public class Configuration {
         return workEventQueueSize;
     }
 
+    /**
+     * work event loop的队列长度，一次读取解出的全部future作为一个任务入队，
+     * 因此限制的是任务数，实际排队的future最多可达该值乘以NioEventLoopGroup的readFutures
+     */
     public void setWorkEventQueueSize(int workEventQueueSize) {
         this.workEventQueueSize = workEventQueueSize;
     }
@@ -104,6 +110,14 @@ public class Configuration {
         this.enableWorkEventLoop = enableWorkEventLoop;
     }
 
+    public boolean isEnableVirtualWorkEventLoop() {
+        return enableVirtualWorkEventLoop;
+    }
+
+    public void setEnableVirtualWorkEventLoop(boolean enableVirtualWorkEventLoop) {
+        this.enableVirtualWorkEventLoop = enableVirtualWorkEventLoop;
+    }
+
     public String getCertCrt() {
         return certCrt;
     }
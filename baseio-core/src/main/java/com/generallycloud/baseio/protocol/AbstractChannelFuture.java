@@ -117,11 +117,29 @@ public abstract class AbstractChannelFuture extends AbstractFuture implements Ch
 
     @Override
     public void release(NioEventLoop eventLoop) {
+        releaseWriteBuf();
         ReleaseUtil.release(buf, bufReleaseVersion);
     }
 
+    // encode前失败或未被flush的future需要归还writeBuf
+    private void releaseWriteBuf() {
+        ByteBuf writeBuf = this.writeBuf;
+        if (writeBuf != null) {
+            this.writeBuf = null;
+            writeBuf.release(writeBuf.getReleaseVersion());
+        }
+    }
+
+    /**
+     * 若buf即为writeBuf，则writeBuf的所有权转交给该future，否则释放writeBuf
+     */
     @Override
     public void setByteBuf(ByteBuf buf) {
+        if (buf == writeBuf) {
+            writeBuf = null;
+        } else {
+            releaseWriteBuf();
+        }
         buf.nioBuffer();
         this.buf = buf;
         this.bufReleaseVersion = buf.getReleaseVersion();
@@ -179,6 +197,9 @@ public abstract class AbstractChannelFuture extends AbstractFuture implements Ch
         this.isSilent = false;
         this.next = null;
         this.writeSize = 0;
+        this.writeBufAllocator = null;
+        this.writeBufReserve = 0;
+        releaseWriteBuf();
         this.bufReleaseVersion = 0;
         return this;
     }
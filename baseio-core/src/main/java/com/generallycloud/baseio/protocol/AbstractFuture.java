@@ -18,12 +18,51 @@ package com.generallycloud.baseio.protocol;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 
+import com.generallycloud.baseio.buffer.ByteBuf;
+import com.generallycloud.baseio.buffer.ByteBufAllocator;
 import com.generallycloud.baseio.component.ChannelContext;
 
 public abstract class AbstractFuture implements Future {
 
-    protected byte[] writeBuffer;
-    protected int    writeSize;
+    protected ByteBuf          writeBuf;
+    protected ByteBufAllocator writeBufAllocator;
+    protected int              writeBufReserve;
+    protected byte[]           writeBuffer;
+    protected int              writeSize;
+
+    /**
+     * 按需扩容writeBuf，扩容时申请两倍大小的新buf并释放旧buf
+     */
+    private ByteBuf ensureWritable(int len) {
+        ByteBuf buf = writeBuf;
+        if (buf == null) {
+            buf = writeBufAllocator.allocate(writeBufReserve + Math.max(len, 256));
+            buf.limit(buf.capacity());
+            buf.position(writeBufReserve);
+            writeBuf = buf;
+            return buf;
+        }
+        if (buf.remaining() >= len) {
+            return buf;
+        }
+        int newCapacity = Math.max(buf.capacity() << 1, buf.position() + len);
+        ByteBuf newBuf = writeBufAllocator.allocate(newCapacity);
+        newBuf.limit(newBuf.capacity());
+        newBuf.read(buf.flip());
+        buf.release(buf.getReleaseVersion());
+        writeBuf = newBuf;
+        return newBuf;
+    }
+
+    @Override
+    public ByteBuf getWriteBuf() {
+        return writeBuf;
+    }
+
+    @Override
+    public int getWriteBufReserve() {
+        return writeBufReserve;
+    }
 
     @Override
     public byte[] getWriteBuffer() {
@@ -35,8 +74,25 @@ public abstract class AbstractFuture implements Future {
         return writeSize;
     }
 
+    /**
+     * 设置后write直接写入从allocator申请的ByteBuf，buf头部预留reserve个字节，
+     * encode时codec将报文头回填到预留区域，省去一次heap byte[]到ByteBuf的拷贝
+     */
+    public void setWriteBufAllocator(ByteBufAllocator allocator, int reserve) {
+        if (writeSize > 0) {
+            throw new IllegalStateException("future already written");
+        }
+        this.writeBufAllocator = allocator;
+        this.writeBufReserve = reserve;
+    }
+
     @Override
     public void write(byte b) {
+        if (writeBufAllocator != null) {
+            ensureWritable(1).putByte(b);
+            writeSize++;
+            return;
+        }
         if (writeBuffer == null) {
             writeBuffer = new byte[256];
         }
@@ -55,6 +111,11 @@ public abstract class AbstractFuture implements Future {
 
     @Override
     public void write(byte[] bytes, int off, int len) {
+        if (writeBufAllocator != null) {
+            ensureWritable(len).put(bytes, off, len);
+            writeSize += len;
+            return;
+        }
         if (writeBuffer == null) {
             if ((len - off) != bytes.length) {
                 writeBuffer = new byte[len];
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.protocol;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.generallycloud.baseio.buffer.ByteBuf;
+import com.generallycloud.baseio.common.CloseUtil;
+import com.generallycloud.baseio.common.ReleaseUtil;
+import com.generallycloud.baseio.component.NioEventLoop;
+import com.generallycloud.baseio.component.NioSocketChannel;
+
+/**
+ * 文件区域，由NioSocketChannel通过FileChannel.transferTo直接写出，
+ * 不经过堆内存拷贝，开启ssl时按块mmap后wrap写出
+ * <p>
+ * 该future为已encode的future，请通过flushChannelFuture写出，
+ * 需要在文件内容之前写出的协议头通过SocketSession.flush(header, region)
+ * 与region作为一个整体入队，避免其它线程的写入插在两者之间
+ * 
+ * @author wangkai
+ *
+ */
+public class FileRegionChannelFuture extends AbstractChannelFuture {
+
+    private FileChannel   fileChannel;
+    private long          position;
+    private long          end;
+    private ChannelFuture header;
+    // 共享fileChannel的region数量，为null时不负责关闭fileChannel
+    private AtomicInteger refs;
+    private boolean       released;
+
+    public FileRegionChannelFuture(File file) throws IOException {
+        this(new FileInputStream(file).getChannel(), 0, file.length(), true);
+    }
+
+    public FileRegionChannelFuture(FileChannel fileChannel, long position, long count,
+            boolean closeOnRelease) {
+        this(fileChannel, position, count, closeOnRelease ? new AtomicInteger(1) : null);
+    }
+
+    private FileRegionChannelFuture(FileChannel fileChannel, long position, long count,
+            AtomicInteger refs) {
+        this.fileChannel = fileChannel;
+        this.position = position;
+        this.end = position + count;
+        this.refs = refs;
+    }
+
+    /**
+     * 复制尚未写出的部分，与原region共享fileChannel，各自维护写出位置，
+     * fileChannel在全部region释放后关闭
+     */
+    @Override
+    public ChannelFuture duplicate() {
+        if (released) {
+            throw new IllegalStateException("file region released");
+        }
+        if (refs != null) {
+            refs.incrementAndGet();
+        }
+        FileRegionChannelFuture f = new FileRegionChannelFuture(fileChannel, position,
+                end - position, refs);
+        if (header != null) {
+            f.header = header.duplicate();
+        }
+        f.setNeedSsl(isNeedSsl());
+        return f;
+    }
+
+    public FileChannel getFileChannel() {
+        return fileChannel;
+    }
+
+    /**
+     * 尚未写出的协议头，写完后为null
+     */
+    public ChannelFuture getHeader() {
+        return header;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * 文件中尚未写出的字节数，不包括协议头
+     */
+    public long remaining() {
+        return end - position;
+    }
+
+    /**
+     * 协议头与文件中尚未写出的总字节数
+     */
+    public long remainingBytes() {
+        if (header == null) {
+            return remaining();
+        }
+        return header.getByteBuf().remaining() + remaining();
+    }
+
+    /**
+     * 设置已encode的协议头
+     */
+    public void setHeader(ChannelFuture header) {
+        this.header = header;
+    }
+
+    public void skip(long bytes) {
+        this.position += bytes;
+    }
+
+    @Override
+    public boolean isWriteCompleted() {
+        return header == null && position == end && !getByteBuf().hasRemaining();
+    }
+
+    @Override
+    public boolean read(NioSocketChannel channel, ByteBuf src) throws IOException {
+        // region只用于写出，不会出现在decode流程中
+        throw new IOException("file region is write only");
+    }
+
+    @Override
+    public void release(NioEventLoop eventLoop) {
+        // 释放ssl wrap后尚未写完的buf
+        super.release(eventLoop);
+        if (released) {
+            return;
+        }
+        released = true;
+        ReleaseUtil.release(header, eventLoop);
+        header = null;
+        if (refs != null && refs.decrementAndGet() == 0) {
+            CloseUtil.close(fileChannel);
+        }
+    }
+
+}
@@ -17,6 +17,7 @@ package com.generallycloud.baseio.protocol;
 
 import java.nio.charset.Charset;
 
+import com.generallycloud.baseio.buffer.ByteBuf;
 import com.generallycloud.baseio.component.ChannelContext;
 import com.generallycloud.baseio.component.SocketSession;
 
@@ -24,6 +25,14 @@ public interface Future {
 
     boolean flushed();
 
+    /**
+     * 写入池化ByteBuf时返回该buf，payload位于[getWriteBufReserve(), position)，
+     * 否则返回null，payload在getWriteBuffer()中
+     */
+    ByteBuf getWriteBuf();
+
+    int getWriteBufReserve();
+
     byte[] getWriteBuffer();
 
     int getWriteSize();
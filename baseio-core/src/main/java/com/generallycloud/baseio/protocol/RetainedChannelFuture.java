@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.protocol;
+
+import com.generallycloud.baseio.component.NioEventLoop;
+
+/**
+ * 读完后仍持有读取时报文的future(如代理原样转发的报文)，
+ * 框架读完后对其的释放不生效，flush之后报文由写出的路径释放，
+ * 没有被flush的由ForeFutureAcceptor在accept(包括exceptionCaught)结束后释放
+ * 
+ * @author wangkai
+ *
+ */
+public interface RetainedChannelFuture extends ChannelFuture {
+
+    /**
+     * 没有被flush时释放持有的报文，已flush的不做处理
+     */
+    void releaseRetained(NioEventLoop eventLoop);
+
+}
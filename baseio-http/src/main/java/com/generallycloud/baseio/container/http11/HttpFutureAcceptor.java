@@ -36,15 +36,17 @@ import com.generallycloud.baseio.container.ApplicationIoEventHandle;
 import com.generallycloud.baseio.container.ContainerIoEventHandle;
 import com.generallycloud.baseio.log.Logger;
 import com.generallycloud.baseio.log.LoggerFactory;
+import com.generallycloud.baseio.protocol.FileRegionChannelFuture;
 import com.generallycloud.baseio.protocol.Future;
 import com.generallycloud.baseio.protocol.NamedFuture;
 
-//FIXME limit too large file
 public class HttpFutureAcceptor extends ContainerIoEventHandle {
 
-    private Map<String, HttpEntity> htmlCache = new HashMap<>();
+    private Map<String, HttpEntity> htmlCache           = new HashMap<>();
     private HttpSessionManager      httpSessionManager;
-    private Logger                  logger    = LoggerFactory.getLogger(getClass());
+    private Logger                  logger              = LoggerFactory.getLogger(getClass());
+    // 超过该大小的文件不再缓存，通过FileChannel.transferTo直接写出
+    private int                     fileRegionThreshold = 1024 * 64;
 
     @Override
     public void accept(SocketSession session, Future future) throws Exception {
@@ -124,10 +126,18 @@ public class HttpFutureAcceptor extends ContainerIoEventHandle {
         session.flush(f);
     }
 
-    private void flush(SocketSession session, ServerHttpFuture future, HttpEntity entity) {
+    private void flush(SocketSession session, ServerHttpFuture future, HttpEntity entity)
+            throws IOException {
         future.setResponseHeader(HttpHeader.Content_Type, entity.getContentType());
         future.setResponseHeader(HttpHeader.Last_Modified, entity.getLastModifyGTM());
-        future.write(entity.getBinary());
+        byte[] binary = entity.getBinary();
+        if (binary == null) {
+            FileRegionChannelFuture region = new FileRegionChannelFuture(entity.getFile());
+            future.setFileRegionLength(region.remaining());
+            session.flush(future, region);
+            return;
+        }
+        future.write(binary);
         session.flush(future);
     }
 
@@ -156,6 +166,14 @@ public class HttpFutureAcceptor extends ContainerIoEventHandle {
         return httpSessionManager;
     }
 
+    public int getFileRegionThreshold() {
+        return fileRegionThreshold;
+    }
+
+    public void setFileRegionThreshold(int fileRegionThreshold) {
+        this.fileRegionThreshold = fileRegionThreshold;
+    }
+
     @Override
     protected void initialize(ChannelContext context, boolean redeploy) throws Exception {
         initializeHtml(context);
@@ -198,7 +216,11 @@ public class HttpFutureAcceptor extends ContainerIoEventHandle {
     private void reloadEntity(HttpEntity entity, ChannelContext context, HttpStatus status)
             throws IOException {
         File file = entity.getFile();
-        entity.setBinary(FileUtil.readBytesByFile(file));
+        if (file.length() > fileRegionThreshold) {
+            entity.setBinary(null);
+        } else {
+            entity.setBinary(FileUtil.readBytesByFile(file));
+        }
         entity.setLastModify(file.lastModified());
     }
 
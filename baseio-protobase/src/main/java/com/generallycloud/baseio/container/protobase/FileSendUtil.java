@@ -17,40 +17,50 @@ package com.generallycloud.baseio.container.protobase;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.nio.channels.FileChannel;
 
 import com.alibaba.fastjson.JSONObject;
 import com.generallycloud.baseio.codec.protobase.ProtobaseFuture;
 import com.generallycloud.baseio.codec.protobase.ProtobaseFutureImpl;
 import com.generallycloud.baseio.common.CloseUtil;
-import com.generallycloud.baseio.common.FileUtil;
 import com.generallycloud.baseio.component.SocketSession;
+import com.generallycloud.baseio.protocol.FileRegionChannelFuture;
 
 public class FileSendUtil {
 
+    // 文件内容通过FileRegionChannelFuture直接写出，不再读入堆内存
     public void sendFile(SocketSession session, String serviceName, File file, int cacheSize)
             throws Exception {
-        FileInputStream inputStream = new FileInputStream(file);
-        int available = (int) file.length();
-        int time = (available + cacheSize) / cacheSize - 1;
-        byte[] cache = new byte[cacheSize];
-        JSONObject json = new JSONObject();
-        json.put(FileReceiveUtil.FILE_NAME, file.getName());
-        json.put(FileReceiveUtil.IS_END, false);
-        String jsonString = json.toJSONString();
-        for (int i = 0; i < time; i++) {
-            FileUtil.readInputStream(inputStream, cache);
-            ProtobaseFuture f = new ProtobaseFutureImpl(serviceName);
-            f.write(jsonString, session.getEncoding());
-            f.writeBinary(cache);
-            session.flush(f);
+        FileChannel fileChannel = new FileInputStream(file).getChannel();
+        // 最后一块入队后由其负责关闭文件，在此之前的任何失败都需要在这里关闭
+        boolean handOver = false;
+        try {
+            long available = file.length();
+            long position = 0;
+            JSONObject json = new JSONObject();
+            json.put(FileReceiveUtil.FILE_NAME, file.getName());
+            for (;;) {
+                int size = (int) Math.min(available - position, cacheSize);
+                boolean isEnd = position + size == available;
+                json.put(FileReceiveUtil.IS_END, isEnd);
+                ProtobaseFuture f = new ProtobaseFutureImpl(serviceName);
+                f.write(json.toJSONString(), session.getEncoding());
+                f.setWriteBinaryRegionSize(size);
+                FileRegionChannelFuture region = new FileRegionChannelFuture(fileChannel,
+                        position, size, isEnd);
+                handOver = isEnd;
+                // 协议头与文件块作为一个整体入队，避免其它线程的写入插在中间
+                session.flush(f, region);
+                if (isEnd) {
+                    return;
+                }
+                position += size;
+            }
+        } finally {
+            if (!handOver) {
+                CloseUtil.close(fileChannel);
+            }
         }
-        int r = FileUtil.readInputStream(inputStream, cache);
-        json.put(FileReceiveUtil.IS_END, true);
-        ProtobaseFuture f = new ProtobaseFutureImpl(serviceName);
-        f.write(json.toJSONString(), session.getEncoding());
-        f.writeBinary(cache, 0, r);
-        session.flush(f);
-        CloseUtil.close(inputStream);
     }
 
 }
@@ -41,6 +41,11 @@ public abstract class BasicMessage implements Message {
         return timestamp;
     }
 
+    // 从消息日志恢复时保留原始的时间戳
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
     @Override
     public abstract String toString();
 
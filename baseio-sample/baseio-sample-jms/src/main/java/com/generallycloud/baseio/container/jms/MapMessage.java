@@ -74,6 +74,10 @@ public class MapMessage extends BasicMessage implements MappedMessage {
         return map.getJSONObject(key);
     }
 
+    public JSONObject getMap() {
+        return map;
+    }
+
     public long getLongParameter(String key) {
         return getLongParameter(key, 0);
     }
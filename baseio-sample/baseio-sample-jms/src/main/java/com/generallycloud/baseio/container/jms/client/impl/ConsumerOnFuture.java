@@ -15,22 +15,32 @@
  */
 package com.generallycloud.baseio.container.jms.client.impl;
 
+import java.io.IOException;
+import java.util.List;
+
 import com.generallycloud.baseio.codec.protobase.future.ParamedProtobaseFuture;
 import com.generallycloud.baseio.component.SocketSession;
+import com.generallycloud.baseio.container.FixedSession;
 import com.generallycloud.baseio.container.OnFuture;
 import com.generallycloud.baseio.container.jms.MQException;
 import com.generallycloud.baseio.container.jms.Message;
 import com.generallycloud.baseio.container.jms.client.OnMessage;
+import com.generallycloud.baseio.container.jms.decode.BatchMessageDecoder;
 import com.generallycloud.baseio.container.jms.decode.MessageDecoder;
+import com.generallycloud.baseio.container.jms.server.MQAckServlet;
 import com.generallycloud.baseio.log.DebugUtil;
 import com.generallycloud.baseio.protocol.Future;
 
 public class ConsumerOnFuture implements OnFuture {
 
-    private OnMessage      onMessage;
-    private MessageDecoder messageDecoder;
+    private FixedSession        fixedSession;
+    private OnMessage           onMessage;
+    private MessageDecoder      messageDecoder;
+    private BatchMessageDecoder batchMessageDecoder = new BatchMessageDecoder();
 
-    public ConsumerOnFuture(OnMessage onMessage, MessageDecoder messageDecoder) {
+    public ConsumerOnFuture(FixedSession fixedSession, OnMessage onMessage,
+            MessageDecoder messageDecoder) {
+        this.fixedSession = fixedSession;
         this.onMessage = onMessage;
         this.messageDecoder = messageDecoder;
     }
@@ -40,14 +50,36 @@ public class ConsumerOnFuture implements OnFuture {
 
         ParamedProtobaseFuture f = (ParamedProtobaseFuture) future;
 
+        if (!BatchMessageDecoder.isBatch(f)) {
+
+            try {
+                onMessage.onReceive(messageDecoder.decode(f));
+            } catch (MQException e) {
+                DebugUtil.debug(e);
+            }
+
+            return;
+        }
+
+        int size = BatchMessageDecoder.size(f);
+
         try {
 
-            Message message = messageDecoder.decode(f);
+            List<Message> messages = batchMessageDecoder.decode(f);
 
-            onMessage.onReceive(message);
+            for (Message message : messages) {
+                onMessage.onReceive(message);
+            }
 
         } catch (MQException e) {
             DebugUtil.debug(e);
+        } finally {
+            // 不论处理是否成功都要归还本帧的credit，否则broker不会再向该consumer推送
+            try {
+                fixedSession.write(MQAckServlet.SERVICE_NAME, String.valueOf(size));
+            } catch (IOException e) {
+                DebugUtil.debug(e);
+            }
         }
     }
 }
@@ -92,7 +92,8 @@ public class DefaultMessageConsumer implements MessageConsumer {
             return;
         }
         try {
-            session.listen("MQConsumerServlet", new ConsumerOnFuture(onMessage, messageDecoder));
+            session.listen("MQConsumerServlet",
+                    new ConsumerOnFuture(session, onMessage, messageDecoder));
             session.write("MQConsumerServlet", null);
             needSendReceiveCommand = false;
         } catch (IOException e) {
@@ -105,7 +106,8 @@ public class DefaultMessageConsumer implements MessageConsumer {
             return;
         }
         try {
-            session.listen("MQSubscribeServlet", new ConsumerOnFuture(onMessage, messageDecoder));
+            session.listen("MQSubscribeServlet",
+                    new ConsumerOnFuture(session, onMessage, messageDecoder));
             session.write("MQSubscribeServlet", null);
             needSendSubscribeCommand = false;
         } catch (IOException e) {
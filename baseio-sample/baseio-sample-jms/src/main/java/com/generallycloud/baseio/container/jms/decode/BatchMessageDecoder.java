@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.container.jms.decode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.generallycloud.baseio.codec.protobase.future.ParamedProtobaseFuture;
+import com.generallycloud.baseio.collection.Parameters;
+import com.generallycloud.baseio.container.jms.MQException;
+import com.generallycloud.baseio.container.jms.MapByteMessage;
+import com.generallycloud.baseio.container.jms.MapMessage;
+import com.generallycloud.baseio.container.jms.Message;
+import com.generallycloud.baseio.container.jms.TextByteMessage;
+import com.generallycloud.baseio.container.jms.TextMessage;
+
+/**
+ * 解析broker合并推送的消息帧{"batch":[...],"lengths":[...]}，
+ * 各消息的二进制部分按lengths从frame的binary中依次切分，
+ * isBatch与decode共用future中已解析的parameters，frame只解析一次
+ * 
+ * @author wangkai
+ *
+ */
+public class BatchMessageDecoder {
+
+    public static boolean isBatch(ParamedProtobaseFuture future) {
+        return future.getParameters().getObjectParameter("batch") != null;
+    }
+
+    /**
+     * frame中的消息数，即处理完该frame后需要确认的数量
+     */
+    public static int size(ParamedProtobaseFuture future) {
+        JSONArray batch = (JSONArray) future.getParameters().getObjectParameter("batch");
+        return batch == null ? 0 : batch.size();
+    }
+
+    public List<Message> decode(ParamedProtobaseFuture future) throws MQException {
+        Parameters frame = future.getParameters();
+        JSONArray batch = (JSONArray) frame.getObjectParameter("batch");
+        JSONArray lengths = (JSONArray) frame.getObjectParameter("lengths");
+        byte[] binary = future.getReadBinary();
+        int size = batch.size();
+        int offset = 0;
+        List<Message> messages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            JSONObject m = batch.getJSONObject(i);
+            int length = lengths.getIntValue(i);
+            byte[] array = null;
+            if (length > 0) {
+                array = Arrays.copyOfRange(binary, offset, offset + length);
+                offset += length;
+            }
+            messages.add(decode(m, array));
+        }
+        return messages;
+    }
+
+    private Message decode(JSONObject m, byte[] array) throws MQException {
+        int msgType = m.getIntValue("msgType");
+        String messageId = m.getString("msgId");
+        String queueName = m.getString("queueName");
+        switch (msgType) {
+            case Message.TYPE_TEXT:
+                return new TextMessage(messageId, queueName, m.getString("text"));
+            case Message.TYPE_TEXT_BYTE:
+                return new TextByteMessage(messageId, queueName, m.getString("text"), array);
+            case Message.TYPE_MAP:
+                return new MapMessage(messageId, queueName, m.getJSONObject("map"));
+            case Message.TYPE_MAP_BYTE:
+                return new MapByteMessage(messageId, queueName, m.getJSONObject("map"), array);
+            default:
+                throw new MQException("msgType:" + msgType);
+        }
+    }
+
+}
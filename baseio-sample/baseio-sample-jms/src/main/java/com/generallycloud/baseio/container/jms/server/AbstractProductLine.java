@@ -15,8 +15,13 @@
  */
 package com.generallycloud.baseio.container.jms.server;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.generallycloud.baseio.codec.protobase.future.ProtobaseFuture;
 import com.generallycloud.baseio.component.SocketSession;
@@ -27,22 +32,48 @@ import com.generallycloud.baseio.log.LoggerFactory;
 
 public abstract class AbstractProductLine extends AbstractEventLoop implements MessageQueue {
 
-    protected MQContext                  context;
-    protected MessageStorage             storage;
-    protected long                       dueTime;
-    protected Map<String, ConsumerQueue> consumerMap;
-    private Logger                       logger = LoggerFactory.getLogger(getClass());
+    // 每次唤醒最多连续处理的消息数
+    protected static final int                     DRAIN_BATCH    = 256;
+    protected MQContext                            context;
+    protected MessageStorage                       storage;
+    protected volatile long                        dueTime;
+    protected ConcurrentMap<String, ConsumerQueue> consumerMap;
+    // 本次唤醒中分配到消息、等待合并推送的consumer
+    protected List<Consumer>                       flushConsumers = new ArrayList<>();
+    private String                                 name;
+    private boolean                                retainBacklog;
+    private Logger                                 logger         = LoggerFactory
+            .getLogger(getClass());
 
-    public AbstractProductLine(MQContext context) {
+    public AbstractProductLine(MQContext context, String name, boolean retainBacklog) {
         this.context = context;
-        this.storage = new MessageStorage();
-        this.consumerMap = new HashMap<>();
+        this.name = name;
+        this.retainBacklog = retainBacklog;
+        this.consumerMap = new ConcurrentHashMap<>();
         this.dueTime = context.getMessageDueTime();
     }
 
-    // TODO 处理剩下的message 和 receiver
     @Override
-    protected void doStop() {}
+    protected void doStartup() throws Exception {
+        MQContext c = context;
+        File directory = new File(c.getStoreDirectory(), name);
+        storage = new MessageStorage(directory, c.getSegmentSize(), c.getFlushPolicy(),
+                c.getFlushInterval(), retainBacklog);
+        storage.open();
+        super.doStartup();
+    }
+
+    // 关闭剩下的receiver，未确认的消息在storage关闭前交给redeliver
+    @Override
+    protected void doStop() {
+        for (Entry<String, ConsumerQueue> entry : consumerMap.entrySet()) {
+            for (Consumer consumer : entry.getValue().getSnapshot()) {
+                consumer.close();
+            }
+            context.removeReceiver(entry.getKey());
+        }
+        storage.close();
+    }
 
     public MQContext getContext() {
         return context;
@@ -58,7 +89,8 @@ public abstract class AbstractProductLine extends AbstractEventLoop implements M
         // 来自终端类型
         context.addReceiver(queueName);
         ConsumerQueue consumerQueue = getConsumerQueue(queueName);
-        Consumer consumer = new Consumer(consumerQueue, attachment, session, future, queueName);
+        Consumer consumer = new Consumer(this, consumerQueue, attachment, session, future,
+                queueName, context.getConsumerPrefetch());
         attachment.setConsumer(consumer);
         consumerQueue.offer(consumer);
     }
@@ -66,12 +98,10 @@ public abstract class AbstractProductLine extends AbstractEventLoop implements M
     protected ConsumerQueue getConsumerQueue(String queueName) {
         ConsumerQueue consumerQueue = consumerMap.get(queueName);
         if (consumerQueue == null) {
-            synchronized (consumerMap) {
-                consumerQueue = consumerMap.get(queueName);
-                if (consumerQueue == null) {
-                    consumerQueue = createConsumerQueue();
-                    consumerMap.put(queueName, consumerQueue);
-                }
+            consumerQueue = createConsumerQueue();
+            ConsumerQueue old = consumerMap.putIfAbsent(queueName, consumerQueue);
+            if (old != null) {
+                consumerQueue = old;
             }
         }
         return consumerQueue;
@@ -79,20 +109,62 @@ public abstract class AbstractProductLine extends AbstractEventLoop implements M
 
     protected abstract ConsumerQueue createConsumerQueue();
 
+    /**
+     * 将消息分配给consumer，consumer没有credit时返回false
+     */
+    protected boolean push(Consumer consumer, EncodedMessage message) {
+        if (!consumer.offer(message)) {
+            return false;
+        }
+        if (consumer.getPendingSize() == 1) {
+            flushConsumers.add(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * 每次唤醒处理完一批消息后，每个consumer只推送一帧，
+     * 相邻consumer分配到的消息相同时共享同一个frame
+     */
+    protected void flushConsumers() {
+        List<Consumer> consumers = this.flushConsumers;
+        if (consumers.isEmpty()) {
+            return;
+        }
+        EncodedBatch shared = null;
+        for (Consumer consumer : consumers) {
+            try {
+                shared = consumer.flush(shared);
+            } catch (IOException e) {
+                logger.error(e.getMessage(), e);
+                consumer.close();
+            }
+        }
+        consumers.clear();
+    }
+
+    /**
+     * consumer归还了credit，在io线程调用
+     */
+    protected void onCredit(Consumer consumer) {}
+
+    /**
+     * consumer关闭时未确认的消息
+     */
+    protected void redeliver(Message message) {}
+
     @Override
-    public void offerMessage(Message message) {
-        storage.offer(message);
+    public boolean offerMessage(Message message) {
+        return storage.offer(message);
     }
 
-    protected void filterUseless(Message message) {
-        long now = System.currentTimeMillis();
-        long dueTime = this.dueTime;
-        if (now - message.getTimestamp() > dueTime) {
+    protected boolean isExpired(Message message) {
+        if (System.currentTimeMillis() - message.getTimestamp() > dueTime) {
             // 消息过期了
             logger.debug(">>>> message invalidate : {}", message);
-            return;
+            return true;
         }
-        this.offerMessage(message);
+        return false;
     }
 
     public void setDueTime(long dueTime) {
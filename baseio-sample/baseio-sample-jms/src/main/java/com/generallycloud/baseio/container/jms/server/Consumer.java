@@ -16,29 +16,52 @@
 package com.generallycloud.baseio.container.jms.server;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.generallycloud.baseio.codec.protobase.future.ProtobaseFuture;
 import com.generallycloud.baseio.codec.protobase.future.ProtobaseFutureImpl;
 import com.generallycloud.baseio.component.SocketSession;
-import com.generallycloud.baseio.container.jms.BytedMessage;
 import com.generallycloud.baseio.container.jms.Message;
 
+/**
+ * 基于credit的consumer，最多有prefetch条已推送未确认的消息，
+ * 产品线一次唤醒中分配给该consumer的消息合并为一帧推送
+ * 
+ * @author wangkai
+ *
+ */
 public class Consumer {
 
-    private String              queueName;
-    private MQSessionAttachment attachment;
-    private ConsumerQueue       consumerQueue;
-    private SocketSession       session;
-    private ProtobaseFuture     future;
-    private Message             message;
-
-    public Consumer(ConsumerQueue consumerQueue, MQSessionAttachment attachment,
-            SocketSession session, ProtobaseFuture future, String queueName) {
+    private String                queueName;
+    private MQSessionAttachment   attachment;
+    private ConsumerQueue         consumerQueue;
+    private AbstractProductLine   productLine;
+    private SocketSession         session;
+    private ProtobaseFuture       future;
+    private int                   prefetch;
+    private AtomicInteger         credit;
+    private volatile boolean      closed;
+    // 已推送未确认的消息，consumer关闭时重新投递
+    private Queue<Message>        inflight = new ConcurrentLinkedQueue<>();
+    // 等待合并推送的消息，只在产品线线程访问
+    private List<EncodedMessage>  pending  = new ArrayList<>();
+
+    public Consumer(AbstractProductLine productLine, ConsumerQueue consumerQueue,
+            MQSessionAttachment attachment, SocketSession session, ProtobaseFuture future,
+            String queueName, int prefetch) {
+        this.productLine = productLine;
         this.consumerQueue = consumerQueue;
         this.queueName = queueName;
         this.attachment = attachment;
         this.session = session;
         this.future = future;
+        this.prefetch = prefetch;
+        this.credit = new AtomicInteger(prefetch);
     }
 
     public String getQueueName() {
@@ -49,52 +72,114 @@ public class Consumer {
         return consumerQueue;
     }
 
-    // FIXME push 失败时对message进行回收,并移除Consumer
-    public void push(Message message) throws IOException {
-
-        this.message = message;
+    public boolean hasCredit() {
+        return credit.get() > 0 && !closed;
+    }
 
+    /**
+     * 分配一条消息给该consumer，没有credit时返回false，只能在产品线线程调用
+     */
+    public boolean offer(EncodedMessage message) {
+        if (!hasCredit()) {
+            return false;
+        }
+        credit.decrementAndGet();
         TransactionSection section = attachment.getTransactionSection();
-
         if (section != null) {
-            section.offerMessage(message);
+            section.offerMessage(message.getMessage());
+        } else {
+            inflight.offer(message.getMessage());
         }
+        pending.add(message);
+        return true;
+    }
 
-        int msgType = message.getMsgType();
-
-        String content = message.toString();
+    public int getPendingSize() {
+        return pending.size();
+    }
 
+    /**
+     * 将pending的消息合并为一帧推送，pending与shared的消息相同时直接复用shared，
+     * 返回本次推送使用的frame，pending为空时返回shared
+     */
+    public EncodedBatch flush(EncodedBatch shared) throws IOException {
+        List<EncodedMessage> pending = this.pending;
+        if (pending.size() == 0) {
+            return shared;
+        }
         SocketSession session = this.session;
-
+        Charset charset = session.getContext().getEncoding();
+        EncodedBatch batch = shared;
+        if (batch == null || !batch.isBatchOf(pending, charset)) {
+            batch = EncodedBatch.encode(pending, charset);
+        }
         ProtobaseFuture f = new ProtobaseFutureImpl(session.getContext(), future.getFutureId(),
                 future.getFutureName());
+        f.write(batch.getText());
+        if (batch.getBinary() != null) {
+            f.writeBinary(batch.getBinary());
+        }
+        pending.clear();
+        session.flush(f);
+        return batch;
+    }
 
-        f.write(content);
-
-        if (msgType == Message.TYPE_TEXT || msgType == Message.TYPE_MAP) {
-
-            session.flush(f);
-
-        } else if (msgType == Message.TYPE_TEXT_BYTE || msgType == Message.TYPE_MAP_BYTE) {
-
-            BytedMessage byteMessage = (BytedMessage) message;
-
-            byte[] bytes = byteMessage.getByteArray();
+    /**
+     * 客户端确认处理完count条消息，归还同等数量的credit，
+     * count为负数或者超过已推送未确认的数量时不做处理并返回false
+     */
+    public boolean ack(int count) {
+        if (count < 0) {
+            return false;
+        }
+        for (;;) {
+            int c = credit.get();
+            if (count > prefetch - c) {
+                return false;
+            }
+            if (credit.compareAndSet(c, c + count)) {
+                break;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (inflight.poll() == null) {
+                break;
+            }
+        }
+        productLine.onCredit(this);
+        return true;
+    }
 
-            f.writeBinary(bytes);
+    /**
+     * 已推送未确认的消息数
+     */
+    public int getInflightSize() {
+        return prefetch - credit.get();
+    }
 
-            session.flush(f);
+    /**
+     * 关闭consumer，已推送未确认的消息交给产品线重新投递(事务中的消息由rollback处理)
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        consumerQueue.remove(this);
+        for (Message message = inflight.poll(); message != null; message = inflight.poll()) {
+            productLine.redeliver(message);
         }
     }
 
-    public Message getMessage() {
-        return message;
+    public boolean isClosed() {
+        return closed;
     }
 
     @Override
     public Consumer clone() {
         ProtobaseFuture f = new ProtobaseFutureImpl(session.getContext(), future.getFutureId(),
                 future.getFutureName());
-        return new Consumer(consumerQueue, attachment, session, f, queueName);
+        return new Consumer(productLine, consumerQueue, attachment, session, f, queueName,
+                prefetch);
     }
 }
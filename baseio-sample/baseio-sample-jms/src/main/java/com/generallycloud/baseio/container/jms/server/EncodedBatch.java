@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.container.jms.server;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 合并推送的消息帧，格式为{"batch":[...],"lengths":[...]}，各消息的二进制部分按顺序拼接，
+ * 同一次唤醒中分配到相同消息的consumer(如同一队列的订阅者)共享同一个frame
+ * 
+ * @author wangkai
+ *
+ */
+public class EncodedBatch {
+
+    private final List<EncodedMessage> messages;
+    private final Charset              charset;
+    private final byte[]               text;
+    private final byte[]               binary;
+
+    private EncodedBatch(List<EncodedMessage> messages, Charset charset, byte[] text,
+            byte[] binary) {
+        this.messages = messages;
+        this.charset = charset;
+        this.text = text;
+        this.binary = binary;
+    }
+
+    public static EncodedBatch encode(List<EncodedMessage> messages, Charset charset) {
+        int size = messages.size();
+        int binaryLength = 0;
+        StringBuilder batch = new StringBuilder(size * 128).append("{\"batch\":[");
+        StringBuilder lengths = new StringBuilder(size * 4).append("],\"lengths\":[");
+        for (int i = 0; i < size; i++) {
+            EncodedMessage message = messages.get(i);
+            if (i > 0) {
+                batch.append(',');
+                lengths.append(',');
+            }
+            batch.append(message.getContent());
+            lengths.append(message.getBinary().length);
+            binaryLength += message.getBinary().length;
+        }
+        batch.append(lengths).append("]}");
+        byte[] binary = null;
+        if (binaryLength > 0) {
+            binary = new byte[binaryLength];
+            int offset = 0;
+            for (int i = 0; i < size; i++) {
+                byte[] b = messages.get(i).getBinary();
+                System.arraycopy(b, 0, binary, offset, b.length);
+                offset += b.length;
+            }
+        }
+        // pending会被consumer清空，这里保留一份用于比较
+        return new EncodedBatch(new ArrayList<>(messages), charset,
+                batch.toString().getBytes(charset), binary);
+    }
+
+    /**
+     * 是否与给定的消息列表(按引用逐条比较)相同，相同时可直接复用该frame
+     */
+    public boolean isBatchOf(List<EncodedMessage> messages, Charset charset) {
+        List<EncodedMessage> self = this.messages;
+        int size = self.size();
+        if (size != messages.size() || !this.charset.equals(charset)) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (self.get(i) != messages.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        return messages.size();
+    }
+
+    public byte[] getText() {
+        return text;
+    }
+
+    /**
+     * 所有消息都没有二进制部分时为null
+     */
+    public byte[] getBinary() {
+        return binary;
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.container.jms.server;
+
+import com.generallycloud.baseio.container.jms.BytedMessage;
+import com.generallycloud.baseio.container.jms.Message;
+
+/**
+ * 编码后的消息，每条消息只toString一次，由订阅同一队列的所有consumer共享
+ * 
+ * @author wangkai
+ *
+ */
+public class EncodedMessage {
+
+    private static final byte[] EMPTY_BINARY = new byte[0];
+
+    private final Message       message;
+    private final String        content;
+    private final byte[]        binary;
+
+    private EncodedMessage(Message message, String content, byte[] binary) {
+        this.message = message;
+        this.content = content;
+        this.binary = binary;
+    }
+
+    public static EncodedMessage encode(Message message) {
+        byte[] binary = null;
+        if (message instanceof BytedMessage) {
+            binary = ((BytedMessage) message).getByteArray();
+        }
+        if (binary == null) {
+            binary = EMPTY_BINARY;
+        }
+        return new EncodedMessage(message, message.toString(), binary);
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public byte[] getBinary() {
+        return binary;
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.container.jms.server;
+
+import com.generallycloud.baseio.codec.protobase.future.ParamedProtobaseFuture;
+import com.generallycloud.baseio.component.SocketSession;
+import com.generallycloud.baseio.log.Logger;
+import com.generallycloud.baseio.log.LoggerFactory;
+
+/**
+ * consumer确认已处理的消息数，归还credit，不回复，
+ * 数量必须在0到已推送未确认的数量之间，否则忽略该确认
+ * 
+ * @author wangkai
+ *
+ */
+public class MQAckServlet extends MQServlet {
+
+    public static final String SERVICE_NAME = MQAckServlet.class.getSimpleName();
+
+    private Logger             logger       = LoggerFactory.getLogger(getClass());
+
+    @Override
+    public void doAccept(SocketSession session, ParamedProtobaseFuture future,
+            MQSessionAttachment attachment) throws Exception {
+
+        Consumer consumer = attachment.getConsumer();
+
+        if (consumer == null) {
+            return;
+        }
+
+        String text = future.getReadText();
+
+        int count;
+        try {
+            count = Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            logger.error("invalid ack count: {}, session: {}", text, session);
+            return;
+        }
+
+        if (!consumer.ack(count)) {
+            logger.error("ack count out of range: {}, inflight: {}, session: {}", count,
+                    consumer.getInflightSize(), session);
+        }
+    }
+
+}
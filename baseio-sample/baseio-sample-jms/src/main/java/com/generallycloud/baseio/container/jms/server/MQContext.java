@@ -15,6 +15,7 @@
  */
 package com.generallycloud.baseio.container.jms.server;
 
+import java.io.File;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -28,17 +29,25 @@ import com.generallycloud.baseio.container.jms.MQException;
 import com.generallycloud.baseio.container.jms.Message;
 import com.generallycloud.baseio.container.jms.decode.DefaultMessageDecoder;
 import com.generallycloud.baseio.container.jms.decode.MessageDecoder;
+import com.generallycloud.baseio.container.jms.store.FlushPolicy;
 
 public class MQContext implements MessageQueue {
     
     public static final String SESSION_KEY_MQ_ATT = "SESSION_KEY_MQ_ATT";
 
     private long                           dueTime;
-    private ConcurrentMap<String, Message> messageIds     = new ConcurrentHashMap<>();
-    private P2PProductLine                 p2pProductLine = new P2PProductLine(this);
-    private SubscribeProductLine           subProductLine = new SubscribeProductLine(this);
-    private ConcurrentSet<String>          receivers      = new ConcurrentSet<>();
-    private MessageDecoder                 messageDecoder = new DefaultMessageDecoder();
+    private File                           storeDirectory   = new File("mq-store");
+    private FlushPolicy                    flushPolicy      = FlushPolicy.GROUP;
+    private long                           flushInterval    = 1000;
+    private int                            segmentSize      = 1024 * 1024 * 64;
+    private int                            productLineSize  = Runtime.getRuntime()
+            .availableProcessors();
+    private int                            consumerPrefetch = 256;
+    private ConcurrentMap<String, Message> messageIds       = new ConcurrentHashMap<>();
+    private P2PProductLine[]               p2pProductLines;
+    private SubscribeProductLine[]         subProductLines;
+    private ConcurrentSet<String>          receivers        = new ConcurrentSet<>();
+    private MessageDecoder                 messageDecoder   = new DefaultMessageDecoder();
     private static MQContext               instance;
 
     public static MQContext getInstance() {
@@ -56,15 +65,28 @@ public class MQContext implements MessageQueue {
     public void initialize(SocketChannelContext context) throws Exception {
         long dueTime = 1000 * 60 * 60 * 24 * 7;
         setMessageDueTime(dueTime);
-        p2pProductLine.startup("MQ-P2P-ProductLine");
-        subProductLine.startup("MQ-SUB-ProductLine");
+        // 按队列名hash分片，同一队列的消息始终由同一条产品线处理以保证顺序，
+        // 注意修改productLineSize后已有的积压消息所在的分片会发生变化
+        int size = productLineSize;
+        p2pProductLines = new P2PProductLine[size];
+        subProductLines = new SubscribeProductLine[size];
+        for (int i = 0; i < size; i++) {
+            p2pProductLines[i] = new P2PProductLine(this, i);
+            subProductLines[i] = new SubscribeProductLine(this, i);
+            p2pProductLines[i].startup("MQ-P2P-ProductLine-" + i);
+            subProductLines[i].startup("MQ-SUB-ProductLine-" + i);
+        }
         context.addSessionEventListener(new MQSessionEventListener());
         instance = this;
     }
 
     public void destroy() throws Exception {
-        LifeCycleUtil.stop(p2pProductLine);
-        LifeCycleUtil.stop(subProductLine);
+        if (p2pProductLines != null) {
+            for (int i = 0; i < p2pProductLines.length; i++) {
+                LifeCycleUtil.stop(p2pProductLines[i]);
+                LifeCycleUtil.stop(subProductLines[i]);
+            }
+        }
         instance = null;
     }
 
@@ -73,20 +95,32 @@ public class MQContext implements MessageQueue {
     }
 
     public int messageSize() {
-        return this.p2pProductLine.messageSize();
+        int size = 0;
+        for (P2PProductLine productLine : p2pProductLines) {
+            size += productLine.messageSize();
+        }
+        return size;
+    }
+
+    private static <T> T route(T[] productLines, String queueName) {
+        return productLines[(queueName.hashCode() & 0x7fffffff) % productLines.length];
     }
 
     @Override
-    public void offerMessage(Message message) {
+    public boolean offerMessage(Message message) {
 
         messageIds.put(message.getMsgId(), message);
 
-        p2pProductLine.offerMessage(message);
+        if (!route(p2pProductLines, message.getQueueName()).offerMessage(message)) {
+            messageIds.remove(message.getMsgId());
+            return false;
+        }
+        return true;
     }
 
-    public void publishMessage(Message message) {
+    public boolean publishMessage(Message message) {
 
-        subProductLine.offerMessage(message);
+        return route(subProductLines, message.getQueueName()).offerMessage(message);
     }
 
     public void consumerMessage(Message message) {
@@ -101,19 +135,78 @@ public class MQContext implements MessageQueue {
     @Override
     public void pollMessage(SocketSession session, ProtobaseFuture future,
             MQSessionAttachment attachment) {
-        p2pProductLine.pollMessage(session, future, attachment);
+        route(p2pProductLines, future.getReadText()).pollMessage(session, future, attachment);
     }
 
     public void subscribeMessage(SocketSession session, ProtobaseFuture future,
             MQSessionAttachment attachment) {
 
-        subProductLine.pollMessage(session, future, attachment);
+        route(subProductLines, future.getReadText()).pollMessage(session, future, attachment);
     }
 
     public void setMessageDueTime(long dueTime) {
         this.dueTime = dueTime;
-        this.p2pProductLine.setDueTime(dueTime);
-        this.subProductLine.setDueTime(dueTime);
+        if (p2pProductLines == null) {
+            return;
+        }
+        for (int i = 0; i < p2pProductLines.length; i++) {
+            p2pProductLines[i].setDueTime(dueTime);
+            subProductLines[i].setDueTime(dueTime);
+        }
+    }
+
+    public File getStoreDirectory() {
+        return storeDirectory;
+    }
+
+    public void setStoreDirectory(File storeDirectory) {
+        this.storeDirectory = storeDirectory;
+    }
+
+    public FlushPolicy getFlushPolicy() {
+        return flushPolicy;
+    }
+
+    public void setFlushPolicy(FlushPolicy flushPolicy) {
+        this.flushPolicy = flushPolicy;
+    }
+
+    /**
+     * ASYNC策略下的刷盘间隔，GROUP策略下等待刷盘的最长时间，单位毫秒
+     */
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * 每个consumer最多允许的已推送未确认的消息数
+     */
+    public int getConsumerPrefetch() {
+        return consumerPrefetch;
+    }
+
+    public void setConsumerPrefetch(int consumerPrefetch) {
+        this.consumerPrefetch = consumerPrefetch;
+    }
+
+    public int getProductLineSize() {
+        return productLineSize;
+    }
+
+    public void setProductLineSize(int productLineSize) {
+        this.productLineSize = productLineSize;
     }
 
     public void addReceiver(String queueName) {
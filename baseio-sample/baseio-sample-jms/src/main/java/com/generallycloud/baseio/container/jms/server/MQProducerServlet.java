@@ -31,9 +31,8 @@ public class MQProducerServlet extends MQServlet {
 
         Message message = context.parse(future);
 
-        context.offerMessage(message);
-
-        future.write("1");
+        // 写入日志失败时返回F
+        future.write(context.offerMessage(message) ? "T" : "F");
 
         session.flush(future);
 
@@ -31,9 +31,7 @@ public class MQPublishServlet extends MQServlet {
 
         Message message = context.parse(future);
 
-        context.publishMessage(message);
-
-        future.write("1");
+        future.write(context.publishMessage(message) ? "T" : "F");
 
         session.flush(future);
     }
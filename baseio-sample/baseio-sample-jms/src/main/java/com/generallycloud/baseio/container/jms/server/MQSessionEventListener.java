@@ -34,7 +34,6 @@ public class MQSessionEventListener extends SocketSessionEventListenerAdapter {
         }
     }
 
-    // FIXME 移除该session上的consumer
     @Override
     public void sessionClosed(SocketSession session) {
         MQContext context = MQContext.getInstance();
@@ -48,8 +47,7 @@ public class MQSessionEventListener extends SocketSessionEventListenerAdapter {
         }
         Consumer consumer = attachment.getConsumer();
         if (consumer != null) {
-            consumer.getConsumerQueue().remove(consumer);
-            consumer.getConsumerQueue().getSnapshot();
+            consumer.close();
             context.removeReceiver(consumer.getQueueName());
         }
         LOGGER.debug(">>>> TransactionProtectListener execute");
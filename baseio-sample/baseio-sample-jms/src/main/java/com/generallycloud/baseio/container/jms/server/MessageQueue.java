@@ -24,6 +24,6 @@ public interface MessageQueue {
     public abstract void pollMessage(SocketSession session, ProtobaseFuture future,
             MQSessionAttachment attachment);
 
-    public abstract void offerMessage(Message message);
+    public abstract boolean offerMessage(Message message);
 
 }
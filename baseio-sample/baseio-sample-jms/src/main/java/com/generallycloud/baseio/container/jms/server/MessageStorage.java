@@ -15,32 +15,174 @@
  */
 package com.generallycloud.baseio.container.jms.server;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map.Entry;
 
 import com.generallycloud.baseio.container.jms.Message;
+import com.generallycloud.baseio.container.jms.store.ConsumerOffsets;
+import com.generallycloud.baseio.container.jms.store.FlushPolicy;
+import com.generallycloud.baseio.container.jms.store.LogRecord;
+import com.generallycloud.baseio.container.jms.store.MessageLog;
+import com.generallycloud.baseio.container.jms.store.QueueIndex;
+import com.generallycloud.baseio.log.Logger;
+import com.generallycloud.baseio.log.LoggerFactory;
 
+/**
+ * 产品线的消息存储，消息追加到磁盘上的MessageLog，
+ * 产品线通过游标顺序读取，游标和各队列的消费进度保存在offsets文件中
+ * 
+ * @author wangkai
+ *
+ */
 public class MessageStorage {
 
-    private BlockingQueue<Message> messages = new ArrayBlockingQueue<>(1024 * 8 * 10);
+    private static final String KEY_CURSOR         = "cursor";
+    private static final String KEY_QUEUE_PREFIX   = "queue.";
+    private static final long   CHECKPOINT_INTERVAL = 1000;
+    private static final int    INDEX_INTERVAL     = 32;
 
-    public Message poll(long timeout) {
-        try {
-            return messages.poll(timeout, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            return null;
+    private Logger              logger             = LoggerFactory.getLogger(getClass());
+    private long                cursor;
+    private long                lastCheckpoint;
+    private MessageLog          log;
+    private ConsumerOffsets     offsets;
+    private boolean             retainBacklog;
+
+    /**
+     * @param retainBacklog 为true时保留各队列未投递的消息，否则只保留游标之后的消息
+     */
+    public MessageStorage(File directory, int segmentSize, FlushPolicy flushPolicy,
+            long flushInterval, boolean retainBacklog) {
+        this.retainBacklog = retainBacklog;
+        this.log = new MessageLog(directory, segmentSize, flushPolicy, flushInterval,
+                INDEX_INTERVAL);
+        this.offsets = new ConsumerOffsets(new File(directory, "offsets.properties"));
+    }
+
+    public void open() throws Exception {
+        log.open();
+        offsets.load();
+        cursor = Math.max(offsets.get(KEY_CURSOR), log.getStartPosition());
+        int prefix = KEY_QUEUE_PREFIX.length();
+        for (Entry<String, Long> entry : offsets.entries()) {
+            String key = entry.getKey();
+            if (key.startsWith(KEY_QUEUE_PREFIX)) {
+                log.getIndex(key.substring(prefix)).ensureNextSeq(entry.getValue());
+            }
         }
     }
 
-    //FIXME offer failed
+    /**
+     * 写入日志，返回false表示消息未能持久化
+     */
     public boolean offer(Message message) {
+        try {
+            log.append(message);
+            return true;
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 读取游标处的消息并前移游标，只能在产品线线程调用
+     */
+    public LogRecord poll(long timeout) {
+        LogRecord record = log.poll(cursor, timeout);
+        if (record != null) {
+            cursor = record.getNextPosition();
+        }
+        return record;
+    }
 
-        return messages.offer(message);
+    public LogRecord read(long position) {
+        return log.read(position);
     }
 
+    public long getCursor() {
+        return cursor;
+    }
+
+    /**
+     * 队列下一条待投递消息的序号
+     */
+    public long getConsumeSeq(String queueName) {
+        return offsets.get(KEY_QUEUE_PREFIX + queueName);
+    }
+
+    public void commit(String queueName, long nextSeq) {
+        offsets.put(KEY_QUEUE_PREFIX + queueName, nextSeq);
+    }
+
+    public QueueIndex getIndex(String queueName) {
+        return log.getIndex(queueName);
+    }
+
+    /**
+     * 队列中序号为seq的消息之前最近的可定位的位置，从这里向后扫描可找到该消息
+     */
+    public long getBacklogPosition(String queueName, long seq) {
+        return log.getIndex(queueName).floor(seq, log.getStartPosition());
+    }
+
+    /**
+     * 各队列未投递的消息数
+     */
     public int size() {
-        return messages.size();
+        long size = 0;
+        for (Entry<String, QueueIndex> entry : log.getIndexes().entrySet()) {
+            size += entry.getValue().getNextSeq() - getConsumeSeq(entry.getKey());
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 定期保存游标及消费进度，并删除不再需要的segment
+     */
+    public void checkpoint() {
+        long now = System.currentTimeMillis();
+        if (now - lastCheckpoint < CHECKPOINT_INTERVAL) {
+            return;
+        }
+        lastCheckpoint = now;
+        offsets.put(KEY_CURSOR, cursor);
+        try {
+            offsets.persist();
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
+            return;
+        }
+        log.deleteBefore(retainPosition());
+    }
+
+    /**
+     * 游标与各积压队列最早未投递消息中较小的位置，之前的segment可以删除
+     */
+    private long retainPosition() {
+        long position = cursor;
+        if (!retainBacklog) {
+            return position;
+        }
+        for (Entry<String, QueueIndex> entry : log.getIndexes().entrySet()) {
+            String queueName = entry.getKey();
+            long seq = getConsumeSeq(queueName);
+            if (seq < entry.getValue().getNextSeq()) {
+                position = Math.min(position, getBacklogPosition(queueName, seq));
+            }
+        }
+        return position;
+    }
+
+    public void close() {
+        offsets.put(KEY_CURSOR, cursor);
+        try {
+            offsets.persist();
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
+        }
+        log.close();
     }
 
 }
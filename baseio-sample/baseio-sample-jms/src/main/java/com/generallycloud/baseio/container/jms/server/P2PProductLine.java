@@ -15,19 +15,23 @@
  */
 package com.generallycloud.baseio.container.jms.server;
 
-import java.io.IOException;
 import java.util.List;
 
+import com.generallycloud.baseio.codec.protobase.future.ProtobaseFuture;
+import com.generallycloud.baseio.component.SocketSession;
+import com.generallycloud.baseio.concurrent.ConcurrentSet;
 import com.generallycloud.baseio.container.jms.Message;
-import com.generallycloud.baseio.log.Logger;
-import com.generallycloud.baseio.log.LoggerFactory;
+import com.generallycloud.baseio.container.jms.store.LogRecord;
 
 public class P2PProductLine extends AbstractProductLine {
 
-    private Logger logger = LoggerFactory.getLogger(getClass());
+    private static final int      REPLAY_BATCH = 64;
+    // 有积压消息等待补发的队列
+    private ConcurrentSet<String> replayQueues = new ConcurrentSet<>();
+    private int                   roundRobin;
 
-    public P2PProductLine(MQContext context) {
-        super(context);
+    public P2PProductLine(MQContext context, int index) {
+        super(context, "p2p-" + index, true);
     }
 
     @Override
@@ -35,39 +39,119 @@ public class P2PProductLine extends AbstractProductLine {
         return new P2PConsumerQueue();
     }
 
+    @Override
+    public void pollMessage(SocketSession session, ProtobaseFuture future,
+            MQSessionAttachment attachment) {
+        super.pollMessage(session, future, attachment);
+        replayQueues.add(future.getReadText());
+    }
+
     // FIXME 完善消息匹配机制
     @Override
     public void doLoop() {
-
-        Message message = storage.poll(16);
-
-        if (message == null) {
-            return;
+        replay();
+        LogRecord record = storage.poll(16);
+        for (int i = 0; record != null;) {
+            String queueName = record.getQueueName();
+            // 该队列有更早的消息未投递时，留给replay按顺序补发
+            if (storage.getConsumeSeq(queueName) == record.getQueueSeq()) {
+                deliver(record);
+            }
+            if (++i == DRAIN_BATCH) {
+                break;
+            }
+            record = storage.poll(0);
         }
+        flushConsumers();
+        storage.checkpoint();
+    }
 
-        String queueName = message.getQueueName();
-
-        ConsumerQueue consumerQueue = getConsumerQueue(queueName);
+    @Override
+    protected void onCredit(Consumer consumer) {
+        replayQueues.add(consumer.getQueueName());
+    }
 
-        List<Consumer> consumers = consumerQueue.getSnapshot();
+    @Override
+    protected void redeliver(Message message) {
+        context.offerMessage(message);
+    }
 
-        if (consumers.size() == 0) {
+    /**
+     * 将消息投递给一个有credit的consumer，都没有credit时返回false，
+     * 消息留在日志中，待consumer确认后补发
+     */
+    private boolean deliver(LogRecord record) {
+        Message message = record.getMessage();
+        String queueName = record.getQueueName();
+        if (isExpired(message)) {
+            storage.commit(queueName, record.getQueueSeq() + 1);
+            context.consumerMessage(message);
+            return true;
+        }
+        Consumer consumer = selectConsumer(getConsumerQueue(queueName).getSnapshot());
+        if (consumer == null) {
+            return false;
+        }
+        push(consumer, EncodedMessage.encode(message));
+        storage.commit(queueName, record.getQueueSeq() + 1);
+        context.consumerMessage(message);
+        return true;
+    }
 
-            filterUseless(message);
+    private Consumer selectConsumer(List<Consumer> consumers) {
+        int size = consumers.size();
+        for (int i = 0; i < size; i++) {
+            Consumer consumer = consumers.get((roundRobin++ & 0x7fffffff) % size);
+            if (consumer.hasCredit()) {
+                return consumer;
+            }
+        }
+        return null;
+    }
 
+    private void replay() {
+        if (replayQueues.isEmpty()) {
             return;
         }
-
-        for (Consumer consumer : consumers) {
-            try {
-                consumer.push(message);
-            } catch (IOException e) {
-                logger.error(e.getMessage(), e);
-                this.offerMessage(message);
+        for (String queueName : replayQueues) {
+            // 先移除再补发，补发期间到达的确认会重新加入
+            replayQueues.remove(queueName);
+            if (!replay(queueName)) {
+                replayQueues.add(queueName);
             }
         }
+    }
 
-        context.consumerMessage(message);
+    /**
+     * 从队列的消费进度开始补发，通过稀疏索引定位后向后扫描到主游标为止，
+     * 每次最多补发REPLAY_BATCH条，返回true表示已追上或已无可用的consumer
+     */
+    private boolean replay(String queueName) {
+        long seq = storage.getConsumeSeq(queueName);
+        if (seq >= storage.getIndex(queueName).getNextSeq()) {
+            return true;
+        }
+        long position = storage.getBacklogPosition(queueName, seq);
+        long cursor = storage.getCursor();
+        int count = 0;
+        while (position < cursor) {
+            LogRecord record = storage.read(position);
+            if (record == null) {
+                break;
+            }
+            position = record.getNextPosition();
+            if (record.getQueueSeq() < seq || !queueName.equals(record.getQueueName())) {
+                continue;
+            }
+            if (!deliver(record)) {
+                return true;
+            }
+            seq++;
+            if (++count == REPLAY_BATCH) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public int messageSize() {
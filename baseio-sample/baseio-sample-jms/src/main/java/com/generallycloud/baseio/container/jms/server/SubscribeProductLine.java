@@ -15,10 +15,10 @@
  */
 package com.generallycloud.baseio.container.jms.server;
 
-import java.io.IOException;
 import java.util.List;
 
 import com.generallycloud.baseio.container.jms.Message;
+import com.generallycloud.baseio.container.jms.store.LogRecord;
 import com.generallycloud.baseio.log.Logger;
 import com.generallycloud.baseio.log.LoggerFactory;
 
@@ -26,8 +26,8 @@ public class SubscribeProductLine extends AbstractProductLine {
 
     private Logger logger = LoggerFactory.getLogger(getClass());
 
-    public SubscribeProductLine(MQContext context) {
-        super(context);
+    public SubscribeProductLine(MQContext context, int index) {
+        super(context, "sub-" + index, false);
     }
 
     @Override
@@ -39,10 +39,21 @@ public class SubscribeProductLine extends AbstractProductLine {
     // FIXME 完善消息匹配机制
     @Override
     public void doLoop() {
+        LogRecord record = storage.poll(16);
+        for (int i = 0; record != null;) {
+            dispatch(record.getMessage());
+            if (++i == DRAIN_BATCH) {
+                break;
+            }
+            record = storage.poll(0);
+        }
+        flushConsumers();
+        storage.checkpoint();
+    }
 
-        Message message = storage.poll(16);
+    private void dispatch(Message message) {
 
-        if (message == null) {
+        if (isExpired(message)) {
             return;
         }
 
@@ -57,11 +68,14 @@ public class SubscribeProductLine extends AbstractProductLine {
             return;
         }
 
+        // 只编码一次，所有订阅者共享
+        EncodedMessage encoded = EncodedMessage.encode(message);
+
         for (Consumer consumer : consumers) {
-            try {
-                consumer.push(message);
-            } catch (IOException e) {
-                logger.error(e.getMessage(), e);
+            // 慢订阅者的credit耗尽时丢弃该消息，不在broker中堆积
+            if (!push(consumer, encoded)) {
+                logger.debug(">>>> subscriber has no credit, drop message: {}",
+                        message.getMsgId());
             }
         }
 
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.container.jms.store;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.generallycloud.baseio.common.CloseUtil;
+
+/**
+ * 消费进度，与日志保存在同一目录下，persist时先写临时文件再替换
+ * 
+ * @author wangkai
+ *
+ */
+public class ConsumerOffsets {
+
+    private final File                        file;
+    private final ConcurrentMap<String, Long> offsets = new ConcurrentHashMap<>();
+    private volatile boolean                  dirty;
+
+    public ConsumerOffsets(File file) {
+        this.file = file;
+    }
+
+    public void load() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        Properties properties = new Properties();
+        FileInputStream input = new FileInputStream(file);
+        try {
+            properties.load(input);
+        } finally {
+            CloseUtil.close(input);
+        }
+        for (String name : properties.stringPropertyNames()) {
+            offsets.put(name, Long.valueOf(properties.getProperty(name)));
+        }
+    }
+
+    public long get(String name) {
+        Long offset = offsets.get(name);
+        return offset == null ? 0 : offset;
+    }
+
+    public void put(String name, long offset) {
+        offsets.put(name, offset);
+        dirty = true;
+    }
+
+    public Iterable<Entry<String, Long>> entries() {
+        return offsets.entrySet();
+    }
+
+    public synchronized void persist() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        Properties properties = new Properties();
+        for (Entry<String, Long> entry : offsets.entrySet()) {
+            properties.setProperty(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream output = new FileOutputStream(tmp);
+        try {
+            properties.store(output, null);
+            output.getFD().sync();
+        } finally {
+            CloseUtil.close(output);
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                throw new IOException("rename " + tmp + " failed");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.container.jms.store;
+
+/**
+ * 消息日志的刷盘策略
+ * 
+ * @author wangkai
+ *
+ */
+public enum FlushPolicy {
+
+    /**
+     * 由刷盘线程每隔flushInterval毫秒刷盘一次，offer不等待刷盘
+     */
+    ASYNC,
+
+    /**
+     * 组提交，offer等待刷盘完成后返回，刷盘线程一次force覆盖期间所有写入
+     */
+    GROUP,
+
+    /**
+     * 每次offer都在写入线程中force
+     */
+    SYNC
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.container.jms.store;
+
+import com.generallycloud.baseio.container.jms.Message;
+
+/**
+ * @author wangkai
+ *
+ */
+public class LogRecord {
+
+    private final Message message;
+    private final long    nextPosition;
+    private final long    position;
+    private final String  queueName;
+    private final long    queueSeq;
+
+    public LogRecord(Message message, String queueName, long queueSeq, long position,
+            long nextPosition) {
+        this.message = message;
+        this.queueName = queueName;
+        this.queueSeq = queueSeq;
+        this.position = position;
+        this.nextPosition = nextPosition;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public long getNextPosition() {
+        return nextPosition;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public String getQueueName() {
+        return queueName;
+    }
+
+    public long getQueueSeq() {
+        return queueSeq;
+    }
+
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.container.jms.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.generallycloud.baseio.buffer.ByteBufUtil;
+import com.generallycloud.baseio.common.CloseUtil;
+import com.generallycloud.baseio.log.Logger;
+import com.generallycloud.baseio.log.LoggerFactory;
+
+/**
+ * 一个固定大小的日志文件，文件名为该文件在整个日志中的起始位置，
+ * 写入只发生在持有MessageLog写锁的线程，读取可以在任意线程进行
+ * <p>
+ * MessageLog持有一个引用，读取前需要retain，close或delete只释放MessageLog的引用，
+ * 最后一个引用释放后才unmap并关闭文件
+ * 
+ * @author wangkai
+ *
+ */
+public class LogSegment {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogSegment.class);
+
+    private final long          baseOffset;
+    private final int           capacity;
+    private final File          file;
+    private volatile int        flushPosition;
+    private MappedByteBuffer    mapped;
+    private RandomAccessFile    raf;
+    private final AtomicInteger refs = new AtomicInteger(1);
+    private volatile boolean    closed;
+    private volatile boolean    deleteOnRelease;
+    private ByteBuffer          writeBuffer;
+    private volatile int        writePosition;
+
+    public LogSegment(File file, long baseOffset, int capacity) {
+        this.file = file;
+        this.baseOffset = baseOffset;
+        this.capacity = capacity;
+    }
+
+    public static String fileName(long baseOffset) {
+        String name = String.valueOf(baseOffset);
+        StringBuilder sb = new StringBuilder(24);
+        for (int i = name.length(); i < 20; i++) {
+            sb.append('0');
+        }
+        return sb.append(name).append(".log").toString();
+    }
+
+    public void open() throws IOException {
+        raf = new RandomAccessFile(file, "rw");
+        FileChannel channel = raf.getChannel();
+        mapped = channel.map(MapMode.READ_WRITE, 0, capacity);
+        writeBuffer = mapped.duplicate();
+    }
+
+    /**
+     * 从头扫描校验记录，定位写入位置，每条完整的记录回调一次visitor
+     */
+    public void recover(RecordVisitor visitor) {
+        ByteBuffer buf = mapped.duplicate();
+        for (;;) {
+            int position = buf.position();
+            LogRecord record = MessageSerializer.decode(buf, baseOffset + position, true);
+            if (record == null) {
+                // 异常退出时尾部可能残留写了一半的记录，清零以免之后的追加与其拼出脏数据
+                if (capacity - position >= 4 && buf.getInt(position) != 0) {
+                    for (int i = position; i < capacity; i++) {
+                        buf.put(i, (byte) 0);
+                    }
+                }
+                writePosition = position;
+                flushPosition = position;
+                return;
+            }
+            visitor.visit(record);
+        }
+    }
+
+    public boolean append(byte[] record) {
+        int position = writePosition;
+        if (capacity - position < record.length) {
+            return false;
+        }
+        writeBuffer.position(position);
+        writeBuffer.put(record);
+        // volatile写，之后读线程即可看到完整的记录
+        writePosition = position + record.length;
+        return true;
+    }
+
+    /**
+     * 读取offset处的记录，offset之后没有已写入的数据时返回null
+     */
+    public LogRecord read(int offset) {
+        int writePosition = this.writePosition;
+        if (offset >= writePosition) {
+            return null;
+        }
+        ByteBuffer buf = mapped.duplicate();
+        buf.limit(writePosition);
+        buf.position(offset);
+        return MessageSerializer.decode(buf, baseOffset + offset, false);
+    }
+
+    public void flush() {
+        int writePosition = this.writePosition;
+        if (flushPosition == writePosition || !retain()) {
+            return;
+        }
+        try {
+            mapped.force();
+            flushPosition = writePosition;
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * 增加一个引用，segment已经释放时返回false
+     */
+    public boolean retain() {
+        for (;;) {
+            int c = refs.get();
+            if (c < 1) {
+                return false;
+            }
+            if (refs.compareAndSet(c, c + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        if (refs.decrementAndGet() != 0) {
+            return;
+        }
+        if (mapped != null) {
+            ByteBufUtil.release(mapped);
+            mapped = null;
+            writeBuffer = null;
+        }
+        CloseUtil.close(raf);
+        if (deleteOnRelease && !file.delete()) {
+            logger.error("delete segment failed: {}", file);
+        }
+    }
+
+    /**
+     * 释放MessageLog持有的引用，正在读取的线程释放后才真正关闭
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        release();
+    }
+
+    /**
+     * 关闭并在最后一个引用释放后删除文件
+     */
+    public void delete() {
+        deleteOnRelease = true;
+        close();
+    }
+
+    public long getBaseOffset() {
+        return baseOffset;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getEndOffset() {
+        return baseOffset + capacity;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getWritePosition() {
+        return writePosition;
+    }
+
+    public interface RecordVisitor {
+
+        void visit(LogRecord record);
+
+    }
+
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.container.jms.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.generallycloud.baseio.concurrent.AbstractEventLoop;
+import com.generallycloud.baseio.container.jms.Message;
+import com.generallycloud.baseio.log.Logger;
+import com.generallycloud.baseio.log.LoggerFactory;
+
+/**
+ * 分段的追加写消息日志，每个segment是一个MappedByteBuffer映射的定长文件，
+ * position为消息在整个日志中的字节位置，每个队列维护一个稀疏索引
+ * 
+ * @author wangkai
+ *
+ */
+public class MessageLog implements Closeable {
+
+    private static final Logger                    logger        = LoggerFactory
+            .getLogger(MessageLog.class);
+    private final ReentrantLock                    appendLock    = new ReentrantLock();
+    private final Condition                        appended      = appendLock.newCondition();
+    private final File                             directory;
+    private final ReentrantLock                    flushLock     = new ReentrantLock();
+    private final Condition                        flushed       = flushLock.newCondition();
+    private final long                             flushInterval;
+    private final FlushPolicy                      flushPolicy;
+    private LogFlusher                             flusher;
+    private volatile long                          flushPosition;
+    private final ConcurrentMap<String, QueueIndex> indexes      = new ConcurrentHashMap<>();
+    private final int                              indexInterval;
+    private final int                              segmentSize;
+    private final List<LogSegment>                 segments      = new CopyOnWriteArrayList<>();
+    private volatile boolean                       closed;
+    private volatile long                          writePosition;
+
+    public MessageLog(File directory, int segmentSize, FlushPolicy flushPolicy,
+            long flushInterval, int indexInterval) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.flushPolicy = flushPolicy;
+        this.flushInterval = flushInterval;
+        this.indexInterval = indexInterval;
+    }
+
+    public void open() throws Exception {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("create directory failed: " + directory);
+        }
+        File[] files = directory.listFiles();
+        List<LogSegment> segments = new ArrayList<>();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (!name.endsWith(".log")) {
+                    continue;
+                }
+                long baseOffset = Long.parseLong(name.substring(0, name.length() - 4));
+                segments.add(new LogSegment(file, baseOffset, segmentSize));
+            }
+        }
+        Collections.sort(segments, new Comparator<LogSegment>() {
+            @Override
+            public int compare(LogSegment o1, LogSegment o2) {
+                return Long.compare(o1.getBaseOffset(), o2.getBaseOffset());
+            }
+        });
+        LogSegment.RecordVisitor visitor = new LogSegment.RecordVisitor() {
+            @Override
+            public void visit(LogRecord record) {
+                getIndex(record.getQueueName()).recover(record.getQueueSeq(),
+                        record.getPosition());
+            }
+        };
+        for (LogSegment segment : segments) {
+            segment.open();
+            segment.recover(visitor);
+        }
+        if (segments.isEmpty()) {
+            segments.add(newSegment(0));
+        }
+        this.segments.addAll(segments);
+        LogSegment last = segments.get(segments.size() - 1);
+        this.writePosition = last.getBaseOffset() + last.getWritePosition();
+        this.flushPosition = writePosition;
+        logger.info("message log {} recovered, start: {}, end: {}, queues: {}", new Object[] {
+                directory.getName(), getStartPosition(), writePosition, indexes.size() });
+        if (flushPolicy != FlushPolicy.SYNC) {
+            flusher = new LogFlusher();
+            flusher.startup("MQ-Log-Flusher-" + directory.getName());
+        }
+    }
+
+    private LogSegment newSegment(long baseOffset) throws IOException {
+        File file = new File(directory, LogSegment.fileName(baseOffset));
+        LogSegment segment = new LogSegment(file, baseOffset, segmentSize);
+        segment.open();
+        return segment;
+    }
+
+    public QueueIndex getIndex(String queueName) {
+        QueueIndex index = indexes.get(queueName);
+        if (index == null) {
+            index = new QueueIndex(indexInterval);
+            QueueIndex old = indexes.putIfAbsent(queueName, index);
+            if (old != null) {
+                index = old;
+            }
+        }
+        return index;
+    }
+
+    public Map<String, QueueIndex> getIndexes() {
+        return indexes;
+    }
+
+    /**
+     * 追加一条消息，GROUP策略下等待包含该消息的组提交完成后返回
+     * 
+     * @return 该消息在日志中的位置
+     */
+    public long append(Message message) throws IOException {
+        QueueIndex index = getIndex(message.getQueueName());
+        long position;
+        long end;
+        ReentrantLock lock = this.appendLock;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IOException("message log closed");
+            }
+            byte[] record = MessageSerializer.encode(message, index.getNextSeq());
+            LogSegment segment = segments.get(segments.size() - 1);
+            if (!segment.append(record)) {
+                if (record.length > segmentSize) {
+                    throw new IOException("message too large: " + record.length);
+                }
+                // 滚动前将旧segment落盘，刷盘线程只需关注最后一个segment
+                segment.flush();
+                segment = newSegment(segment.getEndOffset());
+                segments.add(segment);
+                segment.append(record);
+            }
+            end = segment.getBaseOffset() + segment.getWritePosition();
+            position = end - record.length;
+            index.nextSeq(position);
+            if (flushPolicy == FlushPolicy.SYNC) {
+                segment.flush();
+                flushPosition = end;
+            }
+            writePosition = end;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (flushPolicy == FlushPolicy.GROUP) {
+            waitFlushed(end);
+        }
+        return position;
+    }
+
+    private void waitFlushed(long end) throws IOException {
+        ReentrantLock lock = this.flushLock;
+        lock.lock();
+        try {
+            flusher.wakeup0();
+            while (flushPosition < end) {
+                if (!flusher.isRunning()) {
+                    throw new IOException("message log closed");
+                }
+                flushed.await(flushInterval, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 读取position处的记录，position所在的segment已被删除时从最早的记录开始读，
+     * 没有更多记录时返回null
+     */
+    public LogRecord read(long position) {
+        // 迭代器是segments的快照，retention并发删除segment时不受影响
+        Iterator<LogSegment> it = segments.iterator();
+        while (it.hasNext()) {
+            LogSegment segment = it.next();
+            if (position >= segment.getEndOffset()) {
+                continue;
+            }
+            if (position < segment.getBaseOffset()) {
+                position = segment.getBaseOffset();
+            }
+            // 已被删除的segment，从下一个segment开始读
+            if (!segment.retain()) {
+                continue;
+            }
+            LogRecord record;
+            try {
+                record = segment.read((int) (position - segment.getBaseOffset()));
+            } finally {
+                segment.release();
+            }
+            if (record != null) {
+                return record;
+            }
+            if (!it.hasNext()) {
+                return null;
+            }
+            // segment尾部剩余空间不足以写入下一条记录，跳到下一个segment
+            position = segment.getEndOffset();
+        }
+        return null;
+    }
+
+    /**
+     * 读取position处的记录，没有时最多等待timeout毫秒
+     */
+    public LogRecord poll(long position, long timeout) {
+        LogRecord record = read(position);
+        if (record != null || timeout <= 0) {
+            return record;
+        }
+        ReentrantLock lock = this.appendLock;
+        lock.lock();
+        try {
+            if (position >= writePosition) {
+                appended.await(timeout, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+        return read(position);
+    }
+
+    /**
+     * 删除结束位置不大于position的segment，最后一个segment始终保留
+     */
+    public void deleteBefore(long position) {
+        ReentrantLock lock = this.flushLock;
+        lock.lock();
+        try {
+            for (;;) {
+                LogSegment first = segments.get(0);
+                if (segments.size() == 1 || first.getEndOffset() > position) {
+                    break;
+                }
+                segments.remove(0);
+                // 正在读取该segment的线程释放引用后才会unmap并删除文件
+                first.delete();
+            }
+        } finally {
+            lock.unlock();
+        }
+        long startPosition = getStartPosition();
+        for (QueueIndex index : indexes.values()) {
+            index.truncate(startPosition);
+        }
+    }
+
+    public void flush() {
+        ReentrantLock lock = this.flushLock;
+        lock.lock();
+        try {
+            long end = writePosition;
+            if (flushPosition >= end) {
+                return;
+            }
+            for (LogSegment segment : segments) {
+                if (segment.getEndOffset() > flushPosition) {
+                    segment.flush();
+                }
+            }
+            flushPosition = end;
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getStartPosition() {
+        return segments.get(0).getBaseOffset();
+    }
+
+    public long getWritePosition() {
+        return writePosition;
+    }
+
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.stop();
+        }
+        ReentrantLock lock = this.appendLock;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        flush();
+        lock = this.flushLock;
+        lock.lock();
+        try {
+            for (LogSegment segment : segments) {
+                segment.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    class LogFlusher extends AbstractEventLoop {
+
+        @Override
+        protected void doLoop() throws Exception {
+            ReentrantLock lock = flushLock;
+            lock.lock();
+            try {
+                if (flushPosition >= writePosition || flushPolicy == FlushPolicy.ASYNC) {
+                    flushed.await(flushInterval, TimeUnit.MILLISECONDS);
+                }
+            } finally {
+                lock.unlock();
+            }
+            // GROUP策略下，等待期间写入的消息在这里一次force
+            flush();
+        }
+
+        void wakeup0() {
+            flushed.signalAll();
+        }
+
+        @Override
+        public void wakeup() {
+            ReentrantLock lock = flushLock;
+            lock.lock();
+            try {
+                wakeup0();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.container.jms.store;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.generallycloud.baseio.common.Encoding;
+import com.generallycloud.baseio.container.jms.BasicMessage;
+import com.generallycloud.baseio.container.jms.BytedMessage;
+import com.generallycloud.baseio.container.jms.MapByteMessage;
+import com.generallycloud.baseio.container.jms.MapMessage;
+import com.generallycloud.baseio.container.jms.Message;
+import com.generallycloud.baseio.container.jms.TextByteMessage;
+import com.generallycloud.baseio.container.jms.TextMessage;
+
+/**
+ * <pre>
+ *  消息在日志中的格式:
+ *  int   size       : 不含size自身的记录长度，0表示该位置之后没有数据
+ *  int   crc        : body的CRC32，用于恢复时识别写了一半的记录
+ *  ---- body ----
+ *  long  queueSeq   : 消息在所属队列中的序号
+ *  long  timestamp
+ *  byte  msgType
+ *  short queueName长度 + queueName
+ *  short msgId长度 + msgId
+ *  int   text长度 + text(TEXT类型为text，MAP类型为map的json，-1表示null)
+ *  int   binary长度 + binary(-1表示null)
+ * </pre>
+ * 
+ * @author wangkai
+ *
+ */
+public class MessageSerializer {
+
+    public static final int     RECORD_HEADER = 8;
+    private static final Charset UTF8         = Encoding.UTF8;
+
+    public static byte[] encode(Message message, long queueSeq) {
+        byte[] queueName = message.getQueueName().getBytes(UTF8);
+        byte[] msgId = message.getMsgId() == null ? new byte[0] : message.getMsgId().getBytes(UTF8);
+        byte[] text = getText(message);
+        byte[] binary = null;
+        if (message instanceof BytedMessage) {
+            binary = ((BytedMessage) message).getByteArray();
+        }
+        int bodySize = 8 + 8 + 1 + 2 + queueName.length + 2 + msgId.length + 4 + 4;
+        if (text != null) {
+            bodySize += text.length;
+        }
+        if (binary != null) {
+            bodySize += binary.length;
+        }
+        byte[] record = new byte[RECORD_HEADER + bodySize];
+        ByteBuffer buf = ByteBuffer.wrap(record);
+        buf.putInt(4 + bodySize);
+        buf.putInt(0);
+        buf.putLong(queueSeq);
+        buf.putLong(message.getTimestamp());
+        buf.put((byte) message.getMsgType());
+        buf.putShort((short) queueName.length);
+        buf.put(queueName);
+        buf.putShort((short) msgId.length);
+        buf.put(msgId);
+        putBytes(buf, text);
+        putBytes(buf, binary);
+        CRC32 crc = new CRC32();
+        crc.update(record, RECORD_HEADER, bodySize);
+        buf.putInt(4, (int) crc.getValue());
+        return record;
+    }
+
+    /**
+     * 从buf的position处读取一条记录，记录不完整或校验失败时返回null，
+     * 成功时buf的position移动到下一条记录，只有恢复时才需要校验crc
+     */
+    public static LogRecord decode(ByteBuffer buf, long position, boolean checkCrc) {
+        if (buf.remaining() < RECORD_HEADER) {
+            return null;
+        }
+        int start = buf.position();
+        int size = buf.getInt();
+        if (size <= 4 || size > buf.remaining()) {
+            buf.position(start);
+            return null;
+        }
+        int crcValue = buf.getInt();
+        int bodySize = size - 4;
+        if (checkCrc && crc(buf, bodySize) != crcValue) {
+            buf.position(start);
+            return null;
+        }
+        long queueSeq = buf.getLong();
+        long timestamp = buf.getLong();
+        int msgType = buf.get();
+        String queueName = getString(buf, buf.getShort());
+        String msgId = getString(buf, buf.getShort());
+        byte[] text = getBytes(buf);
+        byte[] binary = getBytes(buf);
+        BasicMessage message = newMessage(msgType, msgId, queueName, text, binary);
+        message.setTimestamp(timestamp);
+        return new LogRecord(message, queueName, queueSeq, position,
+                position + RECORD_HEADER + bodySize);
+    }
+
+    private static int crc(ByteBuffer buf, int length) {
+        CRC32 crc = new CRC32();
+        if (buf.hasArray()) {
+            crc.update(buf.array(), buf.arrayOffset() + buf.position(), length);
+        } else {
+            byte[] body = new byte[length];
+            buf.duplicate().get(body);
+            crc.update(body, 0, length);
+        }
+        return (int) crc.getValue();
+    }
+
+    private static BasicMessage newMessage(int msgType, String msgId, String queueName,
+            byte[] text, byte[] binary) {
+        String textValue = text == null ? null : new String(text, UTF8);
+        switch (msgType) {
+            case Message.TYPE_TEXT:
+                return new TextMessage(msgId, queueName, textValue);
+            case Message.TYPE_TEXT_BYTE:
+                return new TextByteMessage(msgId, queueName, textValue, binary);
+            case Message.TYPE_MAP:
+                return new MapMessage(msgId, queueName, parseMap(textValue));
+            case Message.TYPE_MAP_BYTE:
+                return new MapByteMessage(msgId, queueName, parseMap(textValue), binary);
+            default:
+                throw new IllegalArgumentException("unknown msgType:" + msgType);
+        }
+    }
+
+    private static JSONObject parseMap(String text) {
+        if (text == null) {
+            return new JSONObject();
+        }
+        return JSON.parseObject(text);
+    }
+
+    private static byte[] getText(Message message) {
+        String text = null;
+        if (message instanceof TextMessage) {
+            text = ((TextMessage) message).getReadText();
+        } else if (message instanceof MapMessage) {
+            JSONObject map = ((MapMessage) message).getMap();
+            text = map == null ? null : map.toJSONString();
+        }
+        return text == null ? null : text.getBytes(UTF8);
+    }
+
+    private static void putBytes(ByteBuffer buf, byte[] bytes) {
+        if (bytes == null) {
+            buf.putInt(-1);
+            return;
+        }
+        buf.putInt(bytes.length);
+        buf.put(bytes);
+    }
+
+    private static byte[] getBytes(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return bytes;
+    }
+
+    private static String getString(ByteBuffer buf, int length) {
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.baseio.container.jms.store;
+
+import java.util.Arrays;
+
+/**
+ * 单个队列的稀疏索引，每interval条消息记录一次(queueSeq, position)，
+ * 查找时先定位到不大于目标序号的索引项，再从该位置顺序扫描
+ * 
+ * @author wangkai
+ *
+ */
+public class QueueIndex {
+
+    private final int interval;
+    private long      nextSeq;
+    private long[]    positions = new long[16];
+    private long[]    seqs      = new long[16];
+    private int       size;
+
+    public QueueIndex(int interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * 分配下一个序号，在日志写锁内调用
+     */
+    public synchronized long nextSeq(long position) {
+        long seq = nextSeq++;
+        if (seq % interval == 0) {
+            add(seq, position);
+        }
+        return seq;
+    }
+
+    /**
+     * 恢复时按日志顺序重放已有的记录
+     */
+    public synchronized void recover(long seq, long position) {
+        if (seq % interval == 0) {
+            add(seq, position);
+        }
+        nextSeq = seq + 1;
+    }
+
+    /**
+     * 队列的消息都已随segment删除时，恢复后从消费进度继续分配序号
+     */
+    public synchronized void ensureNextSeq(long seq) {
+        if (nextSeq < seq) {
+            nextSeq = seq;
+        }
+    }
+
+    private void add(long seq, long position) {
+        if (size == seqs.length) {
+            seqs = Arrays.copyOf(seqs, size << 1);
+            positions = Arrays.copyOf(positions, size << 1);
+        }
+        seqs[size] = seq;
+        positions[size] = position;
+        size++;
+    }
+
+    /**
+     * 返回不大于seq的最近一个索引项的位置，没有时返回defaultPosition
+     */
+    public synchronized long floor(long seq, long defaultPosition) {
+        int index = Arrays.binarySearch(seqs, 0, size, seq);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        if (index < 0) {
+            return defaultPosition;
+        }
+        return Math.max(positions[index], defaultPosition);
+    }
+
+    /**
+     * 移除位置小于position的索引项(所在的segment已被删除)，保留最后一个
+     */
+    public synchronized void truncate(long position) {
+        int remove = 0;
+        while (remove < size - 1 && positions[remove + 1] <= position) {
+            remove++;
+        }
+        if (remove == 0) {
+            return;
+        }
+        size -= remove;
+        System.arraycopy(seqs, remove, seqs, 0, size);
+        System.arraycopy(positions, remove, positions, 0, size);
+    }
+
+    public synchronized long getNextSeq() {
+        return nextSeq;
+    }
+
+}
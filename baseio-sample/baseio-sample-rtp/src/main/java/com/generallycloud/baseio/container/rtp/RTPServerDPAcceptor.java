@@ -27,6 +27,7 @@ import com.generallycloud.baseio.component.SocketSessionManager;
 import com.generallycloud.baseio.container.ApplicationContext;
 import com.generallycloud.baseio.container.ApplicationContextUtil;
 import com.generallycloud.baseio.container.LoginCenter;
+import com.generallycloud.baseio.container.authority.Authority;
 import com.generallycloud.baseio.container.authority.AuthorityContext;
 import com.generallycloud.baseio.container.authority.AuthorityManager;
 import com.generallycloud.baseio.container.rtp.server.RTPRoom;
@@ -98,21 +99,18 @@ public class RTPServerDPAcceptor extends ServerDatagramPacketAcceptor {
                 return;
             }
 
-            //FIXME udp
-
             SocketChannelContext channelContext = context.getChannelContext();
 
             SocketSessionManager sessionManager = channelContext.getSessionManager();
 
-            //			Session session = factory.getSession(username);
-
-            SocketSession session = null;
+            SocketSession session = findSession(sessionManager,
+                    parameters.getParameter("username"));
 
             if (session == null) {
                 return;
             }
 
-            //			session.setDatagramChannel(channel); //FIXME udp 
+            dSession.bind(session);
 
             ProtobaseFuture future = new ProtobaseFutureImpl(session.getContext(),
                     BIND_SESSION_CALLBACK);
@@ -128,6 +126,20 @@ public class RTPServerDPAcceptor extends ServerDatagramPacketAcceptor {
         }
     }
 
+    // 绑定只在建立udp通道时发生，遍历已登录的tcp session即可
+    private SocketSession findSession(SocketSessionManager sessionManager, String username) {
+        if (username == null) {
+            return null;
+        }
+        for (SocketSession session : sessionManager.getManagedSessions().values()) {
+            Authority authority = ApplicationContextUtil.getAuthority(session);
+            if (authority != null && username.equals(authority.getUsername())) {
+                return session;
+            }
+        }
+        return null;
+    }
+
     protected String getSERVICE_NAME() {
         return SERVICE_NAME;
     }
@@ -47,7 +47,7 @@ public abstract class ServerDatagramPacketAcceptor implements DatagramPacketAcce
             return;
         }
 
-        doAccept(session, packet, socketSession); //FIXME UDP
+        doAccept(session, packet, socketSession);
 
     }
 
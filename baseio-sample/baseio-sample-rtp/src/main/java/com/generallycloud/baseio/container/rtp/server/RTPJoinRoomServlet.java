@@ -16,6 +16,7 @@
 package com.generallycloud.baseio.container.rtp.server;
 
 import com.generallycloud.baseio.codec.protobase.future.ProtobaseFuture;
+import com.generallycloud.baseio.component.DatagramSession;
 import com.generallycloud.baseio.component.SocketSession;
 import com.generallycloud.baseio.container.rtp.RTPContext;
 
@@ -44,7 +45,7 @@ public class RTPJoinRoomServlet extends RTPServlet {
             return;
         }
 
-        if (room.join(null)) {
+        if (room.join(DatagramSession.get(session))) {
 
             future.write("1");
 
@@ -16,6 +16,7 @@
 package com.generallycloud.baseio.container.rtp.server;
 
 import com.generallycloud.baseio.codec.protobase.future.ProtobaseFuture;
+import com.generallycloud.baseio.component.DatagramSession;
 import com.generallycloud.baseio.component.SocketSession;
 
 public class RTPLeaveRoomServlet extends RTPServlet {
@@ -28,8 +29,10 @@ public class RTPLeaveRoomServlet extends RTPServlet {
 
         RTPRoom room = attachment.getRtpRoom();
 
-        if (room != null) {
-            //			room.leave(session.getDatagramChannel()); //FIXME udp 
+        DatagramSession datagramSession = DatagramSession.get(session);
+
+        if (room != null && datagramSession != null) {
+            room.leave(datagramSession);
         }
 
         future.write("1");
@@ -15,56 +15,37 @@
  */
 package com.generallycloud.baseio.container.rtp.server;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.locks.ReentrantLock;
 
 import com.generallycloud.baseio.component.DatagramSession;
-import com.generallycloud.baseio.component.Session;
+import com.generallycloud.baseio.component.DatagramSessionGroup;
+import com.generallycloud.baseio.component.SocketSession;
 import com.generallycloud.baseio.concurrent.FixedAtomicInteger;
-import com.generallycloud.baseio.concurrent.ReentrantList;
 import com.generallycloud.baseio.container.rtp.RTPContext;
-import com.generallycloud.baseio.log.Logger;
-import com.generallycloud.baseio.log.LoggerFactory;
 import com.generallycloud.baseio.protocol.DatagramPacket;
 
 //FIXME 是不是要限制最多room数
 public class RTPRoom {
 
-    private static final FixedAtomicInteger ROOM_Id             = new FixedAtomicInteger();
-    private static final Logger             logger              = LoggerFactory
-            .getLogger(RTPRoom.class);
+    private static final FixedAtomicInteger ROOM_Id          = new FixedAtomicInteger();
 
     private RTPContext                      context;
-    private ReentrantList<DatagramSession>  datagramChannelList = new ReentrantList<>(
-            new ArrayList<DatagramSession>());
+    private DatagramSessionGroup            datagramSessions = new DatagramSessionGroup();
+    private ReentrantLock                   lock             = new ReentrantLock();
     private RTPRoomFactory                  roomFactory;
     private int                             roomId;
-    private boolean                         closed              = false;
+    private boolean                         closed           = false;
 
-    public RTPRoom(RTPContext context, Session session) {
+    public RTPRoom(RTPContext context, SocketSession session) {
         this.roomId = genRoomId();
         this.roomFactory = context.getRTPRoomFactory();
         this.context = context;
-        //		this.join(session.getDatagramChannel()); //FIXME udp 
+        this.join(DatagramSession.get(session));
     }
 
     public void broadcast(DatagramSession session, DatagramPacket packet) {
-
-        List<DatagramSession> datagramChannels = datagramChannelList.takeSnapshot();
-
-        for (DatagramSession ch : datagramChannels) {
-
-            if (session == ch) {
-                continue;
-            }
-
-            try {
-                ch.sendPacket(packet);
-            } catch (Throwable e) {
-                logger.debug(e);
-            }
-        }
+        datagramSessions.broadcast(packet, session);
     }
 
     private int genRoomId() {
@@ -81,7 +62,7 @@ public class RTPRoom {
             return false;
         }
 
-        ReentrantLock lock = datagramChannelList.getReentrantLock();
+        ReentrantLock lock = this.lock;
 
         lock.lock();
 
@@ -92,7 +73,7 @@ public class RTPRoom {
             return false;
         }
 
-        if (!datagramChannelList.add(session)) {
+        if (!datagramSessions.add(session)) {
 
             lock.unlock();
 
@@ -101,25 +82,24 @@ public class RTPRoom {
 
         lock.unlock();
 
-        //		Session session = (Session) session.getSession();
+        SocketSession socketSession = session.getSocketSession();
 
-        //FIXME RTP
-        //		RTPSessionAttachment attachment = (RTPSessionAttachment) session.getAttachment(context.getPluginIndex());
-
-        //		attachment.setRTPRoom(this);
+        if (socketSession != null) {
+            context.getSessionAttachment(socketSession).setRTPRoom(this);
+        }
 
         return true;
     }
 
     public void leave(DatagramSession channel) {
 
-        ReentrantLock lock = datagramChannelList.getReentrantLock();
+        ReentrantLock lock = this.lock;
 
         lock.lock();
 
-        datagramChannelList.remove(channel);
+        datagramSessions.remove(channel);
 
-        List<DatagramSession> chs = datagramChannelList.takeSnapshot();
+        List<DatagramSession> chs = datagramSessions.getMembers();
 
         for (DatagramSession ch : chs) {
 
@@ -143,7 +123,7 @@ public class RTPRoom {
             //			mqContext.offerMessage(message);
         }
 
-        if (datagramChannelList.size() == 0) {
+        if (datagramSessions.isEmpty()) {
 
             this.closed = true;
 
@@ -15,7 +15,7 @@
  */
 package com.generallycloud.baseio.container.rtp.server;
 
-import com.generallycloud.baseio.component.Session;
+import com.generallycloud.baseio.component.SocketSession;
 import com.generallycloud.baseio.container.rtp.RTPContext;
 
 public class RTPSessionAttachment {
@@ -28,7 +28,7 @@ public class RTPSessionAttachment {
         return rtpRoom;
     }
 
-    public RTPRoom createRTPRoom(Session session) {
+    public RTPRoom createRTPRoom(SocketSession session) {
         if (rtpRoom == null) {
 
             rtpRoom = new RTPRoom(context, session);
@@ -15,6 +15,7 @@
  */
 package com.generallycloud.baseio.container.rtp.server;
 
+import com.generallycloud.baseio.component.DatagramSession;
 import com.generallycloud.baseio.component.SocketSession;
 import com.generallycloud.baseio.component.SocketSessionEventListenerAdapter;
 import com.generallycloud.baseio.container.rtp.RTPContext;
@@ -47,13 +48,19 @@ public class RTPSessionEventListener extends SocketSessionEventListenerAdapter {
             return;
         }
 
-        RTPRoom room = attachment.getRtpRoom();
+        DatagramSession datagramSession = DatagramSession.get(session);
 
-        if (room == null) {
+        if (datagramSession == null) {
             return;
         }
 
-        //		room.leave(session.getDatagramChannel()); //FIXME udp 
+        RTPRoom room = attachment.getRtpRoom();
+
+        if (room != null) {
+            room.leave(datagramSession);
+        }
+
+        datagramSession.close();
     }
 
 }
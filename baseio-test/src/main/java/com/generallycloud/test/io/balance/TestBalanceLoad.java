@@ -15,8 +15,10 @@
  */
 package com.generallycloud.test.io.balance;
 
+import com.generallycloud.baseio.balance.BalanceContext;
 import com.generallycloud.baseio.codec.protobase.ProtobaseCodec;
 import com.generallycloud.baseio.codec.protobase.ProtobaseFuture;
+import com.generallycloud.baseio.codec.protobase.ProtobaseFutureImpl;
 import com.generallycloud.baseio.common.CloseUtil;
 import com.generallycloud.baseio.component.ChannelConnector;
 import com.generallycloud.baseio.component.ChannelContext;
@@ -61,7 +63,12 @@ public class TestBalanceLoad {
 
         context.addSessionEventListener(new LoggerSocketSEListener());
 
-        connector.connect();
+        SocketSession session = connector.connect();
+
+        // 以稳定的id注册，HashedBalanceRouter按该id在环上放置该节点，重连后位置不变
+        ProtobaseFuture register = new ProtobaseFutureImpl(BalanceContext.BALANCE_REGISTER);
+        register.write(args.length > 0 ? args[0] : "load-node-1", session);
+        session.flush(register);
 
         System.in.read();
 
@@ -20,7 +20,7 @@ import java.io.IOException;
 import com.generallycloud.baseio.balance.BalanceServerBootStrap;
 import com.generallycloud.baseio.balance.FacadeInterceptorImpl;
 import com.generallycloud.baseio.balance.router.HashedBalanceRouter;
-import com.generallycloud.baseio.codec.protobase.ProtobaseCodec;
+import com.generallycloud.baseio.codec.protobase.PassthroughProtobaseCodec;
 import com.generallycloud.baseio.component.ChannelContext;
 import com.generallycloud.baseio.component.LoggerExceptionCaughtHandle;
 import com.generallycloud.baseio.configuration.Configuration;
@@ -39,15 +39,15 @@ public class TestBalanceMain {
         ChannelContext fcc = new ChannelContext(fc);
         ChannelContext rcc = new ChannelContext(rc);
 
-        fcc.setProtocolCodec(new ProtobaseCodec());
-        rcc.setProtocolCodec(new ProtobaseCodec());
+        fcc.setProtocolCodec(new PassthroughProtobaseCodec());
+        rcc.setProtocolCodec(new PassthroughProtobaseCodec());
 
         f.setFacadeChannelContext(fcc);
         f.setReverseChannelContext(rcc);
         f.setFacadeExceptionCaughtHandle(new LoggerExceptionCaughtHandle());
         f.setReverseExceptionCaughtHandle(new LoggerExceptionCaughtHandle());
         f.setFacadeInterceptor(new FacadeInterceptorImpl(500, 50000));
-        f.setBalanceRouter(new HashedBalanceRouter(10240));
+        f.setBalanceRouter(new HashedBalanceRouter(160, 1.25));
         //		f.setBalanceRouter(new SimpleNextRouter());
 
         f.startup();
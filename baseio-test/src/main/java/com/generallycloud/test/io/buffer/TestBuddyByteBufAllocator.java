@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.test.io.buffer;
+
+import java.util.Random;
+
+import com.generallycloud.baseio.buffer.ByteBuf;
+import com.generallycloud.baseio.buffer.ByteBufAllocator;
+import com.generallycloud.baseio.buffer.PooledByteBuf;
+import com.generallycloud.baseio.buffer.PooledByteBufAllocatorGroup;
+import com.generallycloud.baseio.component.NioEventLoopGroup;
+
+/**
+ * compare allocate/release cost of BuddyByteBufAllocator and SimpleByteBufAllocator
+ * when the memory pool is fragmented, requests that the pool can not satisfy fall
+ * back to unpooled memory and are counted as fallback
+ */
+public class TestBuddyByteBufAllocator {
+
+    static final int capacity = 1024 * 64;
+    static final int unit     = 256;
+    static final int loop     = 1000 * 1000 * 2;
+    // the most bufs held while both allocators are still able to serve all
+    // requests from the pool, with more holds SimpleByteBufAllocator falls back
+    static final int holds    = 1024 * 5 + 512;
+
+    public static void main(String[] args) throws Exception {
+        for (int i = 0; i < 3; i++) {
+            test(false);
+            test(true);
+        }
+    }
+
+    // mostly small bufs with some large ones, the large ones need a long free
+    // range which the random releases of small bufs keep breaking up
+    static int nextLimit(Random random) {
+        if (random.nextInt(10) == 0) {
+            return unit * 16 + random.nextInt(unit * 48);
+        }
+        return 1 + random.nextInt(unit * 4);
+    }
+
+    static void test(boolean buddy) throws Exception {
+        // one allocator whose next is itself, so that a failed allocate falls
+        // back to unpooled memory instead of another pool
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        group.setMemoryPoolCapacity(capacity);
+        group.setMemoryPoolUnit(unit);
+        group.setEnableMemoryPoolBuddy(buddy);
+        PooledByteBufAllocatorGroup allocatorGroup = new PooledByteBufAllocatorGroup(group);
+        allocatorGroup.start();
+        ByteBufAllocator allocator = allocatorGroup.getNext();
+        Random random = new Random(7);
+        // fill the slots then release every other one, so that the free units
+        // are scattered all over the pool before timing
+        ByteBuf[] bufs = new ByteBuf[holds];
+        for (int i = 0; i < bufs.length; i++) {
+            bufs[i] = allocator.allocate(nextLimit(random));
+        }
+        for (int i = 0; i < bufs.length; i += 2) {
+            bufs[i].release(bufs[i].getReleaseVersion());
+            bufs[i] = null;
+        }
+        long fallback = 0;
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < loop; i++) {
+            int index = random.nextInt(bufs.length);
+            ByteBuf buf = bufs[index];
+            if (buf != null) {
+                buf.release(buf.getReleaseVersion());
+            }
+            buf = allocator.allocate(nextLimit(random));
+            if (!(buf instanceof PooledByteBuf)) {
+                fallback++;
+            }
+            bufs[index] = buf;
+        }
+        long cost = System.currentTimeMillis() - startTime;
+        long used = 0;
+        for (ByteBuf buf : bufs) {
+            if (buf instanceof PooledByteBuf) {
+                used += buf.capacity() / unit;
+            }
+        }
+        System.out.println(allocator + " cost:" + cost + "ms, ops/ms:" + (loop / Math.max(cost, 1))
+                + ", fallback:" + fallback + ", used units:" + used + "/" + capacity);
+        for (ByteBuf buf : bufs) {
+            if (buf != null) {
+                buf.release(buf.getReleaseVersion());
+            }
+        }
+        allocatorGroup.stop();
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.test.io.concurrent;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import com.generallycloud.baseio.concurrent.BufferedArrayList;
+import com.generallycloud.baseio.concurrent.ScmpArrayQueue;
+
+/**
+ * N producers offer into one consumer, compare ScmpArrayQueue with BufferedArrayList
+ * (the queue NioEventLoop.dispatch used before)
+ */
+public class TestScmpArrayQueue {
+
+    static final int producers = 4;
+    static final int loop      = 1000 * 1000;
+
+    public static void main(String[] args) throws Exception {
+        for (int i = 0; i < 3; i++) {
+            testBufferedArrayList();
+            testScmpArrayQueue();
+        }
+    }
+
+    static void testBufferedArrayList() throws Exception {
+        final BufferedArrayList<Integer> queue = new BufferedArrayList<>();
+        Runnable consumer = new Runnable() {
+
+            @Override
+            public void run() {
+                long count = 0;
+                long total = (long) producers * loop;
+                for (; count < total;) {
+                    // size()非volatile读，直接加锁取buffer
+                    List<Integer> list = queue.getBuffer();
+                    if (list.isEmpty()) {
+                        Thread.yield();
+                        continue;
+                    }
+                    count += list.size();
+                }
+            }
+        };
+        run("BufferedArrayList", consumer, new Producer() {
+
+            @Override
+            public void offer(Integer value) {
+                queue.offer(value);
+            }
+        });
+    }
+
+    static void testScmpArrayQueue() throws Exception {
+        final ScmpArrayQueue<Integer> queue = new ScmpArrayQueue<>();
+        Runnable consumer = new Runnable() {
+
+            @Override
+            public void run() {
+                long count = 0;
+                long total = (long) producers * loop;
+                for (; count < total;) {
+                    if (queue.poll() == null) {
+                        Thread.yield();
+                        continue;
+                    }
+                    count++;
+                }
+            }
+        };
+        run("ScmpArrayQueue", consumer, new Producer() {
+
+            @Override
+            public void offer(Integer value) {
+                queue.offer(value);
+            }
+        });
+    }
+
+    static void run(String name, Runnable consumer, final Producer producer) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final Integer value = Integer.valueOf(1);
+        Thread[] ts = new Thread[producers];
+        for (int i = 0; i < producers; i++) {
+            ts[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < loop; j++) {
+                        producer.offer(value);
+                    }
+                }
+            });
+            ts[i].start();
+        }
+        Thread c = new Thread(consumer);
+        c.start();
+        long startTime = System.currentTimeMillis();
+        start.countDown();
+        c.join();
+        long cost = System.currentTimeMillis() - startTime;
+        long total = (long) producers * loop;
+        System.out.println(name + " producers:" + producers + " cost:" + cost + "ms, ops/ms:"
+                + (total / Math.max(cost, 1)));
+    }
+
+    interface Producer {
+
+        void offer(Integer value);
+    }
+
+}
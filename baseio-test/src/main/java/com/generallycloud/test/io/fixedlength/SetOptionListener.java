@@ -37,4 +37,9 @@ public class SetOptionListener implements SessionEventListener {
 
     }
 
+    @Override
+    public void sessionWritabilityChanged(SocketSession session, boolean writable) {
+
+    }
+
 }
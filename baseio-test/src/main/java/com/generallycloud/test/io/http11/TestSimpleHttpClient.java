@@ -48,6 +48,7 @@ public class TestSimpleHttpClient {
         context.setProtocolCodec(new ClientHttpCodec());
         context.setIoEventHandle(eventHandleAdaptor);
         context.addSessionEventListener(new LoggerSocketSEListener());
+        context.addSessionEventListener(eventHandleAdaptor);
         context.setSslContext(sslContext);
 
         SocketSession session = connector.connect();
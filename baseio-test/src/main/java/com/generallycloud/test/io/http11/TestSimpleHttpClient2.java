@@ -51,6 +51,7 @@ public class TestSimpleHttpClient2 {
         context.setProtocolCodec(new ClientHttpCodec());
         context.setIoEventHandle(eventHandleAdaptor);
         context.addSessionEventListener(new LoggerSocketSEListener());
+        context.addSessionEventListener(eventHandleAdaptor);
         if (port == 443) {
             context.setSslContext(SSLUtil.initClient(true));
         }
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.test.io.http2;
+
+import java.io.File;
+
+import com.generallycloud.baseio.codec.http11.ServerHttpCodec;
+import com.generallycloud.baseio.codec.http11.ServerHttpFuture;
+import com.generallycloud.baseio.codec.http2.Http2Codec;
+import com.generallycloud.baseio.codec.http2.Http2SessionFactory;
+import com.generallycloud.baseio.common.FileUtil;
+import com.generallycloud.baseio.component.ChannelAcceptor;
+import com.generallycloud.baseio.component.ChannelContext;
+import com.generallycloud.baseio.component.IoEventHandleAdaptor;
+import com.generallycloud.baseio.component.LoggerSocketSEListener;
+import com.generallycloud.baseio.component.NioEventLoopGroup;
+import com.generallycloud.baseio.component.SocketSession;
+import com.generallycloud.baseio.component.ssl.SSLUtil;
+import com.generallycloud.baseio.component.ssl.SslContext;
+import com.generallycloud.baseio.configuration.Configuration;
+import com.generallycloud.baseio.protocol.Future;
+
+/**
+ * 不带参数时为h2c(curl --http2-prior-knowledge)，参数为ssl时通过ALPN协商h2或http/1.1
+ */
+public class TestHttp2Server {
+
+    public static void main(String[] args) throws Exception {
+
+        IoEventHandleAdaptor eventHandleAdaptor = new IoEventHandleAdaptor() {
+
+            @Override
+            public void accept(SocketSession session, Future future) throws Exception {
+                ServerHttpFuture f = (ServerHttpFuture) future;
+                String res = f.getVersion() + " " + f.getRequestURI();
+                if (f.getBodyContent() != null) {
+                    res += " body:" + f.getBodyContent().length;
+                }
+                f.write(res, session.getContext());
+                session.flush(f);
+            }
+        };
+
+        boolean ssl = args.length > 0 && "ssl".equals(args[0]);
+        ChannelContext context = new ChannelContext(new Configuration(ssl ? 8443 : 8080));
+        NioEventLoopGroup group = new NioEventLoopGroup();
+        group.setEnableSsl(ssl);
+        ChannelAcceptor acceptor = new ChannelAcceptor(context, group);
+        context.addSessionEventListener(new LoggerSocketSEListener());
+        context.setIoEventHandle(eventHandleAdaptor);
+        context.setSocketSessionFactory(new Http2SessionFactory());
+        if (ssl) {
+            File certificate = FileUtil.readFileByCls("generallycloud.com.crt");
+            File privateKey = FileUtil.readFileByCls("generallycloud.com.key");
+            SslContext sslContext = SSLUtil.initServerHttp2(privateKey, certificate);
+            context.setSslContext(sslContext);
+            context.setProtocolCodec(new ServerHttpCodec());
+            context.setAppProtocolCodec("h2", new Http2Codec());
+        } else {
+            context.setProtocolCodec(new Http2Codec());
+        }
+        acceptor.bind();
+    }
+
+}
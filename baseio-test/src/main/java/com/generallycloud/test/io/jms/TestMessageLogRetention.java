@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.test.io.jms;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.generallycloud.baseio.container.jms.TextMessage;
+import com.generallycloud.baseio.container.jms.store.FlushPolicy;
+import com.generallycloud.baseio.container.jms.store.LogRecord;
+import com.generallycloud.baseio.container.jms.store.MessageLog;
+import com.generallycloud.baseio.log.Logger;
+import com.generallycloud.baseio.log.LoggerFactory;
+
+/**
+ * retention删除segment、close与读取并发进行，读取线程不应出现异常，
+ * 读到的记录序号连续，结束后只保留最近的几个segment文件
+ * 
+ * @author wangkai
+ *
+ */
+public class TestMessageLogRetention {
+
+    static final int    SEGMENT_SIZE = 64 * 1024;
+
+    static final int    MESSAGES     = 50000;
+
+    // 保留最近两个segment大小的数据，加上正在写的segment以及边界上的一个
+    static final int    MAX_SEGMENTS = 4;
+
+    static final Logger logger       = LoggerFactory.getLogger(TestMessageLogRetention.class);
+
+    public static void main(String[] args) throws Exception {
+        File directory = new File(System.getProperty("java.io.tmpdir"),
+                "mq-retention-" + System.currentTimeMillis());
+        final MessageLog log = new MessageLog(directory, SEGMENT_SIZE, FlushPolicy.ASYNC, 10,
+                32);
+        log.open();
+        final AtomicInteger errors = new AtomicInteger();
+        final AtomicLong reads = new AtomicLong();
+        final AtomicInteger done = new AtomicInteger();
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    while (done.get() == 0) {
+                        try {
+                            // 从起始位置顺序扫描，扫描期间起始的segment可能已被删除
+                            LogRecord prev = null;
+                            long position = log.getStartPosition();
+                            for (int j = 0; j < 200; j++) {
+                                LogRecord record = log.read(position);
+                                if (record == null) {
+                                    break;
+                                }
+                                if (prev != null && record.getPosition() == prev.getNextPosition()
+                                        && record.getQueueSeq() != prev.getQueueSeq() + 1) {
+                                    errors.incrementAndGet();
+                                }
+                                reads.incrementAndGet();
+                                prev = record;
+                                position = record.getNextPosition();
+                            }
+                        } catch (Throwable e) {
+                            if (errors.incrementAndGet() < 5) {
+                                logger.error(e.getMessage(), e);
+                            }
+                        }
+                    }
+                }
+            });
+            readers[i].start();
+        }
+        Thread retention = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                while (done.get() == 0) {
+                    log.deleteBefore(log.getWritePosition() - SEGMENT_SIZE * 2);
+                }
+            }
+        });
+        retention.start();
+        for (int i = 0; i < MESSAGES; i++) {
+            log.append(new TextMessage("msg-" + i, "queue", "message body " + i));
+        }
+        long writePosition = log.getWritePosition();
+        // 写入结束后的最后一次retention，关闭后删除segment不会再删除文件
+        log.deleteBefore(writePosition - SEGMENT_SIZE * 2);
+        long startPosition = log.getStartPosition();
+        // 读取与retention仍在进行时关闭
+        log.close();
+        Thread.sleep(100);
+        done.set(1);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        retention.join();
+        // 读取线程都已退出，被删除segment的文件此时应该已经删除
+        int segments = 0;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(".log")) {
+                    segments++;
+                }
+                file.delete();
+            }
+        }
+        directory.delete();
+        logger.info("reads: {}, errors: {}", reads, errors);
+        logger.info("write position: {}, start position: {}, segments: {}", writePosition,
+                startPosition, segments);
+        if (errors.get() != 0) {
+            throw new IllegalStateException("concurrent read failed");
+        }
+        if (writePosition <= SEGMENT_SIZE * MAX_SEGMENTS) {
+            throw new IllegalStateException("too few messages to roll segments");
+        }
+        if (segments > MAX_SEGMENTS || writePosition - startPosition > SEGMENT_SIZE * 3L) {
+            throw new IllegalStateException("retention failed, segments: " + segments);
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.test.io.load.fixedlength;
+
+import java.util.concurrent.CountDownLatch;
+
+import com.generallycloud.baseio.codec.fixedlength.FixedLengthCodec;
+import com.generallycloud.baseio.codec.fixedlength.FixedLengthFuture;
+import com.generallycloud.baseio.codec.fixedlength.FixedLengthFutureImpl;
+import com.generallycloud.baseio.common.CloseUtil;
+import com.generallycloud.baseio.component.ChannelAcceptor;
+import com.generallycloud.baseio.component.ChannelConnector;
+import com.generallycloud.baseio.component.ChannelContext;
+import com.generallycloud.baseio.component.ChannelSelectorProvider;
+import com.generallycloud.baseio.component.IoEventHandleAdaptor;
+import com.generallycloud.baseio.component.NioChannelSelectorProvider;
+import com.generallycloud.baseio.component.NioEventLoopGroup;
+import com.generallycloud.baseio.component.SocketSession;
+import com.generallycloud.baseio.configuration.Configuration;
+import com.generallycloud.baseio.protocol.Future;
+
+/**
+ * 同一进程内的echo压测，对比不同ChannelSelectorProvider的吞吐，
+ * 服务端与客户端使用相同的provider
+ * 
+ * @author wangkai
+ *
+ */
+public class TestChannelSelectorBenchmark {
+
+    static final int CLIENTS  = 16;
+
+    static final int MESSAGES = 20000;
+
+    public static void main(String[] args) throws Exception {
+        ChannelSelectorProvider[] providers = new ChannelSelectorProvider[] {
+                new NioChannelSelectorProvider(true), new NioChannelSelectorProvider(false) };
+        String[] names = new String[] { "nio-array-keyset", "nio-hash-keyset" };
+        // 先各跑一轮预热
+        for (int i = 0; i < providers.length; i++) {
+            test(providers[i]);
+        }
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < providers.length; i++) {
+                long cost = test(providers[i]);
+                long qps = (long) CLIENTS * MESSAGES * 1000 / Math.max(cost, 1);
+                System.out.println(names[i] + " cost: " + cost + "ms, qps: " + qps);
+            }
+        }
+    }
+
+    static long test(ChannelSelectorProvider provider) throws Exception {
+        NioEventLoopGroup group = new NioEventLoopGroup(2);
+        group.setChannelSelectorProvider(provider);
+        ChannelContext context = new ChannelContext(new Configuration(8300));
+        ChannelAcceptor acceptor = new ChannelAcceptor(context, group);
+        context.setProtocolCodec(new FixedLengthCodec());
+        context.setIoEventHandle(new IoEventHandleAdaptor() {
+
+            @Override
+            public void accept(SocketSession session, Future future) throws Exception {
+                FixedLengthFuture f = (FixedLengthFuture) future;
+                f.write(f.getReadText(), session);
+                session.flush(future);
+            }
+        });
+        acceptor.bind();
+        final CountDownLatch latch = new CountDownLatch(CLIENTS * MESSAGES);
+        NioEventLoopGroup clientGroup = new NioEventLoopGroup(2);
+        clientGroup.setChannelSelectorProvider(provider);
+        clientGroup.setSharable(true);
+        clientGroup.setEnableMemoryPool(false);
+        SocketSession[] sessions = new SocketSession[CLIENTS];
+        ChannelConnector[] connectors = new ChannelConnector[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            ChannelContext c = new ChannelContext(new Configuration(8300));
+            c.setProtocolCodec(new FixedLengthCodec());
+            c.setIoEventHandle(new IoEventHandleAdaptor() {
+
+                @Override
+                public void accept(SocketSession session, Future future) throws Exception {
+                    latch.countDown();
+                }
+            });
+            connectors[i] = new ChannelConnector(c, clientGroup);
+            sessions[i] = connectors[i].connect();
+        }
+        long startTime = System.currentTimeMillis();
+        for (int j = 0; j < MESSAGES; j++) {
+            for (int i = 0; i < CLIENTS; i++) {
+                FixedLengthFuture future = new FixedLengthFutureImpl();
+                future.write("hello server!", sessions[i]);
+                sessions[i].flush(future);
+            }
+        }
+        latch.await();
+        long cost = System.currentTimeMillis() - startTime;
+        for (ChannelConnector connector : connectors) {
+            CloseUtil.close(connector);
+        }
+        clientGroup.stop();
+        CloseUtil.unbind(acceptor);
+        return cost;
+    }
+
+}
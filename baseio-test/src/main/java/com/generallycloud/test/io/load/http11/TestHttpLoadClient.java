@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.test.io.load.http11;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.generallycloud.baseio.codec.http11.ClientHttpFuture;
+import com.generallycloud.baseio.codec.http11.HttpCallback;
+import com.generallycloud.baseio.codec.http11.HttpClient;
+import com.generallycloud.baseio.codec.http11.HttpClientPool;
+import com.generallycloud.baseio.codec.http11.HttpResponse;
+import com.generallycloud.baseio.common.CloseUtil;
+
+/**
+ * 先启动TestHttpLoadServer，对比逐个等待响应（原HttpClient的方式）与连接池pipeline异步请求
+ */
+public class TestHttpLoadClient {
+
+    public static void main(String[] args) throws Exception {
+
+        final int time = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        final int connections = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        final String host = "localhost";
+        final int port = 8080;
+
+        HttpClientPool pool = new HttpClientPool(connections);
+
+        // 单连接，每次请求等待上一个响应
+        HttpClient client = pool.getClient(host, port);
+        int syncTime = time / 10;
+        long old = System.currentTimeMillis();
+        for (int i = 0; i < syncTime; i++) {
+            client.request(new ClientHttpFuture(client.getContext(), "/test"));
+        }
+        print("sync request", syncTime, System.currentTimeMillis() - old);
+
+        final AtomicInteger failed = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(time);
+        HttpCallback callback = new HttpCallback() {
+
+            @Override
+            public void onResponse(HttpResponse response) {
+                if (response.isFailed()) {
+                    failed.incrementAndGet();
+                }
+                latch.countDown();
+            }
+        };
+        old = System.currentTimeMillis();
+        for (int i = 0; i < time; i++) {
+            HttpClient c = pool.getClient(host, port);
+            c.request(new ClientHttpFuture(c.getContext(), "/test"), 10000, callback);
+        }
+        latch.await();
+        print("pipeline request", time, System.currentTimeMillis() - old);
+        System.out.println("## Failed:" + failed.get());
+
+        CloseUtil.close(pool);
+    }
+
+    private static void print(String name, int time, long spend) {
+        System.out.println("## " + name + " Execute Time:" + time);
+        System.out.println("## OP/S:" + new BigDecimal(time * 1000L)
+                .divide(new BigDecimal(Math.max(spend, 1)), 2, BigDecimal.ROUND_HALF_UP));
+        System.out.println("## Expend Time:" + spend);
+    }
+}
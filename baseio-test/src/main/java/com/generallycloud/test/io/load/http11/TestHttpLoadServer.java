@@ -34,7 +34,7 @@ public class TestHttpLoadServer {
 
             @Override
             public void accept(SocketSession session, Future future) throws Exception {
-                System.out.println("session >>>>"+session);
+                //                System.out.println("session >>>>"+session);
                 future.write("hello world!8080", session.getContext());
                 ServerHttpFuture f = (ServerHttpFuture) future;
                 session.flush(future);
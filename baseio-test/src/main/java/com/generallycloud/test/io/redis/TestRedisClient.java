@@ -34,7 +34,11 @@ public class TestRedisClient {
 
         ChannelConnector connector = new ChannelConnector(context);
 
-        context.setIoEventHandle(new RedisIOEventHandle());
+        RedisIOEventHandle ioEventHandle = new RedisIOEventHandle();
+
+        context.setIoEventHandle(ioEventHandle);
+
+        context.addSessionEventListener(ioEventHandle);
 
         context.addSessionEventListener(new LoggerSocketSEListener());
 
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.test.io.redis;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.generallycloud.baseio.codec.redis.RedisCallback;
+import com.generallycloud.baseio.codec.redis.RedisClient;
+import com.generallycloud.baseio.codec.redis.RedisClientPool;
+import com.generallycloud.baseio.codec.redis.RedisResponse;
+import com.generallycloud.baseio.common.CloseUtil;
+import com.generallycloud.baseio.component.ChannelAcceptor;
+import com.generallycloud.baseio.configuration.Configuration;
+
+public class TestRedisClientPool {
+
+    public static void main(String[] args) throws Exception {
+
+        int count = 100000;
+
+        ChannelAcceptor node1 = TestRedisServer.start(6380);
+        ChannelAcceptor node2 = TestRedisServer.start(6381);
+
+        RedisClientPool pool = new RedisClientPool(2, new Configuration(6380),
+                new Configuration(6381));
+
+        pool.connect();
+
+        final AtomicInteger failed = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(count);
+        RedisCallback callback = new RedisCallback() {
+
+            @Override
+            public void onResponse(RedisResponse response) {
+                if (response.isFailed()) {
+                    failed.incrementAndGet();
+                }
+                latch.countDown();
+            }
+        };
+
+        long startTime = System.currentTimeMillis();
+
+        for (int i = 0; i < count; i++) {
+            String key = "key" + i;
+            pool.getClient(key).set(key, "value" + i, callback);
+        }
+
+        latch.await(30, TimeUnit.SECONDS);
+
+        System.out.println("set cost:" + (System.currentTimeMillis() - startTime) + ",failed:"
+                + failed.get() + ",remain:" + latch.getCount());
+
+        for (int i = 0; i < count; i += 9973) {
+            String key = "key" + i;
+            RedisClient client = pool.getClient(key);
+            System.out.println(key + "(slot:" + RedisClientPool.slot(key.getBytes()) + ")="
+                    + client.get(key));
+        }
+
+        // redis cluster文档中的示例值
+        System.out.println("slot(123456789)=" + RedisClientPool.crc16("123456789".getBytes(), 0, 9)
+                + ",expect 12739");
+        System.out.println("slot({user1000}.following)="
+                + RedisClientPool.slot("{user1000}.following".getBytes()) + ",slot({user1000}.followers)="
+                + RedisClientPool.slot("{user1000}.followers".getBytes()));
+
+        CloseUtil.close(pool);
+        node1.unbind();
+        node2.unbind();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015-2017 GenerallyCloud.com
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.generallycloud.test.io.redis;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.generallycloud.baseio.codec.redis.RedisCodec;
+import com.generallycloud.baseio.codec.redis.RedisFuture;
+import com.generallycloud.baseio.codec.redis.RedisNode;
+import com.generallycloud.baseio.component.ChannelAcceptor;
+import com.generallycloud.baseio.component.ChannelContext;
+import com.generallycloud.baseio.component.IoEventHandleAdaptor;
+import com.generallycloud.baseio.component.SocketSession;
+import com.generallycloud.baseio.configuration.Configuration;
+import com.generallycloud.baseio.protocol.Future;
+
+/**
+ * 基于RedisCodec的简易redis服务端，仅支持PING/SET/GET/DEL，用于测试客户端
+ */
+public class TestRedisServer {
+
+    public static ChannelAcceptor start(int port) throws IOException {
+
+        final Map<String, String> store = new ConcurrentHashMap<>();
+
+        IoEventHandleAdaptor eventHandleAdaptor = new IoEventHandleAdaptor() {
+
+            @Override
+            public void accept(SocketSession session, Future future) throws Exception {
+                RedisNode[] args = ((RedisFuture) future).getRedisNode().getChildren();
+                String cmd = String.valueOf(args[0].getValue()).toUpperCase();
+                String reply;
+                if ("PING".equals(cmd)) {
+                    reply = "+PONG\r\n";
+                } else if ("SET".equals(cmd)) {
+                    store.put((String) args[1].getValue(), (String) args[2].getValue());
+                    reply = "+OK\r\n";
+                } else if ("GET".equals(cmd)) {
+                    String value = store.get(args[1].getValue());
+                    reply = value == null ? "$-1\r\n" : "$" + value.length() + "\r\n" + value + "\r\n";
+                } else if ("DEL".equals(cmd)) {
+                    reply = ":" + (store.remove(args[1].getValue()) == null ? 0 : 1) + "\r\n";
+                } else {
+                    reply = "-ERR unknown command '" + cmd + "'\r\n";
+                }
+                future.write(reply, session);
+                session.flush(future);
+            }
+        };
+        ChannelContext context = new ChannelContext(new Configuration(port));
+        ChannelAcceptor acceptor = new ChannelAcceptor(context);
+        context.setIoEventHandle(eventHandleAdaptor);
+        context.setProtocolCodec(new RedisCodec());
+        acceptor.bind();
+        return acceptor;
+    }
+
+    public static void main(String[] args) throws Exception {
+        start(6379);
+    }
+
+}
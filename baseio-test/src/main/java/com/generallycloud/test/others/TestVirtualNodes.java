@@ -22,6 +22,7 @@ import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.generallycloud.baseio.balance.router.ConsistentHashRing;
 import com.generallycloud.baseio.balance.router.VirtualMachine;
 import com.generallycloud.baseio.balance.router.VirtualNodes;
 
@@ -38,7 +39,72 @@ public class TestVirtualNodes extends VirtualNodes<VirtualMachine> {
     }
 
     public static void main(String[] args) {
-        test3();
+        test4();
+    }
+
+    /**
+     * 与ConsistentHashRing对比增删machine时移动的key比例以及查找的吞吐
+     */
+    static void test4() {
+        int keys = 100000;
+        int time = 10;
+        TestVirtualNodes group = new TestVirtualNodes(9999);
+        ConsistentHashRing<VirtualMachine> ring = new ConsistentHashRing<>(160);
+        List<StringMachine> machines = new ArrayList<>(time);
+        VirtualMachine[] lastGroup = new VirtualMachine[keys];
+        VirtualMachine[] lastRing = new VirtualMachine[keys];
+        for (int i = 0; i < time * 2; i++) {
+            String op;
+            if (i < time) {
+                StringMachine m = new StringMachine(String.valueOf(i));
+                machines.add(m);
+                group.addMachine(m);
+                ring.addMachine(m);
+                op = "add    ";
+            } else {
+                StringMachine m = machines.remove(new Random().nextInt(machines.size()));
+                group.removeMachine(m);
+                ring.removeMachine(m);
+                op = "remove ";
+            }
+            int movedGroup = 0;
+            int movedRing = 0;
+            for (int k = 0; k < keys; k++) {
+                VirtualMachine g = group.getMachine(k);
+                VirtualMachine r = ring.getMachine(k);
+                if (lastGroup[k] != null && lastGroup[k] != g) {
+                    movedGroup++;
+                }
+                if (lastRing[k] != null && lastRing[k] != r) {
+                    movedRing++;
+                }
+                lastGroup[k] = g;
+                lastRing[k] = r;
+            }
+            System.out.println(op + machines.size() + " machines, moved VirtualNodes: "
+                    + (movedGroup * 1f / keys) + ", ConsistentHashRing: " + (movedRing * 1f / keys));
+        }
+        for (int i = 0; i < time; i++) {
+            StringMachine m = new StringMachine(String.valueOf(i));
+            group.addMachine(m);
+            ring.addMachine(m);
+        }
+        int loop = 10000000;
+        for (int n = 0; n < 3; n++) {
+            long startTime = System.nanoTime();
+            int x = 0;
+            for (int i = 0; i < loop; i++) {
+                x += group.getMachine(i & 0x7fffffff).hashCode();
+            }
+            long groupTime = System.nanoTime() - startTime;
+            startTime = System.nanoTime();
+            for (int i = 0; i < loop; i++) {
+                x += ring.getMachine(i).hashCode();
+            }
+            long ringTime = System.nanoTime() - startTime;
+            System.out.println("lookup ns/op VirtualNodes: " + (groupTime * 1f / loop)
+                    + ", ConsistentHashRing: " + (ringTime * 1f / loop) + " (" + x + ")");
+        }
     }
 
     static void test2() {